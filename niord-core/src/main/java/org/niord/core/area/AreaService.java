@@ -15,30 +15,38 @@
  */
 package org.niord.core.area;
 
+import io.quarkus.runtime.StartupEvent;
 import io.quarkus.scheduler.Scheduled;
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.query.sqm.NodeBuilder;
 import org.locationtech.jts.geom.Geometry;
+import org.niord.core.area.vo.SystemAreaVo;
 import org.niord.core.area.vo.SystemAreaVo.AreaMessageSorting;
 import org.niord.core.db.CriteriaHelper;
-import org.niord.core.db.SpatialIntersectsPredicate;
 import org.niord.core.domain.Domain;
+import org.niord.core.domain.DomainChangedEvent;
 import org.niord.core.domain.DomainService;
+import org.niord.core.domain.DomainSnapshot;
 import org.niord.core.geojson.GeoJsonUtils;
 import org.niord.core.message.Message;
-import org.niord.core.model.BaseEntity;
 import org.niord.core.service.TreeBaseService;
+import org.niord.core.service.TreeChangedEvent;
+import org.niord.core.service.TreeSnapshot;
 import org.niord.core.settings.SettingsService;
+import org.niord.model.DataFilter;
 import org.niord.model.search.PagedSearchParamsVo;
 import org.slf4j.Logger;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.RequestScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
 import jakarta.inject.Inject;
 import jakarta.persistence.criteria.*;
+import jakarta.transaction.Transactional;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static org.niord.core.area.AreaSearchParams.TREE_SORT_ORDER;
 
@@ -60,6 +68,29 @@ public class AreaService extends TreeBaseService<Area> {
     @Inject
     DomainService domainService;
 
+    @Inject
+    Event<DomainChangedEvent> domainChangedEvent;
+
+
+    /** Called upon application startup. Builds the initial area tree snapshot **/
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    void init(@Observes StartupEvent ev) {
+        getAreaTreeSnapshot();
+    }
+
+
+    /**
+     * Called when the area tree has changed and the transaction has completed.
+     * Marks the area tree snapshot as out-dated.
+     *
+     * @param event the tree changed event
+     */
+    void onTreeChanged(@Observes(during = TransactionPhase.AFTER_COMPLETION) TreeChangedEvent event) {
+        if (event.concerns(Area.class)) {
+            invalidateTreeSnapshot();
+        }
+    }
+
 
     /**
      * Returns the area with the given legacy id
@@ -196,6 +227,22 @@ public class AreaService extends TreeBaseService<Area> {
     }
 
 
+    /**
+     * Returns the hierarchical list of root areas as value objects.
+     * The tree structure is taken from the area tree snapshot.
+     *
+     * @param filter the data filter used for converting each area. Should not include the children
+     * @return the hierarchical list of root areas as value objects
+     */
+    public List<SystemAreaVo> getAreaTreeVos(DataFilter filter) {
+        return getTreeVos(
+                Area.class,
+                "Area.findAreasWithDescs",
+                a -> a.toVo(SystemAreaVo.class, filter),
+                SystemAreaVo::checkCreateChildren);
+    }
+
+
     /** {@inheritDoc} **/
     @Override
     public List<Area> getRootEntities() {
@@ -204,6 +251,25 @@ public class AreaService extends TreeBaseService<Area> {
     }
 
 
+    /**
+     * Returns the current immutable snapshot of the area tree, including a spatial index of the area geometries.
+     * <p>
+     * NB: Changes to the area tree are reflected in the snapshot once the transaction has completed.
+     *
+     * @return the current snapshot of the area tree
+     */
+    public AreaTreeSnapshot getAreaTreeSnapshot() {
+        return (AreaTreeSnapshot) getTreeSnapshot(Area.class);
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    protected TreeSnapshot createTreeSnapshot(List<Area> areas, long version) {
+        return new AreaTreeSnapshot(areas, version);
+    }
+
+
     /**
      * Looks up an area
      *
@@ -267,6 +333,7 @@ public class AreaService extends TreeBaseService<Area> {
 
         original = saveEntity(original);
 
+        fireTreeChanged(Area.class);
         return original;
     }
 
@@ -308,6 +375,7 @@ public class AreaService extends TreeBaseService<Area> {
         area = saveEntity(area);
 
         em.flush();
+        fireTreeChanged(Area.class);
         return area;
     }
 
@@ -350,6 +418,9 @@ public class AreaService extends TreeBaseService<Area> {
             saveEntity(area);
             remove(area);
             log.debug("Removed area " + areaId);
+            fireTreeChanged(Area.class);
+            // The domain snapshots include the area ID's of the domains
+            domainChangedEvent.fire(new DomainChangedEvent(null));
             return true;
         }
         return false;
@@ -543,76 +614,38 @@ public class AreaService extends TreeBaseService<Area> {
 
     /**
      * Returns the list of active areas intersecting with the given geometry down to the given level.
-     * The result will be pruned, so that parent areas are not included
+     * The result will be pruned, so that parent areas are not included.
+     * <p>
+     * The intersecting areas are computed from the area tree snapshot, and only the resulting areas are loaded.
+     *
      * @param geometry the geometry
      * @param maxLevel the max level in the area tree. Root level is level 1.
+     * @param domain whether to only include areas associated with the current domain
      * @return the list of active charts intersecting with the given geometry
      */
     public List<Area> getIntersectingAreas(Geometry geometry, int maxLevel, boolean domain) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Area> areaQuery = cb.createQuery(Area.class);
-
-        Root<Area> areaRoot = areaQuery.from(Area.class);
-
-        // Build the predicate
-        CriteriaHelper<Area> criteriaHelper = new CriteriaHelper<>(cb, areaQuery);
 
-        Predicate geomPredicate = new SpatialIntersectsPredicate(
-                getNodeBuilder(),
-                areaRoot.get("geometry"),
-                geometry,
-                false);
-        criteriaHelper.add(geomPredicate);
-
-        // Only search for active charts
-        criteriaHelper.add(cb.equal(areaRoot.get("active"), true));
-
-        // Optionally, filter by the areas associated with the specified domain
+        // Optionally, filter by the areas associated with the current domain
+        Set<Integer> domainAreaIds = new HashSet<>();
         if (domain) {
-            Domain d = domainService.currentDomain();
-            if (d != null && d.getAreas().size() > 0) {
-                Predicate[] areaMatch = d.getAreas().stream()
-                        .map(Area::getLineage)
-                        .map(lineage -> cb.like(areaRoot.get("lineage"), lineage + "%"))
-                        .toArray(Predicate[]::new);
-                criteriaHelper.add(cb.or(areaMatch));
+            DomainSnapshot d = domainService.currentDomainSnapshot();
+            if (d != null) {
+                domainAreaIds.addAll(d.getAreaIds());
             }
         }
 
-        // Compute the sort order
-        List<Order> sortOrders = Stream.of("treeSortOrder", "siblingSortOrder", "id")
-                .map(field -> cb.asc(areaRoot.get(field)))
-                .collect(Collectors.toList());
-
-        // Complete the query
-        areaQuery.select(areaRoot)
-                .distinct(true)
-                .where(criteriaHelper.where())
-                .orderBy(sortOrders);
-
-        // Execute the query to find all intersecting areas
-        List<Area> areas = em.createQuery(areaQuery)
-                .getResultList();
+        List<Integer> areaIds = getAreaTreeSnapshot().getIntersectingAreaIds(geometry, maxLevel, domainAreaIds);
+        if (areaIds.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-        // Ensure that we go no deeper than maxLevel.
-        // It is assumed that parent areas include sub-areas geometry-wise.
-        areas = areas.stream()
-                .map(a -> {
-                    List<Area> lineage = a.lineageAsList();
-                    Collections.reverse(lineage);
-                    return lineage.get(Math.min(lineage.size() - 1, maxLevel - 1));
-                })
-                .distinct()
+        // Load the areas and preserve the tree sort order of the snapshot
+        Map<Integer, Area> areas = getAreaDetails(new HashSet<>(areaIds)).stream()
+                .collect(Collectors.toMap(Area::getId, a -> a));
+        return areaIds.stream()
+                .map(areas::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
-
-        // Lastly, remove all parent areas
-        Set<Integer> parentAreaIds = areas.stream()
-                .flatMap(a -> a.parentLineageAsList().stream())
-                .map(BaseEntity::getId)
-                .collect(Collectors.toSet());
-        areas.removeIf(a -> parentAreaIds.contains(a.getId()));
-
-        return areas;
     }
 
 
@@ -648,15 +681,34 @@ public class AreaService extends TreeBaseService<Area> {
         double lat = center[1];
         double lon = center[0];
 
-        // Find parent area with a "messageSorting" definition
+        // Find parent area with a "messageSorting" definition.
+        // Use the area tree snapshot, unless the area has not yet been committed
         Area area = message.getAreas().get(0);
-        while (area != null && area.getMessageSorting() == null) {
-            area = area.getParent();
-        }
-        if (area == null) {
-            return no;
+        AreaTreeSnapshot snapshot = getAreaTreeSnapshot();
+        AreaMessageSorting sortType;
+        Float originLatitude, originLongitude;
+        Integer originAngle;
+        if (area.getId() != null && snapshot.contains(area.getId())) {
+            Integer sortingAreaId = snapshot.getMessageSortingAreaId(area.getId());
+            if (sortingAreaId == null) {
+                return no;
+            }
+            sortType = snapshot.getMessageSorting(sortingAreaId);
+            originLatitude = snapshot.getOriginLatitude(sortingAreaId);
+            originLongitude = snapshot.getOriginLongitude(sortingAreaId);
+            originAngle = snapshot.getOriginAngle(sortingAreaId);
+        } else {
+            while (area != null && area.getMessageSorting() == null) {
+                area = area.getParent();
+            }
+            if (area == null) {
+                return no;
+            }
+            sortType = area.getMessageSorting();
+            originLatitude = area.getOriginLatitude();
+            originLongitude = area.getOriginLongitude();
+            originAngle = area.getOriginAngle();
         }
-        AreaMessageSorting sortType = area.getMessageSorting();
 
         switch (sortType) {
             case NS:
@@ -673,7 +725,7 @@ public class AreaService extends TreeBaseService<Area> {
                 break;
             case CW:
             case CCW:
-                no = computeCwOrCcwSortOrder(area, lat, lon);
+                no = computeCwOrCcwSortOrder(sortType, originLatitude, originLongitude, originAngle, lat, lon);
                 break;
         }
         // Each sort number must be different
@@ -684,14 +736,15 @@ public class AreaService extends TreeBaseService<Area> {
 
 
     /** Calculates the message area sort order for CW and CCW types **/
-    private double computeCwOrCcwSortOrder(Area area, double lat, double lon) {
+    private double computeCwOrCcwSortOrder(AreaMessageSorting sortType, Float originLatitude, Float originLongitude,
+                                           Integer originAngle, double lat, double lon) {
         double no = 0.0;
-        if (area.getOriginLatitude() == null || area.getOriginLongitude() == null) {
+        if (originLatitude == null || originLongitude == null) {
             return no;
         }
 
-        double x = lon2x(area.getOriginLongitude(), area.getOriginLatitude(), lon, lat);
-        double y = lat2y(area.getOriginLongitude(), area.getOriginLatitude(), lon, lat);
+        double x = lon2x(originLongitude, originLatitude, lon, lat);
+        double y = lat2y(originLongitude, originLatitude, lon, lat);
         double ang = 0.0;
 
         if (x == 0.0 && y > 0.0) {
@@ -706,12 +759,12 @@ public class AreaService extends TreeBaseService<Area> {
                 ang += 360.0;
             }
         }
-        no = ang - (area.getOriginAngle() == null ? 0 : area.getOriginAngle());
+        no = ang - (originAngle == null ? 0 : originAngle);
 
         if (no < 0.0) {
             no += 360.0;
         }
-        return (area.getMessageSorting() == AreaMessageSorting.CW) ? -no : no;
+        return (sortType == AreaMessageSorting.CW) ? -no : no;
     }
 
 
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.area;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.niord.core.area.vo.SystemAreaVo.AreaMessageSorting;
+import org.niord.core.service.TreeSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * An immutable snapshot of the area tree.
+ * <p>
+ * Besides the tree structure, the snapshot contains the message sorting definitions of the areas
+ * and a spatial index of the prepared area geometries, used for computing the areas intersecting
+ * a geometry without querying the database.
+ */
+@SuppressWarnings("unused")
+public class AreaTreeSnapshot extends TreeSnapshot {
+
+    final AreaMessageSorting[] messageSorting;
+    final Float[] originLatitudes;
+    final Float[] originLongitudes;
+    final Integer[] originAngles;
+    final PreparedGeometry[] geometries;
+    final STRtree geometryIndex = new STRtree();
+
+
+    /**
+     * Constructor
+     *
+     * @param areas all areas of the area tree
+     * @param version the version of the snapshot
+     */
+    public AreaTreeSnapshot(List<Area> areas, long version) {
+        super(areas, version);
+
+        int size = getSize();
+        messageSorting = new AreaMessageSorting[size];
+        originLatitudes = new Float[size];
+        originLongitudes = new Float[size];
+        originAngles = new Integer[size];
+        geometries = new PreparedGeometry[size];
+
+        for (Area area : areas) {
+            int index = indexOf(area.getId());
+            messageSorting[index] = area.getMessageSorting();
+            originLatitudes[index] = area.getOriginLatitude();
+            originLongitudes[index] = area.getOriginLongitude();
+            originAngles[index] = area.getOriginAngle();
+
+            // Copy the geometry, since the entity geometry is mutable
+            Geometry geometry = area.getGeometry();
+            if (geometry != null && !geometry.isEmpty()) {
+                geometries[index] = PreparedGeometryFactory.prepare(geometry.copy());
+                geometryIndex.insert(geometry.getEnvelopeInternal(), index);
+            }
+        }
+
+        // Build the index up-front, since querying the index will otherwise build it lazily
+        geometryIndex.build();
+    }
+
+
+    /**
+     * Returns the IDs of the active areas intersecting with the given geometry, in tree sort order
+     *
+     * @param geometry the geometry
+     * @return the IDs of the active areas intersecting with the given geometry
+     */
+    public List<Integer> getIntersectingAreaIds(Geometry geometry) {
+        List<Integer> indexes = new ArrayList<>();
+        for (Object item : geometryIndex.query(geometry.getEnvelopeInternal())) {
+            int index = (Integer) item;
+            if (active[index] && geometries[index].intersects(geometry)) {
+                indexes.add(index);
+            }
+        }
+        return toIds(indexes.stream().sorted().mapToInt(Integer::intValue).toArray());
+    }
+
+
+    /**
+     * Returns the IDs of the active areas intersecting with the given geometry down to the given level.
+     * The result will be pruned, so that parent areas are not included.
+     * <p>
+     * If root area IDs are specified, only areas within the sub-trees of these areas are included.
+     *
+     * @param geometry the geometry
+     * @param maxLevel the max level in the area tree. Root level is level 1.
+     * @param rootAreaIds if specified, only include areas within the sub-trees of these areas
+     * @return the IDs of the active areas intersecting with the given geometry
+     */
+    public List<Integer> getIntersectingAreaIds(Geometry geometry, int maxLevel, Collection<Integer> rootAreaIds) {
+
+        // Ensure that we go no deeper than maxLevel.
+        // It is assumed that parent areas include sub-areas geometry-wise.
+        List<Integer> areaIds = getIntersectingAreaIds(geometry).stream()
+                .filter(id -> rootAreaIds == null || rootAreaIds.isEmpty()
+                        || rootAreaIds.stream().anyMatch(rootId -> isSelfOrDescendant(id, rootId)))
+                .map(id -> {
+                    List<Integer> lineage = getLineageIds(id);
+                    return lineage.get(Math.max(0, lineage.size() - maxLevel));
+                })
+                .distinct()
+                .collect(Collectors.toList());
+
+        // Lastly, remove all parent areas
+        Set<Integer> parentAreaIds = areaIds.stream()
+                .flatMap(id -> getLineageIds(id).stream().skip(1))
+                .collect(Collectors.toSet());
+        areaIds.removeIf(parentAreaIds::contains);
+
+        return areaIds;
+    }
+
+
+    /**
+     * Returns the ID of the area or the nearest ancestor area that defines a message sorting,
+     * or null if no such area is found
+     *
+     * @param id the area ID
+     * @return the ID of the area or ancestor area that defines a message sorting
+     */
+    public Integer getMessageSortingAreaId(Integer id) {
+        for (int index = indexOf(id); index != -1; index = parents[index]) {
+            if (messageSorting[index] != null) {
+                return ids[index];
+            }
+        }
+        return null;
+    }
+
+
+    /** Returns the message sorting of the area **/
+    public AreaMessageSorting getMessageSorting(Integer id) {
+        int index = indexOf(id);
+        return index == -1 ? null : messageSorting[index];
+    }
+
+
+    /** Returns the message sorting origin latitude of the area **/
+    public Float getOriginLatitude(Integer id) {
+        int index = indexOf(id);
+        return index == -1 ? null : originLatitudes[index];
+    }
+
+
+    /** Returns the message sorting origin longitude of the area **/
+    public Float getOriginLongitude(Integer id) {
+        int index = indexOf(id);
+        return index == -1 ? null : originLongitudes[index];
+    }
+
+
+    /** Returns the message sorting origin angle of the area **/
+    public Integer getOriginAngle(Integer id) {
+        int index = indexOf(id);
+        return index == -1 ? null : originAngles[index];
+    }
+}
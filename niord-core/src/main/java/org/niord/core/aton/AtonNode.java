@@ -47,6 +47,9 @@ import java.util.stream.Collectors;
                 query = "select n from AtonNode n inner join n.tags t where t.k = :key and t.v = :value"),
         @NamedQuery(name  = "AtonNode.findByTagValues",
                 query = "select n from AtonNode n inner join n.tags t where t.k = :key and t.v in :values"),
+        @NamedQuery(name  = "AtonNode.findByTagValuesWithTags",
+                query = "select distinct n from AtonNode n left join fetch n.tags where n in "
+                        + "(select t.atonNode from AtonTag t where t.k = :key and t.v in :values)"),
         @NamedQuery(name  = "AtonNode.findByIds",
                 query = "select distinct n from AtonNode n left join fetch n.tags t where n.id in :ids")
 })
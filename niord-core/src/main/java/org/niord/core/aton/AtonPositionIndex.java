@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.aton;
+
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.control.ActivateRequestContext;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.transaction.Transactional;
+import org.locationtech.jts.geom.Geometry;
+import org.niord.core.aton.AtonPositions.PositionConsumer;
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Maintains an in-memory spatial index of the positions of all AtoNs.
+ * <p>
+ * The index is loaded at start-up and re-loaded shortly after AtoNs have been changed.
+ * Until the index has been re-loaded, it is considered outdated, and searches will fall back
+ * to the database.
+ */
+@ApplicationScoped
+@SuppressWarnings("unused")
+public class AtonPositionIndex {
+
+    @Inject
+    Logger log;
+
+    @Inject
+    EntityManager em;
+
+    /** Incremented whenever AtoNs are changed **/
+    final AtomicLong version = new AtomicLong();
+
+    volatile AtonPositions positions;
+    volatile long positionsVersion = -1;
+
+
+    /**
+     * Registers that AtoNs have been changed, which renders the index outdated
+     * @param event the AtoN change event
+     */
+    void onAtonsChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) AtonsChangedEvent event) {
+        version.incrementAndGet();
+    }
+
+
+    /**
+     * Loads the index at start-up, and re-loads the index if it is outdated
+     */
+    @Scheduled(every = "5s", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    @Transactional
+    @ActivateRequestContext
+    void refreshIndex() {
+        if (!isCurrent()) {
+            reloadIndex();
+        }
+    }
+
+
+    /**
+     * Loads the positions of all AtoNs into the index
+     */
+    private void reloadIndex() {
+        long t0 = System.currentTimeMillis();
+
+        // Changes committed after this point will render the loaded index outdated
+        long loadVersion = version.get();
+
+        List<Tuple> rows = em
+                .createQuery("select a.id, a.lon, a.lat from AtonNode a", Tuple.class)
+                .getResultList();
+
+        int[] ids = new int[rows.size()];
+        double[] lons = new double[rows.size()];
+        double[] lats = new double[rows.size()];
+        for (int x = 0; x < rows.size(); x++) {
+            Tuple row = rows.get(x);
+            ids[x] = (Integer) row.get(0);
+            lons[x] = (Double) row.get(1);
+            lats[x] = (Double) row.get(2);
+        }
+
+        // NB: The positions must be published before the version, see search()
+        AtonPositions positions = new AtonPositions(ids, lons, lats);
+        this.positions = positions;
+        this.positionsVersion = loadVersion;
+
+        log.info(String.format("Loaded %d AtoN positions into the AtoN position index in %d ms",
+                positions.size(), System.currentTimeMillis() - t0));
+    }
+
+
+    /**
+     * Searches the AtoN positions within the given extent.
+     * <p>
+     * Returns -1 without searching if the index is outdated, in which case the callee should search the database.
+     *
+     * @param extent the extent. If null, all AtoN positions are returned
+     * @param maxSize the max number of positions to return
+     * @param consumer the consumer of the matching positions
+     * @return the number of matching positions, or -1 if the index is outdated
+     */
+    public int search(Geometry extent, int maxSize, PositionConsumer consumer) {
+        // Read the version before the positions, to ensure that the positions are at least as recent
+        long loadedVersion = positionsVersion;
+        AtonPositions positions = this.positions;
+        if (positions == null || loadedVersion != version.get()) {
+            return -1;
+        }
+        return positions.search(extent, maxSize, consumer);
+    }
+
+
+    /** Returns if the index is loaded and reflects all committed AtoN changes **/
+    public boolean isCurrent() {
+        return positions != null && positionsVersion == version.get();
+    }
+}
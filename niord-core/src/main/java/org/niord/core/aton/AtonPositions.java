@@ -0,0 +1,246 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.aton;
+
+import org.locationtech.jts.algorithm.locate.IndexedPointInAreaLocator;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Location;
+
+import java.util.Arrays;
+
+/**
+ * An immutable, read-optimized spatial index of AtoN positions.
+ * <p>
+ * The positions are stored in primitive arrays, sorted along a Hilbert curve, so that positions close to
+ * each other are stored close to each other. The sorted positions are grouped into blocks of
+ * {@code BLOCK_SIZE} positions, and the bounding box of each block is stored in a separate array.
+ * An extent search thus only has to inspect the positions of the blocks intersecting the extent.
+ */
+@SuppressWarnings("unused")
+public class AtonPositions {
+
+    static final int BLOCK_SIZE     = 64;
+    static final int HILBERT_ORDER  = 15;
+
+    final int[] ids;
+    final double[] lons;
+    final double[] lats;
+    final double[] blockBounds; // minLon, minLat, maxLon, maxLat of each block
+
+
+    /**
+     * Consumer of AtoN positions
+     */
+    @FunctionalInterface
+    public interface PositionConsumer {
+        void accept(int id, double lon, double lat);
+    }
+
+
+    /**
+     * A growable list of lon-lat positions, packed pair-wise into a single primitive array.
+     * May be used as the consumer of a search, in which case no objects are allocated per position.
+     */
+    public static class LonLats implements PositionConsumer {
+
+        double[] lonLats;
+        int size;
+
+        /** Constructor **/
+        public LonLats() {
+            this(16);
+        }
+
+        /** Constructor **/
+        public LonLats(int capacity) {
+            lonLats = new double[2 * Math.max(1, capacity)];
+        }
+
+        /** Adds the given position **/
+        public void add(double lon, double lat) {
+            if (2 * size == lonLats.length) {
+                lonLats = Arrays.copyOf(lonLats, 2 * lonLats.length);
+            }
+            lonLats[2 * size] = lon;
+            lonLats[2 * size + 1] = lat;
+            size++;
+        }
+
+        /** {@inheritDoc} **/
+        @Override
+        public void accept(int id, double lon, double lat) {
+            add(lon, lat);
+        }
+
+        /** Returns the longitude of the position with the given index **/
+        public double lon(int index) {
+            return lonLats[2 * index];
+        }
+
+        /** Returns the latitude of the position with the given index **/
+        public double lat(int index) {
+            return lonLats[2 * index + 1];
+        }
+
+        /** Returns the number of positions **/
+        public int size() {
+            return size;
+        }
+
+        /** Returns if the list is empty **/
+        public boolean isEmpty() {
+            return size == 0;
+        }
+    }
+
+
+    /**
+     * Constructor
+     *
+     * @param ids the AtoN ID's
+     * @param lons the AtoN longitudes
+     * @param lats the AtoN latitudes
+     */
+    public AtonPositions(int[] ids, double[] lons, double[] lats) {
+        int size = ids.length;
+
+        // Sort the positions along a Hilbert curve. The Hilbert index is stored in the high
+        // and the array index in the low 32 bits, so that a primitive sort suffices
+        long[] keys = new long[size];
+        for (int x = 0; x < size; x++) {
+            keys[x] = (hilbertIndex(lons[x], lats[x]) << 32) | x;
+        }
+        Arrays.sort(keys);
+
+        this.ids = new int[size];
+        this.lons = new double[size];
+        this.lats = new double[size];
+        for (int x = 0; x < size; x++) {
+            int i = (int) keys[x];
+            this.ids[x] = ids[i];
+            this.lons[x] = lons[i];
+            this.lats[x] = lats[i];
+        }
+
+        // Compute the bounding boxes of the blocks
+        int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        blockBounds = new double[4 * blocks];
+        for (int b = 0; b < blocks; b++) {
+            double minLon = Double.MAX_VALUE, minLat = Double.MAX_VALUE;
+            double maxLon = -Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+            for (int x = b * BLOCK_SIZE; x < Math.min(size, (b + 1) * BLOCK_SIZE); x++) {
+                minLon = Math.min(minLon, this.lons[x]);
+                minLat = Math.min(minLat, this.lats[x]);
+                maxLon = Math.max(maxLon, this.lons[x]);
+                maxLat = Math.max(maxLat, this.lats[x]);
+            }
+            blockBounds[4 * b] = minLon;
+            blockBounds[4 * b + 1] = minLat;
+            blockBounds[4 * b + 2] = maxLon;
+            blockBounds[4 * b + 3] = maxLat;
+        }
+    }
+
+
+    /**
+     * Searches the positions within the given extent. If the extent is null, all positions are returned.
+     * Positions on the boundary of the extent are included.
+     *
+     * @param extent the extent
+     * @param maxSize the max number of positions to return
+     * @param consumer the consumer of the matching positions
+     * @return the number of matching positions
+     */
+    public int search(Geometry extent, int maxSize, PositionConsumer consumer) {
+        if (extent == null) {
+            int count = Math.min(size(), maxSize);
+            for (int x = 0; x < count; x++) {
+                consumer.accept(ids[x], lons[x], lats[x]);
+            }
+            return count;
+        }
+
+        Envelope env = extent.getEnvelopeInternal();
+        double minLon = env.getMinX(), minLat = env.getMinY(), maxLon = env.getMaxX(), maxLat = env.getMaxY();
+
+        // Non-rectangular extents are checked using a point-in-polygon test
+        IndexedPointInAreaLocator locator = extent.isRectangle() ? null : new IndexedPointInAreaLocator(extent);
+        Coordinate coord = new Coordinate();
+
+        int count = 0;
+        for (int b = 0; b < blockBounds.length / 4 && count < maxSize; b++) {
+            if (blockBounds[4 * b] > maxLon || blockBounds[4 * b + 2] < minLon
+                    || blockBounds[4 * b + 1] > maxLat || blockBounds[4 * b + 3] < minLat) {
+                continue;
+            }
+            for (int x = b * BLOCK_SIZE; x < Math.min(size(), (b + 1) * BLOCK_SIZE) && count < maxSize; x++) {
+                double lon = lons[x], lat = lats[x];
+                if (lon < minLon || lon > maxLon || lat < minLat || lat > maxLat) {
+                    continue;
+                }
+                if (locator != null) {
+                    coord.setX(lon);
+                    coord.setY(lat);
+                    if (locator.locate(coord) == Location.EXTERIOR) {
+                        continue;
+                    }
+                }
+                consumer.accept(ids[x], lon, lat);
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    /** Returns the number of positions in the index **/
+    public int size() {
+        return ids.length;
+    }
+
+
+    /**
+     * Computes the index of the position along a Hilbert curve covering the lon-lat plane
+     *
+     * @param lon the longitude
+     * @param lat the latitude
+     * @return the Hilbert index
+     */
+    static long hilbertIndex(double lon, double lat) {
+        int n = 1 << HILBERT_ORDER;
+        int x = (int) Math.max(0, Math.min(n - 1, (lon + 180.0) / 360.0 * n));
+        int y = (int) Math.max(0, Math.min(n - 1, (lat + 90.0) / 180.0 * n));
+        long d = 0;
+        for (int s = n / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            // Rotate the quadrant
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.niord.core.aton;
 
+import org.apache.commons.lang.StringUtils;
 import org.locationtech.jts.geom.Geometry;
 import org.niord.core.domain.Domain;
 import org.niord.core.geojson.JtsConverter;
@@ -41,7 +42,16 @@ public class AtonSearchParams extends PagedSearchParamsVo {
     private Set<String> chartNumbers = new HashSet<>();
     private Set<Integer> areaIds = new HashSet<>();
     private boolean emptyOnOverflow;
-  
+
+
+    /**
+     * Returns whether or not the search defines criteria that are not covered by the
+     * in-memory AtoN position index, i.e. criteria other than the extent
+     */
+    public boolean requiresDatabaseSearch() {
+        return StringUtils.isNotBlank(name) || !chartNumbers.isEmpty() || !areaIds.isEmpty();
+    }
+
     /*******************************************/
     /** Method chaining Getters and Setters   **/
     /*******************************************/
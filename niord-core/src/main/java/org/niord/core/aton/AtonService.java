@@ -16,11 +16,13 @@
 package org.niord.core.aton;
 
 import org.apache.commons.lang.StringUtils;
+import org.hibernate.Session;
 import org.hibernate.query.sqm.NodeBuilder;
 import org.hibernate.search.mapper.orm.Search;
 import org.hibernate.search.mapper.orm.scope.SearchScope;
 import org.hibernate.search.mapper.orm.session.SearchSession;
 import org.niord.core.area.Area;
+import org.niord.core.aton.AtonPositions.LonLats;
 import org.niord.core.chart.Chart;
 import org.niord.core.db.CriteriaHelper;
 import org.niord.core.db.SpatialWithinPredicate;
@@ -32,13 +34,16 @@ import org.slf4j.Logger;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.RequestScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Tuple;
 import jakarta.persistence.criteria.*;
 import jakarta.transaction.Transactional;
 import java.util.*;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.niord.core.util.LuceneUtils.normalize;
 
@@ -49,6 +54,12 @@ import static org.niord.core.util.LuceneUtils.normalize;
 @SuppressWarnings("unused")
 public class AtonService extends BaseService {
 
+    /** The number of AtoNs processed per chunk when updating AtoNs **/
+    public static final int UPDATE_CHUNK_SIZE = 500;
+
+    /** The JDBC batch size used when updating AtoNs **/
+    static final int JDBC_BATCH_SIZE = 100;
+
     @Inject
     private Logger log;
 
@@ -58,6 +69,12 @@ public class AtonService extends BaseService {
     @Inject
     private UserService userService;
 
+    @Inject
+    Event<AtonsChangedEvent> atonsChangedEvent;
+
+    @Inject
+    AtonPositionIndex atonPositionIndex;
+
     /*************************/
     /** NEW Aton Model      **/
     /*************************/
@@ -121,6 +138,27 @@ public class AtonService extends BaseService {
     }
 
 
+    /**
+     * Returns the AtoNs with the given AtoN UIDs indexed by AtoN UID.
+     * The tags of the AtoNs are fetched along with the AtoNs.
+     *
+     * @param atonUids the AtoN UIDs
+     * @return the AtoNs with the given AtoN UIDs indexed by AtoN UID
+     */
+    @Transactional
+    public Map<String, AtonNode> findByAtonUidMap(Collection<String> atonUids) {
+        Map<String, AtonNode> result = new HashMap<>();
+        if (!atonUids.isEmpty()) {
+            em.createNamedQuery("AtonNode.findByTagValuesWithTags", AtonNode.class)
+                    .setParameter("key", AtonTag.TAG_ATON_UID)
+                    .setParameter("values", atonUids)
+                    .getResultList()
+                    .forEach(aton -> result.putIfAbsent(aton.getAtonUid(), aton));
+        }
+        return result;
+    }
+
+
     /**
      * Replaces the AtoN DB
      * @param atons the new AtoNs
@@ -128,31 +166,102 @@ public class AtonService extends BaseService {
     @Transactional
     public void updateAtons(List<AtonNode> atons) {
 
-        // Persist new list of AtoNs
+        // Persist new list of AtoNs in chunks
         long t0 = System.currentTimeMillis();
-        int created = 0, updated = 0, unchanged = 0;
-        for (AtonNode aton : atons) {
+        AtonUpdateResult result = new AtonUpdateResult();
+        for (int x = 0; x < atons.size(); x += UPDATE_CHUNK_SIZE) {
+            result.add(updateAtonChunk(atons.subList(x, Math.min(atons.size(), x + UPDATE_CHUNK_SIZE)), AtonNode::updateNode));
+            em.clear();
+        }
+        log.info(String.format("Updated %s AtoNs (created %d, updated %d, ignored %d) in %d ms",
+                atons.size(), result.getCreated(), result.getUpdated(), result.getUnchanged(), System.currentTimeMillis() - t0));
 
-            AtonNode orig = findByAtonUid(aton.getAtonUid());
-            if (orig == null) {
-                em.persist(aton);
-                created++;
+        if (!result.getChangedPositions().isEmpty()) {
+            atonsChangedEvent.fire(new AtonsChangedEvent(result.getChangedPositions()));
+        }
+    }
+
+
+    /**
+     * Creates or updates a chunk of AtoNs.
+     * <p>
+     * The existing AtoNs with the same AtoN UIDs are fetched in a single query, and the AtoNs that have
+     * changed are computed in parallel. New AtoNs are persisted using JDBC batching, and the chunk is
+     * flushed before returning.
+     *
+     * @param atons the AtoN templates to create or update
+     * @param merger merges an AtoN template (second parameter) into the existing AtoN (first parameter)
+     * @return the result of the update
+     */
+    @Transactional
+    public AtonUpdateResult updateAtonChunk(List<AtonNode> atons, BiConsumer<AtonNode, AtonNode> merger) {
 
-            } else if (orig.hasChanged(aton)) {
-                orig.updateNode(aton);
-                em.persist(orig);
-                updated++;
+        // AtoNs with the same AtoN UID are merged. AtoNs without an AtoN UID are always created
+        Map<String, AtonNode> templates = new LinkedHashMap<>();
+        List<AtonNode> newAtons = new ArrayList<>();
+        for (AtonNode aton : atons) {
+            if (aton.getAtonUid() == null) {
+                newAtons.add(aton);
+            } else {
+                templates.merge(aton.getAtonUid(), aton, (a1, a2) -> {
+                    a1.updateNode(a2);
+                    return a1;
+                });
+            }
+        }
 
+        // Look up the existing AtoNs with their tags, and compute the changes in parallel
+        Map<String, AtonNode> originals = findByAtonUidMap(templates.keySet());
+        List<AtonNode> atonList = new ArrayList<>(templates.values());
+        boolean[] changed = new boolean[atonList.size()];
+        IntStream.range(0, atonList.size()).parallel().forEach(x -> {
+            AtonNode orig = originals.get(atonList.get(x).getAtonUid());
+            changed[x] = orig != null && orig.hasChanged(atonList.get(x));
+        });
+
+        AtonUpdateResult result = new AtonUpdateResult();
+        for (int x = 0; x < atonList.size(); x++) {
+            AtonNode aton = atonList.get(x);
+            AtonNode orig = originals.get(aton.getAtonUid());
+            if (orig == null) {
+                newAtons.add(aton);
+            } else if (changed[x]) {
+                // Register both the previous and the new position of the AtoN
+                result.changedPositions.add(new double[] { orig.getLon(), orig.getLat() });
+                merger.accept(orig, aton);
+                result.changedPositions.add(new double[] { orig.getLon(), orig.getLat() });
+                result.updated++;
             } else {
-                unchanged++;
+                result.unchanged++;
             }
+        }
 
-            if ((created + updated + unchanged) % 100 == 0) {
-                em.flush();
+        Session session = em.unwrap(Session.class);
+        Integer jdbcBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(JDBC_BATCH_SIZE);
+        try {
+            // Persist the new AtoNs before their tags, so that the inserts of each entity type are grouped
+            // into JDBC batches, rather than alternating between AtoN and tag inserts
+            List<List<AtonTag>> newTags = new ArrayList<>(newAtons.size());
+            for (AtonNode aton : newAtons) {
+                // The ID of an imported AtoN is e.g. the OSM node ID, not a database ID
+                aton.setId(null);
+                newTags.add(new ArrayList<>(aton.getTags()));
+                aton.getTags().clear();
+                em.persist(aton);
+                result.changedPositions.add(new double[] { aton.getLon(), aton.getLat() });
+                result.created++;
+            }
+            for (int x = 0; x < newAtons.size(); x++) {
+                newAtons.get(x).getTags().addAll(newTags.get(x));
+                newTags.get(x).forEach(em::persist);
             }
+            em.flush();
+        } finally {
+            session.setJdbcBatchSize(jdbcBatchSize);
         }
-        log.info(String.format("Updated %s AtoNs (created %d, updated %d, ignored %d) in %d ms",
-                atons.size(), created, updated, unchanged, System.currentTimeMillis() - t0));
+
+        return result;
     }
 
 
@@ -169,21 +278,24 @@ public class AtonService extends BaseService {
             PagedSearchResultVo<AtonNode> result = new PagedSearchResultVo<>();
 
             // First fetch the ID's of the of all matching AtoNs
-            CriteriaHelper<Tuple> criteriaHelper = CriteriaHelper.initWithTupleQuery(em);
-
-            Root<AtonNode> atonRoot = buildSearchCriteria(criteriaHelper, param);
-
-            criteriaHelper.getCriteriaQuery()
-                    .multiselect(atonRoot.get("id"))
-                    .distinct(true)
-                    .where(criteriaHelper.where());
-
-            List<Integer> atonIds = em
-                    .createQuery(criteriaHelper.getCriteriaQuery())
-                    .getResultList()
-                    .stream()
-                    .map(t -> (Integer)t.get(0))
-                    .collect(Collectors.toList());
+            List<Integer> atonIds = searchIdsInPositionIndex(param);
+            if (atonIds == null) {
+                CriteriaHelper<Tuple> criteriaHelper = CriteriaHelper.initWithTupleQuery(em);
+
+                Root<AtonNode> atonRoot = buildSearchCriteria(criteriaHelper, param);
+
+                criteriaHelper.getCriteriaQuery()
+                        .multiselect(atonRoot.get("id"))
+                        .distinct(true)
+                        .where(criteriaHelper.where());
+
+                atonIds = em
+                        .createQuery(criteriaHelper.getCriteriaQuery())
+                        .getResultList()
+                        .stream()
+                        .map(t -> (Integer)t.get(0))
+                        .collect(Collectors.toList());
+            }
 
             result.setTotal(atonIds.size());
 
@@ -222,7 +334,15 @@ public class AtonService extends BaseService {
      * @return the AtoN lon-lat positions
      */
     @Transactional
-    public List<double[]> searchPositions(AtonSearchParams param) {
+    public LonLats searchPositions(AtonSearchParams param) {
+        // Searches by extent only are resolved by the in-memory AtoN position index
+        if (!param.requiresDatabaseSearch()) {
+            LonLats positions = new LonLats();
+            if (atonPositionIndex.search(param.getExtent(), param.getMaxSize(), positions) >= 0) {
+                return positions;
+            }
+        }
+
         try {
             CriteriaHelper<Tuple> criteriaHelper = CriteriaHelper.initWithTupleQuery(em);
 
@@ -233,20 +353,40 @@ public class AtonService extends BaseService {
                     .distinct(true)
                     .where(criteriaHelper.where());
 
-            return em
+            List<Tuple> rows = em
                     .createQuery(criteriaHelper.getCriteriaQuery())
                     .setMaxResults(param.getMaxSize())
-                    .getResultList()
-                    .stream()
-                    .map(t -> new double[] { (double)t.get(0), (double)t.get(1) })
-                    .collect(Collectors.toList());
+                    .getResultList();
+
+            LonLats positions = new LonLats(rows.size());
+            for (Tuple row : rows) {
+                positions.add((Double) row.get(0), (Double) row.get(1));
+            }
+            return positions;
 
         } catch (Exception e) {
             log.error("Error searching for AtoNs positions with params " + param, e);
-            return Collections.emptyList();
+            return new LonLats();
+        }
+    }
+
+    /**
+     * Searches the ID's of the AtoNs matching the search parameters in the in-memory AtoN position index.
+     * Returns null if the search parameters are not covered by the index, or if the index is outdated.
+     *
+     * @return the ID's of the AtoNs matching the search parameters, or null if undetermined
+     */
+    private List<Integer> searchIdsInPositionIndex(AtonSearchParams param) {
+        if (param.requiresDatabaseSearch()) {
+            return null;
         }
+        List<Integer> atonIds = new ArrayList<>();
+        return atonPositionIndex.search(param.getExtent(), Integer.MAX_VALUE, (id, lon, lat) -> atonIds.add(id)) >= 0
+                ? atonIds
+                : null;
     }
 
+
     /**
      * Computes the list of AtoNs that matches the search parameters.<br>
      *
@@ -327,4 +467,37 @@ public class AtonService extends BaseService {
         return true;
     }
 
+
+    /**
+     * The result of updating a chunk of AtoNs
+     */
+    public static class AtonUpdateResult {
+
+        int created, updated, unchanged;
+        List<double[]> changedPositions = new ArrayList<>();
+
+        /** Adds the given result to this result **/
+        public void add(AtonUpdateResult result) {
+            created += result.created;
+            updated += result.updated;
+            unchanged += result.unchanged;
+            changedPositions.addAll(result.changedPositions);
+        }
+
+        public int getCreated() {
+            return created;
+        }
+
+        public int getUpdated() {
+            return updated;
+        }
+
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        public List<double[]> getChangedPositions() {
+            return changedPositions;
+        }
+    }
 }
@@ -0,0 +1,452 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.aton;
+
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.control.ActivateRequestContext;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.niord.core.aton.AtonPositions.LonLats;
+import org.niord.core.repo.RepositoryService;
+import org.niord.core.settings.Setting.Type;
+import org.niord.core.settings.annotation.Setting;
+import org.niord.core.util.GlobalMercator;
+import org.niord.core.util.GraphicsUtils;
+import org.slf4j.Logger;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Maintains a pyramid of pre-rendered AtoN tiles in the repository.
+ * <p>
+ * The tiles of the zoom levels up to the {@code atonTileSeedMaxZoom} setting are seeded in the background,
+ * by loading the positions of all AtoNs once and rendering only the tiles that contain AtoNs. Once a zoom
+ * level has been seeded, a marker file is written to its folder, and any tile not present is known to be blank.
+ * <p>
+ * Tiles of higher zoom levels are rendered on demand, and concurrent requests for the same tile share a single
+ * rendering. Blank tiles of these zoom levels are registered with a marker file next to the would-be tile.
+ * <p>
+ * When AtoNs change, only the tiles whose bounds contain the affected positions are re-rendered or invalidated.
+ */
+@ApplicationScoped
+@SuppressWarnings("unused")
+public class AtonTileService {
+
+    public static final int     TILE_SIZE                   = GlobalMercator.TILE_SIZE;
+    static final int            MAX_ZOOM                    = 22;
+    static final String         TILE_REPO_FOLDER            = "aton_tiles";
+    static final String         SEEDED_MARKER               = ".seeded";
+    static final String         BLANK_SUFFIX                = ".blank";
+    static final int            ATON_PIXEL_MARGIN           = 2; // An AtoN is painted with a radius of up to 1 pixel
+    static final int            MAX_INVALIDATED_POSITIONS   = 1000;
+    static final Color          ATON_COLOR                  = new Color(200, 0, 0);
+
+    @Inject
+    @Setting(value = "atonTileSeedMaxZoom", defaultValue = "7", type = Type.Integer,
+            description = "The max zoom level of the AtoN tile pyramid that is pre-rendered in the background")
+    Integer seedMaxZoom;
+
+    @Inject
+    Logger log;
+
+    @Inject
+    AtonService atonService;
+
+    @Inject
+    RepositoryService repositoryService;
+
+    @Inject
+    ManagedExecutor managedExecutor;
+
+    final Map<String, CompletableFuture<Path>> pendingTiles = new ConcurrentHashMap<>();
+    final Queue<double[]> changedPositions = new ConcurrentLinkedQueue<>();
+    final AtomicBoolean seeding = new AtomicBoolean();
+
+
+    /**
+     * Seeds the tile pyramid at start-up, unless it has already been seeded
+     */
+    void init(@Observes StartupEvent ev) {
+        for (int z = 0; z <= seedMaxZoom; z++) {
+            if (!isSeeded(z)) {
+                reseedTiles();
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Returns the given tile, or null if the tile is blank.
+     * <p>
+     * If the tile has not been rendered yet, it is rendered and stored in the repository.
+     *
+     * @param z the zoom level
+     * @param x the x tile index
+     * @param y the y tile index
+     * @return the tile or null if the tile is blank
+     */
+    public Path getTile(int z, int x, int y) throws IOException {
+        if (z < 0 || z > MAX_ZOOM || x < 0 || y < 0 || x >= (1 << z) || y >= (1 << z)) {
+            throw new IllegalArgumentException(String.format("Invalid tile z=%d, x=%d, y=%d", z, x, y));
+        }
+
+        Path file = tileFile(z, x, y);
+        if (Files.exists(file)) {
+            return file;
+        } else if (isSeeded(z) || Files.exists(blankFile(file))) {
+            return null;
+        }
+
+        // Render the tile. Concurrent requests for the same tile wait for the same rendering
+        CompletableFuture<Path> result = new CompletableFuture<>();
+        CompletableFuture<Path> pending = pendingTiles.putIfAbsent(file.toString(), result);
+        if (pending != null) {
+            return awaitTile(pending);
+        }
+
+        try {
+            long t0 = System.currentTimeMillis();
+            result.complete(renderTile(z, x, y, searchPositions(z, x, y)));
+            log.debug("Generated " + file + " in " + (System.currentTimeMillis() - t0) + " ms");
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        } finally {
+            pendingTiles.remove(file.toString(), result);
+        }
+        return awaitTile(result);
+    }
+
+
+    /** Waits for the tile rendering to complete **/
+    private Path awaitTile(CompletableFuture<Path> result) throws IOException {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw new IOException("Error rendering tile: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+
+    /**
+     * Registers the positions of changed AtoNs. The affected tiles are updated by
+     * {@linkplain #updateChangedTiles()} once the change has been committed.
+     *
+     * @param event the AtoN change event
+     */
+    void onAtonsChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) AtonsChangedEvent event) {
+        changedPositions.addAll(event.getPositions());
+    }
+
+
+    /**
+     * Updates the tiles affected by the registered AtoN changes.
+     * <p>
+     * Tiles of seeded zoom levels are re-rendered, whereas tiles of other zoom levels are deleted and
+     * will be re-rendered on demand. If too many AtoNs have changed, the entire pyramid is re-seeded.
+     */
+    @Scheduled(every = "10s", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    @ActivateRequestContext
+    void updateChangedTiles() {
+        // If the pyramid is being seeded, try again later
+        if (changedPositions.isEmpty() || seeding.get()) {
+            return;
+        }
+
+        LonLats positions = new LonLats();
+        for (double[] pos = changedPositions.poll(); pos != null; pos = changedPositions.poll()) {
+            positions.add(pos[0], pos[1]);
+        }
+
+        if (positions.size() > MAX_INVALIDATED_POSITIONS) {
+            log.info(positions.size() + " AtoN positions changed. Re-seeding AtoN tiles");
+            reseedTiles();
+            return;
+        }
+
+        long t0 = System.currentTimeMillis();
+        int updated = 0;
+        try {
+            for (int z = 0; z <= MAX_ZOOM; z++) {
+                if (Files.notExists(zoomFolder(z))) {
+                    continue;
+                }
+                boolean seeded = isSeeded(z);
+                for (long key : bucketPositions(positions, z).keySet()) {
+                    int x = (int) (key >> 32), y = (int) key;
+                    Path file = tileFile(z, x, y);
+                    if (seeded) {
+                        renderTile(z, x, y, searchPositions(z, x, y));
+                    } else {
+                        Files.deleteIfExists(file);
+                        Files.deleteIfExists(blankFile(file));
+                    }
+                    updated++;
+                }
+            }
+            log.info(String.format("Updated %d AtoN tiles for %d changed positions in %d ms",
+                    updated, positions.size(), System.currentTimeMillis() - t0));
+        } catch (Exception e) {
+            log.error("Error updating AtoN tiles. Re-seeding AtoN tiles", e);
+            reseedTiles();
+        }
+    }
+
+
+    /**
+     * Clears all AtoN tiles and starts seeding the tile pyramid in the background
+     * @return if the seeding was started, or false if the tiles are already being seeded
+     */
+    public boolean reseedTiles() {
+        if (!seeding.compareAndSet(false, true)) {
+            return false;
+        }
+
+        managedExecutor.runAsync(() -> {
+            try {
+                seedTiles();
+            } catch (Exception e) {
+                log.error("Error seeding AtoN tiles", e);
+            } finally {
+                seeding.set(false);
+            }
+        });
+        return true;
+    }
+
+
+    /**
+     * Seeds the tiles of the zoom levels up to the {@code atonTileSeedMaxZoom} setting,
+     * and deletes the tiles of the other zoom levels
+     */
+    @ActivateRequestContext
+    void seedTiles() throws IOException {
+        long t0 = System.currentTimeMillis();
+
+        // Delete the on-demand tiles
+        for (int z = seedMaxZoom + 1; z <= MAX_ZOOM; z++) {
+            FileUtils.deleteDirectory(zoomFolder(z).toFile());
+        }
+
+        LonLats positions = atonService.searchPositions(new AtonSearchParams());
+
+        int tiles = 0;
+        for (int z = 0; z <= seedMaxZoom; z++) {
+            Path zoomFolder = zoomFolder(z);
+            Files.createDirectories(zoomFolder);
+            Files.deleteIfExists(zoomFolder.resolve(SEEDED_MARKER));
+
+            Set<Path> rendered = new HashSet<>();
+            for (Map.Entry<Long, LonLats> tile : bucketPositions(positions, z).entrySet()) {
+                int x = (int) (tile.getKey() >> 32), y = (int) (long) tile.getKey();
+                rendered.add(renderTile(z, x, y, tile.getValue()));
+            }
+
+            // Delete stale tiles and blank tile markers
+            try (Stream<Path> files = Files.walk(zoomFolder)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    if (Files.isRegularFile(file) && !rendered.contains(file)) {
+                        Files.delete(file);
+                    }
+                }
+            }
+
+            Files.createFile(zoomFolder.resolve(SEEDED_MARKER));
+            tiles += rendered.size();
+        }
+
+        log.info(String.format("Seeded %d AtoN tiles for %d AtoNs in zoom levels 0-%d in %d ms",
+                tiles, positions.size(), seedMaxZoom, System.currentTimeMillis() - t0));
+    }
+
+
+    /**
+     * Returns the tiles touched by the AtoN positions, along with the positions painted in each tile.
+     * The tile is encoded as a long with the x index in the high and the y index in the low 32 bits.
+     *
+     * @param positions the AtoN lon-lat positions
+     * @param z the zoom level
+     * @return the tiles and positions
+     */
+    Map<Long, LonLats> bucketPositions(LonLats positions, int z) {
+        GlobalMercator mercator = new GlobalMercator();
+        int maxIndex = (1 << z) - 1;
+        Map<Long, LonLats> tiles = new HashMap<>();
+        for (int i = 0; i < positions.size(); i++) {
+            double lon = positions.lon(i), lat = positions.lat(i);
+            // The y tile index runs from north to south, hence the negated latitude
+            int[] px = mercator.LatLonToPixels(-lat, lon, z);
+            int x0 = tileIndex(px[0] - ATON_PIXEL_MARGIN, maxIndex), x1 = tileIndex(px[0] + ATON_PIXEL_MARGIN, maxIndex);
+            int y0 = tileIndex(px[1] - ATON_PIXEL_MARGIN, maxIndex), y1 = tileIndex(px[1] + ATON_PIXEL_MARGIN, maxIndex);
+            for (int x = x0; x <= x1; x++) {
+                for (int y = y0; y <= y1; y++) {
+                    tiles.computeIfAbsent(((long) x << 32) | y, key -> new LonLats()).add(lon, lat);
+                }
+            }
+        }
+        return tiles;
+    }
+
+
+    /** Returns the tile index of the pixel coordinate **/
+    private int tileIndex(int pixel, int maxIndex) {
+        return Math.max(0, Math.min(maxIndex, Math.floorDiv(pixel, TILE_SIZE)));
+    }
+
+
+    /**
+     * Searches the positions of the AtoNs painted in the given tile
+     * @param z the zoom level
+     * @param x the x tile index
+     * @param y the y tile index
+     * @return the AtoN lon-lat positions
+     */
+    private LonLats searchPositions(int z, int x, int y) {
+        double[] bounds = new GlobalMercator().TileLatLonBounds(x, y, z);
+
+        // Include AtoNs painted across the tile border
+        double latMargin = (bounds[2] - bounds[0]) * ATON_PIXEL_MARGIN / TILE_SIZE;
+        double lonMargin = (bounds[3] - bounds[1]) * ATON_PIXEL_MARGIN / TILE_SIZE;
+
+        AtonSearchParams param = new AtonSearchParams()
+                .extent(-bounds[2] - latMargin, bounds[1] - lonMargin, -bounds[0] + latMargin, bounds[3] + lonMargin);
+        return atonService.searchPositions(param);
+    }
+
+
+    /**
+     * Renders the given tile and stores it in the repository. If there are no AtoN positions,
+     * any existing tile is deleted and the tile is registered as blank.
+     *
+     * @param z the zoom level
+     * @param x the x tile index
+     * @param y the y tile index
+     * @param positions the AtoN positions
+     * @return the tile or null if the tile is blank
+     */
+    private Path renderTile(int z, int x, int y, LonLats positions) throws IOException {
+        Path file = tileFile(z, x, y);
+        Files.createDirectories(file.getParent());
+
+        if (positions.isEmpty()) {
+            Files.deleteIfExists(file);
+            if (!isSeeded(z)) {
+                Files.write(blankFile(file), new byte[0]);
+            }
+            return null;
+        }
+
+        // Write to a temporary file first, so that a partial tile is never served
+        Path tmpFile = Files.createTempFile(file.getParent(), String.valueOf(y), ".tmp");
+        try {
+            ImageIO.write(generateAtonTile(z, x, y, positions), "png", tmpFile.toFile());
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+        Files.deleteIfExists(blankFile(file));
+        return file;
+    }
+
+
+    /**
+     * Generates an AtoN tile
+     * @param z the zoom level
+     * @param x the x tile index
+     * @param y the y tile index
+     * @param atonLonLats the aton positions
+     * @return the resulting image
+     */
+    private BufferedImage generateAtonTile(int z, int x, int y, LonLats atonLonLats) {
+
+        GlobalMercator mercator = new GlobalMercator();
+        double[] bounds = mercator.TileLatLonBounds(x, y, z);
+
+        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        GraphicsUtils.antialias(g2);
+
+        int xy0[] =  mercator.LatLonToPixels(-bounds[0], bounds[1], z);
+
+        for (int i = 0; i < atonLonLats.size(); i++) {
+
+            int xy[] = mercator.LatLonToPixels(atonLonLats.lat(i), atonLonLats.lon(i), z);
+            double px = xy[0] - xy0[0];
+            double py = -(xy[1] - xy0[1]);
+            double radius = (z < 6) ? 0.5 : 1.0;
+
+            Shape theCircle = new Ellipse2D.Double(px - radius, py - radius, 2.0 * radius, 2.0 * radius);
+            g2.setColor(ATON_COLOR);
+            g2.fill(theCircle);
+        }
+
+        g2.dispose();
+        return image;
+    }
+
+
+    /** Returns if the given zoom level has been seeded **/
+    private boolean isSeeded(int z) {
+        return Files.exists(zoomFolder(z).resolve(SEEDED_MARKER));
+    }
+
+    /** Returns the repository folder of the given zoom level **/
+    private Path zoomFolder(int z) {
+        return repositoryService.getRepoRoot()
+                .resolve(TILE_REPO_FOLDER)
+                .resolve(String.valueOf(z));
+    }
+
+    /** Returns the repository file of the given tile **/
+    private Path tileFile(int z, int x, int y) {
+        return zoomFolder(z)
+                .resolve(String.valueOf(x))
+                .resolve(y + ".png");
+    }
+
+    /** Returns the blank tile marker file of the given tile file **/
+    private Path blankFile(Path file) {
+        return file.resolveSibling(file.getFileName() + BLANK_SUFFIX);
+    }
+
+    /** Returns if the AtoN tiles are currently being seeded **/
+    public boolean isSeeding() {
+        return seeding.get();
+    }
+}
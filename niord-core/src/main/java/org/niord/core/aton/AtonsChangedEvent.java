@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.aton;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * CDI event fired whenever AtoNs are created or updated.
+ * <p>
+ * The event contains the lon-lat positions affected by the change, i.e. the new positions of the AtoNs
+ * and, when known, the previous positions of moved AtoNs.
+ * Observers that should only react to committed changes, e.g. the AtoN tile service,
+ * should observe the event with {@code during = TransactionPhase.AFTER_SUCCESS}.
+ */
+@SuppressWarnings("unused")
+public class AtonsChangedEvent {
+
+    final List<double[]> positions;
+
+    /** Constructor **/
+    public AtonsChangedEvent(List<double[]> positions) {
+        this.positions = new ArrayList<>(positions);
+    }
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public List<double[]> getPositions() {
+        return Collections.unmodifiableList(positions);
+    }
+}
@@ -16,27 +16,23 @@
 package org.niord.core.aton.batch;
 
 import org.niord.core.aton.AtonNode;
-import org.niord.core.aton.AtonService;
 import org.niord.core.aton.AtonTag;
 import org.niord.core.aton.vo.AtonNodeVo;
 import org.niord.core.batch.AbstractItemHandler;
 
 import jakarta.enterprise.context.Dependent;
-import jakarta.inject.Inject;
 import jakarta.inject.Named;
 
 /**
- * Filters AtoNs that need to be a added or updated
- *
- * TODO: we should probably detach the original AtoN looked up in processItem()
+ * Converts the imported AtoNs to AtoN nodes.
+ * <p>
+ * Looking up and comparing the AtoNs with the existing AtoNs is handled by the {@linkplain BatchAtonImportWriter}
+ * for the entire chunk at a time.
  */
 @Dependent
 @Named("batchAtonImportProcessor")
 public class BatchAtonImportProcessor extends AbstractItemHandler {
 
-    @Inject
-    AtonService atonService;
-
     /** {@inheritDoc} **/
     @Override
     public Object processItem(Object item) throws Exception {
@@ -56,24 +52,7 @@ public class BatchAtonImportProcessor extends AbstractItemHandler {
             //return null;
         }
 
-        // Look up any existing AtoN with the same AtoN UID
-        AtonNode orig = atonService.findByAtonUid(aton.getAtonUid());
-
-        if (orig == null) {
-            // Persist new AtoN
-            getLog().info("Persisting new AtoN");
-            return aton;
-
-        } else if (orig.hasChanged(aton)) {
-            // Update original
-            getLog().info("Updating AtoN " + orig.getId());
-            mergeAtonNodes(orig, aton);
-            return orig;
-        }
-
-        // No change, ignore...
-        getLog().info("Ignoring unchanged AtoN " + orig.getId());
-        return null;
+        return aton;
     }
 
 
@@ -85,20 +64,4 @@ public class BatchAtonImportProcessor extends AbstractItemHandler {
         AtonNodeVo atonVo = (AtonNodeVo)item;
         return new AtonNode(atonVo);
     }
-
-
-    /**
-     * Called when the newly parsed AtoN is an update to an existing AtoN.
-     * Merges the AtoN template into the original AtoN.
-     *
-     * Sub-classes can override to provide customized behaviour.
-     *
-     * @param original the original AtoN that should be updated
-     * @param aton the new AtoN template
-     */
-    protected void mergeAtonNodes(AtonNode original, AtonNode aton) {
-
-        // Default behaviour - just update the original from the new AtoN
-        original.updateNode(aton);
-    }
 }
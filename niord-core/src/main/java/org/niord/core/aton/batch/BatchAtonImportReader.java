@@ -16,6 +16,7 @@
 
 package org.niord.core.aton.batch;
 
+import org.niord.core.aton.AtonService;
 import org.niord.core.aton.vo.AtonNodeVo;
 import org.niord.core.aton.vo.AtonOsmVo;
 import org.niord.core.batch.AbstractItemHandler;
@@ -101,12 +102,11 @@ public class BatchAtonImportReader extends AbstractItemHandler {
     public Object readItem() throws Exception {
         if (atonNo < atons.length) {
 
-            // Every now and then, update the progress
-            if (atonNo % 10 == 0) {
+            // Update the progress once per chunk
+            if (atonNo % AtonService.UPDATE_CHUNK_SIZE == 0) {
                 updateProgress((int)(100.0 * atonNo / atons.length));
             }
 
-            getLog().info("Reading AtoN no " + atonNo);
             return atons[atonNo++];
         }
         return null;
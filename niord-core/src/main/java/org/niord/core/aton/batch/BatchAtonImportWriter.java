@@ -17,16 +17,22 @@ package org.niord.core.aton.batch;
 
 import org.niord.core.aton.AtonNode;
 import org.niord.core.aton.AtonService;
+import org.niord.core.aton.AtonService.AtonUpdateResult;
+import org.niord.core.aton.AtonsChangedEvent;
 import org.niord.core.batch.AbstractItemHandler;
 
 import jakarta.enterprise.context.Dependent;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import jakarta.transaction.Transactional;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
- * Persists the AtoNs to the database
+ * Persists the AtoNs to the database.
+ * <p>
+ * The existing AtoNs of the entire chunk are looked up in bulk, and only new and changed AtoNs are persisted.
  */
 @Dependent
 @Named("batchAtonImportWriter")
@@ -35,15 +41,53 @@ public class BatchAtonImportWriter extends AbstractItemHandler {
     @Inject
     AtonService atonService;
 
+    @Inject
+    Event<AtonsChangedEvent> atonsChangedEvent;
+
+    int chunkNo;
+    int atonCount;
+
     /** {@inheritDoc} **/
     @Override
     @Transactional
     public void writeItems(List<Object> items) throws Exception {
         long t0 = System.currentTimeMillis();
-        for (Object i : items) {
-            AtonNode aton = (AtonNode) i;
-            atonService.saveEntity(aton);
+
+        List<AtonNode> atons = items.stream()
+                .map(i -> (AtonNode) i)
+                .collect(Collectors.toList());
+        AtonUpdateResult result = atonService.updateAtonChunk(atons, this::mergeAtonNodes);
+
+        // Update the AtoN tiles once the chunk has been committed
+        if (!result.getChangedPositions().isEmpty()) {
+            atonsChangedEvent.fire(new AtonsChangedEvent(result.getChangedPositions()));
         }
-        getLog().info(String.format("Persisted %d AtoNs in %d s", items.size(), (System.currentTimeMillis() - t0) / 1000L));
+
+        // Report the throughput of the chunk
+        long ms = Math.max(1L, System.currentTimeMillis() - t0);
+        chunkNo++;
+        atonCount += items.size();
+        String status = String.format("Chunk %d: %d AtoNs in %d ms (%d AtoNs/s), created %d, updated %d, unchanged %d. "
+                        + "%d AtoNs processed in total",
+                chunkNo, items.size(), ms, 1000L * items.size() / ms,
+                result.getCreated(), result.getUpdated(), result.getUnchanged(), atonCount);
+        getLog().info(status);
+        updateStatus(status);
+    }
+
+
+    /**
+     * Called when the newly parsed AtoN is an update to an existing AtoN.
+     * Merges the AtoN template into the original AtoN.
+     *
+     * Sub-classes can override to provide customized behaviour.
+     *
+     * @param original the original AtoN that should be updated
+     * @param aton the new AtoN template
+     */
+    protected void mergeAtonNodes(AtonNode original, AtonNode aton) {
+
+        // Default behaviour - just update the original from the new AtoN
+        original.updateNode(aton);
     }
 }
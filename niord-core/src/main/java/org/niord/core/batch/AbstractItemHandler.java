@@ -110,6 +110,15 @@ public abstract class AbstractItemHandler implements ItemReader, ItemProcessor,
         batchService.updateBatchJobProgress(jobContext.getInstanceId(), progress);
     }
 
+    /**
+     * Updates the status message, e.g. the current throughput, for the current batch job.
+     *
+     * @param status the status message
+     */
+    protected void updateStatus(String status) {
+        batchService.updateBatchJobStatus(jobContext.getInstanceId(), status);
+    }
+
     /** {@inheritDoc} */
     @Override
     public Object processItem(Object item) throws Exception {
@@ -82,6 +82,8 @@ public class BatchData extends BaseEntity<Integer> {
 
     Integer progress;
 
+    String status;
+
     /** Ensures that the created data is set */
     @PrePersist
     protected void onCreate() {
@@ -221,4 +223,12 @@ public class BatchData extends BaseEntity<Integer> {
     public void setProgress(Integer progress) {
         this.progress = progress;
     }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
 }
@@ -493,6 +493,22 @@ public class BatchService extends BaseService {
     }
 
 
+    /**
+     * Updates the status message, e.g. the current throughput, for the given batch job.
+     *
+     * @param instanceId the batch job id
+     * @param status the status message
+     */
+    public void updateBatchJobStatus(Long instanceId, String status) {
+
+        BatchData job = findByInstanceId(instanceId);
+        if (job != null) {
+            job.setStatus(status);
+            saveEntity(job);
+        }
+    }
+
+
     /****************************/
     /** Managing batch jobs    **/
     /****************************/
@@ -597,6 +613,7 @@ public class BatchService extends BaseService {
                 i.setJobName(data.getJobName());
                 i.setProperties(data.getProperties());
                 i.setProgress(data.getProgress());
+                i.setStatus(data.getStatus());
             }
         }
 
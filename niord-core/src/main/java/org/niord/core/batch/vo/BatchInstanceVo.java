@@ -40,6 +40,7 @@ public class BatchInstanceVo implements IJsonSerializable {
     String jobName;
     Map<String, Object> properties;
     Integer progress;
+    String status;
 
     /**
      * Sorts the executions with the most recent execution first and update execution flags
@@ -157,4 +158,12 @@ public class BatchInstanceVo implements IJsonSerializable {
     public void setProgress(Integer progress) {
         this.progress = progress;
     }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
 }
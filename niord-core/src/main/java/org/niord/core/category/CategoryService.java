@@ -15,21 +15,30 @@
  */
 package org.niord.core.category;
 
+import io.quarkus.runtime.StartupEvent;
 import io.quarkus.scheduler.Scheduled;
 import org.apache.commons.lang.StringUtils;
 import org.niord.core.NiordApp;
 import org.niord.core.aton.AtonFilter;
 import org.niord.core.aton.vo.AtonNodeVo;
+import org.niord.core.category.vo.SystemCategoryVo;
 import org.niord.core.db.CriteriaHelper;
 import org.niord.core.domain.Domain;
+import org.niord.core.domain.DomainChangedEvent;
 import org.niord.core.domain.DomainService;
 import org.niord.core.script.ScriptResource;
 import org.niord.core.service.TreeBaseService;
+import org.niord.core.service.TreeChangedEvent;
+import org.niord.core.service.TreeSnapshot;
+import org.niord.model.DataFilter;
 import org.niord.model.search.PagedSearchParamsVo;
 import org.slf4j.Logger;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.RequestScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
 import jakarta.inject.Inject;
 import jakarta.persistence.criteria.*;
 import javax.script.ScriptException;
@@ -52,10 +61,20 @@ public class CategoryService extends TreeBaseService<Category> {
     @Inject
     DomainService domainService;
 
+    @Inject
+    Event<DomainChangedEvent> domainChangedEvent;
+
     @Inject
     NiordApp app;
 
 
+    /** Called upon application startup. Builds the initial category tree snapshot **/
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    void init(@Observes StartupEvent ev) {
+        getCategoryTreeSnapshot();
+    }
+
+
     /***************************************/
     /** Category look-up                  **/
     /***************************************/
@@ -120,9 +139,9 @@ public class CategoryService extends TreeBaseService<Category> {
 
         // Optionally, match any ancestor
         if (params.getAncestorId() != null) {
-            Category ancestor = getCategoryDetails(params.getAncestorId());
-            if (ancestor != null) {
-                criteriaHelper.add(cb.like(categoryRoot.get("lineage"), ancestor.getLineage() + "%/"));
+            String ancestorLineage = getCategoryTreeSnapshot().getLineage(params.getAncestorId());
+            if (ancestorLineage != null) {
+                criteriaHelper.add(cb.like(categoryRoot.get("lineage"), ancestorLineage + "%/"));
             }
         }
 
@@ -199,6 +218,22 @@ public class CategoryService extends TreeBaseService<Category> {
     }
 
 
+    /**
+     * Returns the hierarchical list of root categories as value objects.
+     * The tree structure is taken from the category tree snapshot.
+     *
+     * @param filter the data filter used for converting each category. Should not include the children
+     * @return the hierarchical list of root categories as value objects
+     */
+    public List<SystemCategoryVo> getCategoryTreeVos(DataFilter filter) {
+        return getTreeVos(
+                Category.class,
+                "Category.findCategoriesWithDescs",
+                c -> c.toVo(SystemCategoryVo.class, filter),
+                SystemCategoryVo::checkCreateChildren);
+    }
+
+
     /** {@inheritDoc} **/
     @Override
     public List<Category> getRootEntities() {
@@ -207,6 +242,31 @@ public class CategoryService extends TreeBaseService<Category> {
     }
 
 
+    /**
+     * Returns the current immutable snapshot of the category tree.
+     * <p>
+     * NB: Changes to the category tree are reflected in the snapshot once the transaction has completed.
+     *
+     * @return the current snapshot of the category tree
+     */
+    public TreeSnapshot getCategoryTreeSnapshot() {
+        return getTreeSnapshot(Category.class);
+    }
+
+
+    /**
+     * Called when the category tree has changed and the transaction has completed.
+     * Marks the category tree snapshot as out-dated.
+     *
+     * @param event the tree changed event
+     */
+    void onTreeChanged(@Observes(during = TransactionPhase.AFTER_COMPLETION) TreeChangedEvent event) {
+        if (event.concerns(Category.class)) {
+            invalidateTreeSnapshot();
+        }
+    }
+
+
     /**
      * Looks up an category
      *
@@ -287,6 +347,7 @@ public class CategoryService extends TreeBaseService<Category> {
         original.getTemplateParams().clear();
         original.getTemplateParams().addAll(category.getTemplateParams());
 
+        fireTreeChanged(Category.class);
         return saveEntity(original);
     }
 
@@ -332,6 +393,7 @@ public class CategoryService extends TreeBaseService<Category> {
         category = saveEntity(category);
 
         em.flush();
+        fireTreeChanged(Category.class);
         return category;
     }
 
@@ -376,6 +438,9 @@ public class CategoryService extends TreeBaseService<Category> {
             saveEntity(category);
             remove(category);
             log.debug("Removed category " + categoryId);
+            fireTreeChanged(Category.class);
+            // The domain snapshots include the category ID's of the domains
+            domainChangedEvent.fire(new DomainChangedEvent(null));
             return true;
         }
         return false;
@@ -57,6 +57,9 @@ public class DictionaryService extends BaseService {
 
     private Map<String, DictionaryVo> cachedDictionaries = new ConcurrentHashMap<>();
 
+    // Pre-merged, immutable resource bundles keyed by dictionary names and language
+    private Map<BundleKey, ResourceBundle> cachedBundles = new ConcurrentHashMap<>();
+
     /** Called upon application startup */
     @Transactional(Transactional.TxType.REQUIRES_NEW)
     @Lock(Lock.Type.WRITE)
@@ -136,7 +139,7 @@ public class DictionaryService extends BaseService {
         saveEntity(dict);
 
         // Remove the cached dictionary
-        cachedDictionaries.remove(name);
+        evictCachedDictionary(name);
 
         return entry;
     }
@@ -169,7 +172,7 @@ public class DictionaryService extends BaseService {
         saveEntity(original);
 
         // Remove the cached dictionary
-        cachedDictionaries.remove(name);
+        evictCachedDictionary(name);
 
         return original;
     }
@@ -201,7 +204,7 @@ public class DictionaryService extends BaseService {
         saveEntity(dict);
 
         // Remove the cached dictionary
-        cachedDictionaries.remove(name);
+        evictCachedDictionary(name);
 
         return true;
     }
@@ -229,6 +232,17 @@ public class DictionaryService extends BaseService {
     }
 
 
+    /**
+     * Evicts the cached dictionary with the given name, along with all cached resource bundles that include it.
+     *
+     * @param name the name
+     */
+    private void evictCachedDictionary(String name) {
+        cachedDictionaries.remove(name);
+        cachedBundles.keySet().removeIf(key -> key.names.contains(name));
+    }
+
+
     /**
      * Shortcut for getting a dictionary value
      *
@@ -262,26 +276,44 @@ public class DictionaryService extends BaseService {
     /**
      * Returns the given dictionaries as a ResourceBundle for the given language.
      * Returns null if undefined.
+     * <p>
+     * The returned resource bundle is immutable and cached until one of the dictionaries is changed,
+     * so callers will receive the same instance until then.
      *
      * @param names    the dictionary names
      * @param language the language
      * @return the dictionaries for the given language as a ResourceBundle
      */
     public ResourceBundle getDictionariesAsResourceBundle(String[] names, String language) {
+        return cachedBundles.computeIfAbsent(
+                new BundleKey(names, language),
+                key -> createResourceBundle(names, language));
+    }
+
+
+    /**
+     * Creates an immutable ResourceBundle from the given dictionaries for the given language.
+     *
+     * @param names    the dictionary names
+     * @param language the language
+     * @return the dictionaries for the given language as a ResourceBundle
+     */
+    @SuppressWarnings("unchecked")
+    private ResourceBundle createResourceBundle(String[] names, String language) {
 
-        // Construct a property file with all language-specific values from all included dictionaries
-        Properties langDict = getDictionariesAsProperties(names, language);
+        // Construct an immutable map with all language-specific values from all included dictionaries
+        Properties langProps = getDictionariesAsProperties(names, language);
+        Map<String, String> langDict = Map.copyOf((Map<String, String>) (Map<?, ?>) langProps);
 
         final Locale dictLocale = new Locale(language);
 
-        // Convert the Properties object to a resource bundle
+        // Convert the map to a resource bundle
         return new ResourceBundle() {
 
             /** {@inheritDoc} **/
             @Override
-            @SuppressWarnings("all")
             protected Object handleGetObject(String key) {
-                return langDict.getProperty(key);
+                return langDict.get(key);
             }
 
             /** {@inheritDoc} **/
@@ -291,15 +323,50 @@ public class DictionaryService extends BaseService {
 
             /** {@inheritDoc} **/
             @Override
-            @SuppressWarnings("all")
             public Enumeration<String> getKeys() {
-                Set<String> handleKeys = langDict.stringPropertyNames();
-                return Collections.enumeration(handleKeys);
+                return Collections.enumeration(langDict.keySet());
+            }
+
+            /** {@inheritDoc} **/
+            @Override
+            protected Set<String> handleKeySet() {
+                return langDict.keySet();
             }
         };
     }
 
 
+    /**
+     * Cache key for the merged resource bundles
+     */
+    private static final class BundleKey {
+
+        final List<String> names;
+        final String language;
+
+        /** Constructor **/
+        BundleKey(String[] names, String language) {
+            this.names = List.of(names);
+            this.language = language;
+        }
+
+        /** {@inheritDoc} **/
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            BundleKey that = (BundleKey) o;
+            return names.equals(that.names) && Objects.equals(language, that.language);
+        }
+
+        /** {@inheritDoc} **/
+        @Override
+        public int hashCode() {
+            return Objects.hash(names, language);
+        }
+    }
+
+
     /**
      * Loads the default resource bundles for all supported languages.
      * Depending on the override parameter, either update the associated dictionary with new entries or overrides all.
@@ -388,7 +455,7 @@ public class DictionaryService extends BaseService {
             }
 
             // Remove the cached dictionary
-            cachedDictionaries.remove(name);
+            evictCachedDictionary(name);
 
             log.info(String.format("Persisted %d new '%s' dictionary entries in %d ms",
                     undefKeys.size(), name, System.currentTimeMillis() - t0));
@@ -425,7 +492,7 @@ public class DictionaryService extends BaseService {
         }
 
         // Remove the cached dictionary
-        cachedDictionaries.remove(name);
+        evictCachedDictionary(name);
 
         log.info(String.format("Persisted %d '%s' dictionary entries in %d ms",
                 properties.size(), name, System.currentTimeMillis() - t0));
@@ -457,7 +524,7 @@ public class DictionaryService extends BaseService {
         saveEntity(original);
 
         // Remove the cached dictionary
-        cachedDictionaries.remove(dictionary.getName());
+        evictCachedDictionary(dictionary.getName());
 
         log.info(String.format("Persisted and updated %d '%s' dictionary entries in %d ms",
                 dictionary.getEntries().size(), dictionary.getName(), System.currentTimeMillis() - t0));
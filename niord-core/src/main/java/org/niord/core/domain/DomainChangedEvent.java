@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.domain;
+
+/**
+ * CDI event fired by the {@code DomainService} whenever a domain is created, updated or deleted.
+ * The event is also fired, with an undefined domain ID, when data referenced by the domains changes,
+ * such as message series.
+ * <p>
+ * Observers should observe the event with {@code during = TransactionPhase.AFTER_COMPLETION},
+ * so that they also react to changes that have been rolled back.
+ */
+@SuppressWarnings("unused")
+public class DomainChangedEvent {
+
+    final String domainId;
+
+    /** Constructor **/
+    public DomainChangedEvent(String domainId) {
+        this.domainId = domainId;
+    }
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public String getDomainId() {
+        return domainId;
+    }
+}
@@ -27,12 +27,18 @@ import org.slf4j.Logger;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.RequestScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -59,10 +65,34 @@ public class DomainService extends BaseService {
     @Inject
     TicketService ticketService;
 
+    @Inject
+    Event<DomainChangedEvent> domainChangedEvent;
+
+    // Incremented whenever a domain changes. The domain snapshots are rebuilt when out-dated
+    private final AtomicLong domainsVersion = new AtomicLong();
+    private final Object domainSnapshotsLock = new Object();
+    private volatile DomainSnapshots domainSnapshots;
 
-    /** Returns the current domain or null if none are set */
+
+    /**
+     * Returns the current domain or null if none are set.
+     * <p>
+     * The current domain is resolved via the domain snapshots and looked up by primary key, so repeated
+     * calls within the same persistence context do not query the database. Still, the entity must be loaded
+     * once per persistence context, so use {@linkplain #currentDomainSnapshot()}, which is a map look-up,
+     * when the domain entity is not needed.
+     */
     public Domain currentDomain() {
 
+        DomainSnapshot currentDomainSnapshot = currentDomainSnapshot();
+        if (currentDomainSnapshot != null) {
+            Domain domain = getByPrimaryKey(Domain.class, currentDomainSnapshot.getId());
+            if (domain != null) {
+                return domain;
+            }
+        }
+
+        // Fall back to looking up the domain, e.g. if it has not been committed yet
         Domain currentDomain = null;
 
         String domainId = THREAD_LOCAL_DOMAIN.get();
@@ -83,6 +113,79 @@ public class DomainService extends BaseService {
     }
 
 
+    /**
+     * Returns the snapshot of the current domain or null if none are set.
+     * Use this rather than {@linkplain #currentDomain()} when the domain entity is not needed.
+     */
+    public DomainSnapshot currentDomainSnapshot() {
+
+        DomainSnapshot currentDomain = null;
+
+        String domainId = THREAD_LOCAL_DOMAIN.get();
+        if (StringUtils.isNotBlank(domainId)) {
+            currentDomain = getDomainSnapshot(domainId);
+        }
+
+        if (currentDomain == null) {
+            // Check if the ticket service has resolved a ticket for the current thread
+            TicketService.TicketData ticketData = ticketService.getTicketDataForCurrentThread();
+            if (ticketData != null) {
+                currentDomain = getDomainSnapshot(ticketData.getDomain());
+            }
+        }
+
+        return currentDomain;
+    }
+
+
+    /**
+     * Returns the snapshot of the domain with the given domainId or null if not found.
+     * <p>
+     * NB: Changes to domains are reflected in the snapshots once the transaction has completed.
+     *
+     * @param domainId the domainId
+     * @return the snapshot of the domain with the given domainId
+     */
+    public DomainSnapshot getDomainSnapshot(String domainId) {
+        return StringUtils.isBlank(domainId) ? null : getDomainSnapshots().get(domainId);
+    }
+
+
+    /**
+     * Returns the current snapshots of all domains indexed by domain ID.
+     * The snapshots are rebuilt if a domain has changed since they were built.
+     */
+    private Map<String, DomainSnapshot> getDomainSnapshots() {
+        DomainSnapshots snapshots = domainSnapshots;
+        if (snapshots == null || snapshots.version != domainsVersion.get()) {
+            synchronized (domainSnapshotsLock) {
+                snapshots = domainSnapshots;
+                long version = domainsVersion.get();
+                if (snapshots == null || snapshots.version != version) {
+                    Map<String, DomainSnapshot> domains = new HashMap<>();
+                    em.createNamedQuery("Domain.findAll", Domain.class)
+                            .getResultList()
+                            .forEach(d -> domains.put(d.getDomainId(), new DomainSnapshot(d)));
+                    snapshots = new DomainSnapshots(version, domains);
+                    domainSnapshots = snapshots;
+                }
+            }
+        }
+        return snapshots.domains;
+    }
+
+
+    /**
+     * Called when a domain has been created, updated or deleted, and the transaction has completed.
+     * Marks the domain snapshots as out-dated.
+     *
+     * @param event the domain changed event
+     */
+    void onDomainChanged(@Observes(during = TransactionPhase.AFTER_COMPLETION) DomainChangedEvent event) {
+        domainsVersion.incrementAndGet();
+    }
+
+
 
     /**
      * May be called, e.g. from a servlet filter to set the
@@ -248,6 +351,7 @@ public class DomainService extends BaseService {
         // Substitute the message series with the persisted ones
         original.setMessageSeries(messageSeriesService.persistedMessageSeries(domain.getMessageSeries()));
 
+        domainChangedEvent.fire(new DomainChangedEvent(original.getDomainId()));
         return saveEntity(original);
     }
 
@@ -275,6 +379,7 @@ public class DomainService extends BaseService {
         domain.setMessageSeries(messageSeriesService.persistedMessageSeries(domain.getMessageSeries()));
 
         domain = saveEntity(domain);
+        domainChangedEvent.fire(new DomainChangedEvent(domain.getDomainId()));
 
         // If request, create the domain in Keycloak - but do not throw an error in case of an error
         if (createInKeycloak) {
@@ -300,6 +405,7 @@ public class DomainService extends BaseService {
         Domain domain = findByDomainId(domainId);
         if (domain != null) {
             remove(domain);
+            domainChangedEvent.fire(new DomainChangedEvent(domainId));
             return true;
         }
         return false;
@@ -320,4 +426,16 @@ public class DomainService extends BaseService {
                 domain.getDomainId(), System.currentTimeMillis() - t0, result));
 
     }
+
+
+    /** Immutable, versioned set of domain snapshots **/
+    private static class DomainSnapshots {
+        final long version;
+        final Map<String, DomainSnapshot> domains;
+
+        DomainSnapshots(long version, Map<String, DomainSnapshot> domains) {
+            this.version = version;
+            this.domains = Collections.unmodifiableMap(domains);
+        }
+    }
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.domain;
+
+import org.apache.commons.lang.StringUtils;
+import org.niord.core.message.MessageSeries;
+import org.niord.core.model.BaseEntity;
+import org.niord.model.message.MainType;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.stream.Collectors;
+
+/**
+ * An immutable snapshot of the data of a domain used when resolving and validating against the current domain.
+ * <p>
+ * The snapshot holds no references to entities, and may safely be shared between threads.
+ */
+@SuppressWarnings("unused")
+public class DomainSnapshot {
+
+    final Integer id;
+    final String domainId;
+    final String name;
+    final boolean active;
+    final boolean publish;
+    final String timeZone;
+    final String messageSortOrder;
+    final Set<Integer> areaIds;
+    final Set<Integer> categoryIds;
+    final Set<String> messageSeriesIds;
+    final Set<MainType> mainTypes;
+
+
+    /** Constructor **/
+    public DomainSnapshot(Domain domain) {
+        this.id = domain.getId();
+        this.domainId = domain.getDomainId();
+        this.name = domain.getName();
+        this.active = domain.isActive();
+        this.publish = Boolean.TRUE.equals(domain.getPublish());
+        this.timeZone = domain.getTimeZone();
+        this.messageSortOrder = domain.getMessageSortOrder();
+        this.areaIds = Collections.unmodifiableSet(domain.getAreas().stream()
+                .map(BaseEntity::getId)
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+        this.categoryIds = Collections.unmodifiableSet(domain.getCategories().stream()
+                .map(BaseEntity::getId)
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+        this.messageSeriesIds = Collections.unmodifiableSet(domain.getMessageSeries().stream()
+                .map(MessageSeries::getSeriesId)
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+        this.mainTypes = Collections.unmodifiableSet(domain.getMessageSeries().stream()
+                .map(MessageSeries::getMainType)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+    }
+
+
+    /** Returns if the domain contain the given message series **/
+    public boolean containsMessageSeries(String seriesId) {
+        return StringUtils.isNotBlank(seriesId) && messageSeriesIds.contains(seriesId);
+    }
+
+
+    /** Returns if the domain contain the given message series **/
+    public boolean containsMessageSeries(MessageSeries messageSeries) {
+        return messageSeries != null && containsMessageSeries(messageSeries.getSeriesId());
+    }
+
+
+    /** Returns if the domain supports the given main type **/
+    public boolean supportsMainType(MainType mainType) {
+        return mainType != null && mainTypes.contains(mainType);
+    }
+
+
+    /**
+     * Computes the time zone of the domain. Use the default time zone if no time zone ID is specified
+     * @return the time zone of the domain
+     */
+    public TimeZone timeZone() {
+        try {
+            // Compute the timeZone
+            String timeZoneId = StringUtils.isNotBlank(timeZone) ? timeZone : TimeZone.getDefault().getID();
+
+            return TimeZone.getTimeZone(timeZoneId);
+        } catch (Exception e) {
+            return TimeZone.getDefault();
+        }
+    }
+
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getDomainId() {
+        return domainId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public boolean isPublish() {
+        return publish;
+    }
+
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    public String getMessageSortOrder() {
+        return messageSortOrder;
+    }
+
+    public Set<Integer> getAreaIds() {
+        return areaIds;
+    }
+
+    public Set<Integer> getCategoryIds() {
+        return categoryIds;
+    }
+
+    public Set<String> getMessageSeriesIds() {
+        return messageSeriesIds;
+    }
+
+    public Set<MainType> getMainTypes() {
+        return mainTypes;
+    }
+}
@@ -15,6 +15,8 @@
  */
 package org.niord.core.geojson;
 
+import org.hibernate.annotations.BatchSize;
+import org.niord.core.message.Message;
 import org.niord.core.model.BaseEntity;
 import org.niord.model.geojson.FeatureCollectionVo;
 import org.niord.model.geojson.FeatureVo;
@@ -44,6 +46,7 @@ import java.util.UUID;
         @NamedQuery(name  = "FeatureCollection.findByUid",
                 query = "select fc from FeatureCollection fc where fc.uid = :uid")
 })
+@BatchSize(size = Message.BATCH_FETCH_SIZE)
 @SuppressWarnings("unused")
 public class FeatureCollection extends BaseEntity<Integer> {
 
@@ -52,6 +55,7 @@ public class FeatureCollection extends BaseEntity<Integer> {
 
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "featureCollection", orphanRemoval = true)
     @OrderColumn(name = "indexNo")
+    @BatchSize(size = Message.BATCH_FETCH_SIZE)
     private List<Feature> features = new ArrayList<>();
 
     /** Converts this FeatureCollection entity to GeoJson */
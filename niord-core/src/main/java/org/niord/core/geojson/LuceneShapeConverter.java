@@ -0,0 +1,218 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.geojson;
+
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LatLonShape;
+import org.apache.lucene.document.ShapeField.QueryRelation;
+import org.apache.lucene.geo.LatLonGeometry;
+import org.apache.lucene.geo.Line;
+import org.apache.lucene.geo.Point;
+import org.apache.lucene.geo.Polygon;
+import org.apache.lucene.geo.Rectangle;
+import org.apache.lucene.search.Query;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Utility functions for converting JTS geometries into Lucene {@code LatLonShape} index fields and queries.
+ * <p>
+ * Geometries that cannot be tessellated by Lucene, such as self-intersecting polygons or geometries with
+ * coordinates outside the valid lat-lon range, are indexed by their bounding box instead.
+ */
+@SuppressWarnings("unused")
+public class LuceneShapeConverter {
+
+    private LuceneShapeConverter() {
+    }
+
+
+    /**
+     * Creates the Lucene index fields for the given JTS geometry.
+     * Returns an empty list if the geometry is null or empty.
+     *
+     * @param field the name of the shape field
+     * @param geometry the JTS geometry to index
+     * @return the Lucene index fields
+     */
+    public static List<Field> createIndexableFields(String field, Geometry geometry) {
+        List<Field> fields = new ArrayList<>();
+        if (geometry == null || geometry.isEmpty()) {
+            return fields;
+        }
+
+        try {
+            for (int x = 0; x < geometry.getNumGeometries(); x++) {
+                addIndexableFields(fields, field, geometry.getGeometryN(x));
+            }
+        } catch (IllegalArgumentException e) {
+            // Invalid geometry - index the bounding box instead
+            fields.clear();
+            Rectangle bbox = toLuceneRectangle(geometry.getEnvelopeInternal());
+            fields.addAll(Arrays.asList(LatLonShape.createIndexableFields(field, toLucenePolygon(bbox))));
+        }
+        return fields;
+    }
+
+
+    /** Adds the Lucene index fields for the given non-collection JTS geometry **/
+    private static void addIndexableFields(List<Field> fields, String field, Geometry geometry) {
+        if (geometry.isEmpty()) {
+            return;
+        }
+
+        switch (geometry.getGeometryType()) {
+            case Geometry.TYPENAME_POINT:
+                Coordinate c = geometry.getCoordinate();
+                fields.addAll(Arrays.asList(LatLonShape.createIndexableFields(field, c.y, c.x)));
+                break;
+            case Geometry.TYPENAME_LINESTRING:
+            case Geometry.TYPENAME_LINEARRING:
+                fields.addAll(Arrays.asList(LatLonShape.createIndexableFields(field, toLuceneLine((LineString) geometry))));
+                break;
+            case Geometry.TYPENAME_POLYGON:
+                fields.addAll(Arrays.asList(LatLonShape.createIndexableFields(field, toLucenePolygon((org.locationtech.jts.geom.Polygon) geometry))));
+                break;
+            default:
+                // Nested geometry collection
+                for (int x = 0; x < geometry.getNumGeometries(); x++) {
+                    addIndexableFields(fields, field, geometry.getGeometryN(x));
+                }
+        }
+    }
+
+
+    /**
+     * Creates a Lucene query matching documents where the shape field intersects the given JTS geometry.
+     * Rectangular geometries, such as a map extent, are searched as a bounding box query.
+     *
+     * @param field the name of the shape field
+     * @param geometry the JTS geometry to match
+     * @return the Lucene query
+     */
+    public static Query newIntersectsQuery(String field, Geometry geometry) {
+        if (!geometry.isRectangle()) {
+            try {
+                LatLonGeometry[] geometries = toLuceneGeometries(geometry);
+                if (geometries.length > 0) {
+                    return LatLonShape.newGeometryQuery(field, QueryRelation.INTERSECTS, geometries);
+                }
+            } catch (IllegalArgumentException ignored) {
+                // Invalid geometry - search by bounding box instead
+            }
+        }
+
+        Rectangle bbox = toLuceneRectangle(geometry.getEnvelopeInternal());
+        return LatLonShape.newBoxQuery(field, QueryRelation.INTERSECTS, bbox.minLat, bbox.maxLat, bbox.minLon, bbox.maxLon);
+    }
+
+
+    /**
+     * Converts the JTS geometry into the corresponding Lucene geometries
+     * @param geometry the JTS geometry
+     * @return the corresponding Lucene geometries
+     */
+    public static LatLonGeometry[] toLuceneGeometries(Geometry geometry) {
+        List<LatLonGeometry> result = new ArrayList<>();
+        for (int x = 0; x < geometry.getNumGeometries(); x++) {
+            Geometry g = geometry.getGeometryN(x);
+            if (g.isEmpty()) {
+                continue;
+            }
+            switch (g.getGeometryType()) {
+                case Geometry.TYPENAME_POINT:
+                    result.add(new Point(g.getCoordinate().y, g.getCoordinate().x));
+                    break;
+                case Geometry.TYPENAME_LINESTRING:
+                case Geometry.TYPENAME_LINEARRING:
+                    result.add(toLuceneLine((LineString) g));
+                    break;
+                case Geometry.TYPENAME_POLYGON:
+                    result.add(toLucenePolygon((org.locationtech.jts.geom.Polygon) g));
+                    break;
+                default:
+                    result.addAll(Arrays.asList(toLuceneGeometries(g)));
+            }
+        }
+        return result.toArray(new LatLonGeometry[0]);
+    }
+
+
+    /** Converts a JTS line string into a Lucene line **/
+    private static Line toLuceneLine(LineString line) {
+        Coordinate[] coords = line.getCoordinates();
+        return new Line(lats(coords), lons(coords));
+    }
+
+
+    /** Converts a JTS polygon into a Lucene polygon **/
+    private static Polygon toLucenePolygon(org.locationtech.jts.geom.Polygon polygon) {
+        Polygon[] holes = new Polygon[polygon.getNumInteriorRing()];
+        for (int x = 0; x < holes.length; x++) {
+            Coordinate[] coords = polygon.getInteriorRingN(x).getCoordinates();
+            holes[x] = new Polygon(lats(coords), lons(coords));
+        }
+        Coordinate[] coords = polygon.getExteriorRing().getCoordinates();
+        return new Polygon(lats(coords), lons(coords), holes);
+    }
+
+
+    /** Converts a Lucene rectangle into a Lucene polygon **/
+    private static Polygon toLucenePolygon(Rectangle bbox) {
+        // Ensure that the polygon is not degenerate, e.g. for a point or a horizontal line
+        double maxLat = bbox.maxLat > bbox.minLat ? bbox.maxLat : Math.min(90, bbox.minLat + 1e-6);
+        double minLat = maxLat > bbox.minLat ? bbox.minLat : maxLat - 1e-6;
+        double maxLon = bbox.maxLon > bbox.minLon ? bbox.maxLon : Math.min(180, bbox.minLon + 1e-6);
+        double minLon = maxLon > bbox.minLon ? bbox.minLon : maxLon - 1e-6;
+        return new Polygon(
+                new double[] { minLat, maxLat, maxLat, minLat, minLat },
+                new double[] { minLon, minLon, maxLon, maxLon, minLon });
+    }
+
+
+    /** Converts a JTS envelope into a Lucene rectangle, clamped to the valid lat-lon range **/
+    private static Rectangle toLuceneRectangle(Envelope env) {
+        return new Rectangle(
+                clamp(env.getMinY(), 90),
+                clamp(env.getMaxY(), 90),
+                clamp(env.getMinX(), 180),
+                clamp(env.getMaxX(), 180));
+    }
+
+
+    /** Clamps the value to the [-limit, limit] range **/
+    private static double clamp(double value, double limit) {
+        return Math.max(-limit, Math.min(limit, value));
+    }
+
+
+    /** Returns the latitudes of the coordinates **/
+    private static double[] lats(Coordinate[] coords) {
+        return Arrays.stream(coords).mapToDouble(c -> c.y).toArray();
+    }
+
+
+    /** Returns the longitudes of the coordinates **/
+    private static double[] lons(Coordinate[] coords) {
+        return Arrays.stream(coords).mapToDouble(c -> c.x).toArray();
+    }
+}
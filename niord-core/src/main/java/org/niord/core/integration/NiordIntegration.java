@@ -66,6 +66,10 @@ public class NiordIntegration extends BaseEntity<Integer> {
     @Temporal(TemporalType.TIMESTAMP)
     Date nextScheduledExecution;
 
+    // The change token and entity tag returned by the last successful synchronization
+    Long changeToken;
+    String etag;
+
 
     /** No-argument constructor */
     public NiordIntegration() {
@@ -102,6 +106,8 @@ public class NiordIntegration extends BaseEntity<Integer> {
                         .map(MessageSeriesMapping::toVo)
                         .collect(Collectors.toList()));
         integration.setNextScheduledExecution(nextScheduledExecution);
+        integration.setChangeToken(changeToken);
+        integration.setEtag(etag);
         return integration;
     }
 
@@ -167,4 +173,20 @@ public class NiordIntegration extends BaseEntity<Integer> {
     public void setNextScheduledExecution(Date nextScheduledExecution) {
         this.nextScheduledExecution = nextScheduledExecution;
     }
+
+    public Long getChangeToken() {
+        return changeToken;
+    }
+
+    public void setChangeToken(Long changeToken) {
+        this.changeToken = changeToken;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
 }
@@ -19,6 +19,7 @@ package org.niord.core.integration;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.lang.StringUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -38,13 +39,13 @@ import org.niord.core.geojson.FeatureService;
 import org.niord.core.integration.vo.MessageSeriesMappingVo;
 import org.niord.core.integration.vo.NiordIntegrationVo;
 import org.niord.core.message.*;
+import org.niord.core.message.vo.MessageTombstoneVo;
 import org.niord.core.service.BaseService;
 import org.niord.core.util.WebUtils;
 import org.niord.model.message.MessageVo;
 import org.niord.model.message.Status;
 import org.slf4j.Logger;
 
-import jakarta.ejb.Asynchronous;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
@@ -63,6 +64,12 @@ public class NiordIntegrationExecutionService extends BaseService {
 
     public static final int TIMEOUT = 5; // 5 seconds
 
+    /** Response header of the public API containing the change token **/
+    public static final String CHANGE_TOKEN_HEADER = "X-Niord-Change-Token";
+
+    /** The number of messages imported per transaction **/
+    static final int IMPORT_CHUNK_SIZE = 50;
+
     @Inject
     private Logger log;
 
@@ -85,9 +92,14 @@ public class NiordIntegrationExecutionService extends BaseService {
     FeatureService featureService;
 
     /**
-     * Processes the given Niord Integration
+     * Processes the given Niord Integration.
+     * <p>
+     * If the remote Niord server supports it, only the messages changed since the last synchronization are
+     * fetched, along with the tombstones of the messages that have been cancelled or expired since then.
+     * Otherwise, all published messages are fetched and compared with our own published messages.
+     * <p>
+     * Upon a successful synchronization, the change token and entity tag of the integration is updated.
      */
-    @Asynchronous
     @Transactional(Transactional.TxType.REQUIRES_NEW)
     public void processNiordIntegration(NiordIntegrationVo integration) {
 
@@ -97,8 +109,21 @@ public class NiordIntegrationExecutionService extends BaseService {
         }
 
         try {
+            long t0 = System.currentTimeMillis();
+
             // Fetch message for all source message series
-            List<MessageVo> messages = fetchMessages(integration);
+            MessageFetchResult fetchResult = fetchMessages(integration);
+            if (fetchResult.isNotModified()) {
+                log.debug("No changes for integration " + integration.getId());
+                return;
+            }
+
+            // Check if only the changes since the last synchronization have been fetched
+            boolean incremental = integration.getChangeToken() != null && fetchResult.getChangeToken() != null;
+            Set<String> tombstoneIds = incremental
+                    ? fetchTombstoneIds(integration)
+                    : Collections.emptySet();
+            List<MessageVo> messages = fetchResult.getMessages();
 
             Set<String> targetSeriesIds = integration.getMessageSeriesMappings().stream()
                     .map(MessageSeriesMappingVo::getTargetSeriesId)
@@ -124,16 +149,24 @@ public class NiordIntegrationExecutionService extends BaseService {
                         .filter(m -> sourceSeriesIds.contains(m.getMessageSeries().getSeriesId()))
                         .collect(Collectors.toList());
                 Map<String, MessageVo> importMessageMap = importMessages.stream()
-                        .collect(Collectors.toMap(MessageVo::getId, Function.identity()));
+                        .collect(Collectors.toMap(MessageVo::getId, Function.identity(), (m1, m2) -> m1));
 
-                // Get our own messages for the target message series
-                List<Message> ownMessages = fetchOwnMessages(targetSeriesId);
+                // Get our own messages for the target message series. For incremental synchronizations,
+                // only the messages imported from the changed messages are needed
+                List<Message> ownMessages = incremental
+                        ? fetchOwnMessages(targetSeriesId, union(importMessageMap.keySet(), tombstoneIds))
+                        : fetchOwnMessages(targetSeriesId);
                 Map<String, Message> ownMessageMap = ownMessages.stream()
-                        .collect(Collectors.toMap(Message::getLegacyId, Function.identity()));
-
-                // Determine which of our current messages to cancel and which of the fetched messages to import
-                List<Message> cancelMessages = ownMessages.stream()
-                        .filter(m -> !importMessageMap.containsKey(m.getLegacyId()))
+                        .collect(Collectors.toMap(Message::getLegacyId, Function.identity(), (m1, m2) -> m1));
+
+                // Determine which of our current messages to cancel and which of the fetched messages to import.
+                // For incremental synchronizations, cancel the messages of the tombstones. Otherwise, cancel
+                // the messages that are no longer published
+                List<String> cancelUids = ownMessages.stream()
+                        .filter(m -> incremental
+                                ? tombstoneIds.contains(m.getLegacyId()) && !importMessageMap.containsKey(m.getLegacyId())
+                                : !importMessageMap.containsKey(m.getLegacyId()))
+                        .map(Message::getUid)
                         .collect(Collectors.toList());
                 List<MessageVo> createMessages = importMessages.stream()
                         .filter(m -> !ownMessageMap.containsKey(m.getId()))
@@ -143,30 +176,74 @@ public class NiordIntegrationExecutionService extends BaseService {
                         .filter(m -> m.getUpdated().after(ownMessageMap.get(m.getId()).getUpdated()))
                         .collect(Collectors.toList());
 
-                // Cancel own message not found in the fetched message list
-                for (Message msg : cancelMessages) {
-                    messageService.updateStatus(msg.getUid(), Status.CANCELLED);
-                }
+                // Existing message that have been updated after import are cancelled and re-imported
+                Map<String, String> replacedUids = updateMessages.stream()
+                        .collect(Collectors.toMap(MessageVo::getId, m -> ownMessageMap.get(m.getId()).getUid(), (u1, u2) -> u1));
 
-                // Create fetched messages not yet imported
-                for (MessageVo msg : createMessages) {
-                    importMessage(msg, targetSeries, integration);
+                // Apply the changes in chunks, each in a separate transaction
+                for (int x = 0; x < cancelUids.size(); x += IMPORT_CHUNK_SIZE) {
+                    cancelMessages(cancelUids.subList(x, Math.min(cancelUids.size(), x + IMPORT_CHUNK_SIZE)));
                 }
-
-                // Update existing message that have been updated after import
-                for (MessageVo msg : updateMessages) {
-                    Message message = ownMessageMap.get(msg.getId());
-                    messageService.updateStatus(message.getUid(), Status.CANCELLED);
-                    importMessage(msg, targetSeries, integration);
+                for (int x = 0; x < createMessages.size(); x += IMPORT_CHUNK_SIZE) {
+                    importMessages(createMessages.subList(x, Math.min(createMessages.size(), x + IMPORT_CHUNK_SIZE)),
+                            Collections.emptyMap(), targetSeriesId, integration);
+                }
+                for (int x = 0; x < updateMessages.size(); x += IMPORT_CHUNK_SIZE) {
+                    importMessages(updateMessages.subList(x, Math.min(updateMessages.size(), x + IMPORT_CHUNK_SIZE)),
+                            replacedUids, targetSeriesId, integration);
                 }
+
+                log.info(String.format("%s synchronization of series %s from integration %d: %d created, %d updated, %d cancelled",
+                        incremental ? "Incremental" : "Full", targetSeriesId, integration.getId(),
+                        createMessages.size(), updateMessages.size(), cancelUids.size()));
             }
 
+            // Record the synchronization state
+            integration.setChangeToken(fetchResult.getChangeToken());
+            integration.setEtag(fetchResult.getEtag());
+
+            log.debug("Processed integration " + integration.getId() + " in " + (System.currentTimeMillis() - t0) + " ms");
+
         } catch (Exception e) {
             log.error("Error fetching messages from integration " + integration.getId(), e);
         }
     }
 
 
+    /**
+     * Cancels the messages with the given UIDs in a separate transaction
+     * @param uids the UIDs of the messages to cancel
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    void cancelMessages(List<String> uids) throws Exception {
+        for (String uid : uids) {
+            messageService.updateStatus(uid, Status.CANCELLED);
+        }
+    }
+
+
+    /**
+     * Imports the messages into the given message series in a separate transaction.
+     * If a message replaces an existing message, the existing message is cancelled first.
+     *
+     * @param messages the messages to import
+     * @param replacedUids the UIDs of the existing messages replaced by the messages, keyed by message ID
+     * @param seriesId the ID of the message series to import the messages into
+     * @param integration the Niord integration point
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    void importMessages(List<MessageVo> messages, Map<String, String> replacedUids, String seriesId, NiordIntegrationVo integration) throws Exception {
+        MessageSeries messageSeries = messageSeriesService.findBySeriesId(seriesId);
+        for (MessageVo msg : messages) {
+            String replacedUid = replacedUids.get(msg.getId());
+            if (replacedUid != null) {
+                messageService.updateStatus(replacedUid, Status.CANCELLED);
+            }
+            importMessage(msg, messageSeries, integration);
+        }
+    }
+
+
     /**
      * Fetches published messages from this Niord server for the given message series.
      * The messages should also have a defined legacyId to partake in the process.
@@ -187,6 +264,30 @@ public class NiordIntegrationExecutionService extends BaseService {
     }
 
 
+    /**
+     * Fetches published messages from this Niord server for the given message series, which have been
+     * imported from the messages with the given IDs.
+     *
+     * @param seriesId the messages series
+     * @param legacyIds the IDs of the imported messages
+     * @return published messages from this Niord server for the given message series and legacy IDs
+     */
+    List<Message> fetchOwnMessages(String seriesId, Set<String> legacyIds) {
+        if (legacyIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return messageService.findBySeriesAndLegacyIds(seriesId, Status.PUBLISHED, legacyIds);
+    }
+
+
+    /** Returns the union of the two sets **/
+    private static Set<String> union(Set<String> set1, Set<String> set2) {
+        Set<String> result = new HashSet<>(set1);
+        result.addAll(set2);
+        return result;
+    }
+
+
 
     /** Imports the message and assigns the given message series */
     protected void importMessage(MessageVo msg, MessageSeries messageSeries, NiordIntegrationVo integration) throws Exception {
@@ -260,20 +361,108 @@ public class NiordIntegrationExecutionService extends BaseService {
 
 
     /**
-     * Fetches the messages defined by the Niord integration point
+     * Fetches the messages defined by the Niord integration point.
+     * <p>
+     * If the integration point has a change token, only the messages changed since then are fetched,
+     * and if it has an entity tag, the request is conditional.
+     *
      * @param integration the Niord integration point to fetch message from
      * @return the messages fetched from the Niord integration point
      */
-    public List<MessageVo> fetchMessages(NiordIntegrationVo integration) throws Exception {
+    public MessageFetchResult fetchMessages(NiordIntegrationVo integration) throws Exception {
 
         long t0 = System.currentTimeMillis();
 
         // Construct the URL to fetch messages from
-        String params = integration.getMessageSeriesMappings().stream()
+        String url = integration.getUrl() + "/rest/public/v1/messages?" + messageSeriesParams(integration);
+        if (integration.getChangeToken() != null) {
+            url += "&updatedSince=" + integration.getChangeToken();
+        }
+
+        HttpGet request = new HttpGet(url);
+        if (integration.getChangeToken() != null && StringUtils.isNotBlank(integration.getEtag())) {
+            request.setHeader("If-None-Match", integration.getEtag());
+        }
+
+        try (CloseableHttpClient client = createHttpClient();
+             CloseableHttpResponse response = client.execute(request)) {
+
+            MessageFetchResult result = new MessageFetchResult();
+            if (response.getStatusLine().getStatusCode() == 304) {
+                result.notModified = true;
+                return result;
+            }
+
+            try (InputStream is = readResponse(response, url)) {
+                result.messages = new ObjectMapper().readValue(is, new TypeReference<List<MessageVo>>(){});
+            }
+            Header changeToken = response.getFirstHeader(CHANGE_TOKEN_HEADER);
+            if (changeToken != null && StringUtils.isNumeric(changeToken.getValue())) {
+                result.changeToken = Long.valueOf(changeToken.getValue());
+            }
+            Header etag = response.getFirstHeader("ETag");
+            result.etag = etag != null ? etag.getValue() : null;
+
+            log.debug("Fetching " + result.messages.size() + " messages from URL " + url + " in " +
+                    (System.currentTimeMillis() - t0) + " ms");
+            return result;
+        }
+    }
+
+
+    /**
+     * Fetches the IDs of the messages that have been cancelled, expired or deleted since the change token
+     * of the Niord integration point
+     *
+     * @param integration the Niord integration point to fetch message tombstones from
+     * @return the IDs of the messages that are no longer published
+     */
+    public Set<String> fetchTombstoneIds(NiordIntegrationVo integration) throws Exception {
+
+        String url = integration.getUrl() + "/rest/public/v1/messages/tombstones?" + messageSeriesParams(integration)
+                + "&updatedSince=" + integration.getChangeToken();
+
+        try (CloseableHttpClient client = createHttpClient();
+             CloseableHttpResponse response = client.execute(new HttpGet(url));
+             InputStream is = readResponse(response, url)) {
+
+            List<MessageTombstoneVo> tombstones = new ObjectMapper().readValue(is, new TypeReference<List<MessageTombstoneVo>>(){});
+            return tombstones.stream()
+                    .map(MessageTombstoneVo::getId)
+                    .collect(Collectors.toSet());
+        }
+    }
+
+
+    /** Returns the request parameters for the source message series of the integration point **/
+    private String messageSeriesParams(NiordIntegrationVo integration) {
+        return integration.getMessageSeriesMappings().stream()
                 .map(m -> "messageSeries=" + WebUtils.encodeURIComponent(m.getSourceSeriesId()))
                 .collect(Collectors.joining("&"));
+    }
+
 
-        String url = integration.getUrl() + "/rest/public/v1/messages?" + params;
+    /** Returns the content of the response, or fails if the request was not successful **/
+    private InputStream readResponse(CloseableHttpResponse response, String url) throws Exception {
+        int status = response.getStatusLine().getStatusCode();
+        if (status < 200 || status > 299) {
+            try {
+                response.getEntity().getContent().close();
+            } catch (Exception ignored) {
+            }
+            throw new Exception("Unable to execute request " + url + ", status = " + status);
+        }
+
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            throw new Exception("No response received from URL " + url);
+        }
+        return entity.getContent();
+    }
+
+
+    /** Creates a new HTTP client **/
+    private CloseableHttpClient createHttpClient() throws Exception {
 
         // See https://stackoverflow.com/questions/19517538/ignoring-ssl-certificate-in-apache-httpclient-4-3
         SSLContextBuilder builder = new SSLContextBuilder();
@@ -287,35 +476,42 @@ public class NiordIntegrationExecutionService extends BaseService {
                 .setConnectionRequestTimeout(TIMEOUT * 1000)
                 .setSocketTimeout(TIMEOUT * 1000).build();
 
-        CloseableHttpClient client = HttpClients.custom()
+        return HttpClients.custom()
                 .setDefaultRequestConfig(config)
                 .setSSLSocketFactory(sslSF)
                 .setHostnameVerifier(new AllowAllHostnameVerifier())
                 .build();
+    }
 
 
-        try (CloseableHttpResponse response = client.execute(new HttpGet(url))) {
-            int status = response.getStatusLine().getStatusCode();
-            if (status < 200 || status > 299) {
-                try {
-                    response.getEntity().getContent().close();
-                } catch (Exception ignored) {
-                }
-                throw new Exception("Unable to execute request " + url + ", status = " + status);
-            }
+    /**
+     * The result of fetching messages from a Niord integration point
+     */
+    public static class MessageFetchResult {
 
-            HttpEntity entity = response.getEntity();
-            if (entity == null) {
-                throw new Exception("No response received from URL " + url);
-            }
+        List<MessageVo> messages = new ArrayList<>();
+        Long changeToken;
+        String etag;
+        boolean notModified;
 
+        /** Returns the fetched messages **/
+        public List<MessageVo> getMessages() {
+            return messages;
+        }
 
-            try (InputStream is = entity.getContent()) {
-                List<MessageVo> result = new ObjectMapper().readValue(is, new TypeReference<List<MessageVo>>(){});
-                log.debug("Fetching " + result.size() + " messages from URL " + url + " in " +
-                        (System.currentTimeMillis() - t0) + " ms");
-                return result;
-            }
+        /** Returns the change token to use for fetching subsequent changes, or null if not supported **/
+        public Long getChangeToken() {
+            return changeToken;
+        }
+
+        /** Returns the entity tag of the response, or null if undefined **/
+        public String getEtag() {
+            return etag;
+        }
+
+        /** Returns if the messages have not changed since the previous request **/
+        public boolean isNotModified() {
+            return notModified;
         }
     }
 
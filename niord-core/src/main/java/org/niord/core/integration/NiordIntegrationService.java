@@ -17,6 +17,7 @@
 package org.niord.core.integration;
 
 import io.quarkus.scheduler.Scheduled;
+import org.niord.core.integration.vo.NiordIntegrationVo;
 import org.niord.core.service.BaseService;
 import org.slf4j.Logger;
 
@@ -116,6 +117,10 @@ public class NiordIntegrationService extends BaseService {
 
         // NB: We do not update the nextScheduledExecution attribute, as this gets computed by the system
 
+        // The settings may have changed, so the next execution should perform a full synchronization
+        original.setChangeToken(null);
+        original.setEtag(null);
+
         log.info("Updating Niord integration " + integration.getId());
         return saveEntity(original);
     }
@@ -181,7 +186,12 @@ public class NiordIntegrationService extends BaseService {
             log.debug(String.format("Processing Niord Integration %d for server %s",
                     integration.getId(),
                     integration.getUrl()));
-            executionService.processNiordIntegration(integration.toVo());
+            NiordIntegrationVo vo = integration.toVo();
+            executionService.processNiordIntegration(vo);
+
+            // Record the synchronization state, used for fetching only changes the next time
+            integration.setChangeToken(vo.getChangeToken());
+            integration.setEtag(vo.getEtag());
         } catch (Exception ex) {
             log.error("Error processing Niord Integration " + integration.getId(), ex);
         }
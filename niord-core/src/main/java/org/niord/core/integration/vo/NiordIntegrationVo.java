@@ -35,6 +35,8 @@ public class NiordIntegrationVo implements IJsonSerializable {
     boolean createBaseData;
     List<MessageSeriesMappingVo> messageSeriesMappings = new ArrayList<>();
     Date nextScheduledExecution;
+    Long changeToken;
+    String etag;
 
     /*************************/
     /** Getters and Setters **/
@@ -95,4 +97,20 @@ public class NiordIntegrationVo implements IJsonSerializable {
     public void setNextScheduledExecution(Date nextScheduledExecution) {
         this.nextScheduledExecution = nextScheduledExecution;
     }
+
+    public Long getChangeToken() {
+        return changeToken;
+    }
+
+    public void setChangeToken(Long changeToken) {
+        this.changeToken = changeToken;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
 }
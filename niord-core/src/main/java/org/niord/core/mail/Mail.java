@@ -277,6 +277,15 @@ public class Mail implements Serializable {
 
     /********* Method chaining *********/
 
+    /** Copies the body, i.e. texts, attachments and inline parts, of the template mail **/
+    public Mail contentsFrom(Mail template) {
+        this.plainText = template.plainText;
+        this.htmlText = template.htmlText;
+        this.attachments = new LinkedList<>(template.attachments);
+        this.inlineParts = new LinkedList<>(template.inlineParts);
+        return this;
+    }
+
     public Mail sender(Address sender) {
         this.sender = sender;
         return this;
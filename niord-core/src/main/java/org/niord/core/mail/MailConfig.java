@@ -15,6 +15,7 @@
  */
 package org.niord.core.mail;
 
+import java.util.Optional;
 import java.util.Properties;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
@@ -34,12 +35,43 @@ public class MailConfig {
     
     @ConfigProperty(name = "niord.smtp.port") 
     int port;
-    
+
+    @ConfigProperty(name = "niord.smtp.username")
+    Optional<String> username;
+
+    @ConfigProperty(name = "niord.smtp.password")
+    Optional<String> password;
+
+    @ConfigProperty(name = "niord.smtp.starttls", defaultValue = "false")
+    boolean startTls;
+
+    /** The max number of pooled SMTP connections **/
+    @ConfigProperty(name = "niord.smtp.pool-size", defaultValue = "4")
+    int poolSize;
+
     @Produces
     public Session createMailSession() {
         Properties props = new Properties();
         props.put("mail.smtp.host", host);
         props.put("mail.smtp.port", port);
+        if (username.isPresent()) {
+            props.put("mail.smtp.auth", "true");
+        }
+        if (startTls) {
+            props.put("mail.smtp.starttls.enable", "true");
+        }
         return Session.getInstance(props);
     }
+
+    public String getUsername() {
+        return username.orElse(null);
+    }
+
+    public String getPassword() {
+        return password.orElse(null);
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
 }
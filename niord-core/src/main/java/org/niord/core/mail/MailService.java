@@ -21,6 +21,7 @@ import org.niord.core.service.BaseService;
 import org.niord.core.settings.annotation.Setting;
 import org.slf4j.Logger;
 
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
@@ -31,6 +32,7 @@ import jakarta.mail.Transport;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.transaction.Transactional;
 
+import java.util.Map;
 import java.util.Properties;
 import java.util.stream.Collectors;
 
@@ -63,6 +65,53 @@ public class MailService extends BaseService {
     @Inject
     NiordApp app;
 
+    @Inject
+    MailConfig mailConfig;
+
+    // Lazily instantiated pool of SMTP transports
+    private volatile MailTransportPool transportPool;
+
+
+    /** Closes the pooled SMTP transports **/
+    @PreDestroy
+    void closeTransportPool() {
+        if (transportPool != null) {
+            transportPool.close();
+        }
+    }
+
+
+    /**
+     * Returns the pool of SMTP transports used for sending scheduled mails in batches
+     * @return the pool of SMTP transports
+     */
+    public MailTransportPool getTransportPool() {
+        MailTransportPool pool = transportPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = transportPool;
+                if (pool == null) {
+                    pool = new MailTransportPool(
+                            mailSession,
+                            mailConfig.getUsername(),
+                            mailConfig.getPassword(),
+                            mailConfig.getPoolSize());
+                    transportPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+
+    /**
+     * Returns if sending mails is only simulated, i.e. if the valid mail recipients is "LOG"
+     * @return if sending mails is only simulated
+     */
+    public boolean simulateSending() {
+        return new ValidMailRecipients(validRecipients).simulate();
+    }
+
     /**
      * Sends an email
      * @param content the HTML content
@@ -97,6 +146,17 @@ public class MailService extends BaseService {
      * @param mail the mail to send
      */
     public void sendMail(Mail mail) throws MessagingException {
+        sendMail(mail, null);
+    }
+
+
+    /**
+     * Sends the given mail synchronously using the given connected transport.
+     * If the transport is null, a new SMTP connection is opened and closed for the mail.
+     * @param mail the mail to send
+     * @param transport the connected transport to use, or null
+     */
+    public void sendMail(Mail mail, Transport transport) throws MessagingException {
         try {
             long t0 = System.currentTimeMillis();
 
@@ -130,7 +190,12 @@ public class MailService extends BaseService {
                 log.debug("Composing mail");
                 Message message = mail.compose(mailSession, mailAttachmentCache.getCache());
                 log.debug("Sending...");
-                Transport.send(message);
+                if (transport != null) {
+                    message.saveChanges();
+                    transport.sendMessage(message, message.getAllRecipients());
+                } else {
+                    Transport.send(message);
+                }
 
             }
 
@@ -154,6 +219,24 @@ public class MailService extends BaseService {
      */
     @Transactional(Transactional.TxType.REQUIRES_NEW)
     public ScheduledMail sendScheduledMail(Integer scheduledMailId) {
+        return sendScheduledMail(scheduledMailId, null, null);
+    }
+
+
+    /**
+     * Sends the scheduled mail with the given ID and updates the status of the scheduled mail entity.
+     * <p>
+     * When sending a batch of mails, pass on a connected transport and a map used for caching
+     * the mail bodies of shared contents. The latter ensures that the HTML of the shared contents
+     * is only parsed and styled once per batch, rather than for every recipient.
+     *
+     * @param scheduledMailId the ID of the scheduled mail to send
+     * @param transport the connected transport to use, or null
+     * @param contentsTemplates optionally, a cache of mail bodies for shared contents IDs
+     * @return the updated mail entity
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public ScheduledMail sendScheduledMail(Integer scheduledMailId, Transport transport, Map<Integer, Mail> contentsTemplates) {
         try {
             ScheduledMail scheduledMail = em.find(ScheduledMail.class, scheduledMailId);
 
@@ -161,7 +244,19 @@ public class MailService extends BaseService {
             if (scheduledMail != null && scheduledMail.getStatus() == ScheduledMail.Status.PENDING) {
 
                 try {
-                    Mail mail = scheduledMail.toMail(app.getBaseUri(), HtmlMail.StyleHandling.INLINE_STYLES, false);
+                    Mail mail;
+                    ScheduledMailContents shared = scheduledMail.getSharedContents();
+                    if (shared != null && scheduledMail.getContents() == null && contentsTemplates != null) {
+                        Mail template = contentsTemplates.get(shared.getId());
+                        if (template == null) {
+                            template = HtmlMail.fromHtml(
+                                    scheduledMail.getHtmlContents(), app.getBaseUri(), HtmlMail.StyleHandling.INLINE_STYLES, false);
+                            contentsTemplates.put(shared.getId(), template);
+                        }
+                        mail = scheduledMail.toMail(template);
+                    } else {
+                        mail = scheduledMail.toMail(app.getBaseUri(), HtmlMail.StyleHandling.INLINE_STYLES, false);
+                    }
 
                     // If undefined, set reply-to to the first to-recipient
                     if (mail.getReplyTo().isEmpty()) {
@@ -172,7 +267,7 @@ public class MailService extends BaseService {
                     }
 
                     // Send the mail
-                    sendMail(mail);
+                    sendMail(mail, transport);
 
                     // Register that the mail has successfully been sent
                     scheduledMail.registerMailSent();
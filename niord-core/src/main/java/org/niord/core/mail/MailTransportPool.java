@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.core.mail;
+
+import org.apache.commons.lang.StringUtils;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small pool of connected, and optionally authenticated, SMTP transports.
+ * <p>
+ * Rather than opening and closing an SMTP connection per mail, as {@code Transport.send()} does,
+ * a transport is borrowed from the pool and used for sending a batch of mails, and then returned to the pool.
+ * At most {@code size} transports are borrowed at any time, which also limits the number of
+ * concurrent SMTP connections.
+ */
+public class MailTransportPool implements AutoCloseable {
+
+    private final Session session;
+    private final String username;
+    private final String password;
+    private final Semaphore permits;
+    private final BlockingQueue<Transport> idleTransports = new LinkedBlockingQueue<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+
+    /**
+     * Constructor
+     * @param session the mail session
+     * @param username the SMTP user name, or null if no authentication is required
+     * @param password the SMTP password, or null if no authentication is required
+     * @param size the max number of transports
+     */
+    public MailTransportPool(Session session, String username, String password, int size) {
+        this.session = session;
+        this.username = username;
+        this.password = password;
+        this.permits = new Semaphore(Math.max(1, size));
+    }
+
+
+    /**
+     * Borrows a connected transport from the pool, blocking until one is available.
+     * The transport must be returned using {@code release()}
+     * @return the connected transport
+     */
+    public Transport borrow() throws MessagingException, InterruptedException {
+        permits.acquire();
+        Transport transport = idleTransports.poll();
+        try {
+            if (transport == null) {
+                transport = session.getTransport("smtp");
+            }
+            if (!transport.isConnected()) {
+                if (StringUtils.isNotBlank(username)) {
+                    transport.connect(username, password);
+                } else {
+                    transport.connect();
+                }
+                connectionCount.incrementAndGet();
+            }
+            return transport;
+        } catch (MessagingException | RuntimeException e) {
+            closeQuietly(transport);
+            permits.release();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Returns a borrowed transport to the pool.
+     * If the transport is broken, e.g. after a failed send, it is closed and
+     * a new connection will be established upon the next borrow.
+     * @param transport the transport to return
+     * @param broken whether the transport is broken or not
+     */
+    public void release(Transport transport, boolean broken) {
+        if (transport != null) {
+            if (broken) {
+                closeQuietly(transport);
+            } else {
+                idleTransports.offer(transport);
+            }
+        }
+        permits.release();
+    }
+
+
+    /** Closes all idle transports **/
+    @Override
+    public void close() {
+        Transport transport;
+        while ((transport = idleTransports.poll()) != null) {
+            closeQuietly(transport);
+        }
+    }
+
+
+    /** Returns the number of SMTP connections established by the pool **/
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+
+    /** Closes the transport and ignores any errors **/
+    private static void closeQuietly(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+}
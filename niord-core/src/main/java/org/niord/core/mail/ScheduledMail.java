@@ -37,8 +37,10 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.Index;
 import jakarta.persistence.Lob;
+import jakarta.persistence.ManyToOne;
 import jakarta.persistence.NamedQueries;
 import jakarta.persistence.NamedQuery;
 import jakarta.persistence.OneToMany;
@@ -56,6 +58,9 @@ import jakarta.validation.constraints.NotNull;
  *    <li>The mail subject.</li>
  *    <li>The HTML contents.</li>
  * </ul>
+ * The HTML contents is either stored in the mail itself, or, for mails created by mailing list triggers,
+ * in a {@linkplain ScheduledMailContents} entity shared between all the mails of the trigger execution.
+ *
  *
  * Furthermore, the scheduled mail has a send date, a status which defines if the mail is pending or sent, and an
  * <i>attempts</i> field for the number of attempts to send the mail.
@@ -69,8 +74,14 @@ import jakarta.validation.constraints.NotNull;
         @NamedQuery(name = "ScheduledMail.findPendingMails",
                 query = "SELECT m FROM ScheduledMail m where m.status = 'PENDING' and m.sendDate <= :date " +
                         " order by m.sendDate asc"),
-        @NamedQuery(name = "ScheduledMail.findExpiredMails",
-                query = "SELECT m.id FROM ScheduledMail m where m.created <= :expiryDate ")
+        @NamedQuery(name = "ScheduledMail.findPendingMailIds",
+                query = "SELECT m.id FROM ScheduledMail m where m.status = 'PENDING' and m.sendDate <= :date " +
+                        " order by m.sendDate asc"),
+        @NamedQuery(name = "ScheduledMail.findExpiredMailIdRange",
+                query = "SELECT min(m.id), max(m.id) FROM ScheduledMail m where m.created <= :expiryDate "),
+        @NamedQuery(name = "ScheduledMail.deleteExpiredMailsInIdRange",
+                query = "DELETE FROM ScheduledMail m where m.id >= :fromId and m.id < :toId " +
+                        " and m.created <= :expiryDate ")
 })
 @SuppressWarnings("unused")
 public class ScheduledMail extends BaseEntity<Integer> {
@@ -96,11 +107,14 @@ public class ScheduledMail extends BaseEntity<Integer> {
     String subject;
 
     /** The mail contents is stored in compressed form to preserve space **/
-    @NotNull
     @Lob
     @Column(columnDefinition = "LONGBLOB")
     byte[] contents;
 
+    /** Contents shared with other mails. Used when the contents field is undefined **/
+    @ManyToOne(fetch = FetchType.LAZY, cascade = CascadeType.PERSIST)
+    ScheduledMailContents sharedContents;
+
     @NotNull
     @Enumerated(EnumType.STRING)
     Status status = Status.PENDING;
@@ -153,10 +167,12 @@ public class ScheduledMail extends BaseEntity<Integer> {
 
 
     /**
-     * Creates a template message for each recipient with same subject and contents as this mail
+     * Creates a template message for each recipient with same subject and contents as this mail.
+     * The template messages all refer to the same shared contents entity
      * @return a template message for each recipient with same subject and contents as this mail
      */
     public List<ScheduledMail> splitByRecipient() {
+        ScheduledMailContents shared = sharedContents != null ? sharedContents : new ScheduledMailContents(contents);
         return recipients.stream()
                 .map(r -> {
                     ScheduledMail m = new ScheduledMail();
@@ -165,7 +181,7 @@ public class ScheduledMail extends BaseEntity<Integer> {
                     m.setCreated(created);
                     m.setSender(sender);
                     m.setSubject(subject);
-                    m.setContents(contents);
+                    m.setSharedContents(shared);
                     return m;
                 })
                 .collect(Collectors.toList());
@@ -207,13 +223,26 @@ public class ScheduledMail extends BaseEntity<Integer> {
      * @return the HTML mail
      */
     public Mail toMail(String baseUri, HtmlMail.StyleHandling styleHandling, boolean includePlainText) throws Exception {
+        return toMail(HtmlMail.fromHtml(getHtmlContents(), baseUri, styleHandling, includePlainText));
+    }
+
+
+    /**
+     * Returns a new mail from this queued mail, with the body of the given contents template mail.
+     * Use this to avoid parsing and styling the same shared HTML contents for every recipient.
+     *
+     * @param contentsTemplate the mail to copy the body from
+     * @return the mail
+     */
+    public Mail toMail(Mail contentsTemplate) throws Exception {
 
         List<Mail.MailRecipient> mailRecipients = recipients.stream()
                 .map(ScheduledMailRecipient::toMailRecipient)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
 
-        Mail mail = HtmlMail.fromHtml(getHtmlContents(), baseUri, styleHandling, includePlainText)
+        Mail mail = new Mail()
+                .contentsFrom(contentsTemplate)
                 .subject(subject)
                 .recipients(mailRecipients);
 
@@ -238,13 +267,16 @@ public class ScheduledMail extends BaseEntity<Integer> {
     /** Returns the uncompressed HTML contents of the email **/
     @Transient
     public String getHtmlContents() throws IOException {
-        return GzipUtils.decompressString(contents);
+        return GzipUtils.decompressString(contents != null || sharedContents == null
+                ? contents
+                : sharedContents.getContents());
     }
 
 
     /** Sets the uncompressed HTML contents of the email **/
     public void setHtmlContents(String htmlContents) throws IOException {
         this.contents = GzipUtils.compressString(htmlContents);
+        this.sharedContents = null;
     }
 
 
@@ -301,6 +333,14 @@ public class ScheduledMail extends BaseEntity<Integer> {
         this.contents = contents;
     }
 
+    public ScheduledMailContents getSharedContents() {
+        return sharedContents;
+    }
+
+    public void setSharedContents(ScheduledMailContents sharedContents) {
+        this.sharedContents = sharedContents;
+    }
+
     public Status getStatus() {
         return status;
     }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.core.mail;
+
+import org.niord.core.model.BaseEntity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Lob;
+import jakarta.persistence.NamedQueries;
+import jakarta.persistence.NamedQuery;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * The compressed HTML contents shared by all the scheduled mails of a mailing list trigger execution.
+ * <p>
+ * When a mailing list trigger is executed, one scheduled mail is created per recipient,
+ * but they all refer to the same contents entity, rather than storing a copy each.
+ */
+@Entity
+@NamedQueries({
+        @NamedQuery(name = "ScheduledMailContents.deleteUnreferenced",
+                query = "DELETE FROM ScheduledMailContents c where not exists " +
+                        " (select m.id from ScheduledMail m where m.sharedContents = c)")
+})
+@SuppressWarnings("unused")
+public class ScheduledMailContents extends BaseEntity<Integer> {
+
+    /** The mail contents is stored in compressed form to preserve space **/
+    @NotNull
+    @Lob
+    @Column(columnDefinition = "LONGBLOB")
+    byte[] contents;
+
+
+    /** Constructor **/
+    public ScheduledMailContents() {
+    }
+
+
+    /** Constructor **/
+    public ScheduledMailContents(byte[] contents) {
+        this.contents = contents;
+    }
+
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public byte[] getContents() {
+        return contents;
+    }
+
+    public void setContents(byte[] contents) {
+        this.contents = contents;
+    }
+}
@@ -27,12 +27,20 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedQueries;
+import jakarta.persistence.NamedQuery;
 import jakarta.validation.constraints.NotNull;
 
 /**
  * Defines a recipient of a scheduled mail
  */
 @Entity
+@NamedQueries({
+        @NamedQuery(name = "ScheduledMailRecipient.deleteExpiredRecipientsInIdRange",
+                query = "DELETE FROM ScheduledMailRecipient r where r.mail.id in " +
+                        " (select m.id from ScheduledMail m where m.id >= :fromId and m.id < :toId " +
+                        " and m.created <= :expiryDate) ")
+})
 @SuppressWarnings("unused")
 public class ScheduledMailRecipient extends BaseEntity<Integer> {
 
@@ -21,20 +21,24 @@ import io.quarkus.scheduler.Scheduled;
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.microprofile.context.ManagedExecutor;
 import org.niord.core.db.CriteriaHelper;
-import org.niord.core.model.BaseEntity;
 import org.niord.core.service.BaseService;
 import org.niord.core.settings.annotation.Setting;
 import org.niord.core.util.TimeUtils;
+import org.niord.core.util.TokenBucket;
 import org.niord.model.search.PagedSearchResultVo;
 import org.slf4j.Logger;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.mail.Transport;
 import jakarta.persistence.criteria.*;
 import jakarta.transaction.Transactional;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
@@ -54,6 +58,9 @@ public class ScheduledMailService extends BaseService {
     @Inject
     MailService mailService;
 
+    @Inject
+    MailConfig mailConfig;
+
     @Inject
     @Setting(value = "mailMaxPerMinute", defaultValue = "10", type = Integer,
             description = "The max number of mails to send per minute")
@@ -65,6 +72,17 @@ public class ScheduledMailService extends BaseService {
             description = "Delete scheduled mails older than the given value. A non-positive value means never.")
     Integer mailDeleteAfterDays;
 
+    @Inject
+    @Setting(value = "mailDeleteTimeBudget", defaultValue = "300", type = Integer,
+            description = "The max number of seconds spent deleting expired mails per run. Remaining mails are deleted in the next run.")
+    Integer mailDeleteTimeBudget;
+
+    /** The number of scheduled mail IDs covered by each delete transaction **/
+    private static final int DELETE_CHUNK_SIZE = 1000;
+
+    /** The interval in milliseconds between sending pending mails. Must match the sendPendingMails() schedule **/
+    private static final long SEND_INTERVAL_MS = 10000L;
+
 
     /**
      * NB: Niord defines its own managed executor service to limit the number of threads,
@@ -75,6 +93,9 @@ public class ScheduledMailService extends BaseService {
     @Inject
     ManagedExecutor managedExecutor;
 
+    // Spreads the sending of mails evenly over time, rather than bursting once per minute
+    private TokenBucket rateLimiter;
+
     /**
      * Searches the filtered set of scheduled mails
      * @param params the search parameters
@@ -174,25 +195,70 @@ public class ScheduledMailService extends BaseService {
 
 
     /**
-     * Called every minute to process scheduled mails
+     * Returns the IDs of the pending scheduled mails
+     * @param maxSize the max number of IDs to return
+     * @return the IDs of the pending scheduled mails
+     */
+    public List<Integer> getPendingMailIds(int maxSize) {
+        return em.createNamedQuery("ScheduledMail.findPendingMailIds", Integer.class)
+                .setParameter("date", new Date())
+                .setMaxResults(maxSize)
+                .getResultList();
+    }
+
+
+    /**
+     * Returns the token bucket used for limiting the number of mails sent per minute.
+     * The bucket holds slightly more than 10 seconds worth of mails, i.e. the interval between
+     * executions of {@linkplain #sendPendingMails()}, so that mails are sent out steadily at the full rate.
+     * @return the token bucket used for limiting the number of mails sent per minute
      */
-    @Scheduled(cron="24 * * * * ?")
+    private TokenBucket getRateLimiter() {
+        int ratePerMinute = Math.max(1, maxMailsPerMinute);
+        if (rateLimiter == null || rateLimiter.getRatePerMinute() != ratePerMinute) {
+            rateLimiter = TokenBucket.forInterval(ratePerMinute, SEND_INTERVAL_MS, System::currentTimeMillis);
+        }
+        return rateLimiter;
+    }
+
+
+    /**
+     * Called every 10 seconds to process scheduled mails.
+     * <p>
+     * The number of mails sent is limited by a token bucket to "maxMailsPerMinute" mails per minute.
+     * The mails are sent in batches, one per pooled SMTP connection.
+     */
+    @Scheduled(every = "10s", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
     @Lock(Lock.Type.WRITE)
     @Transactional
     void sendPendingMails() {
 
-        // Send at most "maxMailsPerMinute" mails at a time
-        List<Integer> scheduledMailIds = getPendingMails().stream()
-                .limit(maxMailsPerMinute)
-                .map(BaseEntity::getId)
-                .collect(Collectors.toList());
+        TokenBucket limiter = getRateLimiter();
+        int available = limiter.available();
+        if (available <= 0) {
+            return;
+        }
+
+        List<Integer> scheduledMailIds = getPendingMailIds(available);
 
         if (!scheduledMailIds.isEmpty()) {
 
+            limiter.tryAcquire(scheduledMailIds.size());
             log.info("Processing " + scheduledMailIds.size() + " pending scheduled mails");
 
-            List<MailSenderTask> tasks = scheduledMailIds.stream()
-                    .map(id -> new MailSenderTask(mailService, id))
+            // Distribute the mails between one batch per pooled SMTP connection
+            MailTransportPool pool = mailService.simulateSending() ? null : mailService.getTransportPool();
+            int batchCount = Math.min(scheduledMailIds.size(), Math.max(1, mailConfig.getPoolSize()));
+            List<List<Integer>> batches = new ArrayList<>();
+            for (int x = 0; x < batchCount; x++) {
+                batches.add(new ArrayList<>());
+            }
+            for (int x = 0; x < scheduledMailIds.size(); x++) {
+                batches.get(x % batchCount).add(scheduledMailIds.get(x));
+            }
+
+            List<MailBatchSenderTask> tasks = batches.stream()
+                    .map(batch -> new MailBatchSenderTask(mailService, pool, batch))
                     .collect(Collectors.toList());
 
             try {
@@ -206,14 +272,16 @@ public class ScheduledMailService extends BaseService {
 
     /**
      * Called every day to delete old scheduled mails.
-     *
-     * Note to self: It would have been faster to execute a "delete from ScheduledMail where..." statement.
-     * However, this will fail because of a missing mail - recipient "delete on cascade" FK constraint.
-     * Using JPAs CascadeType.ALL for the relation does NOT work in this case.
+     * <p>
+     * The mails are deleted set-based in chunks of ID ranges, each committed in a separate transaction.
+     * For each chunk, the recipients are bulk-deleted before the mails, since there is no
+     * mail - recipient "delete on cascade" FK constraint.
+     * <p>
+     * The purge does not take the write lock, and stops when the "mailDeleteTimeBudget" has been spent,
+     * so that it never blocks the sending of mails for long.
      */
     @Scheduled(cron="48 28 5 * * ?")
-    @Lock(Lock.Type.WRITE)
-    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    @Lock(Lock.Type.NONE)
     void deleteExpiredMails() {
 
         // If expiryDate is 0 (actually, non-positive), never delete mails
@@ -222,59 +290,133 @@ public class ScheduledMailService extends BaseService {
         }
 
         Date expiryDate = TimeUtils.add(new Date(), Calendar.DATE, -mailDeleteAfterDays);
-
-        List<Integer> ids = em.createNamedQuery("ScheduledMail.findExpiredMails", Integer.class)
-                .setParameter("expiryDate", expiryDate)
-                .getResultList();
-
-        if (!ids.isEmpty()) {
-            long t0 = System.currentTimeMillis();
-            try {
-                for (int x = 0; x < ids.size(); x++) {
-                    ScheduledMail mail = getScheduledMail(ids.get(x));
-                    if (mail != null) {
-                        em.remove(mail);
-                        if ((x % 50) == 0) {
-                            em.flush();
-                        }
-                    }
+        long t0 = System.currentTimeMillis();
+        long deadline = t0 + 1000L * Math.max(1, mailDeleteTimeBudget);
+        int deletedMails = 0, deletedRecipients = 0, chunks = 0;
+
+        try {
+            Object[] idRange = em.createNamedQuery("ScheduledMail.findExpiredMailIdRange", Object[].class)
+                    .setParameter("expiryDate", expiryDate)
+                    .getSingleResult();
+            if (idRange == null || idRange[0] == null) {
+                return;
+            }
+            int minId = ((Number) idRange[0]).intValue();
+            int maxId = ((Number) idRange[1]).intValue();
+
+            for (int fromId = minId; fromId <= maxId; fromId += DELETE_CHUNK_SIZE) {
+                if (System.currentTimeMillis() > deadline) {
+                    log.warn("Mail purge time budget of " + mailDeleteTimeBudget + " s spent. "
+                            + "Mails with ID " + fromId + " - " + maxId + " will be deleted in the next run");
+                    break;
                 }
 
-                log.info("Deleted " + ids.size() + " scheduled mails older than " + expiryDate
-                            + " in " + (System.currentTimeMillis() - t0) + " ms");
+                int[] result = deleteExpiredMailsInIdRange(fromId, fromId + DELETE_CHUNK_SIZE, expiryDate);
+                deletedMails += result[0];
+                deletedRecipients += result[1];
+                chunks++;
 
-            } catch (Exception e) {
-                log.error("Failed deleting scheduled mails older than " + expiryDate);
+                log.debug(String.format("Purged mail IDs %d - %d: %d mails, %d recipients. Progress %d%%",
+                        fromId, fromId + DELETE_CHUNK_SIZE - 1, result[0], result[1],
+                        100L * (fromId + DELETE_CHUNK_SIZE - minId) / (maxId - minId + 1)));
             }
+
+            // Delete the shared mail contents no longer referenced by any mails
+            int deletedContents = deleteUnreferencedMailContents();
+
+            long ms = System.currentTimeMillis() - t0;
+            log.info(String.format("Deleted %d scheduled mails, %d recipients and %d shared mail contents "
+                            + "older than %s in %d chunks in %d ms (%.1f mails/s)",
+                    deletedMails, deletedRecipients, deletedContents, expiryDate, chunks, ms,
+                    1000.0 * deletedMails / Math.max(1, ms)));
+
+        } catch (Exception e) {
+            log.error("Failed deleting scheduled mails older than " + expiryDate
+                    + " after deleting " + deletedMails + " mails", e);
         }
     }
 
 
     /**
-     * The task that actually sends the e-mail
+     * Bulk-deletes the expired mails, and their recipients, within the given ID range
+     * @param fromId the start of the ID range, inclusive
+     * @param toId the end of the ID range, exclusive
+     * @param expiryDate the expiry date
+     * @return the number of deleted mails and recipients
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    int[] deleteExpiredMailsInIdRange(int fromId, int toId, Date expiryDate) {
+        int recipients = em.createNamedQuery("ScheduledMailRecipient.deleteExpiredRecipientsInIdRange")
+                .setParameter("fromId", fromId)
+                .setParameter("toId", toId)
+                .setParameter("expiryDate", expiryDate)
+                .executeUpdate();
+        int mails = em.createNamedQuery("ScheduledMail.deleteExpiredMailsInIdRange")
+                .setParameter("fromId", fromId)
+                .setParameter("toId", toId)
+                .setParameter("expiryDate", expiryDate)
+                .executeUpdate();
+        return new int[] { mails, recipients };
+    }
+
+
+    /**
+     * Deletes the shared mail contents no longer referenced by any mails
+     * @return the number of deleted shared mail contents
      */
-    final static class MailSenderTask implements Callable<ScheduledMail> {
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    int deleteUnreferencedMailContents() {
+        return em.createNamedQuery("ScheduledMailContents.deleteUnreferenced")
+                .executeUpdate();
+    }
+
 
-        final Integer scheduledMailId;
+    /**
+     * The task that actually sends a batch of e-mails using a single pooled SMTP connection
+     */
+    final static class MailBatchSenderTask implements Callable<Integer> {
+
+        final List<Integer> scheduledMailIds;
         final MailService mailService;
+        final MailTransportPool pool;
 
         /** Constructor **/
-        public MailSenderTask(MailService mailService, Integer scheduledMailId) {
+        public MailBatchSenderTask(MailService mailService, MailTransportPool pool, List<Integer> scheduledMailIds) {
             this.mailService = mailService;
-            this.scheduledMailId = scheduledMailId;
+            this.pool = pool;
+            this.scheduledMailIds = scheduledMailIds;
         }
 
         /** {@inheritDoc} **/
-        @Transactional
         @Override
-        public ScheduledMail call() {
+        public Integer call() {
+            int sent = 0;
+            Transport transport = null;
+            Map<Integer, Mail> contentsTemplates = new HashMap<>();
             try {
-                //MailService mailService = CdiUtils.getBean(MailService.class);
-                return  mailService.sendScheduledMail(scheduledMailId);
+                for (Integer id : scheduledMailIds) {
+                    if (pool != null && transport == null) {
+                        transport = pool.borrow();
+                    }
+
+                    ScheduledMail mail = mailService.sendScheduledMail(id, transport, contentsTemplates);
+
+                    if (mail != null && mail.getStatus() == ScheduledMail.Status.SENT) {
+                        sent++;
+                    } else if (transport != null) {
+                        // The connection may be broken. Reconnect for the next mail
+                        pool.release(transport, true);
+                        transport = null;
+                    }
+                }
             } catch (Exception e) {
                 e.printStackTrace();
-                return null;
+            } finally {
+                if (transport != null) {
+                    pool.release(transport, false);
+                }
             }
+            return sent;
         }
     }
 }
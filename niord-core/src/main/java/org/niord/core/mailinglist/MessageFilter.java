@@ -17,22 +17,31 @@
 package org.niord.core.mailinglist;
 
 import org.niord.core.message.Message;
+import org.niord.core.message.MessageScriptFilterCompiler;
 
 import javax.script.Invocable;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
 
 /**
  * Can be used to evaluate a message filter such as
  * <pre>
  *     msg.promulgation('navtex').promulgate && msg.promulgation('navtex').useTransmitter('Baltico')
  * </pre>
+ * Filters are compiled to native Java predicates by the {@linkplain MessageScriptFilterCompiler} and cached.
+ * Nashorn is only used for filters that are not supported by the compiler.
  */
 public class MessageFilter {
 
-    private ScriptEngine jsEngine = new ScriptEngineManager()
-            .getEngineByName("Nashorn");
+    // Cache of instantiated message filters
+    private static final Map<String, MessageFilter> FILTERS = new ConcurrentHashMap<>();
+
+    private BiPredicate<Message, Object> compiledFilter;
+    private ScriptEngine jsEngine;
 
 
     /** Private access constructor **/
@@ -47,14 +56,27 @@ public class MessageFilter {
      */
     public static MessageFilter getInstance(String messageFilter) throws ScriptException {
 
-        // Considerations: Various documentation suggests that the ScriptEngine is indeed threadsafe.
-        // However, shared state is not isolated, so, setting the parameters (msg) as
-        // script engine state and evaluating the filter directly would not work correctly.
-        // Instead, we wrap the filter in a function and call that function.
+        MessageFilter filter = FILTERS.get(messageFilter);
+        if (filter == null) {
+            filter = new MessageFilter();
+
+            try {
+                // First, attempt to compile the filter to a native Java predicate
+                filter.compiledFilter = MessageScriptFilterCompiler.compile(messageFilter);
+
+            } catch (IllegalArgumentException e) {
+                // Considerations: Various documentation suggests that the ScriptEngine is indeed threadsafe.
+                // However, shared state is not isolated, so, setting the parameters (msg) as
+                // script engine state and evaluating the filter directly would not work correctly.
+                // Instead, we wrap the filter in a function and call that function.
 
-        String jsFilter = "function matchesMessage(msg) { return " + messageFilter + "; }";
-        MessageFilter filter = new MessageFilter();
-        filter.jsEngine.eval(jsFilter);
+                String jsFilter = "function matchesMessage(msg) { return " + messageFilter + "; }";
+                filter.jsEngine = new ScriptEngineManager().getEngineByName("Nashorn");
+                filter.jsEngine.eval(jsFilter);
+            }
+
+            FILTERS.put(messageFilter, filter);
+        }
         return filter;
     }
 
@@ -65,6 +87,9 @@ public class MessageFilter {
      * @return if the message matches the message filter
      */
     public boolean matches(Message message) {
+        if (compiledFilter != null) {
+            return compiledFilter.test(message, null);
+        }
         try {
             Invocable filterFunction = (Invocable)jsEngine;
             return  (Boolean) filterFunction.invokeFunction("matchesMessage", message);
@@ -15,6 +15,7 @@
  */
 package org.niord.core.message;
 
+import org.hibernate.annotations.BatchSize;
 import org.niord.core.model.BaseEntity;
 import org.niord.core.model.IndexedEntity;
 import org.niord.model.DataFilter;
@@ -63,6 +64,7 @@ public class Attachment extends BaseEntity<Integer> implements ILocalizable<Atta
     String height;
 
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "entity", orphanRemoval = true)
+    @BatchSize(size = Message.BATCH_FETCH_SIZE)
     List<AttachmentDesc> descs = new ArrayList<>();
 
 
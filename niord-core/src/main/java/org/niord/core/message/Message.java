@@ -54,16 +54,44 @@ import java.util.stream.Stream;
 @NamedQueries({
         @NamedQuery(name="Message.findUpdateMessages",
                 query="SELECT msg FROM Message msg where msg.updated > :date order by msg.updated asc"),
+        @NamedQuery(name="Message.findLastUpdated",
+                query="SELECT max(msg.updated) FROM Message msg"),
+        @NamedQuery(name="Message.findAllIds",
+                query="SELECT msg.id FROM Message msg order by msg.id"),
         @NamedQuery(name="Message.findByUid",
                 query="SELECT msg FROM Message msg where msg.uid = :uid"),
         @NamedQuery(name="Message.findByUids",
                 query="SELECT msg FROM Message msg where msg.uid in (:uids)"),
         @NamedQuery(name="Message.findByIds",
                 query="SELECT msg FROM Message msg where msg.id in (:ids)"),
+        @NamedQuery(name="Message.fetchDescsByIds",
+                query="SELECT distinct msg FROM Message msg left join fetch msg.descs where msg.id in (:ids)"),
+        @NamedQuery(name="Message.fetchPartsByIds",
+                query="SELECT distinct msg FROM Message msg left join fetch msg.parts where msg.id in (:ids)"),
+        @NamedQuery(name="Message.fetchAreasByIds",
+                query="SELECT distinct msg FROM Message msg left join fetch msg.areas where msg.id in (:ids)"),
+        @NamedQuery(name="Message.fetchCategoriesByIds",
+                query="SELECT distinct msg FROM Message msg left join fetch msg.categories where msg.id in (:ids)"),
+        @NamedQuery(name="Message.fetchChartsByIds",
+                query="SELECT distinct msg FROM Message msg left join fetch msg.charts where msg.id in (:ids)"),
+        @NamedQuery(name="Message.fetchAttachmentsByIds",
+                query="SELECT distinct msg FROM Message msg left join fetch msg.attachments where msg.id in (:ids)"),
+        @NamedQuery(name="Message.fetchReferencesByIds",
+                query="SELECT distinct msg FROM Message msg left join fetch msg.references where msg.id in (:ids)"),
         @NamedQuery(name="Message.findByLegacyId",
                 query="SELECT msg FROM Message msg where msg.legacyId = :legacyId"),
         @NamedQuery(name="Message.findByShortId",
                 query="SELECT msg FROM Message msg where msg.shortId = :shortId"),
+        @NamedQuery(name="Message.findByShortIds",
+                query="SELECT msg FROM Message msg where msg.shortId in (:shortIds)"),
+        @NamedQuery(name="Message.findBySeriesAndLegacyIds",
+                query="SELECT msg FROM Message msg where msg.messageSeries.seriesId = :seriesId "
+                        + " and msg.status = :status and msg.legacyId in (:legacyIds)"),
+        @NamedQuery(name="Message.findRevisionsByIds",
+                query="SELECT msg.id, msg.uid, msg.updated, msg.version FROM Message msg where msg.id in (:ids)"),
+        @NamedQuery(name="Message.findTombstonesByIds",
+                query="SELECT msg.uid, msg.shortId, msg.status, msg.updated, msg.publishDateFrom "
+                        + " FROM Message msg where msg.id in (:ids)"),
         @NamedQuery(name="Message.findByMessageId",
                 query="select distinct msg from Message msg where lower(msg.uid) = :msgId "
                         + " or lower(msg.shortId) = :msgId"),
@@ -80,6 +108,9 @@ import java.util.stream.Stream;
 public class Message extends VersionedEntity<Integer> implements ILocalizable<MessageDesc> {
 
     public static String MESSAGE_REPO_FOLDER = "messages";
+
+    // The number of nested lazy collections to initialize in one go, when serializing a list of messages
+    public static final int BATCH_FETCH_SIZE = 100;
     public static final DataFilter MESSAGE_DETAILS_FILTER =
             DataFilter.get().fields("Message.details", "Message.geometry", "Area.parent", "Category.parent");
     public static final DataFilter MESSAGE_DETAILS_AND_PROMULGATIONS_FILTER =
@@ -771,6 +802,10 @@ public class Message extends VersionedEntity<Integer> implements ILocalizable<Me
         this.messageSeries = messageSeries;
     }
 
+    public Integer getYear() {
+        return year;
+    }
+
     public Integer getNumber() {
         return number;
     }
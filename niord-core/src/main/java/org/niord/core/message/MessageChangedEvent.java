@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.message;
+
+import org.niord.model.message.Status;
+
+/**
+ * CDI event fired by the {@code MessageService} whenever a message is created, updated or changes status.
+ * <p>
+ * Observers that should only react to committed changes, e.g. the message Lucene index,
+ * should observe the event with {@code during = TransactionPhase.AFTER_SUCCESS}.
+ */
+@SuppressWarnings("unused")
+public class MessageChangedEvent {
+
+    final String uid;
+    final Status status;
+    final long timestamp;
+
+    /** Constructor **/
+    public MessageChangedEvent(String uid, Status status) {
+        this.uid = uid;
+        this.status = status;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public String getUid() {
+        return uid;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.message;
+
+import org.apache.lucene.index.IndexWriter;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Represents an on-going rebuild of the message Lucene index.
+ * <p>
+ * The ID's of the messages to index are partitioned into ranges, which may be indexed concurrently
+ * into the shared index writer of the rebuild, see {@linkplain MessageLuceneIndex#indexPartitions(MessageIndexRebuild, List)}.
+ */
+@SuppressWarnings("unused")
+public class MessageIndexRebuild {
+
+    final Path folder;
+    final IndexWriter writer;
+    final Date lastUpdated;
+    final List<List<Integer>> partitions;
+    final int messageCount;
+    final long startTime = System.currentTimeMillis();
+    final AtomicInteger indexedPartitions = new AtomicInteger();
+    final AtomicInteger indexedMessages = new AtomicInteger();
+
+
+    /** Constructor **/
+    public MessageIndexRebuild(Path folder, IndexWriter writer, Date lastUpdated, List<Integer> ids, int partitionSize) {
+        this.folder = folder;
+        this.writer = writer;
+        this.lastUpdated = lastUpdated;
+        this.messageCount = ids.size();
+
+        List<List<Integer>> partitions = new ArrayList<>();
+        for (int x = 0; x < ids.size(); x += partitionSize) {
+            partitions.add(ids.subList(x, Math.min(ids.size(), x + partitionSize)));
+        }
+        this.partitions = Collections.unmodifiableList(partitions);
+    }
+
+
+    /**
+     * Registers that a partition has been indexed
+     * @param messages the number of messages of the partition actually added to the index
+     */
+    void partitionIndexed(int messages) {
+        indexedMessages.addAndGet(messages);
+        indexedPartitions.incrementAndGet();
+    }
+
+
+    /** Returns if all partitions have been indexed **/
+    public boolean isComplete() {
+        return indexedPartitions.get() >= partitions.size();
+    }
+
+
+    /** Returns the progress of the rebuild in percent **/
+    public int getProgress() {
+        return partitions.isEmpty() ? 100 : 100 * indexedPartitions.get() / partitions.size();
+    }
+
+
+    /** Returns the number of indexed messages per second **/
+    public double getMessagesPerSecond() {
+        long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+        return 1000.0 * indexedMessages.get() / elapsed;
+    }
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public Path getFolder() {
+        return folder;
+    }
+
+    public IndexWriter getWriter() {
+        return writer;
+    }
+
+    public Date getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public List<List<Integer>> getPartitions() {
+        return partitions;
+    }
+
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public int getIndexedPartitions() {
+        return indexedPartitions.get();
+    }
+
+    public int getIndexedMessages() {
+        return indexedMessages.get();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.message;
+
+import org.infinispan.configuration.cache.CacheMode;
+import org.infinispan.configuration.cache.Configuration;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.util.concurrent.IsolationLevel;
+import org.niord.core.area.Area;
+import org.niord.core.cache.BaseCache;
+import org.niord.core.category.Category;
+import org.niord.core.service.TreeChangedEvent;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import java.util.Date;
+
+/**
+ * Caches the serialized JSON representation of messages.
+ * <p>
+ * The cache keys are composed of the message revision, i.e. the UID, last update and version of the message,
+ * and a variant, which must identify all parameters that affect the JSON representation, such as the
+ * language, data filter and date format. Hence, a cached representation can only be looked up for the
+ * current revision of a message. The entries of previous revisions are never looked up again, and are
+ * not evicted explicitly, but left to expire or to be evicted when the cache is full.
+ * <p>
+ * The JSON also includes data not owned by the message, e.g. area and category names. Hence, the cache
+ * is cleared whenever the area or category tree has been changed, and the entries are given a limited
+ * lifespan to bound the staleness of any other such data.
+ */
+@ApplicationScoped
+public class MessageJsonCache extends BaseCache<String, String> {
+
+    final static long LIFESPAN = 60 * 60 * 1000; // 1 hour
+    final static long MAX_ENTRIES = 10000;
+    final static String CACHE_ID = "messageJsonCache";
+
+    /** {@inheritDoc} */
+    @Override
+    public String getCacheId() {
+        return CACHE_ID;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Configuration createCacheConfiguration() {
+        return new ConfigurationBuilder()
+                .clustering().cacheMode(CacheMode.LOCAL)
+                .locking().isolationLevel(IsolationLevel.REPEATABLE_READ)
+                .memory().maxCount(MAX_ENTRIES)
+                .expiration().lifespan(LIFESPAN)
+                .build();
+    }
+
+
+    /**
+     * Clears the cache when the area or category tree has been changed,
+     * since the cached JSON embeds e.g. the area and category names
+     *
+     * @param event the tree change event
+     */
+    void onTreeChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) TreeChangedEvent event) {
+        if (event.concerns(Area.class) || event.concerns(Category.class)) {
+            clearCache();
+        }
+    }
+
+
+    /**
+     * Returns the revision key of a message
+     *
+     * @param uid the message UID
+     * @param updated the last update of the message
+     * @param version the version of the message
+     * @return the revision key of the message
+     */
+    public static String revisionKey(String uid, Date updated, int version) {
+        return uid + "@" + (updated != null ? updated.getTime() : 0L) + "." + version;
+    }
+
+
+    /**
+     * Returns the cached JSON for the given message revision and variant, or null if not cached
+     *
+     * @param revision the message revision key, as computed by {@linkplain #revisionKey(String, Date, int)}
+     * @param variant the variant of the JSON representation
+     * @return the cached JSON or null if not cached
+     */
+    public String getJson(String revision, String variant) {
+        return getCache().get(revision + "|" + variant);
+    }
+
+
+    /**
+     * Caches the JSON for the given message revision and variant
+     *
+     * @param revision the message revision key, as computed by {@linkplain #revisionKey(String, Date, int)}
+     * @param variant the variant of the JSON representation
+     * @param json the JSON to cache
+     */
+    public void putJson(String revision, String variant, String json) {
+        getCache().put(revision + "|" + variant, json);
+    }
+}
@@ -20,23 +20,33 @@ import static org.niord.core.settings.Setting.Type.Boolean;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.StringField;
-import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
@@ -45,23 +55,40 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.queryparser.complexPhrase.ComplexPhraseQueryParser;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldExistsQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.hibernate.Session;
 import org.niord.core.NiordApp;
 import org.niord.core.area.Area;
 import org.niord.core.area.AreaDesc;
 import org.niord.core.category.Category;
 import org.niord.core.category.CategoryDesc;
+import org.niord.core.geojson.LuceneShapeConverter;
+import org.niord.core.message.MessageSearchParams.DateType;
+import org.niord.core.message.vo.MessageIndexStatusVo;
 import org.niord.core.service.BaseService;
+import org.niord.core.settings.Setting.Type;
 import org.niord.core.settings.annotation.Setting;
 import org.niord.core.util.LuceneUtils;
 import org.niord.core.util.TextUtils;
 import org.niord.model.message.Status;
+import org.niord.model.search.PagedSearchParamsVo.SortOrder;
+import org.niord.model.search.PagedSearchResultVo;
 import org.slf4j.Logger;
 
 import dev.turingcomplete.quarkussimplifiedasync.core.Async;
@@ -73,14 +100,23 @@ import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.control.ActivateRequestContext;
 import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 
 /**
  * A Lucene index used for free-text searching all messages.
  * <p>
- * The index will initially index all messages, and subsequently check every minute
- * for changed message to add or update in the index.
+ * The index will initially index all messages. Subsequently, messages are re-indexed in near-real-time
+ * when a {@linkplain MessageChangedEvent} is committed, using a long-lived index writer and a
+ * near-real-time {@code SearcherManager}. As a fallback, the index is reconciled every minute
+ * with the messages changed since the last committed update.
+ * <p>
+ * The index is persistent across restarts. On start-up, the existing index is validated against the
+ * committed last-update high-water mark and index format version, and only the messages changed since
+ * the high-water mark are re-indexed. If the index format has changed, the index is rebuilt in the
+ * background into a side directory, which replaces the current index once complete. The rebuild partitions
+ * the message ID's into ranges, which are loaded and indexed concurrently by a pool of worker threads.
  * <p>
  * Note to self: Using "Hibernate Search" for message (as for AtoNs), was ruled out because it would
  * be too complex to index all related entities by language.
@@ -93,9 +129,18 @@ public class MessageLuceneIndex extends BaseService {
     final static String LUCENE_ID_FIELD             = "id";
     final static String LUCENE_SEARCH_FIELD         = "message";
     final static String LUCENE_LAST_UPDATE          = "lastUpdate";
+    final static String LUCENE_INDEX_VERSION        = "indexVersion";
+    final static String LUCENE_STATUS_FIELD         = "status";
+    final static String LUCENE_MAIN_TYPE_FIELD      = "mainType";
+    final static String LUCENE_TYPE_FIELD           = "type";
+    final static String LUCENE_SERIES_FIELD         = "series";
+    final static String LUCENE_SORT_ID_FIELD        = "sortId";
+    final static String LUCENE_GEOMETRY_FIELD       = "geometry";
+    final static String CURRENT_INDEX_VERSION       = "3";
     final static int LUCENE_MAX_INDEX_COUNT         = 5000;
     final static int LUCENE_OPTIMIZE_INDEX_COUNT    = 5000;
     final static int LUCENE_MAX_NUM_SEGMENTS        = 4;
+    final static int LUCENE_REBUILD_PARTITION_SIZE  = 250;
 
     @Inject
     @Setting(value="messageIndexPath", defaultValue="${niord.home}/message-index",
@@ -103,8 +148,8 @@ public class MessageLuceneIndex extends BaseService {
     Path indexFolder;
 
     @Inject
-    @Setting(value = "messageIndexDeleteOnStartup", defaultValue = "true", type = Boolean,
-            description = "Whether the message lucene index is re-created for each restart or not")
+    @Setting(value = "messageIndexDeleteOnStartup", defaultValue = "false", type = Boolean,
+            description = "Whether the message lucene index is re-created for each restart or updated incrementally")
     Boolean deleteOnStartup;
 
     @Inject
@@ -112,6 +157,14 @@ public class MessageLuceneIndex extends BaseService {
             description = "Whether the message lucene index should include deleted messages or not")
     Boolean includeDeletedMessages;
 
+    @Inject
+    @Setting(value = "messageIndexRebuildThreads", defaultValue = "0", type = Type.Integer,
+            description = "Number of threads used for rebuilding the message lucene index. A non-positive value means one per CPU core")
+    Integer rebuildThreads;
+
+    @Inject
+    ManagedExecutor managedExecutor;
+
     @Inject
     Logger log;
 
@@ -122,16 +175,34 @@ public class MessageLuceneIndex extends BaseService {
     NiordApp app;
 
 
-    DirectoryReader reader;
+    IndexWriter writer;
+    SearcherManager searcherManager;
     int optimizeIndexCount = 0;
     boolean allMessagesIndexed;
+    volatile MessageIndexRebuild currentRebuild;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
     private final ReentrantLock lock = new ReentrantLock();
 
+    // UIDs of committed, changed messages pending indexing, along with the time of the change
+    private final Map<String, Long> pendingMessages = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final AtomicLong indexedMessages = new AtomicLong();
+    private final AtomicLong reopenCount = new AtomicLong();
+    private final AtomicLong totalReopenTime = new AtomicLong();
+    private volatile long lastIndexingLag;
+    private volatile long maxIndexingLag;
+    private volatile long lastReopenTime;
+    private volatile long maxReopenTime;
+
 
     /**
      * Initialize the index
      */
     private void init(@Observes StartupEvent ev) {
+        // Clean up after an interrupted index rebuild
+        cleanUpRebuild();
+
         // Create the lucene index directory
         if (!Files.exists(indexFolder)) {
             try {
@@ -155,19 +226,75 @@ public class MessageLuceneIndex extends BaseService {
                 new TimerTask() {
                     @Override
                     public void run() {
-                        updateLuceneIndex();
+                        startIndex();
                     }
                 },
                 5000
         );
     }
 
+
+    /**
+     * Validates the existing index and brings it up-to-date.
+     * <ul>
+     *     <li>If the index has an outdated format, it is rebuilt into a side directory.</li>
+     *     <li>If the last-update high-water mark of the index is inconsistent with the database,
+     *         the index is cleared and re-indexed.</li>
+     *     <li>Otherwise, only the messages changed since the high-water mark are re-indexed.</li>
+     * </ul>
+     */
+    @ActivateRequestContext
+    void startIndex() {
+        if (!isIndexFormatCurrent()) {
+            log.info("Message index has an outdated format and will be rebuilt");
+            rebuildIndex();
+            return;
+        }
+
+        if (!isIndexConsistent()) {
+            try {
+                deleteIndex();
+            } catch (IOException e) {
+                log.error("Failed clearing inconsistent message index", e);
+            }
+        }
+        updateLuceneIndex();
+    }
+
+
+    /**
+     * Checks that the last-update high-water mark of the index is consistent with the database,
+     * i.e. that it is defined for a non-empty index and not later than the last message update.
+     * @return if the index is consistent with the database
+     */
+    private boolean isIndexConsistent() {
+        try {
+            Date lastUpdated = getLastUpdated();
+            Date dbLastUpdated = em.createNamedQuery("Message.findLastUpdated", Date.class)
+                    .getSingleResult();
+
+            if (lastUpdated.getTime() == 0 && getWriter().getDocStats().numDocs > 0) {
+                log.warn("Message index has no last-update high-water mark");
+                return false;
+            } else if (dbLastUpdated != null && lastUpdated.after(dbLastUpdated)) {
+                log.warn("Message index last updated " + lastUpdated + " after last message update " + dbLastUpdated);
+                return false;
+            }
+            log.info("Message index validated, lastUpdated is " + lastUpdated);
+            return true;
+        } catch (Exception e) {
+            log.error("Error validating message index", e);
+            return false;
+        }
+    }
+
     /**
      * Clean up Lucene index
      */
     @PreDestroy
     private void closeIndex() {
-        closeReader();
+        closeSearcherManager();
+        closeWriter();
     }
 
 
@@ -190,6 +317,104 @@ public class MessageLuceneIndex extends BaseService {
     }
 
 
+    /**
+     * Called when a message has been created, updated or changed status, and the transaction has been committed.
+     * The message is queued for near-real-time indexing.
+     *
+     * @param event the message changed event
+     */
+    void onMessageChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) MessageChangedEvent event) {
+        pendingMessages.putIfAbsent(event.getUid(), event.getTimestamp());
+    }
+
+
+    /**
+     * Indexes the messages queued by {@linkplain #onMessageChanged(MessageChangedEvent)} and re-opens
+     * the near-real-time searcher, so that the changes are visible to searches within the configured latency.
+     * <p>
+     * The changes are not committed to the index here. The commit takes place in the periodic reconciliation,
+     * which also picks up any changes lost in case of a restart.
+     */
+    @Transactional
+    @Scheduled(every = "${niord.message-index.refresh-interval:1s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    @ActivateRequestContext
+    void indexPendingMessages() {
+        // If a full update is in progress, try again later
+        if (pendingMessages.isEmpty() || !lock.tryLock()) {
+            return;
+        }
+
+        Map<String, Long> pending = new HashMap<>();
+        try {
+            for (String uid : new ArrayList<>(pendingMessages.keySet())) {
+                Long timestamp = pendingMessages.remove(uid);
+                if (timestamp != null) {
+                    pending.put(uid, timestamp);
+                }
+            }
+
+            List<Message> messages = em.createNamedQuery("Message.findByUids", Message.class)
+                    .setParameter("uids", pending.keySet())
+                    .getResultList();
+
+            IndexWriter writer = getWriter();
+            for (Message message : messages) {
+                indexMessage(writer, message);
+            }
+            refreshSearcher();
+
+            // Update the metrics
+            long now = System.currentTimeMillis();
+            indexedMessages.addAndGet(messages.size());
+            pending.values().forEach(t -> {
+                lastIndexingLag = now - t;
+                maxIndexingLag = Math.max(maxIndexingLag, lastIndexingLag);
+            });
+            log.debug("Indexed " + messages.size() + " changed messages, lag " + lastIndexingLag + " ms");
+
+        } catch (Exception ex) {
+            log.error("Error indexing changed messages: " + ex.getMessage(), ex);
+            // Re-queue the messages
+            pending.forEach(pendingMessages::putIfAbsent);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Returns the status and performance metrics of the index
+     * @return the status and performance metrics of the index
+     */
+    public MessageIndexStatusVo getIndexStatus() {
+        MessageIndexStatusVo status = new MessageIndexStatusVo();
+        status.setAllMessagesIndexed(allMessagesIndexed);
+        status.setRebuilding(rebuilding.get());
+        status.setIndexFormatCurrent(isIndexFormatCurrent());
+        status.setPendingMessages(pendingMessages.size());
+        status.setLastUpdated(getLastUpdated());
+        status.setIndexedMessages(indexedMessages.get());
+        status.setLastIndexingLag(lastIndexingLag);
+        status.setMaxIndexingLag(maxIndexingLag);
+        status.setReopenCount(reopenCount.get());
+        status.setLastReopenTime(lastReopenTime);
+        status.setMaxReopenTime(maxReopenTime);
+        status.setAverageReopenTime(reopenCount.get() == 0 ? 0 : totalReopenTime.get() / reopenCount.get());
+        try {
+            SearcherManager searcherManager = getSearcherManager();
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                status.setDocumentCount(searcher.getIndexReader().numDocs());
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            log.debug("Could not get the document count of the index");
+        }
+        return status;
+    }
+
+
     /**
      * Returns the analyzer to use.
      * <p>
@@ -224,26 +449,6 @@ public class MessageLuceneIndex extends BaseService {
     }
 
 
-    /**
-     * Returns the list of messages updated since the given date
-     * @param fromDate the date after which to look for changed messages
-     * @param maxCount the max number of messages to return
-     * @return the updated messages
-     */
-    private List<Message> findUpdatedMessages(Date fromDate, int maxCount) {
-
-        List<Message> messages = messageService.findUpdatedMessages(fromDate, maxCount);
-
-        // The first time less that the maximum number of messages are found,
-        // we flag that the indexing is complete
-        if (messages.size() < maxCount) {
-            allMessagesIndexed = true;
-        }
-
-        return messages;
-    }
-
-
     /**
      * Adds the given message to the given document
      *
@@ -329,90 +534,97 @@ public class MessageLuceneIndex extends BaseService {
                     addPhraseSearchField(doc, searchField, desc.getCaption());
                 }
             });
+        }
+    }
 
 
-            // TODO
-            // Add geometry
-            //if (message.getGeometry() != null) {
-            //}
+    /**
+     * Returns the shared Lucene writer, or creates one if none is defined
+     * @return the shared index writer
+     */
+    private synchronized IndexWriter getWriter() throws IOException {
+        if (writer == null || !writer.isOpen()) {
+            // Add new documents to an existing index:
+            writer = openWriter(indexFolder, OpenMode.CREATE_OR_APPEND);
         }
+        return writer;
     }
 
 
     /**
-     * Creates and returns a Lucene writer
+     * Opens a new Lucene writer for the given index folder
+     * @param folder the index folder
+     * @param openMode the open mode
+     * @return the new index writer
      */
-    private IndexWriter getNewWriter() throws IOException {
-
+    private IndexWriter openWriter(Path folder, OpenMode openMode) throws IOException {
         IndexWriterConfig iwc = new IndexWriterConfig(getAnalyzer());
-        // Add new documents to an existing index:
-        iwc.setOpenMode(OpenMode.CREATE_OR_APPEND);
+        iwc.setOpenMode(openMode);
 
         try {
-            Directory dir = FSDirectory.open(indexFolder);
+            Directory dir = FSDirectory.open(folder);
             return new IndexWriter(dir, iwc);
         } catch (IOException ex) {
-            log.error("Failed to create message Lucene Index in folder " + indexFolder, ex);
+            log.error("Failed to create message Lucene Index in folder " + folder, ex);
             throw ex;
         }
     }
 
 
     /**
-     * Returns the cached index reader, or creates one if none is defined
-     * @return the shared index reader
+     * Returns the shared near-real-time searcher manager, or creates one if none is defined
+     * @return the shared searcher manager
      */
-    private DirectoryReader getIndexReader() throws IOException {
-        if (reader == null) {
-           try {
-                reader = DirectoryReader.open(FSDirectory.open(indexFolder));
-            } catch (IOException ex) {
-                log.error("Failed to open Lucene Index in folder " + indexFolder);
-                throw ex;
-            }
+    private synchronized SearcherManager getSearcherManager() throws IOException {
+        if (searcherManager == null) {
+            searcherManager = new SearcherManager(getWriter(), null);
         }
-        return reader;
+        return searcherManager;
     }
 
 
     /**
-     * Closes the given writer
-     * @param writer the writer to close
+     * Closes the shared writer
      */
-    private void closeWriter(IndexWriter writer) {
+    private synchronized void closeWriter() {
         if (writer != null) {
             try {
                 writer.close();
             } catch (IOException e) {
                 log.warn("Error closing writer");
             }
+            writer = null;
         }
     }
 
 
     /**
-     * Closes the current reader
+     * Closes the shared searcher manager
      */
-    private void closeReader() {
-        if (reader != null) {
+    private synchronized void closeSearcherManager() {
+        if (searcherManager != null) {
             try {
-                reader.close();
+                searcherManager.close();
             } catch (IOException e) {
-                log.warn("Error closing reader");
+                log.warn("Error closing searcher manager");
             }
-            reader = null;
+            searcherManager = null;
         }
     }
 
 
     /**
-     * Refreshes the current reader from the given writer
-     *
-     * @param writer the index writer
+     * Re-opens the near-real-time searcher, so that changes made by the writer become visible to searches
      */
-    private void refreshReader(IndexWriter writer) throws IOException {
-        closeReader();
-        reader = DirectoryReader.open(writer, true, true);
+    private void refreshSearcher() throws IOException {
+        long t0 = System.currentTimeMillis();
+        getSearcherManager().maybeRefreshBlocking();
+
+        long reopenTime = System.currentTimeMillis() - t0;
+        reopenCount.incrementAndGet();
+        totalReopenTime.addAndGet(reopenTime);
+        lastReopenTime = reopenTime;
+        maxReopenTime = Math.max(maxReopenTime, reopenTime);
     }
 
 
@@ -427,37 +639,285 @@ public class MessageLuceneIndex extends BaseService {
 
 
     /**
-     * Call this to re-index the message index completely
+     * Call this to re-index the message index completely.
+     * The index is rebuilt in the background and replaces the current index once complete.
      */
     public int recreateIndex() throws IOException {
-        lock.lock();
+        return rebuildIndex();
+    }
+
+
+    /**
+     * Rebuilds the index into a side directory using a pool of worker threads, and replaces the current
+     * index with the new index once complete.
+     * The current index remains in use for searching and incremental updates during the rebuild.
+     * <p>
+     * The "message-index-rebuild" batch job performs the same steps, but reports progress
+     * via the batch job status.
+     *
+     * @return the number of indexed messages
+     */
+    public int rebuildIndex() {
+        MessageIndexRebuild rebuild = null;
         try {
-            // delete the old index
-            deleteIndex();
+            rebuild = startRebuild();
+            indexPartitions(rebuild, rebuild.getPartitions());
+            completeRebuild(rebuild);
+            return rebuild.getIndexedMessages();
+        } catch (Exception ex) {
+            log.error("Error rebuilding message index: " + ex.getMessage(), ex);
+            abortRebuild(rebuild);
+            return 0;
+        }
+    }
 
-            // Update all messages
-            return updateLuceneIndex(Integer.MAX_VALUE);
 
-        } finally {
-            lock.unlock();
+    /**
+     * Starts rebuilding the index into a side directory. The ID's of all messages are partitioned
+     * into ranges of {@code LUCENE_REBUILD_PARTITION_SIZE} messages.
+     * <p>
+     * Only one rebuild may be in progress at a time.
+     *
+     * @return the new rebuild
+     */
+    @Transactional
+    @ActivateRequestContext
+    public MessageIndexRebuild startRebuild() throws IOException {
+        if (!rebuilding.compareAndSet(false, true)) {
+            throw new IllegalStateException("A message index rebuild is already in progress");
+        }
+
+        try {
+            Path rebuildFolder = siblingFolder("rebuild");
+            FileUtils.deleteDirectory(rebuildFolder.toFile());
+
+            // Messages changed after the high-water mark are indexed incrementally, once the rebuilt index is in use
+            Date lastUpdated = em.createNamedQuery("Message.findLastUpdated", Date.class)
+                    .getSingleResult();
+            List<Integer> ids = em.createNamedQuery("Message.findAllIds", Integer.class)
+                    .getResultList();
+
+            currentRebuild = new MessageIndexRebuild(
+                    rebuildFolder,
+                    openWriter(rebuildFolder, OpenMode.CREATE),
+                    new Date(lastUpdated != null ? lastUpdated.getTime() : 0),
+                    ids,
+                    LUCENE_REBUILD_PARTITION_SIZE);
+
+            log.info(String.format("Rebuilding message index with %d messages in %d partitions",
+                    ids.size(), currentRebuild.getPartitions().size()));
+            return currentRebuild;
+
+        } catch (IOException | RuntimeException ex) {
+            rebuilding.set(false);
+            throw ex;
         }
     }
 
 
     /**
-     * Deletes the current index
+     * Indexes the given partitions of the rebuild concurrently into the shared index writer
+     * of the rebuild. Each worker thread loads and indexes one partition at a time, in a separate
+     * read-only transaction.
+     *
+     * @param rebuild the rebuild
+     * @param partitions the partitions of message ID's to index
+     * @return the number of indexed messages
      */
-    private void deleteIndex() throws IOException {
-        // Delete the index
-        IndexWriter writer = null;
+    public int indexPartitions(MessageIndexRebuild rebuild, List<List<Integer>> partitions) {
+        if (rebuild == null || rebuild != currentRebuild) {
+            throw new IllegalStateException("Message index rebuild not in progress");
+        }
+
+        Queue<List<Integer>> queue = new ConcurrentLinkedQueue<>(partitions);
+        int threads = Math.min(
+                partitions.size(),
+                rebuildThreads > 0 ? rebuildThreads : Runtime.getRuntime().availableProcessors());
+
+        List<CompletableFuture<Integer>> workers = new ArrayList<>();
+        for (int x = 0; x < threads; x++) {
+            workers.add(managedExecutor.supplyAsync(() -> {
+                int count = 0;
+                for (List<Integer> ids = queue.poll(); ids != null; ids = queue.poll()) {
+                    count += indexPartition(rebuild, ids);
+                }
+                return count;
+            }));
+        }
+
+        // Wait for all workers to complete. Fails if any of the workers has failed
+        return workers.stream()
+                .mapToInt(CompletableFuture::join)
+                .sum();
+    }
+
+
+    /**
+     * Loads and indexes the given partition of messages into the index being rebuilt
+     *
+     * @param rebuild the current rebuild
+     * @param ids the message ID's of the partition
+     * @return the number of indexed messages
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    @ActivateRequestContext
+    int indexPartition(MessageIndexRebuild rebuild, List<Integer> ids) {
+        // The messages are only read, so skip dirty-checking
+        em.unwrap(Session.class).setDefaultReadOnly(true);
+
+        int count = 0;
+        for (Message message : messageService.getMessages(ids)) {
+            if (shouldAddMessage(message)) {
+                addMessageToIndex(rebuild.getWriter(), message);
+                count++;
+            }
+        }
+        rebuild.partitionIndexed(count);
+        return count;
+    }
+
+
+    /**
+     * Completes the rebuild, if all partitions have been indexed, by committing the rebuilt
+     * index and replacing the current index with it. Otherwise, the rebuild is aborted.
+     *
+     * @param rebuild the rebuild
+     * @return if the rebuilt index replaced the current index
+     */
+    public boolean completeRebuild(MessageIndexRebuild rebuild) throws IOException {
+        if (rebuild == null || rebuild != currentRebuild) {
+            return false;
+        } else if (!rebuild.isComplete()) {
+            abortRebuild(rebuild);
+            return false;
+        }
+
         try {
-            writer = getNewWriter();
-            writer.deleteAll();
-            writer.setLiveCommitData(new HashMap<String, String>().entrySet());
-            writer.commit();
+            IndexWriter rebuildWriter = rebuild.getWriter();
+            setLastUpdated(rebuild.getLastUpdated(), rebuildWriter);
+            rebuildWriter.forceMerge(LUCENE_MAX_NUM_SEGMENTS);
+            rebuildWriter.commit();
+            rebuildWriter.close();
+
+            // Swap the rebuilt index with the current index
+            lock.lock();
+            try {
+                swapIndex(rebuild.getFolder());
+            } finally {
+                lock.unlock();
+            }
+            allMessagesIndexed = true;
+
+            log.info(String.format("Rebuilt message index with %d messages in %d ms (%.1f messages/s)",
+                    rebuild.getIndexedMessages(),
+                    System.currentTimeMillis() - rebuild.getStartTime(),
+                    rebuild.getMessagesPerSecond()));
+            return true;
+
         } finally {
-            closeWriter(writer);
+            currentRebuild = null;
+            rebuilding.set(false);
+        }
+    }
+
+
+    /**
+     * Aborts the rebuild and deletes the partially rebuilt index
+     *
+     * @param rebuild the rebuild
+     */
+    public void abortRebuild(MessageIndexRebuild rebuild) {
+        if (rebuild == null || rebuild != currentRebuild) {
+            return;
+        }
+
+        try {
+            // Discards the changes and closes the writer
+            rebuild.getWriter().rollback();
+        } catch (IOException e) {
+            log.warn("Error closing rebuild index writer");
+        }
+        FileUtils.deleteQuietly(rebuild.getFolder().toFile());
+        log.warn("Aborted message index rebuild");
+
+        currentRebuild = null;
+        rebuilding.set(false);
+    }
+
+
+    /**
+     * Returns the current rebuild, or null if no rebuild is in progress
+     * @return the current rebuild
+     */
+    public MessageIndexRebuild getCurrentRebuild() {
+        return currentRebuild;
+    }
+
+
+    /**
+     * Replaces the current index with the rebuilt index.
+     * <p>
+     * Searchers that have already been acquired keep using the old index until released.
+     *
+     * @param rebuildFolder the folder of the rebuilt index
+     */
+    private synchronized void swapIndex(Path rebuildFolder) throws IOException {
+        Path oldFolder = siblingFolder("old");
+
+        closeSearcherManager();
+        closeWriter();
+
+        FileUtils.deleteDirectory(oldFolder.toFile());
+        Files.move(indexFolder, oldFolder, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(rebuildFolder, indexFolder, StandardCopyOption.ATOMIC_MOVE);
+        FileUtils.deleteDirectory(oldFolder.toFile());
+
+        // Re-open the writer and searcher on the new index
+        getSearcherManager();
+    }
+
+
+    /**
+     * Cleans up after an interrupted index rebuild. If the rebuild was interrupted during the
+     * index swap, the old index is restored.
+     */
+    private void cleanUpRebuild() {
+        Path rebuildFolder = siblingFolder("rebuild");
+        Path oldFolder = siblingFolder("old");
+        try {
+            if (!Files.exists(indexFolder) && Files.exists(oldFolder)) {
+                Files.move(oldFolder, indexFolder, StandardCopyOption.ATOMIC_MOVE);
+            }
+            FileUtils.deleteDirectory(rebuildFolder.toFile());
+            FileUtils.deleteDirectory(oldFolder.toFile());
+        } catch (IOException e) {
+            log.error("Error cleaning up after message index rebuild", e);
         }
+    }
+
+
+    /**
+     * Returns a folder next to the index folder, with the given suffix
+     * @param suffix the suffix
+     * @return the sibling folder
+     */
+    private Path siblingFolder(String suffix) {
+        return indexFolder.resolveSibling(indexFolder.getFileName() + "-" + suffix);
+    }
+
+
+    /**
+     * Deletes the current index
+     */
+    private void deleteIndex() throws IOException {
+        // Delete the index, but keep the index format version
+        IndexWriter writer = getWriter();
+        writer.deleteAll();
+        Map<String,String> userData = new HashMap<>();
+        userData.put(LUCENE_INDEX_VERSION, CURRENT_INDEX_VERSION);
+        writer.setLiveCommitData(userData.entrySet());
+        writer.commit();
+        refreshSearcher();
         log.info(String.format("Lucene index deleted, lastUpdated is %s", getLastUpdated().toString()));
 
     }
@@ -469,17 +929,61 @@ public class MessageLuceneIndex extends BaseService {
      */
     private Date getLastUpdated() {
         try {
-            DirectoryReader reader = getIndexReader();
-            if (reader.getIndexCommit().getUserData().containsKey(LUCENE_LAST_UPDATE)) {
-                return new Date(Long.valueOf(reader.getIndexCommit().getUserData().get(LUCENE_LAST_UPDATE)));
-            }
-        } catch (Exception e) {
-            log.debug("Could not get last-updated flag from index reader");
+            return getLastUpdated(getWriter());
+        } catch (IOException e) {
+            log.debug("Could not get last-updated flag from index writer");
         }
         return new Date(0);
     }
 
 
+    /**
+     * Returns the last updated time of the given index writer
+     * @param writer the index writer
+     * @return the last updated time
+     */
+    private Date getLastUpdated(IndexWriter writer) {
+        String lastUpdated = getCommitData(writer, LUCENE_LAST_UPDATE);
+        return lastUpdated != null ? new Date(Long.valueOf(lastUpdated)) : new Date(0);
+    }
+
+
+    /**
+     * Returns if the index has been built using the current index format.
+     * <p>
+     * The fields used for filtering and sorting are only available in the current index format.
+     *
+     * @return if the index has been built using the current index format
+     */
+    public boolean isIndexFormatCurrent() {
+        try {
+            return CURRENT_INDEX_VERSION.equals(getCommitData(getWriter(), LUCENE_INDEX_VERSION));
+        } catch (IOException e) {
+            log.debug("Could not get index version from index writer");
+        }
+        return false;
+    }
+
+
+    /**
+     * Returns the value of the given key from the live commit data of the index writer
+     * @param writer the index writer
+     * @param key the key
+     * @return the value or null if undefined
+     */
+    private String getCommitData(IndexWriter writer, String key) {
+        Iterable<Map.Entry<String, String>> userData = writer.getLiveCommitData();
+        if (userData != null) {
+            for (Map.Entry<String, String> entry : userData) {
+                if (key.equals(entry.getKey())) {
+                    return entry.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+
     /**
      * Sets the last updated time
      * @param date the last updated time
@@ -487,6 +991,7 @@ public class MessageLuceneIndex extends BaseService {
     private void setLastUpdated(Date date, IndexWriter writer) {
         Map<String,String> userData = new HashMap<>();
         userData.put(LUCENE_LAST_UPDATE, String.valueOf(date.getTime()));
+        userData.put(LUCENE_INDEX_VERSION, CURRENT_INDEX_VERSION);
         writer.setLiveCommitData(userData.entrySet());
     }
 
@@ -499,61 +1004,82 @@ public class MessageLuceneIndex extends BaseService {
      */
     private int updateLuceneIndex(int maxIndexCount) {
 
-        Date lastUpdated = getLastUpdated();
-
         long t0 = System.currentTimeMillis();
-        log.debug(String.format("Indexing at most %d changed messages since %s", maxIndexCount, lastUpdated));
 
-        IndexWriter writer = null;
         try {
-            // Find all messages changed since the lastUpdated time stamp
-            List<Message> updatedMessages = findUpdatedMessages(lastUpdated, maxIndexCount);
-            log.debug(String.format("Found %d messages to index", updatedMessages.size()));
-            if (updatedMessages.size() == 0) {
-                return 0;
-            }
+            // Get the shared index writer
+            IndexWriter writer = getWriter();
 
+            int updates = indexUpdatedMessages(writer, maxIndexCount);
 
-            // Create a new index writer
-            writer = getNewWriter();
-
-            // Update the index with the changes
-            for (Message message : updatedMessages) {
-                indexMessage(writer, message);
-                if (message.getUpdated().after(lastUpdated)) {
-                    lastUpdated = message.getUpdated();
-                }
+            // The first time less that the maximum number of messages are found,
+            // we flag that the indexing is complete
+            if (updates < maxIndexCount) {
+                allMessagesIndexed = true;
+            }
+            if (updates == 0) {
+                return 0;
             }
 
-            // Update the last-updated flag
-            setLastUpdated(lastUpdated, writer);
-
-            // Commit the changes
-            writer.commit();
-
-            // Re-open the reader from the writer
-            refreshReader(writer);
+            // Re-open the near-real-time searcher
+            refreshSearcher();
 
             // Check if we need to optimize the index
-            optimizeIndexCount += updatedMessages.size();
+            optimizeIndexCount += updates;
             if (optimizeIndexCount > LUCENE_OPTIMIZE_INDEX_COUNT) {
                 writer.forceMerge(LUCENE_MAX_NUM_SEGMENTS);
                 optimizeIndexCount = 0;
             }
 
-            log.info("Indexed " + updatedMessages.size() + " messages in "
+            log.info("Indexed " + updates + " messages in "
                     + (System.currentTimeMillis() - t0) + " ms");
 
-            return updatedMessages.size();
+            return updates;
         } catch (Exception ex) {
             log.error("Error updating Lucene index: " + ex.getMessage(), ex);
             return 0;
-        } finally {
-            closeWriter(writer);
         }
     }
 
 
+    /**
+     * Indexes the messages changed since the last-updated time of the given index writer,
+     * and commits the changes along with the new last-updated time
+     *
+     * @param writer the index writer
+     * @param maxIndexCount max number of messages to index at a time
+     * @return the number of updates
+     */
+    private int indexUpdatedMessages(IndexWriter writer, int maxIndexCount) throws IOException {
+
+        Date lastUpdated = getLastUpdated(writer);
+        log.debug(String.format("Indexing at most %d changed messages since %s", maxIndexCount, lastUpdated));
+
+        // Find all messages changed since the lastUpdated time stamp
+        List<Message> updatedMessages = messageService.findUpdatedMessages(lastUpdated, maxIndexCount);
+        log.debug(String.format("Found %d messages to index", updatedMessages.size()));
+        if (updatedMessages.size() == 0) {
+            return 0;
+        }
+
+        // Update the index with the changes
+        for (Message message : updatedMessages) {
+            indexMessage(writer, message);
+            if (message.getUpdated().after(lastUpdated)) {
+                lastUpdated = message.getUpdated();
+            }
+        }
+
+        // Update the last-updated flag
+        setLastUpdated(lastUpdated, writer);
+
+        // Commit the changes
+        writer.commit();
+
+        return updatedMessages.size();
+    }
+
+
     /**
      * Indexes the given message by deleting and adding the document
      *
@@ -612,6 +1138,9 @@ public class MessageLuceneIndex extends BaseService {
         // Add the message specific fields
         addMessageToDocument(doc, message);
 
+        // Add the fields used for filtering and sorting
+        addFilterFieldsToDocument(doc, message);
+
         // Add the document to the index
         try {
             writer.addDocument(doc);
@@ -620,6 +1149,69 @@ public class MessageLuceneIndex extends BaseService {
         }
     }
 
+    /**
+     * Adds the fields used for filtering and sorting messages to the document.
+     * <p>
+     * This allows searches that only define criteria covered by the index to be
+     * resolved entirely by the index.
+     *
+     * @param doc the document to add the fields to
+     * @param message the message
+     */
+    private void addFilterFieldsToDocument(Document doc, Message message) {
+        addStringSearchField(doc, LUCENE_STATUS_FIELD, message.getStatus(), Field.Store.NO);
+        addStringSearchField(doc, LUCENE_MAIN_TYPE_FIELD, message.getMainType(), Field.Store.NO);
+        addStringSearchField(doc, LUCENE_TYPE_FIELD, message.getType(), Field.Store.NO);
+        if (message.getMessageSeries() != null) {
+            addStringSearchField(doc, LUCENE_SERIES_FIELD, message.getMessageSeries().getSeriesId(), Field.Store.NO);
+        }
+
+        addDateField(doc, "publishDateFrom", message.getPublishDateFrom());
+        addDateField(doc, "publishDateTo", message.getPublishDateTo());
+        addDateField(doc, "eventDateFrom", message.getEventDateFrom());
+        addDateField(doc, "eventDateTo", message.getEventDateTo());
+        addDateField(doc, "followUpDate", message.getFollowUpDate());
+        addDateField(doc, "created", message.getCreated());
+        addDateField(doc, "updated", message.getUpdated());
+
+        addSortField(doc, "year", message.getYear());
+        addSortField(doc, "number", message.getNumber());
+        addSortField(doc, LUCENE_SORT_ID_FIELD, message.getId());
+
+        // Geometry of all message parts
+        message.getParts().stream()
+                .filter(part -> part.getGeometry() != null)
+                .flatMap(part -> part.getGeometry().getFeatures().stream())
+                .forEach(feature -> LuceneShapeConverter.createIndexableFields(LUCENE_GEOMETRY_FIELD, feature.getGeometry())
+                        .forEach(doc::add));
+    }
+
+    /**
+     * If the given date is not null, it is added to the index as a point field, for range searches,
+     * and as a doc-values field, for sorting
+     *
+     * @param doc the document to add the field value to
+     * @param date the date to add
+     */
+    private void addDateField(Document doc, String field, Date date) {
+        if (date != null) {
+            doc.add(new LongPoint(field, date.getTime()));
+            doc.add(new NumericDocValuesField(field, date.getTime()));
+        }
+    }
+
+    /**
+     * If the given value is not null, it is added to the index as a doc-values field, for sorting
+     *
+     * @param doc the document to add the field value to
+     * @param value the value to add
+     */
+    private void addSortField(Document doc, String field, Integer value) {
+        if (value != null) {
+            doc.add(new NumericDocValuesField(field, value));
+        }
+    }
+
     /**
      * If the given value is not null, it is added to the search index
      *
@@ -661,7 +1253,80 @@ public class MessageLuceneIndex extends BaseService {
      */
     public List<Long> searchIndex(String freeTextSearch, String language, int maxHits) throws IOException, ParseException {
 
-        Query query;
+        Query query = parseQuery(freeTextSearch, language);
+
+        // Perform the search and collect the ids
+        SearcherManager searcherManager = getSearcherManager();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs results = searcher.search(query, maxHits);
+
+            List<Long> ids = new ArrayList<>();
+            for (ScoreDoc hit : results.scoreDocs) {
+                Document d = searcher.doc(hit.doc);
+                ids.add(Long.valueOf(d.get(LUCENE_ID_FIELD)));
+            }
+            return ids;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+
+    /**
+     * Performs a bounded search in the index and returns a page of ids of matching messages.
+     * <p>
+     * Besides the free-text query, the search is restricted by the criteria of the search parameters that
+     * are covered by the index, i.e. statuses, main types, types, message series and dates. Any other
+     * criteria must be applied by the caller.
+     * <p>
+     * The hits are sorted by the sort field of the search parameters, or by relevance for sort fields
+     * not covered by the index.
+     *
+     * @param params the search parameters
+     * @param offset the index of the first hit to return
+     * @param maxHits the max number of hits to return
+     * @return the page of matching ids along with the total number of matches
+     */
+    public PagedSearchResultVo<Integer> searchIndex(MessageSearchParams params, int offset, int maxHits) throws IOException, ParseException {
+
+        Query query = buildQuery(params);
+        Sort sort = buildSort(params);
+        int numHits = (int)Math.min(Integer.MAX_VALUE, (long)offset + maxHits);
+
+        // Perform the search and collect the ids of the requested page
+        SearcherManager searcherManager = getSearcherManager();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs results = searcher.search(query, Math.max(1, numHits), sort);
+
+            List<Integer> ids = new ArrayList<>();
+            for (int x = offset; x < Math.min(numHits, results.scoreDocs.length); x++) {
+                Document d = searcher.doc(results.scoreDocs[x].doc);
+                ids.add(Integer.valueOf(d.get(LUCENE_ID_FIELD)));
+            }
+
+            PagedSearchResultVo<Integer> result = new PagedSearchResultVo<>();
+            result.setData(ids);
+            result.setTotal(results.totalHits.relation == TotalHits.Relation.EQUAL_TO
+                    ? results.totalHits.value
+                    : searcher.count(query));
+            result.updateSize();
+            return result;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+
+    /**
+     * Parses the free-text query into a Lucene query
+     *
+     * @param freeTextSearch the search string
+     * @param language the language to search
+     * @return the Lucene query
+     */
+    private Query parseQuery(String freeTextSearch, String language) throws ParseException {
         if (StringUtils.isNotBlank(freeTextSearch)) {
             // Normalize query text
             freeTextSearch = LuceneUtils.normalizeQuery(freeTextSearch);
@@ -673,22 +1338,166 @@ public class MessageLuceneIndex extends BaseService {
                     getAnalyzer());
             parser.setDefaultOperator(QueryParser.OR_OPERATOR);
             parser.setAllowLeadingWildcard(true); // NB: Expensive!
-            query = parser.parse(freeTextSearch);
+            return parser.parse(freeTextSearch);
+        }
+        return new MatchAllDocsQuery();
+    }
 
-        } else {
-            query = new MatchAllDocsQuery();
+
+    /**
+     * Builds the Lucene query for the free-text query and the criteria covered by the index
+     *
+     * @param params the search parameters
+     * @return the Lucene query
+     */
+    private Query buildQuery(MessageSearchParams params) throws ParseException {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        query.add(parseQuery(params.getQuery(), params.getLanguage()), Occur.MUST);
+
+        // The filter fields are not available in an index with an outdated format
+        if (!isIndexFormatCurrent()) {
+            return query.build();
         }
 
-        // Perform the search and collect the ids
-        IndexSearcher searcher = new IndexSearcher(getIndexReader());
-        TopDocs results = searcher.search(query, maxHits);
+        // Filter by statuses, types and message series
+        addTermsFilter(query, LUCENE_STATUS_FIELD, params.getStatuses());
+        addTermsFilter(query, LUCENE_MAIN_TYPE_FIELD, params.getMainTypes());
+        addTermsFilter(query, LUCENE_TYPE_FIELD, params.getTypes());
+        addTermsFilter(query, LUCENE_SERIES_FIELD, params.getSeriesIds());
+
+        addBetweenFilter(query, "updated", params.getUpdatedFrom(), params.getUpdatedTo());
+
+        // Filter by the map extent, and optionally include messages without a geometry
+        if (params.getExtent() != null) {
+            Query extentQuery = LuceneShapeConverter.newIntersectsQuery(LUCENE_GEOMETRY_FIELD, params.getExtent());
+            query.add(params.getIncludeNoPos() != null && params.getIncludeNoPos()
+                    ? orUndefined(LUCENE_GEOMETRY_FIELD, extentQuery)
+                    : extentQuery, Occur.FILTER);
+        }
+
+        // Filter by dates
+        if (params.getFrom() != null || params.getTo() != null) {
+            DateType dateType = params.getDateType() != null
+                    ? params.getDateType()
+                    : DateType.PUBLISH_DATE;
+            Date from = params.getFrom();
+            Date to = params.getTo();
+            switch (dateType) {
+                case PUBLISH_DATE:
+                    addOverlapsFilter(query, "publishDateFrom", "publishDateTo", from, to);
+                    break;
+                case EVENT_DATE:
+                    addOverlapsFilter(query, "eventDateFrom", "eventDateTo", from, to);
+                    break;
+                case CREATED_DATE:
+                    addBetweenFilter(query, "created", from, to);
+                    break;
+                case UPDATED_DATE:
+                    addBetweenFilter(query, "updated", from, to);
+                    break;
+                case PUBLISH_FROM_DATE:
+                    addBetweenFilter(query, "publishDateFrom", from, to);
+                    break;
+                case PUBLISH_TO_DATE:
+                    addBetweenFilter(query, "publishDateTo", from, to);
+                    break;
+            }
+        }
+
+        return query.build();
+    }
+
+
+    /** Restricts the query to documents where the field matches any of the values **/
+    private void addTermsFilter(BooleanQuery.Builder query, String field, Collection<?> values) {
+        if (!values.isEmpty()) {
+            List<BytesRef> terms = new ArrayList<>();
+            values.forEach(v -> terms.add(new BytesRef(v.toString())));
+            query.add(new TermInSetQuery(field, terms), Occur.FILTER);
+        }
+    }
+
+
+    /** Restricts the query to documents where the date field is within the given date interval **/
+    private void addBetweenFilter(BooleanQuery.Builder query, String field, Date from, Date to) {
+        if (from != null || to != null) {
+            query.add(LongPoint.newRangeQuery(
+                    field,
+                    from != null ? from.getTime() : Long.MIN_VALUE,
+                    to != null ? to.getTime() : Long.MAX_VALUE), Occur.FILTER);
+        }
+    }
+
+
+    /**
+     * Restricts the query to documents where the date interval given by the two date fields overlaps
+     * the given date interval. Undefined date fields are treated as open-ended.
+     **/
+    private void addOverlapsFilter(BooleanQuery.Builder query, String fromField, String toField, Date from, Date to) {
+        if (from != null) {
+            query.add(orUndefined(toField, LongPoint.newRangeQuery(toField, from.getTime(), Long.MAX_VALUE)), Occur.FILTER);
+        }
+        if (to != null) {
+            query.add(orUndefined(fromField, LongPoint.newRangeQuery(fromField, Long.MIN_VALUE, to.getTime())), Occur.FILTER);
+        }
+    }
+
+
+    /** Returns a query that matches the given query or documents where the field is undefined **/
+    private Query orUndefined(String field, Query query) {
+        Query undefined = new BooleanQuery.Builder()
+                .add(new MatchAllDocsQuery(), Occur.MUST)
+                .add(new FieldExistsQuery(field), Occur.MUST_NOT)
+                .build();
+        return new BooleanQuery.Builder()
+                .add(query, Occur.SHOULD)
+                .add(undefined, Occur.SHOULD)
+                .build();
+    }
+
 
-        List<Long> ids = new ArrayList<>();
-        for (ScoreDoc hit : results.scoreDocs) {
-            Document d = searcher.doc(hit.doc);
-            ids.add(Long.valueOf(d.get(LUCENE_ID_FIELD)));
+    /**
+     * Builds the sort order of the search. Mirrors the sort order used for database searches,
+     * where undefined values are sorted as the lowest values and the message ID is the last sort key.
+     *
+     * @param params the search parameters
+     * @return the sort order
+     */
+    private Sort buildSort(MessageSearchParams params) {
+        // The sort fields are not available in an index with an outdated format
+        if (!isIndexFormatCurrent()) {
+            return Sort.RELEVANCE;
         }
-        return ids;
+
+        boolean reverse = params.getSortOrder() == SortOrder.DESC;
+        List<SortField> sortFields = new ArrayList<>();
+        if (params.sortByEventDate()) {
+            sortFields.add(sortField("eventDateFrom", reverse));
+            sortFields.add(sortField("eventDateTo", reverse));
+        } else if (params.sortByPublishDate()) {
+            sortFields.add(sortField("publishDateFrom", reverse));
+            sortFields.add(sortField("publishDateTo", reverse));
+        } else if (params.sortByFollowUpDate()) {
+            sortFields.add(sortField("followUpDate", reverse));
+        } else if (params.sortById()) {
+            sortFields.add(sortField("year", reverse));
+            sortFields.add(sortField("number", reverse));
+            sortFields.add(sortField("publishDateFrom", reverse));
+        } else {
+            // Sort by relevance, i.e. best match first, regardless of the sort order
+            sortFields.add(SortField.FIELD_SCORE);
+            reverse = false;
+        }
+        sortFields.add(sortField(LUCENE_SORT_ID_FIELD, reverse));
+        return new Sort(sortFields.toArray(new SortField[sortFields.size()]));
+    }
+
+
+    /** Returns a numeric sort field that sorts undefined values as the lowest values **/
+    private SortField sortField(String field, boolean reverse) {
+        SortField sortField = new SortField(field, SortField.Type.LONG, reverse);
+        sortField.setMissingValue(Long.MIN_VALUE);
+        return sortField;
     }
 
 
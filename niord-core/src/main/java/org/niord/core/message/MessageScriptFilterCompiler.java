@@ -0,0 +1,672 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.core.message;
+
+import org.niord.model.message.MainType;
+import org.niord.model.message.Status;
+import org.niord.model.message.Type;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiPredicate;
+
+/**
+ * Compiles message script filters into native Java predicates.
+ * <p>
+ * Only the subset of JavaScript actually used for message filters is supported:
+ * <ul>
+ *     <li>Property paths and method calls rooted in {@code msg} or {@code data},
+ *         e.g. "msg.messageSeries.seriesId" or "msg.promulgation('navtex').promulgate".</li>
+ *     <li>Index access and "length" for lists and arrays, e.g. "msg.areas[0].id".</li>
+ *     <li>The enum constants of Type, MainType and Status, e.g. "Type.TEMPORARY_NOTICE".</li>
+ *     <li>String, number, boolean and null literals.</li>
+ *     <li>The "==", "!=", "===" and "!==" comparisons, the "&amp;&amp;", "||" and "!" operators and parentheses.</li>
+ * </ul>
+ * The compiler throws an {@code IllegalArgumentException} for anything else,
+ * in which case the caller should fall back to evaluating the filter with Nashorn.
+ * <p>
+ * The semantics mimic Nashorn: accessing a property of null fails the filter, whereas
+ * accessing an undefined property of an object yields null.
+ */
+@SuppressWarnings("unused")
+public final class MessageScriptFilterCompiler {
+
+    private static final Class<?>[] FILTER_ENUMS = { MainType.class, Type.class, Status.class };
+
+    private final List<Token> tokens;
+    private int pos;
+
+
+    /** Private constructor **/
+    private MessageScriptFilterCompiler(String filter) {
+        this.tokens = tokenize(filter);
+    }
+
+
+    /**
+     * Compiles the message filter into a predicate on the message and the data object
+     * @param filter the message filter
+     * @return the compiled predicate
+     * @throws IllegalArgumentException if the filter is not supported by the compiler
+     */
+    public static BiPredicate<Message, Object> compile(String filter) {
+        Objects.requireNonNull(filter);
+
+        MessageScriptFilterCompiler compiler = new MessageScriptFilterCompiler(filter);
+        Node node = compiler.parseOr();
+        if (compiler.pos < compiler.tokens.size()) {
+            throw new IllegalArgumentException("Unexpected token " + compiler.tokens.get(compiler.pos).text
+                    + " in filter " + filter);
+        }
+
+        return (message, data) -> {
+            try {
+                return isTruthy(node.eval(message, data));
+            } catch (Exception e) {
+                // Do not include
+                return false;
+            }
+        };
+    }
+
+
+    /***************************************/
+    /** Parsing                           **/
+    /***************************************/
+
+
+    /** Parses: and ('||' and)* **/
+    private Node parseOr() {
+        Node node = parseAnd();
+        while (accept("||")) {
+            Node lhs = node, rhs = parseAnd();
+            node = (m, d) -> {
+                Object v = lhs.eval(m, d);
+                return isTruthy(v) ? v : rhs.eval(m, d);
+            };
+        }
+        return node;
+    }
+
+
+    /** Parses: comparison ('&&' comparison)* **/
+    private Node parseAnd() {
+        Node node = parseComparison();
+        while (accept("&&")) {
+            Node lhs = node, rhs = parseComparison();
+            node = (m, d) -> {
+                Object v = lhs.eval(m, d);
+                return isTruthy(v) ? rhs.eval(m, d) : v;
+            };
+        }
+        return node;
+    }
+
+
+    /** Parses: unary (('==' | '!=' | '===' | '!==') unary)? **/
+    private Node parseComparison() {
+        Node lhs = parseUnary();
+        if (accept("==")) {
+            Node rhs = parseUnary();
+            return (m, d) -> looseEquals(lhs.eval(m, d), rhs.eval(m, d));
+        } else if (accept("!=")) {
+            Node rhs = parseUnary();
+            return (m, d) -> !looseEquals(lhs.eval(m, d), rhs.eval(m, d));
+        } else if (accept("===")) {
+            Node rhs = parseUnary();
+            return (m, d) -> strictEquals(lhs.eval(m, d), rhs.eval(m, d));
+        } else if (accept("!==")) {
+            Node rhs = parseUnary();
+            return (m, d) -> !strictEquals(lhs.eval(m, d), rhs.eval(m, d));
+        }
+        return lhs;
+    }
+
+
+    /**
+     * Parses: '!' unary | operand.
+     * As in JavaScript, '!' binds tighter than the comparisons, so "!a == b" is evaluated as "(!a) == b".
+     **/
+    private Node parseUnary() {
+        if (accept("!")) {
+            Node operand = parseUnary();
+            return (m, d) -> !isTruthy(operand.eval(m, d));
+        }
+        return parseOperand();
+    }
+
+
+    /** Parses a parenthesized expression, a literal, an enum constant or a property path **/
+    private Node parseOperand() {
+        Token token = next();
+
+        if (token.type == TokenType.OPERATOR && token.text.equals("(")) {
+            Node node = parseOr();
+            expect(")");
+            return node;
+
+        } else if (token.type == TokenType.STRING) {
+            String value = token.text;
+            return (m, d) -> value;
+
+        } else if (token.type == TokenType.NUMBER) {
+            Double value = Double.valueOf(token.text);
+            return (m, d) -> value;
+
+        } else if (token.type == TokenType.IDENTIFIER) {
+            switch (token.text) {
+                case "true":
+                    return (m, d) -> Boolean.TRUE;
+                case "false":
+                    return (m, d) -> Boolean.FALSE;
+                case "null":
+                case "undefined":
+                    return (m, d) -> null;
+                case "msg":
+                    return parsePath((m, d) -> m);
+                case "data":
+                    return parsePath((m, d) -> d);
+                default:
+                    Object enumValue = parseEnumConstant(token.text);
+                    return (m, d) -> enumValue;
+            }
+        }
+
+        throw new IllegalArgumentException("Unsupported token " + token.text);
+    }
+
+
+    /** Parses an enum constant, such as "Status.PUBLISHED" **/
+    @SuppressWarnings("unchecked")
+    private Object parseEnumConstant(String enumName) {
+        for (Class<?> enumType : FILTER_ENUMS) {
+            if (enumType.getSimpleName().equals(enumName)) {
+                expect(".");
+                String constant = expectIdentifier();
+                return Enum.valueOf(enumType.asSubclass(Enum.class), constant);
+            }
+        }
+        throw new IllegalArgumentException("Unsupported identifier " + enumName);
+    }
+
+
+    /** Parses the property accessors, method calls and index accessors following a path root **/
+    private Node parsePath(Node root) {
+        Node node = root;
+        while (true) {
+            if (accept(".")) {
+                String name = expectIdentifier();
+                if (accept("(")) {
+                    List<Node> args = new ArrayList<>();
+                    if (!accept(")")) {
+                        do {
+                            args.add(parseOperand());
+                        } while (accept(","));
+                        expect(")");
+                    }
+                    node = new MethodCallNode(node, name, args.toArray(new Node[0]));
+                } else {
+                    node = new PropertyNode(node, name);
+                }
+            } else if (accept("[")) {
+                Token index = next();
+                if (index.type != TokenType.NUMBER) {
+                    throw new IllegalArgumentException("Unsupported index " + index.text);
+                }
+                expect("]");
+                node = new IndexNode(node, Double.valueOf(index.text).intValue());
+            } else {
+                return node;
+            }
+        }
+    }
+
+
+    /** Returns the next token **/
+    private Token next() {
+        if (pos >= tokens.size()) {
+            throw new IllegalArgumentException("Unexpected end of filter");
+        }
+        return tokens.get(pos++);
+    }
+
+
+    /** If the next token is the given operator, consume it and return true **/
+    private boolean accept(String operator) {
+        if (pos < tokens.size()
+                && tokens.get(pos).type == TokenType.OPERATOR
+                && tokens.get(pos).text.equals(operator)) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+
+    /** Consumes the given operator **/
+    private void expect(String operator) {
+        if (!accept(operator)) {
+            throw new IllegalArgumentException("Expected " + operator);
+        }
+    }
+
+
+    /** Consumes an identifier **/
+    private String expectIdentifier() {
+        Token token = next();
+        if (token.type != TokenType.IDENTIFIER) {
+            throw new IllegalArgumentException("Expected identifier but found " + token.text);
+        }
+        return token.text;
+    }
+
+
+    /***************************************/
+    /** Tokenizing                        **/
+    /***************************************/
+
+
+    private enum TokenType { IDENTIFIER, STRING, NUMBER, OPERATOR }
+
+    private static final String[] OPERATORS = { "===", "!==", "==", "!=", "&&", "||", "!", "(", ")", ".", ",", "[", "]" };
+
+    /** A filter token **/
+    private static final class Token {
+        final TokenType type;
+        final String text;
+
+        Token(TokenType type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+    }
+
+
+    /** Splits the filter into tokens **/
+    private static List<Token> tokenize(String filter) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        outer:
+        while (i < filter.length()) {
+            char c = filter.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                i++;
+
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < filter.length() && Character.isJavaIdentifierPart(filter.charAt(i))) {
+                    i++;
+                }
+                tokens.add(new Token(TokenType.IDENTIFIER, filter.substring(start, i)));
+
+            } else if (Character.isDigit(c)) {
+                int start = i;
+                while (i < filter.length() && (Character.isDigit(filter.charAt(i)) || filter.charAt(i) == '.')) {
+                    i++;
+                }
+                tokens.add(new Token(TokenType.NUMBER, filter.substring(start, i)));
+
+            } else if (c == '\'' || c == '"') {
+                StringBuilder str = new StringBuilder();
+                i++;
+                while (i < filter.length() && filter.charAt(i) != c) {
+                    if (filter.charAt(i) == '\\' && i + 1 < filter.length()) {
+                        i++;
+                    }
+                    str.append(filter.charAt(i++));
+                }
+                if (i >= filter.length()) {
+                    throw new IllegalArgumentException("Unterminated string in filter " + filter);
+                }
+                i++;
+                tokens.add(new Token(TokenType.STRING, str.toString()));
+
+            } else {
+                for (String operator : OPERATORS) {
+                    if (filter.startsWith(operator, i)) {
+                        tokens.add(new Token(TokenType.OPERATOR, operator));
+                        i += operator.length();
+                        continue outer;
+                    }
+                }
+                throw new IllegalArgumentException("Unsupported character '" + c + "' in filter " + filter);
+            }
+        }
+        return tokens;
+    }
+
+
+    /***************************************/
+    /** Evaluation                        **/
+    /***************************************/
+
+
+    /** A compiled filter expression **/
+    @FunctionalInterface
+    private interface Node {
+        Object eval(Message message, Object data) throws Exception;
+    }
+
+
+    /** Thrown when accessing a property of null. Mimics a JavaScript TypeError **/
+    private static Object checkNotNull(Object target, String name) {
+        if (target == null) {
+            throw new NullPointerException("Cannot read property " + name + " of null");
+        }
+        return target;
+    }
+
+
+    /** Returns the JavaScript truthiness of the value **/
+    static boolean isTruthy(Object value) {
+        if (value == null) {
+            return false;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof Number) {
+            double d = ((Number) value).doubleValue();
+            return d != 0 && !Double.isNaN(d);
+        } else if (value instanceof String) {
+            return !((String) value).isEmpty();
+        }
+        return true;
+    }
+
+
+    /** Compares the values using the JavaScript "==" semantics **/
+    static boolean looseEquals(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == b;
+        } else if (a instanceof Boolean && !(b instanceof Boolean)) {
+            // Booleans are converted to numbers when compared with other types
+            return looseEquals(toNumber(a), b);
+        } else if (b instanceof Boolean && !(a instanceof Boolean)) {
+            return looseEquals(a, toNumber(b));
+        } else if (a instanceof Enum && b instanceof String) {
+            return ((Enum<?>) a).name().equals(b);
+        } else if (a instanceof String && b instanceof Enum) {
+            return ((Enum<?>) b).name().equals(a);
+        } else if (a instanceof Number || b instanceof Number) {
+            Double da = toNumber(a), db = toNumber(b);
+            return da != null && da.equals(db);
+        }
+        return strictEquals(a, b);
+    }
+
+
+    /** Compares the values using the JavaScript "===" semantics **/
+    static boolean strictEquals(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            return ((Number) a).doubleValue() == ((Number) b).doubleValue();
+        }
+        return Objects.equals(a, b);
+    }
+
+
+    /** Converts the value to a number, or returns null if not possible **/
+    private static Double toNumber(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1.0 : 0.0;
+        } else if (value instanceof String) {
+            String str = ((String) value).trim();
+            if (str.isEmpty()) {
+                return 0.0;
+            }
+            try {
+                return Double.valueOf(str);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return null;
+    }
+
+
+    /** Resolves a property of the target, i.e. a map value, a list length or a bean getter **/
+    private static final class PropertyNode implements Node {
+
+        final Node target;
+        final String name;
+        final String capitalizedName;
+        volatile ResolvedMethod cache;
+
+        PropertyNode(Node target, String name) {
+            this.target = target;
+            this.name = name;
+            this.capitalizedName = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        }
+
+        @Override
+        public Object eval(Message message, Object data) throws Exception {
+            Object obj = checkNotNull(target.eval(message, data), name);
+
+            if (obj instanceof Map) {
+                return ((Map<?, ?>) obj).get(name);
+            } else if (name.equals("length")) {
+                if (obj instanceof Collection) {
+                    return ((Collection<?>) obj).size();
+                } else if (obj.getClass().isArray()) {
+                    return Array.getLength(obj);
+                } else if (obj instanceof String) {
+                    return ((String) obj).length();
+                }
+            }
+
+            // Monomorphic inline cache of the getter for the runtime class
+            ResolvedMethod resolved = cache;
+            if (resolved == null || resolved.type != obj.getClass()) {
+                resolved = new ResolvedMethod(obj.getClass(), findGetter(obj.getClass()));
+                cache = resolved;
+            }
+            return resolved.method != null ? invoke(resolved.method, obj) : null;
+        }
+
+        /** Finds the getter for the property, or null if undefined **/
+        private Method findGetter(Class<?> type) {
+            for (String methodName : new String[] { "get" + capitalizedName, "is" + capitalizedName }) {
+                try {
+                    return accessible(type.getMethod(methodName));
+                } catch (NoSuchMethodException ignored) {
+                }
+            }
+            return null;
+        }
+    }
+
+
+    /** Invokes a public method on the target **/
+    private static final class MethodCallNode implements Node {
+
+        final Node target;
+        final String name;
+        final Node[] args;
+        volatile ResolvedMethod cache;
+
+        MethodCallNode(Node target, String name, Node[] args) {
+            this.target = target;
+            this.name = name;
+            this.args = args;
+        }
+
+        @Override
+        public Object eval(Message message, Object data) throws Exception {
+            Object obj = checkNotNull(target.eval(message, data), name);
+
+            Object[] argValues = new Object[args.length];
+            for (int x = 0; x < args.length; x++) {
+                argValues[x] = args[x].eval(message, data);
+            }
+
+            ResolvedMethod resolved = cache;
+            if (resolved == null || resolved.type != obj.getClass()) {
+                resolved = new ResolvedMethod(obj.getClass(), findMethod(obj.getClass(), argValues));
+                cache = resolved;
+            }
+            if (resolved.method == null) {
+                throw new NoSuchMethodException(obj.getClass().getName() + "." + name);
+            }
+
+            Class<?>[] paramTypes = resolved.method.getParameterTypes();
+            for (int x = 0; x < argValues.length; x++) {
+                argValues[x] = convertArg(argValues[x], paramTypes[x]);
+            }
+            return invoke(resolved.method, obj, argValues);
+        }
+
+        /** Finds a public method with the given name that accepts the arguments **/
+        private Method findMethod(Class<?> type, Object[] argValues) {
+            for (Method method : type.getMethods()) {
+                if (method.getName().equals(name)
+                        && method.getParameterCount() == argValues.length
+                        && acceptsArgs(method.getParameterTypes(), argValues)) {
+                    return accessible(method);
+                }
+            }
+            return null;
+        }
+
+        /** Returns if the parameter types accept the arguments **/
+        private static boolean acceptsArgs(Class<?>[] paramTypes, Object[] argValues) {
+            for (int x = 0; x < paramTypes.length; x++) {
+                Object arg = argValues[x];
+                Class<?> paramType = paramTypes[x];
+                if (arg == null) {
+                    if (paramType.isPrimitive()) {
+                        return false;
+                    }
+                } else if (arg instanceof Number) {
+                    if (!Number.class.isAssignableFrom(boxed(paramType))) {
+                        return false;
+                    }
+                } else if (!boxed(paramType).isInstance(arg)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Converts numeric arguments to the parameter type **/
+        private static Object convertArg(Object arg, Class<?> paramType) {
+            if (arg instanceof Number) {
+                Class<?> type = boxed(paramType);
+                Number n = (Number) arg;
+                if (type == Integer.class) {
+                    return n.intValue();
+                } else if (type == Long.class) {
+                    return n.longValue();
+                } else if (type == Float.class) {
+                    return n.floatValue();
+                } else if (type == Short.class) {
+                    return n.shortValue();
+                }
+            }
+            return arg;
+        }
+
+        /** Returns the boxed version of primitive types **/
+        private static Class<?> boxed(Class<?> type) {
+            if (!type.isPrimitive()) {
+                return type;
+            } else if (type == int.class) {
+                return Integer.class;
+            } else if (type == long.class) {
+                return Long.class;
+            } else if (type == double.class) {
+                return Double.class;
+            } else if (type == float.class) {
+                return Float.class;
+            } else if (type == short.class) {
+                return Short.class;
+            } else if (type == boolean.class) {
+                return Boolean.class;
+            }
+            return type;
+        }
+    }
+
+
+    /** Returns the element at the given index of a list or an array, or null if out of bounds **/
+    private static final class IndexNode implements Node {
+
+        final Node target;
+        final int index;
+
+        IndexNode(Node target, int index) {
+            this.target = target;
+            this.index = index;
+        }
+
+        @Override
+        public Object eval(Message message, Object data) throws Exception {
+            Object obj = checkNotNull(target.eval(message, data), String.valueOf(index));
+            if (obj instanceof List) {
+                List<?> list = (List<?>) obj;
+                return index >= 0 && index < list.size() ? list.get(index) : null;
+            } else if (obj.getClass().isArray()) {
+                return index >= 0 && index < Array.getLength(obj) ? Array.get(obj, index) : null;
+            }
+            return null;
+        }
+    }
+
+
+    /** A method resolved for a given runtime class **/
+    private static final class ResolvedMethod {
+        final Class<?> type;
+        final Method method;
+
+        ResolvedMethod(Class<?> type, Method method) {
+            this.type = type;
+            this.method = method;
+        }
+    }
+
+
+    /**
+     * Ensures that public methods declared in non-public classes, such as Hibernate proxies, can be invoked.
+     * Returns null if the method cannot be made accessible
+     */
+    private static Method accessible(Method method) {
+        if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+            try {
+                method.setAccessible(true);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        return method;
+    }
+
+
+    /** Invokes the method and unwraps invocation exceptions **/
+    private static Object invoke(Method method, Object target, Object... args) throws Exception {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+}
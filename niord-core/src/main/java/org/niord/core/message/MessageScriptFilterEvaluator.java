@@ -24,6 +24,7 @@ import javax.script.Invocable;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import java.util.Arrays;
+import java.util.function.BiPredicate;
 import java.util.stream.Collectors;
 
 /**
@@ -31,6 +32,9 @@ import java.util.stream.Collectors;
  * <p>
  * Message filter example:
  * "(msg.type == Type.TEMPORARY_NOTICE || msg.type == Type.PRELIMINARY_NOTICE) && msg.status == Status.PUBLISHED"
+ * <p>
+ * Filters are compiled to native Java predicates by the {@linkplain MessageScriptFilterCompiler}.
+ * Nashorn is only used for filters that are not supported by the compiler.
  */
 @SuppressWarnings("unused")
 public class MessageScriptFilterEvaluator {
@@ -46,6 +50,7 @@ public class MessageScriptFilterEvaluator {
     };
 
     private final String filter;
+    private BiPredicate<Message, Object> compiledFilter = null;
     private Invocable filterFunction = null;
 
     /** Non-public constructor **/
@@ -61,8 +66,17 @@ public class MessageScriptFilterEvaluator {
     public MessageScriptFilterEvaluator(String filter) throws Exception {
         this.filter = filter;
 
-        // Instantiate the filter Javascript engine
         if (filter != null && filter.trim().length() > 0) {
+
+            // First, attempt to compile the filter to a native Java predicate
+            try {
+                compiledFilter = MessageScriptFilterCompiler.compile(filter);
+                return;
+            } catch (IllegalArgumentException ignored) {
+                // Not supported by the compiler. Fall back to Nashorn
+            }
+
+            // Instantiate the filter Javascript engine
             try {
                 // In some JVMs, it actually works to use enum/string comparison, e.g.
                 // "msg.status == 'PUBLISHED'". But on others this will fail.
@@ -106,7 +120,9 @@ public class MessageScriptFilterEvaluator {
      */
     public boolean includeMessage(Message message, Object data) {
         // Check if a message filter has been defined
-        if (filterFunction != null) {
+        if (compiledFilter != null) {
+            return compiledFilter.test(message, data);
+        } else if (filterFunction != null) {
             try {
                 return  (Boolean)filterFunction.invokeFunction("includeMessage", message, data);
             } catch (Exception ignored) {
@@ -120,4 +136,9 @@ public class MessageScriptFilterEvaluator {
     public String getFilter() {
         return filter;
     }
+
+    /** Returns if the filter has been compiled to a native Java predicate **/
+    public boolean isCompiled() {
+        return compiledFilter != null;
+    }
 }
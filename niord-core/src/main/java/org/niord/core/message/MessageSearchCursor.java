@@ -0,0 +1,190 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.message;
+
+import org.apache.commons.lang.StringUtils;
+import org.niord.model.search.PagedSearchParamsVo.SortOrder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Keyset continuation token used for paging through a message search result.
+ * <p>
+ * The cursor records the sort-key values of the last message of a page, along with the
+ * position of the next page and the total result count. The next page can thus be
+ * fetched by seeking past the sort-key values rather than skipping rows, and without
+ * re-counting the total result.
+ * <p>
+ * The cursor is only valid for the sort field and sort order it was issued for.
+ * <p>
+ * Searches that are paged by offset, such as searches sorted by relevance, issue {@code OFFSET} cursors,
+ * where the key is the last message ID of the page rather than the sort-key values. Only {@code KEYSET}
+ * cursors can be used for seeking past the sort-key values.
+ */
+@SuppressWarnings("unused")
+public class MessageSearchCursor {
+
+    private static final String SEPARATOR = "|";
+
+    /** The paging mode that the cursor was issued for **/
+    public enum Mode { KEYSET, OFFSET }
+
+    Mode mode;
+    String sortBy;
+    SortOrder sortOrder;
+    int offset;
+    long total;
+    List<Object> keys;
+
+
+    /** Constructor **/
+    public MessageSearchCursor(Mode mode, String sortBy, SortOrder sortOrder, int offset, long total, List<Object> keys) {
+        this.mode = mode;
+        this.sortBy = sortBy;
+        this.sortOrder = sortOrder;
+        this.offset = offset;
+        this.total = total;
+        this.keys = keys;
+    }
+
+
+    /**
+     * Decodes the cursor token. Returns null if the token is blank or invalid for the given search parameters.
+     *
+     * @param token the cursor token
+     * @param params the search parameters
+     * @return the decoded cursor or null if undefined or invalid
+     */
+    public static MessageSearchCursor decode(String token, MessageSearchParams params) {
+        if (StringUtils.isBlank(token)) {
+            return null;
+        }
+
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = StringUtils.splitPreserveAllTokens(value, SEPARATOR);
+            if (parts.length < 6) {
+                return null;
+            }
+
+            List<Object> keys = new ArrayList<>();
+            for (int x = 5; x < parts.length; x++) {
+                keys.add(decodeKey(parts[x]));
+            }
+
+            MessageSearchCursor cursor = new MessageSearchCursor(
+                    Mode.valueOf(parts[0]),
+                    parts[1],
+                    SortOrder.valueOf(parts[2]),
+                    Integer.parseInt(parts[3]),
+                    Long.parseLong(parts[4]),
+                    keys);
+
+            // The cursor must have been issued for the same sort order
+            return cursor.isValidFor(params) ? cursor : null;
+
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Encodes the cursor as a URL-safe token
+     * @return the cursor token
+     */
+    public String encode() {
+        StringBuilder value = new StringBuilder()
+                .append(mode).append(SEPARATOR)
+                .append(StringUtils.defaultString(sortBy)).append(SEPARATOR)
+                .append(sortOrder).append(SEPARATOR)
+                .append(offset).append(SEPARATOR)
+                .append(total);
+        keys.forEach(k -> value.append(SEPARATOR).append(encodeKey(k)));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    /** Returns if the cursor was issued for the sort field and sort order of the search parameters **/
+    private boolean isValidFor(MessageSearchParams params) {
+        return StringUtils.equalsIgnoreCase(sortBy, StringUtils.defaultString(params.getSortBy()))
+                && Objects.equals(sortOrder, params.getSortOrder())
+                && offset >= 0 && total >= offset
+                && !keys.isEmpty();
+    }
+
+
+    /** Encodes a single sort-key value **/
+    private static String encodeKey(Object key) {
+        if (key == null) {
+            return "n";
+        } else if (key instanceof Date) {
+            return "d" + ((Date) key).getTime();
+        } else if (key instanceof Double || key instanceof Float) {
+            return "f" + key;
+        } else if (key instanceof Number) {
+            return "i" + ((Number) key).intValue();
+        }
+        throw new IllegalArgumentException("Unsupported sort key " + key.getClass());
+    }
+
+
+    /** Decodes a single sort-key value **/
+    private static Object decodeKey(String key) {
+        String value = key.substring(1);
+        switch (key.charAt(0)) {
+            case 'n': return null;
+            case 'd': return new Date(Long.parseLong(value));
+            case 'f': return Double.valueOf(value);
+            case 'i': return Integer.valueOf(value);
+        }
+        throw new IllegalArgumentException("Invalid sort key " + key);
+    }
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public String getSortBy() {
+        return sortBy;
+    }
+
+    public SortOrder getSortOrder() {
+        return sortOrder;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public List<Object> getKeys() {
+        return Collections.unmodifiableList(keys);
+    }
+}
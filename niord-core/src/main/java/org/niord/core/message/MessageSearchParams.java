@@ -19,6 +19,7 @@ import org.apache.commons.lang.StringUtils;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.io.ParseException;
 import org.niord.core.domain.Domain;
+import org.niord.core.domain.DomainSnapshot;
 import org.niord.core.geojson.JtsConverter;
 import org.niord.core.util.TimeUtils;
 import org.niord.core.util.WebUtils;
@@ -104,6 +105,9 @@ public class MessageSearchParams extends PagedSearchParamsVo {
     // If an extent is specified, use this to fetch messages with no geometry
     Boolean includeNoPos;
 
+    // Keyset continuation token returned by a previous search - takes precedence over the page number
+    String cursor;
+
 
     /**
      * Returns a MessageSearchParams initialized with parameter values from a URL using "default" parameter names
@@ -127,6 +131,18 @@ public class MessageSearchParams extends PagedSearchParamsVo {
     }
 
 
+    /**
+     * Returns a MessageSearchParams initialized with parameter values from a request using "default" parameter names
+     * @param domain the snapshot of the current domain - defines defaults for sorting
+     * @param req the servlet request
+     * @return the MessageSearchParams initialized with parameter values
+     */
+    public static MessageSearchParams instantiate(DomainSnapshot domain, HttpServletRequest req) {
+        return instantiate(req.getParameterMap())
+                .checkSortByDomain(domain);
+    }
+
+
     /**
      * Returns a MessageSearchParams initialized with parameter values from a request parameter map
      * using "default" parameter names
@@ -135,6 +151,18 @@ public class MessageSearchParams extends PagedSearchParamsVo {
      * @return the MessageSearchParams initialized with parameter values
      */
     public static MessageSearchParams instantiate(Domain domain, Map<String, String[]> reqParams) {
+        return instantiate(reqParams)
+                .checkSortByDomain(domain);
+    }
+
+
+    /**
+     * Returns a MessageSearchParams initialized with parameter values from a request parameter map
+     * using "default" parameter names, but without applying the default sort order
+     * @param reqParams the request parameters
+     * @return the MessageSearchParams initialized with parameter values
+     */
+    private static MessageSearchParams instantiate(Map<String, String[]> reqParams) {
         MessageSearchParams params = new MessageSearchParams();
         params.language(getParameterValues(reqParams, "lang"))
                 .query(getParameterValues(reqParams, "query"))
@@ -172,27 +200,85 @@ public class MessageSearchParams extends PagedSearchParamsVo {
                 .sortBy(getParameterValues(reqParams, "sortBy"))
                 .sortOrder(checkNull(getParameterValues(reqParams, "sortOrder"), SortOrder::valueOf));
 
-        // If no explicit sort order is specified, sort by domain sort order
-        params.checkSortByDomain(domain);
+        params.cursor(getParameterValues(reqParams, "cursor"));
 
         return params;
     }
 
 
+    /**
+     * Restricts the search to the given domains, by adding the message series of the domains as a filter.
+     * If all domains specify areas or categories, these are added as filters as well.
+     * @param domains the domains
+     * @return the search parameter
+     */
+    public MessageSearchParams domainRestrictions(List<Domain> domains) {
+
+        // Add the message series of the domains as a filter
+        getSeriesIds().addAll(
+                domains.stream()
+                        .flatMap(d -> d.getMessageSeries().stream())
+                        .map(MessageSeries::getSeriesId)
+                        .collect(Collectors.toSet())
+        );
+
+        // If all domains specify areas, add these as a filter
+        if (!domains.isEmpty() && domains.stream().noneMatch(d -> d.getAreas().isEmpty())) {
+            getAreaIds().addAll(
+                    domains.stream()
+                            .flatMap(d -> d.getAreas().stream())
+                            .map(a -> a.getId().toString())
+                            .collect(Collectors.toList())
+            );
+        }
+
+        // If all domains specify categories, add these as a filter
+        if (!domains.isEmpty() && domains.stream().noneMatch(d -> d.getCategories().isEmpty())) {
+            getCategoryIds().addAll(
+                    domains.stream()
+                            .flatMap(d -> d.getCategories().stream())
+                            .map(c -> c.getId().toString())
+                            .collect(Collectors.toList())
+            );
+        }
+        return this;
+    }
+
+
     /**
      * If no explicit sort order is specified, sort by domain sort order
      * @param domain the domain
      * @return the search parameter
      */
     public MessageSearchParams checkSortByDomain(Domain domain) {
+        return checkSortByDomainSortOrder(domain != null ? domain.getMessageSortOrder() : null);
+    }
 
-        if (domain != null && StringUtils.isNotBlank(domain.getMessageSortOrder())) {
+
+    /**
+     * If no explicit sort order is specified, sort by domain sort order
+     * @param domain the domain snapshot
+     * @return the search parameter
+     */
+    public MessageSearchParams checkSortByDomain(DomainSnapshot domain) {
+        return checkSortByDomainSortOrder(domain != null ? domain.getMessageSortOrder() : null);
+    }
+
+
+    /**
+     * If no explicit sort order is specified, sort by the given domain sort order
+     * @param messageSortOrder the domain sort order
+     * @return the search parameter
+     */
+    private MessageSearchParams checkSortByDomainSortOrder(String messageSortOrder) {
+
+        if (StringUtils.isNotBlank(messageSortOrder)) {
             try {
                 if (getSortBy() == null) {
-                    sortBy(domain.getMessageSortOrder().split(" ")[0]);
+                    sortBy(messageSortOrder.split(" ")[0]);
                 }
                 if (getSortOrder() == null) {
-                    sortOrder(SortOrder.valueOf(domain.getMessageSortOrder().split(" ")[1]));
+                    sortOrder(SortOrder.valueOf(messageSortOrder.split(" ")[1]));
                 }
             } catch (Exception ignored) {
             }
@@ -214,6 +300,16 @@ public class MessageSearchParams extends PagedSearchParamsVo {
         return isNotBlank(query);
     }
 
+    /**
+     * Returns whether or not the search defines criteria that are not covered by the message Lucene index,
+     * i.e. criteria other than the free-text query, statuses, types, message series, dates and extent
+     */
+    public boolean requiresDatabaseSearch() {
+        return isNotBlank(messageId) || isNotBlank(username) || commentsType != null
+                || !areaIds.isEmpty() || !categoryIds.isEmpty() || !chartNumbers.isEmpty()
+                || !tags.isEmpty() || !promulgationTypes.isEmpty();
+    }
+
     /** Returns whether to sort by ID or not */
     public boolean sortById() {
         return "id".equalsIgnoreCase(sortBy);
@@ -239,6 +335,11 @@ public class MessageSearchParams extends PagedSearchParamsVo {
         return "area".equalsIgnoreCase(sortBy);
     }
 
+    /** Returns whether to sort by free-text search relevance or not */
+    public boolean sortByScore() {
+        return "score".equalsIgnoreCase(sortBy);
+    }
+
     /** Converts en extent defined by max and min lat-lons into a JTS geometry */
     public MessageSearchParams extent(Double minLat, Double minLon, Double maxLat, Double maxLon) {
         this.extent = JtsConverter.toJtsExtent(minLat, minLon, maxLat, maxLon);
@@ -554,4 +655,13 @@ public class MessageSearchParams extends PagedSearchParamsVo {
         this.viewMode = viewMode;
         return this;
     }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public MessageSearchParams cursor(String cursor) {
+        this.cursor = cursor;
+        return this;
+    }
 }
@@ -18,6 +18,7 @@ package org.niord.core.message;
 import org.apache.commons.lang.StringUtils;
 import org.niord.core.NiordApp;
 import org.niord.core.domain.Domain;
+import org.niord.core.domain.DomainChangedEvent;
 import org.niord.core.domain.DomainService;
 import org.niord.core.message.vo.SystemMessageSeriesVo.NumberSequenceType;
 import org.niord.core.sequence.DefaultSequence;
@@ -31,6 +32,7 @@ import org.slf4j.Logger;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.RequestScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import java.util.*;
@@ -54,6 +56,9 @@ public class MessageSeriesService extends BaseService {
     @Inject
     DomainService domainService;
 
+    @Inject
+    Event<DomainChangedEvent> domainChangedEvent;
+
     @Inject
     MessageTagService messageTagService;
 
@@ -206,6 +211,9 @@ public class MessageSeriesService extends BaseService {
         original.setExcludeFromMessageIndex(series.getExcludeFromMessageIndex());
 
         log.info("Updating message series " + series.getSeriesId());
+
+        // The domain snapshots include the main types of the message series
+        domainChangedEvent.fire(new DomainChangedEvent(null));
         return saveEntity(original);
     }
 
@@ -224,6 +232,7 @@ public class MessageSeriesService extends BaseService {
         if (original != null) {
             log.info("Removing message series " + seriesId);
             remove(original);
+            domainChangedEvent.fire(new DomainChangedEvent(null));
             return true;
         }
         return false;
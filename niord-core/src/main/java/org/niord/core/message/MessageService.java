@@ -30,12 +30,14 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -65,6 +67,7 @@ import org.niord.core.geojson.FeatureService;
 import org.niord.core.geojson.JtsConverter;
 import org.niord.core.message.MessageSearchParams.DateType;
 import org.niord.core.message.MessageSearchParams.UserType;
+import org.niord.core.message.vo.MessageTombstoneVo;
 import org.niord.core.message.vo.SystemMessageVo;
 import org.niord.core.promulgation.BaseMessagePromulgation;
 import org.niord.core.promulgation.PromulgationManager;
@@ -93,11 +96,13 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.RequestScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import jakarta.jms.ConnectionFactory;
 import jakarta.jms.JMSContext;
 import jakarta.jms.Session;
 import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Expression;
@@ -129,6 +134,23 @@ public class MessageService extends BaseService {
     }
 
 
+    /** Named queries used for fetching the lazy message collections in bulk **/
+    private static final String[] MESSAGE_FETCH_QUERIES = {
+            "Message.fetchDescsByIds",
+            "Message.fetchPartsByIds",
+            "Message.fetchAreasByIds",
+            "Message.fetchCategoriesByIds",
+            "Message.fetchChartsByIds",
+            "Message.fetchAttachmentsByIds",
+            "Message.fetchReferencesByIds"
+    };
+
+    /** The max number of IDs used in a single bulk lookup query **/
+    private static final int LOOKUP_CHUNK_SIZE = 500;
+
+    /** The number of Lucene hits filtered by the database in a single query **/
+    private static final int LUCENE_WINDOW_SIZE = 1000;
+
     @Inject
     private Logger log;
 
@@ -153,6 +175,9 @@ public class MessageService extends BaseService {
     @Inject
     MessageLuceneIndex messageLuceneIndex;
 
+    @Inject
+    Event<MessageChangedEvent> messageChangedEvent;
+
     @Inject
     AreaService areaService;
 
@@ -277,6 +302,47 @@ public class MessageService extends BaseService {
     }
 
 
+    /**
+     * Resolves the "best" messages with the given message ids, each of which may be either a UID,
+     * or a short ID of a message.
+     * <p>
+     * As {@linkplain #resolveMessage(String)}, but all message ids are resolved using two queries in total,
+     * rather than up to two queries per message id.
+     *
+     * @param messageIds the message ids to resolve
+     * @return the matching messages indexed by message id. Unresolved message ids are omitted
+     */
+    public Map<String, Message> resolveMessages(Collection<String> messageIds) {
+        Set<String> ids = messageIds.stream()
+                .filter(StringUtils::isNotBlank)
+                .collect(Collectors.toSet());
+        Map<String, Message> result = new HashMap<>();
+        if (ids.isEmpty()) {
+            return result;
+        }
+
+        em.createNamedQuery("Message.findByUids", Message.class)
+                .setParameter("uids", ids)
+                .getResultList()
+                .forEach(msg -> result.put(msg.getUid(), msg));
+
+        // Resolve the remaining message ids as short IDs
+        Set<String> shortIds = ids.stream()
+                .filter(id -> !result.containsKey(id))
+                .collect(Collectors.toSet());
+        if (!shortIds.isEmpty()) {
+            em.createNamedQuery("Message.findByShortIds", Message.class)
+                    .setParameter("shortIds", shortIds)
+                    .getResultList()
+                    .stream()
+                    .collect(Collectors.groupingBy(Message::getShortId))
+                    .forEach((shortId, messages) -> result.put(shortId, resolveMessage(messages)));
+        }
+
+        return result;
+    }
+
+
     /** Returns a single message from the list - preferably from the current domain */
     private Message resolveMessage(List<Message> messages) {
         // Sort messages by domain and status
@@ -373,6 +439,9 @@ public class MessageService extends BaseService {
         // Save a MessageHistory entity for the message
         saveHistory(message);
 
+        // Notify observers, e.g. the message index, once the transaction has been committed
+        messageChangedEvent.fire(new MessageChangedEvent(message.getUid(), message.getStatus()));
+
         return message;
     }
 
@@ -968,12 +1037,147 @@ public class MessageService extends BaseService {
 
 
     /**
-     * Returns the message with the given IDs
+     * Message ID search function.
+     * <p>
+     * As {@linkplain #search(MessageSearchParams)}, but only returns the ID's of the matching messages.
+     * This allows large search results to be fetched and processed in chunks using {@linkplain #getMessages(List)}.
+     *
+     * @param params the search parameters
+     * @return the search result
+     */
+    public PagedSearchResultVo<Integer> searchIds(MessageSearchParams params) {
+        PagedSearchResultVo<Integer> result = new PagedSearchResultVo<>();
+
+        try {
+            result.setData(searchPagedMessageIds(params, result));
+            result.updateSize();
+
+        } catch (Exception e) {
+            log.error("Error performing search " + params + ": " + e, e);
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Returns the last change date for messages or null if no message exists
+     * @return the last change date for messages
+     */
+    public Date getLastUpdated() {
+        try {
+            return em.createNamedQuery("Message.findLastUpdated", Date.class).getSingleResult();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Returns the revision keys of the messages with the given IDs, as computed by
+     * {@linkplain MessageJsonCache#revisionKey(String, Date, int)}, without loading the message entities.
+     *
+     * @param ids the message IDs
+     * @return the revision keys of the messages with the given IDs indexed by message ID
+     */
+    public Map<Integer, String> getMessageRevisions(List<Integer> ids) {
+        Map<Integer, String> result = new HashMap<>(ids.size());
+        for (int x = 0; x < ids.size(); x += LOOKUP_CHUNK_SIZE) {
+            em.createNamedQuery("Message.findRevisionsByIds", Object[].class)
+                    .setParameter("ids", ids.subList(x, Math.min(ids.size(), x + LOOKUP_CHUNK_SIZE)))
+                    .getResultList()
+                    .forEach(row -> result.put(
+                            (Integer) row[0],
+                            MessageJsonCache.revisionKey((String) row[1], (Date) row[2], (Integer) row[3])));
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the tombstones of the messages with the given IDs, i.e. the identifiers, status and
+     * last update of messages that are no longer published.
+     * <p>
+     * Only messages that have been published are included, so deleted drafts are never exposed.
+     *
+     * @param ids the message IDs
+     * @return the tombstones of the messages with the given IDs
+     */
+    public List<MessageTombstoneVo> getMessageTombstones(List<Integer> ids) {
+        List<MessageTombstoneVo> result = new ArrayList<>(ids.size());
+        for (int x = 0; x < ids.size(); x += LOOKUP_CHUNK_SIZE) {
+            result.addAll(toPublicTombstones(em.createNamedQuery("Message.findTombstonesByIds", Object[].class)
+                    .setParameter("ids", ids.subList(x, Math.min(ids.size(), x + LOOKUP_CHUNK_SIZE)))
+                    .getResultList()));
+        }
+        return result;
+    }
+
+
+    /**
+     * Converts the tombstone rows, i.e. the UID, short ID, status, last update and publish date of messages,
+     * to tombstones. Rows of messages that have never been published are left out.
+     *
+     * @param rows the tombstone rows
+     * @return the tombstones of the messages that have been published
+     */
+    public static List<MessageTombstoneVo> toPublicTombstones(List<Object[]> rows) {
+        return rows.stream()
+                .filter(row -> isPublicTombstone((Status) row[2], (Date) row[4]))
+                .map(row -> new MessageTombstoneVo((String) row[0], (String) row[1], (Status) row[2], (Date) row[3]))
+                .collect(Collectors.toList());
+    }
+
+
+    /**
+     * Returns if a message with the given status and publish date is a public tombstone, i.e. a message that
+     * has been published, and has since been cancelled or expired. Deleted messages are only included if
+     * they have been published, since drafts are deleted without ever being published.
+     *
+     * @param status the message status
+     * @param publishDateFrom the publish date of the message
+     * @return if the message is a public tombstone
+     */
+    public static boolean isPublicTombstone(Status status, Date publishDateFrom) {
+        return status == Status.CANCELLED
+                || status == Status.EXPIRED
+                || (status == Status.DELETED && publishDateFrom != null);
+    }
+
+
+    /**
+     * Returns the messages of the given message series with the given status and legacy IDs,
+     * i.e. the IDs of the messages they were imported from.
+     *
+     * @param seriesId the message series
+     * @param status the message status
+     * @param legacyIds the legacy IDs
+     * @return the matching messages
+     */
+    public List<Message> findBySeriesAndLegacyIds(String seriesId, Status status, Collection<String> legacyIds) {
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(legacyIds));
+        List<Message> result = new ArrayList<>(ids.size());
+        for (int x = 0; x < ids.size(); x += LOOKUP_CHUNK_SIZE) {
+            result.addAll(em.createNamedQuery("Message.findBySeriesAndLegacyIds", Message.class)
+                    .setParameter("seriesId", seriesId)
+                    .setParameter("status", status)
+                    .setParameter("legacyIds", ids.subList(x, Math.min(ids.size(), x + LOOKUP_CHUNK_SIZE)))
+                    .getResultList());
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the message with the given IDs, in the order of the ID list.
+     * <p>
+     * The lazy collections used when converting the messages to value objects are fetched
+     * in bulk - one query per collection - rather than one query per message.
      *
      * @param ids the message IDs
      * @return the message with the given IDs
      */
-    private List<Message> getMessages(List<Integer> ids) {
+    public List<Message> getMessages(List<Integer> ids) {
 
         if (ids.isEmpty()) {
             return Collections.emptyList();
@@ -983,8 +1187,20 @@ public class MessageService extends BaseService {
                 .setParameter("ids", ids)
                 .getResultList();
 
+        // Initialize the lazy collections of the messages. Fetch one collection at a time, since
+        // fetching several bags in one query is not supported and would yield a cartesian product
+        for (String fetchQuery : MESSAGE_FETCH_QUERIES) {
+            em.createNamedQuery(fetchQuery, Message.class)
+                    .setParameter("ids", ids)
+                    .getResultList();
+        }
+
         // Sort the result according to the order of the messages in the ID list
-        messages.sort(Comparator.comparingInt(m -> ids.indexOf(m.getId())));
+        Map<Integer, Integer> positions = new HashMap<>(ids.size());
+        for (int x = 0; x < ids.size(); x++) {
+            positions.putIfAbsent(ids.get(x), x);
+        }
+        messages.sort(Comparator.comparingInt(m -> positions.get(m.getId())));
 
         return messages;
     }
@@ -993,13 +1209,38 @@ public class MessageService extends BaseService {
     /**
      * Searches out the ID's of the paged result set of messages defined by the search parameters.
      * Also fills out the total result count of the message search result.
+     * <p>
+     * If the search defines a free-text query, and all other criteria and the sort order are covered by the
+     * message Lucene index, the page is fetched from the index alone. If the search defines a free-text query
+     * along with criteria not covered by the index, the Lucene hits are filtered by the database in bounded
+     * windows. Otherwise, the page is fetched from the database using either the keyset cursor of the search
+     * parameters, or - if no valid cursor is specified - the page offset. The total result count is computed
+     * using a separate count query, unless it can be deduced from the page itself or from the cursor.
      *
      * @param param the search parameters
      * @param result the search result to update with the total result count
      * @return the paged list of message ID's
      */
     @SuppressWarnings("all")
-    List<Integer> searchPagedMessageIds(MessageSearchParams param, PagedSearchResultVo<Message> result) throws Exception {
+    List<Integer> searchPagedMessageIds(MessageSearchParams param, PagedSearchResultVo<?> result) throws Exception {
+
+        // Check if the search can be resolved by the Lucene index alone
+        if (param.requiresLuceneSearch() && !param.requiresDatabaseSearch() && !param.sortByArea()
+                && messageLuceneIndex.isIndexFormatCurrent()) {
+            return searchPagedMessageIdsInIndex(param, result);
+        }
+
+        // The predicates are built several times - e.g. for the page query and the count query - so resolve
+        // the message ID restrictions up-front
+        Collection<Integer> referencedIds = StringUtils.isNotBlank(param.getMessageId()) ? findReferenceMessageIds(param) : null;
+
+        // Free-text searches with criteria not covered by the index are filtered by the database in bounded windows.
+        // Relevance can only be determined by the Lucene index
+        if (param.requiresLuceneSearch()) {
+            return param.sortByScore() || (!param.sortByArea() && messageLuceneIndex.isIndexFormatCurrent())
+                    ? searchPagedMessageIdsInIndexWindows(param, result, referencedIds)
+                    : searchPagedMessageIdsSortedInMemory(param, result, referencedIds);
+        }
 
         CriteriaBuilder builder = em.getCriteriaBuilder();
         CriteriaQuery<Tuple> tupleQuery = builder.createTupleQuery();
@@ -1008,8 +1249,487 @@ public class MessageService extends BaseService {
         Root<Message> msgRoot = tupleQuery.from(Message.class);
 
         // Build the predicates based on the search parameters
-        CriteriaHelper<Tuple> criteriaHelper = CriteriaHelper.initWithTupleQuery(em)
-                .between(msgRoot.get("updated"), param.getUpdatedFrom(), param.getUpdatedTo());
+        CriteriaHelper<Tuple> criteriaHelper = new CriteriaHelper<>(builder, tupleQuery);
+        addSearchPredicates(criteriaHelper, msgRoot, param, null, referencedIds);
+
+        // Determine the sort keys
+        List<Expression<?>> sortKeys = sortKeys(builder, msgRoot, param);
+        boolean ascending = param.getSortOrder() != SortOrder.DESC;
+
+        // If a valid keyset cursor is specified, seek past the last message of the previous page
+        MessageSearchCursor cursor = MessageSearchCursor.decode(param.getCursor(), param);
+        if (cursor != null && cursor.getMode() == MessageSearchCursor.Mode.KEYSET
+                && cursor.getKeys().size() == sortKeys.size()) {
+            criteriaHelper.add(keysetPredicate(builder, sortKeys, cursor.getKeys(), ascending));
+        } else {
+            cursor = null;
+        }
+
+        // Fetch the sort keys, including the message id's. Null values are consistently sorted as the lowest values
+        tupleQuery.multiselect(sortKeys.toArray(new Selection<?>[sortKeys.size()]))
+                .distinct(true)
+                .where(criteriaHelper.where())
+                .orderBy(sortKeys.stream()
+                        .map(k -> ascending ? getNodeBuilder().asc(k, true) : getNodeBuilder().desc(k, false))
+                        .collect(Collectors.toList()));
+
+        // Execute the query for the requested page only
+        int maxSize = Math.max(0, param.getMaxSize());
+        int offset = cursor != null ? cursor.getOffset() : (int)Math.min(Integer.MAX_VALUE, (long)param.getPage() * maxSize);
+        TypedQuery<Tuple> query = em.createQuery(tupleQuery);
+        if (cursor == null && offset > 0) {
+            query.setFirstResult(offset);
+        }
+        if (maxSize < Integer.MAX_VALUE) {
+            query.setMaxResults(maxSize);
+        }
+        List<Tuple> pageResult = query.getResultList();
+
+        // Register the total result. A short page is the last page, and thus determines the exact total.
+        // Otherwise, the total is carried over from the cursor, or counted for the first page
+        long total;
+        boolean lastPage = pageResult.size() < maxSize;
+        if (lastPage && (cursor != null || offset == 0 || !pageResult.isEmpty())) {
+            total = offset + pageResult.size();
+        } else if (cursor != null) {
+            total = Math.max(cursor.getTotal(), offset + pageResult.size());
+        } else {
+            total = countMessageIds(param, null, referencedIds);
+        }
+        result.setTotal(total);
+
+        // Issue a cursor for the next page, unless this is the last page
+        if (!lastPage && !pageResult.isEmpty() && offset + pageResult.size() < total) {
+            Tuple last = pageResult.get(pageResult.size() - 1);
+            List<Object> lastKeys = new ArrayList<>();
+            for (int x = 0; x < sortKeys.size(); x++) {
+                lastKeys.add(last.get(x));
+            }
+            result.setNextCursor(new MessageSearchCursor(
+                    MessageSearchCursor.Mode.KEYSET,
+                    param.getSortBy(),
+                    param.getSortOrder(),
+                    offset + pageResult.size(),
+                    total,
+                    lastKeys).encode());
+        }
+
+        int idIndex = sortKeys.size() - 1;
+        return pageResult.stream()
+                .map(t -> (Integer) t.get(idIndex))
+                .collect(Collectors.toList());
+    }
+
+
+    /**
+     * Searches out the ID's of the paged result set of messages from the message Lucene index alone.
+     * Only valid when all search criteria and the sort order are covered by the index.
+     *
+     * @param param the search parameters
+     * @param result the search result to update with the total result count
+     * @return the paged list of message ID's
+     */
+    private List<Integer> searchPagedMessageIdsInIndex(MessageSearchParams param, PagedSearchResultVo<?> result) {
+        MessageSearchCursor cursor = MessageSearchCursor.decode(param.getCursor(), param);
+        int maxSize = Math.max(0, param.getMaxSize());
+        int offset = cursor != null ? cursor.getOffset() : (int)Math.min(Integer.MAX_VALUE, (long)param.getPage() * maxSize);
+
+        PagedSearchResultVo<Integer> hits;
+        try {
+            hits = messageLuceneIndex.searchIndex(param, offset, maxSize);
+        } catch (Exception e) {
+            log.warn("Error searching lucene index for query " + param.getQuery());
+            hits = new PagedSearchResultVo<>();
+        }
+
+        result.setTotal(hits.getTotal());
+        setNextOffsetCursor(param, result, offset, hits.getData());
+        return hits.getData();
+    }
+
+
+    /**
+     * Searches out the ID's of the paged result set of messages by scanning the hits of the message Lucene index
+     * in bounded windows, and filtering each window by the criteria not covered by the index in the database.
+     * Only valid when the index hits are sorted in the requested sort order, or when sorting by relevance.
+     * <p>
+     * The scan stops when the page is filled, and the position of the next Lucene hit to scan is recorded as
+     * the key of the next-page cursor. Unless it can be carried over from the cursor, the total result count is
+     * computed by counting the matches of the remaining windows.
+     *
+     * @param param the search parameters
+     * @param result the search result to update with the total result count
+     * @param referencedIds the message ID's matching the message reference search, or null if undefined
+     * @return the paged list of message ID's
+     */
+    private List<Integer> searchPagedMessageIdsInIndexWindows(
+            MessageSearchParams param,
+            PagedSearchResultVo<?> result,
+            Collection<Integer> referencedIds) throws Exception {
+
+        // Only offset cursors recording the position of the next Lucene hit are valid
+        MessageSearchCursor cursor = MessageSearchCursor.decode(param.getCursor(), param);
+        if (cursor != null && (cursor.getMode() != MessageSearchCursor.Mode.OFFSET
+                || !(cursor.getKeys().get(0) instanceof Integer)
+                || (Integer) cursor.getKeys().get(0) < cursor.getOffset())) {
+            cursor = null;
+        }
+        int maxSize = Math.max(0, param.getMaxSize());
+        int offset = cursor != null ? cursor.getOffset() : (int)Math.min(Integer.MAX_VALUE, (long)param.getPage() * maxSize);
+        int position = cursor != null ? (Integer) cursor.getKeys().get(0) : 0;
+        int skip = cursor != null ? 0 : offset;
+
+        // Scan the Lucene hits until the page is filled
+        List<Integer> pagedIds = new ArrayList<>();
+        long luceneTotal = Long.MAX_VALUE;
+        while (pagedIds.size() < maxSize && position < luceneTotal) {
+            PagedSearchResultVo<Integer> window = searchIndexWindow(param, position);
+            luceneTotal = window.getData().isEmpty() ? position : window.getTotal();
+            Set<Integer> matchingIds = filterMessageIds(param, window.getData(), referencedIds);
+            int x = 0;
+            for (; x < window.getData().size() && pagedIds.size() < maxSize; x++) {
+                Integer id = window.getData().get(x);
+                if (matchingIds.contains(id)) {
+                    if (skip > 0) {
+                        skip--;
+                    } else {
+                        pagedIds.add(id);
+                    }
+                }
+            }
+            position += x;
+        }
+
+        // Register the total result
+        long matched = offset - skip + pagedIds.size();
+        long total;
+        if (position >= luceneTotal) {
+            total = matched;
+        } else if (cursor != null) {
+            total = Math.max(cursor.getTotal(), matched);
+        } else {
+            total = matched + countIndexWindowMatches(param, position, referencedIds);
+        }
+        result.setTotal(total);
+
+        // Issue a cursor for the next page
+        if (!pagedIds.isEmpty() && matched < total) {
+            result.setNextCursor(new MessageSearchCursor(
+                    MessageSearchCursor.Mode.OFFSET,
+                    param.getSortBy(),
+                    param.getSortOrder(),
+                    (int) matched,
+                    total,
+                    Collections.singletonList(position)).encode());
+        }
+        return pagedIds;
+    }
+
+
+    /**
+     * Searches out the ID's of the paged result set of messages, when the hits of the message Lucene index are not
+     * sorted in the requested sort order, i.e. when sorting by area or when the index format is outdated.
+     * <p>
+     * The Lucene hits are filtered by the database in bounded windows, along with the sort keys of the
+     * matching messages, and the matching messages are sorted and paged in memory.
+     *
+     * @param param the search parameters
+     * @param result the search result to update with the total result count
+     * @param referencedIds the message ID's matching the message reference search, or null if undefined
+     * @return the paged list of message ID's
+     */
+    private List<Integer> searchPagedMessageIdsSortedInMemory(
+            MessageSearchParams param,
+            PagedSearchResultVo<?> result,
+            Collection<Integer> referencedIds) throws Exception {
+
+        List<Object[]> matches = new ArrayList<>();
+        for (int position = 0; ; position += LUCENE_WINDOW_SIZE) {
+            PagedSearchResultVo<Integer> window = searchIndexWindow(param, position);
+            if (window.getData().isEmpty()) {
+                break;
+            }
+
+            CriteriaBuilder builder = em.getCriteriaBuilder();
+            CriteriaQuery<Tuple> tupleQuery = builder.createTupleQuery();
+            Root<Message> msgRoot = tupleQuery.from(Message.class);
+            CriteriaHelper<Tuple> criteriaHelper = new CriteriaHelper<>(builder, tupleQuery);
+            addSearchPredicates(criteriaHelper, msgRoot, param, window.getData(), referencedIds);
+            List<Expression<?>> sortKeys = sortKeys(builder, msgRoot, param);
+            tupleQuery.multiselect(sortKeys.toArray(new Selection<?>[sortKeys.size()]))
+                    .distinct(true)
+                    .where(criteriaHelper.where());
+            em.createQuery(tupleQuery).getResultList().forEach(t -> matches.add(t.toArray()));
+
+            if (position + LUCENE_WINDOW_SIZE >= window.getTotal()) {
+                break;
+            }
+        }
+
+        // Sort the matches like the database does, i.e. with null values as the lowest values
+        boolean ascending = param.getSortOrder() != SortOrder.DESC;
+        matches.sort((a, b) -> {
+            for (int x = 0; x < a.length; x++) {
+                int c = compareNullsLowest(a[x], b[x]);
+                if (c != 0) {
+                    return ascending ? c : -c;
+                }
+            }
+            return 0;
+        });
+
+        MessageSearchCursor cursor = MessageSearchCursor.decode(param.getCursor(), param);
+        int maxSize = Math.max(0, param.getMaxSize());
+        int offset = cursor != null ? cursor.getOffset() : (int)Math.min(Integer.MAX_VALUE, (long)param.getPage() * maxSize);
+        List<Integer> pagedIds = matches.subList(
+                        Math.min(offset, matches.size()),
+                        (int)Math.min(matches.size(), (long)offset + maxSize)).stream()
+                .map(m -> (Integer) m[m.length - 1])
+                .collect(Collectors.toList());
+
+        result.setTotal(matches.size());
+        setNextOffsetCursor(param, result, offset, pagedIds);
+        return pagedIds;
+    }
+
+
+    /** Compares two sort-key values, with null values as the lowest values **/
+    @SuppressWarnings("unchecked")
+    private static int compareNullsLowest(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == b ? 0 : (a == null ? -1 : 1);
+        }
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+
+    /**
+     * Returns the sort keys of the message search. The message ID is always used as the last sort key
+     * to ensure a stable order.
+     *
+     * @param builder the criteria builder
+     * @param msgRoot the message root of the query
+     * @param param the search parameters
+     * @return the sort keys
+     */
+    private List<Expression<?>> sortKeys(CriteriaBuilder builder, Root<Message> msgRoot, MessageSearchParams param) {
+        List<Expression<?>> sortKeys = new ArrayList<>();
+        if (param.sortByEventDate()) {
+            sortKeys.add(msgRoot.get("eventDateFrom"));
+            sortKeys.add(msgRoot.get("eventDateTo"));
+        } else if (param.sortByPublishDate()) {
+            sortKeys.add(msgRoot.get("publishDateFrom"));
+            sortKeys.add(msgRoot.get("publishDateTo"));
+        } else if (param.sortByFollowUpDate()) {
+            sortKeys.add(msgRoot.get("followUpDate"));
+        } else if (param.sortById()) {
+            sortKeys.add(msgRoot.get("year"));
+            sortKeys.add(msgRoot.get("number"));
+            sortKeys.add(msgRoot.get("publishDateFrom"));
+        } else if (param.sortByArea()) {
+            Join<Message, Area> areaRoot = msgRoot.join("area", JoinType.LEFT);
+            // General messages (without an associated area) should be sorted last
+            sortKeys.add(builder.selectCase()
+                    .when(builder.isNull(areaRoot.get("treeSortOrder")), 999999)
+                    .otherwise(areaRoot.get("treeSortOrder")));
+            sortKeys.add(msgRoot.get("areaSortOrder"));
+            sortKeys.add(msgRoot.get("year"));
+            sortKeys.add(msgRoot.get("number"));
+        }
+        sortKeys.add(msgRoot.get("id"));
+        return sortKeys;
+    }
+
+
+    /**
+     * Returns the window of Lucene hits starting at the given position, sorted by the sort order of the index search.
+     * The search is restricted by the criteria of the search parameters covered by the index.
+     *
+     * @param param the search parameters
+     * @param position the position of the first hit of the window
+     * @return the window of Lucene hits along with the total number of hits
+     */
+    private PagedSearchResultVo<Integer> searchIndexWindow(MessageSearchParams param, int position) {
+        try {
+            return messageLuceneIndex.searchIndex(param, position, LUCENE_WINDOW_SIZE);
+        } catch (Exception e) {
+            log.warn("Error searching lucene index for query " + param.getQuery());
+            return new PagedSearchResultVo<>();
+        }
+    }
+
+
+    /**
+     * Returns the ID's of the given window of messages that match the criteria of the search parameters
+     *
+     * @param param the search parameters
+     * @param windowIds the window of message ID's to filter
+     * @param referencedIds the message ID's matching the message reference search, or null if undefined
+     * @return the ID's of the window of messages that match the search parameters
+     */
+    private Set<Integer> filterMessageIds(MessageSearchParams param, List<Integer> windowIds, Collection<Integer> referencedIds) throws Exception {
+        if (windowIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Integer> idQuery = builder.createQuery(Integer.class);
+        Root<Message> msgRoot = idQuery.from(Message.class);
+
+        CriteriaHelper<Integer> criteriaHelper = new CriteriaHelper<>(builder, idQuery);
+        addSearchPredicates(criteriaHelper, msgRoot, param, windowIds, referencedIds);
+
+        idQuery.select(msgRoot.get("id"))
+                .distinct(true)
+                .where(criteriaHelper.where());
+        return new HashSet<>(em.createQuery(idQuery).getResultList());
+    }
+
+
+    /**
+     * Counts the messages matching the search parameters amongst the Lucene hits from the given position and on.
+     * The hits are counted one window at a time.
+     *
+     * @param param the search parameters
+     * @param position the position of the first Lucene hit to count
+     * @param referencedIds the message ID's matching the message reference search, or null if undefined
+     * @return the number of matching messages
+     */
+    private long countIndexWindowMatches(MessageSearchParams param, int position, Collection<Integer> referencedIds) throws Exception {
+        long count = 0;
+        for (; ; position += LUCENE_WINDOW_SIZE) {
+            PagedSearchResultVo<Integer> window = searchIndexWindow(param, position);
+            if (window.getData().isEmpty()) {
+                return count;
+            }
+            count += countMessageIds(param, window.getData(), referencedIds);
+            if (position + LUCENE_WINDOW_SIZE >= window.getTotal()) {
+                return count;
+            }
+        }
+    }
+
+
+    /**
+     * Issues an offset cursor for the next page of a search result that is paged by offset rather than by
+     * sort keys. The last message ID of the page is recorded as the single key.
+     *
+     * @param param the search parameters
+     * @param result the search result to update with the next-page cursor
+     * @param offset the offset of the current page
+     * @param pagedIds the message ID's of the current page
+     */
+    private void setNextOffsetCursor(MessageSearchParams param, PagedSearchResultVo<?> result, int offset, List<Integer> pagedIds) {
+        if (!pagedIds.isEmpty() && offset + pagedIds.size() < result.getTotal()) {
+            result.setNextCursor(new MessageSearchCursor(
+                    MessageSearchCursor.Mode.OFFSET,
+                    param.getSortBy(),
+                    param.getSortOrder(),
+                    offset + pagedIds.size(),
+                    result.getTotal(),
+                    Collections.singletonList(pagedIds.get(pagedIds.size() - 1))).encode());
+        }
+    }
+
+
+    /**
+     * Counts the number of distinct messages matching the search parameters
+     *
+     * @param param the search parameters
+     * @param luceneIds the message ID's matching the free-text search, or null if undefined
+     * @param referencedIds the message ID's matching the message reference search, or null if undefined
+     * @return the number of distinct messages matching the search parameters
+     */
+    private long countMessageIds(MessageSearchParams param, Collection<Integer> luceneIds, Collection<Integer> referencedIds) throws Exception {
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Long> countQuery = builder.createQuery(Long.class);
+        Root<Message> msgRoot = countQuery.from(Message.class);
+
+        CriteriaHelper<Long> criteriaHelper = new CriteriaHelper<>(builder, countQuery);
+        addSearchPredicates(criteriaHelper, msgRoot, param, luceneIds, referencedIds);
+
+        countQuery.select(builder.countDistinct(msgRoot.get("id")))
+                .where(criteriaHelper.where());
+
+        return em.createQuery(countQuery).getSingleResult();
+    }
+
+
+    /**
+     * Returns a predicate that matches the rows sorted after the given sort-key values.
+     * <p>
+     * The predicate assumes that null values are sorted as the lowest values.
+     *
+     * @param builder the criteria builder
+     * @param sortKeys the sort keys
+     * @param values the sort-key values of the last row of the previous page
+     * @param ascending whether to sort ascending or descending
+     * @return the keyset predicate
+     */
+    @SuppressWarnings("all")
+    private Predicate keysetPredicate(CriteriaBuilder builder, List<Expression<?>> sortKeys, List<Object> values, boolean ascending) {
+        List<Predicate> alternatives = new ArrayList<>();
+        List<Predicate> equalKeys = new ArrayList<>();
+        for (int x = 0; x < sortKeys.size(); x++) {
+            Expression key = sortKeys.get(x);
+            Comparable value = (Comparable) values.get(x);
+
+            // Rows where all preceding keys are equal, and this key is sorted after the value
+            Predicate after;
+            if (value == null) {
+                after = ascending ? builder.isNotNull(key) : builder.disjunction();
+            } else if (ascending) {
+                after = builder.greaterThan(key, value);
+            } else {
+                after = builder.or(builder.lessThan(key, value), builder.isNull(key));
+            }
+            List<Predicate> alternative = new ArrayList<>(equalKeys);
+            alternative.add(after);
+            alternatives.add(builder.and(alternative.toArray(new Predicate[alternative.size()])));
+
+            equalKeys.add(value == null ? builder.isNull(key) : builder.equal(key, value));
+        }
+        return builder.or(alternatives.toArray(new Predicate[alternatives.size()]));
+    }
+
+
+    /**
+     * Resolves the ID's of the messages referenced by - or referencing - the message ID of the search parameters
+     * @param param the search parameters
+     * @return the ID's of the referenced and referencing messages
+     */
+    private Set<Integer> findReferenceMessageIds(MessageSearchParams param) {
+        int levels = param.getReferenceLevels() == null ? 1 : param.getReferenceLevels();
+        // NB: This is expensive queries - limit the levels
+        levels = Math.max(0, Math.min(5, levels));
+        // First, find messages referenced by the message ID
+        Set<Integer> referencedIds = findReferencedMessageIds(new HashSet<>(), param.getMessageId(), levels);
+        // Next, add messages referencing the message ID
+        findReferencingMessageIds(referencedIds, param.getMessageId(), levels);
+        return referencedIds;
+    }
+
+
+    /**
+     * Adds the "where" predicates defined by the message search parameters to the criteria helper
+     *
+     * @param criteriaHelper the criteria helper to add the predicates to
+     * @param msgRoot the message root of the query
+     * @param param the search parameters
+     * @param luceneIds the message ID's matching the free-text search, or null if undefined
+     * @param referencedIds the message ID's matching the message reference search, or null if undefined
+     */
+    @SuppressWarnings("all")
+    private <T> void addSearchPredicates(
+            CriteriaHelper<T> criteriaHelper,
+            Root<Message> msgRoot,
+            MessageSearchParams param,
+            Collection<Integer> luceneIds,
+            Collection<Integer> referencedIds) throws Exception {
+
+        CriteriaBuilder builder = criteriaHelper.getCriteriaBuilder();
+
+        criteriaHelper.between(msgRoot.get("updated"), param.getUpdatedFrom(), param.getUpdatedTo());
 
 
         // Filter by dates
@@ -1057,18 +1777,8 @@ public class MessageService extends BaseService {
 
 
         // Search the Lucene index for free text search
-        if (param.requiresLuceneSearch()) {
-            List<Long> ids = null;
-            try {
-                ids = messageLuceneIndex.searchIndex(param.getQuery(), param.getLanguage(), Integer.MAX_VALUE);
-            } catch (Exception e) {
-                log.warn("Error searching lucene index for query " + param.getQuery());
-                ids = Collections.emptyList();
-            }
-            // Need to convert them to int as per message.id type
-            List<Integer> idsInteger = ids.stream().map(l->l.intValue()).toList();
-//            log.info("Found these messages for tree text query '" + param.getQuery() + " " + idsInteger);
-            criteriaHelper.in(msgRoot.get("id"), idsInteger);
+        if (luceneIds != null) {
+            criteriaHelper.in(msgRoot.get("id"), luceneIds);
         }
 
 
@@ -1114,9 +1824,9 @@ public class MessageService extends BaseService {
         }
 
 
-        // Geometry
+        // Geometry - already resolved by the free-text search, unless the index format is outdated
         Geometry extent = param.getExtent();
-        if (extent != null) {
+        if (extent != null && (luceneIds == null || !messageLuceneIndex.isIndexFormatCurrent())) {
             // MySQL stores geometry in reverse order
             // This should probably be optional based on the current
             if (dbKind.equals("mysql")) {
@@ -1198,14 +1908,7 @@ public class MessageService extends BaseService {
 
 
         // Refenced messages
-        if (StringUtils.isNotBlank(param.getMessageId())) {
-            int levels = param.getReferenceLevels() == null ? 1 : param.getReferenceLevels();
-            // NB: This is expensive queries - limit the levels
-            levels = Math.max(0, Math.min(5, levels));
-            // First, find messages referenced by the message ID
-            Set<Integer> referencedIds = findReferencedMessageIds(new HashSet<>(), param.getMessageId(), levels);
-            // Next, add messages referencing the message ID
-            findReferencingMessageIds(referencedIds, param.getMessageId(), levels);
+        if (referencedIds != null) {
             criteriaHelper.in(msgRoot.get("id"), referencedIds);
         }
 
@@ -1217,126 +1920,6 @@ public class MessageService extends BaseService {
             criteriaHelper.equals(promulgationJoin.get("promulgate"), true);
             criteriaHelper.in(promulgationTypeJoin.get("typeId"), param.getPromulgationTypes());
         }
-
-
-        // Determine the fields to fetch
-        Join<Message, Area> areaRoot = null;
-        Expression<?> treeSortOrder = null;
-        List<Selection<?>> fields = new ArrayList<>();
-        fields.add(msgRoot.get("id"));
-        if (param.sortByEventDate()) {
-            fields.add(msgRoot.get("eventDateFrom"));
-            fields.add(msgRoot.get("eventDateTo"));
-        } else if (param.sortByPublishDate()) {
-            fields.add(msgRoot.get("publishDateFrom"));
-            fields.add(msgRoot.get("publishDateTo"));
-        } else if (param.sortByFollowUpDate()) {
-            fields.add(msgRoot.get("followUpDate"));
-        } else if (param.sortById()) {
-            fields.add(msgRoot.get("year"));
-            fields.add(msgRoot.get("number"));
-            fields.add(msgRoot.get("publishDateFrom"));
-        } else if (param.sortByArea()) {
-            areaRoot = msgRoot.join("area", JoinType.LEFT);
-            // General messages (without an associated area) should be sorted last
-            treeSortOrder = builder.selectCase()
-                    .when(builder.isNull(areaRoot.get("treeSortOrder")), 999999)
-                    .otherwise(areaRoot.get("treeSortOrder"));
-            fields.add(treeSortOrder);
-            fields.add(msgRoot.get("areaSortOrder"));
-            fields.add(msgRoot.get("year"));
-            fields.add(msgRoot.get("number"));
-        }
-        Selection[] f = fields.toArray(new Selection<?>[fields.size()]);
-
-        // Complete the query and fetch the message id's (and fields used for sorting)
-        tupleQuery.multiselect(f)
-                .distinct(true)
-                .where(criteriaHelper.where());
-
-        // Sort the query
-        if (param.sortByEventDate()) {
-            if (param.getSortOrder() == SortOrder.ASC) {
-                tupleQuery.orderBy(
-                        builder.asc(msgRoot.get("eventDateFrom")),
-                        builder.asc(msgRoot.get("eventDateTo")),
-                        builder.asc(msgRoot.get("id")));
-            } else {
-                tupleQuery.orderBy(
-                        builder.desc(msgRoot.get("eventDateFrom")),
-                        builder.desc(msgRoot.get("eventDateTo")),
-                        builder.desc(msgRoot.get("id")));
-            }
-        } else if (param.sortByPublishDate()) {
-            if (param.getSortOrder() == SortOrder.ASC) {
-                tupleQuery.orderBy(
-                        builder.asc(msgRoot.get("publishDateFrom")),
-                        builder.asc(msgRoot.get("publishDateTo")),
-                        builder.asc(msgRoot.get("id")));
-            } else {
-                tupleQuery.orderBy(
-                        builder.desc(msgRoot.get("publishDateFrom")),
-                        builder.desc(msgRoot.get("publishDateTo")),
-                        builder.desc(msgRoot.get("id")));
-            }
-        } else if (param.sortByFollowUpDate()) {
-            if (param.getSortOrder() == SortOrder.ASC) {
-                tupleQuery.orderBy(
-                        builder.asc(msgRoot.get("followUpDate")),
-                        builder.asc(msgRoot.get("id")));
-            } else {
-                tupleQuery.orderBy(
-                        builder.desc(msgRoot.get("followUpDate")),
-                        builder.desc(msgRoot.get("id")));
-            }
-        } else if (param.sortById()) {
-            if (param.getSortOrder() == SortOrder.ASC) {
-                tupleQuery.orderBy(
-                        builder.asc(msgRoot.get("year")),
-                        builder.asc(msgRoot.get("number")),
-                        builder.asc(msgRoot.get("publishDateFrom")),
-                        builder.asc(msgRoot.get("id")));
-            } else {
-                tupleQuery.orderBy(
-                        builder.desc(msgRoot.get("year")),
-                        builder.desc(msgRoot.get("number")),
-                        builder.desc(msgRoot.get("publishDateFrom")),
-                        builder.desc(msgRoot.get("id")));
-            }
-        } else if (param.sortByArea()) {
-            if (param.getSortOrder() == SortOrder.ASC) {
-                tupleQuery.orderBy(
-                        builder.asc(treeSortOrder),
-                        builder.asc(msgRoot.get("areaSortOrder")),
-                        builder.asc(msgRoot.get("year")),
-                        builder.asc(msgRoot.get("number")),
-                        builder.asc(msgRoot.get("id")));
-            } else {
-                tupleQuery.orderBy(
-                        builder.desc(treeSortOrder),
-                        builder.desc(msgRoot.get("areaSortOrder")),
-                        builder.desc(msgRoot.get("year")),
-                        builder.desc(msgRoot.get("number")),
-                        builder.desc(msgRoot.get("id")));
-            }
-        }
-
-        // Execute the query
-        List<Tuple> totalResult = em
-                .createQuery(tupleQuery)
-                .getResultList();
-
-        // Register the total result
-        result.setTotal(totalResult.size());
-
-        List<Integer> msgIds = totalResult.stream()
-                .map(t -> (Integer) t.get(0))
-                .collect(Collectors.toList());
-
-        // Extract and return the paged sub-list
-        int startIndex = Math.min(msgIds.size(), param.getPage() * param.getMaxSize());
-        int endIndex = Math.min(msgIds.size(), startIndex + param.getMaxSize());
-        return msgIds.subList(startIndex, endIndex);
     }
 
 
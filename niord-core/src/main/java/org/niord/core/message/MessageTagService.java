@@ -20,6 +20,7 @@ import org.apache.commons.lang.StringUtils;
 import org.niord.core.db.CriteriaHelper;
 import org.niord.core.domain.Domain;
 import org.niord.core.domain.DomainService;
+import org.niord.core.domain.DomainSnapshot;
 import org.niord.core.message.vo.MessageTagVo.MessageTagType;
 import org.niord.core.service.BaseService;
 import org.niord.core.user.User;
@@ -90,7 +91,7 @@ public class MessageTagService extends BaseService {
      * @return the message tags with the given tag identifiers
      */
     public List<MessageTag> findTags(String... tagIds) {
-        Domain domain = domainService.currentDomain();
+        DomainSnapshot domain = domainService.currentDomainSnapshot();
         return findTags(domain, tagIds);
     }
 
@@ -102,6 +103,28 @@ public class MessageTagService extends BaseService {
      * @return the message tags with the given tag identifiers
      */
     public List<MessageTag> findTags(Domain domain, String... tagIds) {
+        return findTagsForDomainId(domain != null ? domain.getId() : null, tagIds);
+    }
+
+
+    /**
+     * Returns the message tags with the given tag IDs
+     * @param domain the snapshot of the domain to check for
+     * @param tagIds the tag IDs
+     * @return the message tags with the given tag identifiers
+     */
+    public List<MessageTag> findTags(DomainSnapshot domain, String... tagIds) {
+        return findTagsForDomainId(domain != null ? domain.getId() : null, tagIds);
+    }
+
+
+    /**
+     * Returns the message tags with the given tag IDs
+     * @param domainId the database ID of the domain to check for
+     * @param tagIds the tag IDs
+     * @return the message tags with the given tag identifiers
+     */
+    private List<MessageTag> findTagsForDomainId(Integer domainId, String... tagIds) {
         if (tagIds == null || tagIds.length == 0) {
             return Collections.emptyList();
         }
@@ -113,7 +136,7 @@ public class MessageTagService extends BaseService {
                 .setParameter("tagIds", idSet)
                 .getResultList()
                 .stream()
-                .filter(t -> validateAccess(t, user, domain))
+                .filter(t -> validateAccess(t, user, domainId))
                 .sorted()
                 .collect(Collectors.toList());
     }
@@ -139,11 +162,11 @@ public class MessageTagService extends BaseService {
 
 
     /** Validate that the user has access to the given tag */
-    private boolean validateAccess(MessageTag tag, User user, Domain domain) {
+    private boolean validateAccess(MessageTag tag, User user, Integer domainId) {
         if (tag.getType() == PRIVATE) {
             return user != null && tag.getUser() != null && user.getId().equals(tag.getUser().getId());
         } else if (tag.getType() == DOMAIN) {
-            return domain != null && tag.getDomain() != null && domain.getId().equals(tag.getDomain().getId());
+            return domainId != null && tag.getDomain() != null && domainId.equals(tag.getDomain().getId());
         }
         return true;
     }
@@ -160,12 +183,13 @@ public class MessageTagService extends BaseService {
         }
 
         User user = userService.currentUser();
-        Domain domain = domainService.currentDomain();
+        DomainSnapshot domain = domainService.currentDomainSnapshot();
+        Integer domainId = domain != null ? domain.getId() : null;
         return em.createNamedQuery("MessageTag.findTagsByMessageUid", MessageTag.class)
                 .setParameter("messageUid", messageUid)
                 .getResultList()
                 .stream()
-                .filter(t -> validateAccess(t, user, domain))
+                .filter(t -> validateAccess(t, user, domainId))
                 .sorted()
                 .collect(Collectors.toList());
     }
@@ -180,7 +204,7 @@ public class MessageTagService extends BaseService {
     @SuppressWarnings("ResultOfMethodCallIgnored")
     public List<MessageTag> searchMessageTags(MessageTagSearchParams params) {
         User user = userService.currentUser();
-        Domain domain = domainService.currentDomain();
+        DomainSnapshot domain = domainService.currentDomainSnapshot();
 
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<MessageTag> query = cb.createQuery(MessageTag.class);
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.message.batch;
+
+import org.niord.core.batch.AbstractItemHandler;
+import org.niord.core.message.MessageIndexRebuild;
+import org.niord.core.message.MessageLuceneIndex;
+
+import jakarta.enterprise.context.Dependent;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Starts rebuilding the message Lucene index, and reads the partitions of message ID's to index.
+ * <p>
+ * Please note, the actual message-index-rebuild.xml job file is not placed in the META-INF/batch-jobs of this project,
+ * but rather, in the META-INF/batch-jobs folder of the niord-web project.<br>
+ * This is because of a class-loading bug in the Wildfly implementation. See e.g.
+ * https://issues.jboss.org/browse/WFLY-4988
+ * <p>
+ * A restarted job always starts a new rebuild, since the partially rebuilt index is discarded when a job fails.
+ */
+@Dependent
+@Named("batchMessageIndexRebuildReader")
+public class BatchMessageIndexRebuildReader extends AbstractItemHandler {
+
+    @Inject
+    MessageLuceneIndex messageLuceneIndex;
+
+    List<List<Integer>> partitions;
+    int partitionNo = 0;
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void open(Serializable prevCheckpointInfo) throws Exception {
+
+        MessageIndexRebuild rebuild = messageLuceneIndex.startRebuild();
+        partitions = rebuild.getPartitions();
+
+        getLog().info(String.format("Start rebuilding message index with %d messages in %d partitions",
+                rebuild.getMessageCount(), partitions.size()));
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public Object readItem() throws Exception {
+        if (partitionNo < partitions.size()) {
+
+            // Every now and then, update the progress
+            if (partitionNo % 10 == 0) {
+                updateProgress((int)(100.0 * partitionNo / partitions.size()));
+            }
+
+            return partitions.get(partitionNo++);
+        }
+        return null;
+    }
+}
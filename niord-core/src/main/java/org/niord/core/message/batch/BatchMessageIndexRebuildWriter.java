@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.message.batch;
+
+import org.niord.core.batch.AbstractItemHandler;
+import org.niord.core.message.MessageIndexRebuild;
+import org.niord.core.message.MessageLuceneIndex;
+
+import jakarta.enterprise.context.Dependent;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import java.io.Serializable;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Indexes the partitions of message ID's concurrently into the rebuilt message Lucene index.
+ * <p>
+ * When the step is complete, the current message index is replaced with the rebuilt index.
+ */
+@Dependent
+@Named("batchMessageIndexRebuildWriter")
+public class BatchMessageIndexRebuildWriter extends AbstractItemHandler {
+
+    @Inject
+    MessageLuceneIndex messageLuceneIndex;
+
+    MessageIndexRebuild rebuild;
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void open(Serializable prevCheckpointInfo) throws Exception {
+        // The rebuild has been started by the reader
+        rebuild = messageLuceneIndex.getCurrentRebuild();
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    @SuppressWarnings("unchecked")
+    public void writeItems(List<Object> items) throws Exception {
+        long t0 = System.currentTimeMillis();
+
+        List<List<Integer>> partitions = items.stream()
+                .map(i -> (List<Integer>) i)
+                .collect(Collectors.toList());
+
+        int count = messageLuceneIndex.indexPartitions(rebuild, partitions);
+
+        getLog().info(String.format("Indexed %d messages in %d ms. In total %d of %d messages at %.1f messages/s",
+                count,
+                System.currentTimeMillis() - t0,
+                rebuild.getIndexedMessages(),
+                rebuild.getMessageCount(),
+                rebuild.getMessagesPerSecond()));
+    }
+
+
+    /** {@inheritDoc} **/
+    @Override
+    public void close() throws Exception {
+        // Replaces the current index if all partitions have been indexed. Otherwise, the rebuild is discarded
+        if (messageLuceneIndex.completeRebuild(rebuild)) {
+            updateProgress(100);
+            getLog().info("Replaced the message index with the rebuilt index");
+        } else {
+            getLog().warning("Discarded incomplete message index rebuild");
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.message.vo;
+
+import org.niord.model.IJsonSerializable;
+
+import java.util.Date;
+
+/**
+ * Reports the status and performance metrics of the message Lucene index
+ */
+@SuppressWarnings("unused")
+public class MessageIndexStatusVo implements IJsonSerializable {
+
+    boolean allMessagesIndexed;
+    boolean rebuilding;
+    boolean indexFormatCurrent;
+    int documentCount;
+    int pendingMessages;
+    Date lastUpdated;
+    long indexedMessages;
+    long lastIndexingLag;
+    long maxIndexingLag;
+    long reopenCount;
+    long lastReopenTime;
+    long maxReopenTime;
+    long averageReopenTime;
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public boolean isAllMessagesIndexed() {
+        return allMessagesIndexed;
+    }
+
+    public void setAllMessagesIndexed(boolean allMessagesIndexed) {
+        this.allMessagesIndexed = allMessagesIndexed;
+    }
+
+    public boolean isRebuilding() {
+        return rebuilding;
+    }
+
+    public void setRebuilding(boolean rebuilding) {
+        this.rebuilding = rebuilding;
+    }
+
+    public boolean isIndexFormatCurrent() {
+        return indexFormatCurrent;
+    }
+
+    public void setIndexFormatCurrent(boolean indexFormatCurrent) {
+        this.indexFormatCurrent = indexFormatCurrent;
+    }
+
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    public void setDocumentCount(int documentCount) {
+        this.documentCount = documentCount;
+    }
+
+    public int getPendingMessages() {
+        return pendingMessages;
+    }
+
+    public void setPendingMessages(int pendingMessages) {
+        this.pendingMessages = pendingMessages;
+    }
+
+    public Date getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(Date lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+
+    public long getIndexedMessages() {
+        return indexedMessages;
+    }
+
+    public void setIndexedMessages(long indexedMessages) {
+        this.indexedMessages = indexedMessages;
+    }
+
+    public long getLastIndexingLag() {
+        return lastIndexingLag;
+    }
+
+    public void setLastIndexingLag(long lastIndexingLag) {
+        this.lastIndexingLag = lastIndexingLag;
+    }
+
+    public long getMaxIndexingLag() {
+        return maxIndexingLag;
+    }
+
+    public void setMaxIndexingLag(long maxIndexingLag) {
+        this.maxIndexingLag = maxIndexingLag;
+    }
+
+    public long getReopenCount() {
+        return reopenCount;
+    }
+
+    public void setReopenCount(long reopenCount) {
+        this.reopenCount = reopenCount;
+    }
+
+    public long getLastReopenTime() {
+        return lastReopenTime;
+    }
+
+    public void setLastReopenTime(long lastReopenTime) {
+        this.lastReopenTime = lastReopenTime;
+    }
+
+    public long getMaxReopenTime() {
+        return maxReopenTime;
+    }
+
+    public void setMaxReopenTime(long maxReopenTime) {
+        this.maxReopenTime = maxReopenTime;
+    }
+
+    public long getAverageReopenTime() {
+        return averageReopenTime;
+    }
+
+    public void setAverageReopenTime(long averageReopenTime) {
+        this.averageReopenTime = averageReopenTime;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.core.message.vo;
+
+import org.niord.model.IJsonSerializable;
+import org.niord.model.message.Status;
+
+import java.util.Date;
+
+/**
+ * Identifies a message that is no longer published, i.e. which has been cancelled, expired or deleted.
+ * Used by the change feed of the public API to let clients remove messages they have synchronized.
+ */
+@SuppressWarnings("unused")
+public class MessageTombstoneVo implements IJsonSerializable {
+
+    String id;
+    String shortId;
+    Status status;
+    Date updated;
+
+    /** No-argument constructor **/
+    public MessageTombstoneVo() {
+    }
+
+    /** Constructor **/
+    public MessageTombstoneVo(String id, String shortId, Status status, Date updated) {
+        this.id = id;
+        this.shortId = shortId;
+        this.status = status;
+        this.updated = updated;
+    }
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getShortId() {
+        return shortId;
+    }
+
+    public void setShortId(String shortId) {
+        this.shortId = shortId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Date getUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(Date updated) {
+        this.updated = updated;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.repo;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * A single byte range of a file, as specified by an HTTP "Range" header.
+ * <p>
+ * Only single ranges are supported. Requests for multiple ranges are served the full file.
+ */
+public final class ByteRange {
+
+    final long start;
+    final long end;
+    final long size;
+
+    /** Constructor **/
+    private ByteRange(long start, long end, long size) {
+        this.start = start;
+        this.end = end;
+        this.size = size;
+    }
+
+
+    /**
+     * Parses the "Range" header for a file with the given size.
+     * Returns null if the header is undefined, malformed or specifies multiple ranges,
+     * in which case the full file should be served.
+     *
+     * @param range the "Range" header
+     * @param size the size of the file
+     * @return the byte range, or null if the full file should be served
+     */
+    public static ByteRange parse(String range, long size) {
+        if (StringUtils.isBlank(range) || !range.startsWith("bytes=") || range.contains(",")) {
+            return null;
+        }
+
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+
+        try {
+            String from = spec.substring(0, dash).trim();
+            String to = spec.substring(dash + 1).trim();
+            long start, end;
+            if (from.isEmpty()) {
+                // Suffix range, i.e. the last n bytes
+                long suffix = Long.parseLong(to);
+                start = Math.max(0, size - suffix);
+                end = suffix > 0 ? size - 1 : -1;
+            } else {
+                start = Long.parseLong(from);
+                end = to.isEmpty() ? size - 1 : Math.min(Long.parseLong(to), size - 1);
+                if (!to.isEmpty() && Long.parseLong(to) < start) {
+                    return null;
+                }
+            }
+            return new ByteRange(start, end, size);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+
+    /** Returns if the range can be served for the file **/
+    public boolean isSatisfiable() {
+        return start < size && start <= end;
+    }
+
+    /** Returns the value of the "Content-Range" header **/
+    public String getContentRange() {
+        return isSatisfiable()
+                ? "bytes " + start + "-" + end + "/" + size
+                : "bytes */" + size;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long getLength() {
+        return end - start + 1;
+    }
+}
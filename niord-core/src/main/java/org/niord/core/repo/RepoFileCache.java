@@ -0,0 +1,266 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.repo;
+
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.slf4j.Logger;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caches the attributes of repository files, i.e. the size, last-modified time, ETag and content type,
+ * and maintains pre-compressed variants of compressible repository files.
+ * <p>
+ * Cached attributes are invalidated when files are uploaded, deleted or moved via the {@linkplain RepositoryService},
+ * and otherwise re-validated after a couple of seconds, to pick up files changed by other means.
+ * <p>
+ * The pre-compressed variants are stored as hidden siblings of the original file, i.e. ".[name].gz" and
+ * ".[name].br", and are only used if they have the same last-modified time as the original file.
+ * The gzip variants are generated in the background the first time a compressible file is requested.
+ * Brotli variants are used if present, but not generated, since the JDK does not include a Brotli encoder.
+ */
+@ApplicationScoped
+public class RepoFileCache {
+
+    /** The time in ms after which cached file attributes are re-validated **/
+    static final long ATTRIBUTE_TTL_MS = 10_000L;
+
+    /** The min size of files for which pre-compressed variants are generated **/
+    static final long MIN_COMPRESS_SIZE = 1024L;
+
+    static final Set<String> COMPRESSIBLE_TYPES = Set.of(
+            "application/json",
+            "application/javascript",
+            "application/xml",
+            "application/gml+xml",
+            "application/rtf",
+            "image/svg+xml",
+            "image/bmp"
+    );
+
+    /** The supported content encodings of pre-compressed variants and their file extensions **/
+    public enum Encoding {
+        BROTLI("br"), GZIP("gz");
+
+        final String extension;
+
+        Encoding(String extension) {
+            this.extension = extension;
+        }
+
+        public String getName() {
+            return extension.equals("gz") ? "gzip" : extension;
+        }
+    }
+
+    @Inject
+    Logger log;
+
+    @Inject
+    FileTypes fileTypes;
+
+    @Inject
+    ManagedExecutor managedExecutor;
+
+    final Map<Path, RepoFileAttributes> attributes = new ConcurrentHashMap<>();
+    final Set<Path> pendingCompressions = ConcurrentHashMap.newKeySet();
+
+
+    /**
+     * Returns the attributes of the given file, or null if the file is not a regular file
+     *
+     * @param file the file
+     * @return the attributes of the given file, or null if the file is not a regular file
+     */
+    public RepoFileAttributes getAttributes(Path file) {
+        RepoFileAttributes attrs = attributes.get(file);
+        if (attrs != null && attrs.validated + ATTRIBUTE_TTL_MS > System.currentTimeMillis()) {
+            return attrs;
+        }
+
+        try {
+            BasicFileAttributes fileAttrs = Files.readAttributes(file, BasicFileAttributes.class);
+            if (fileAttrs.isRegularFile()) {
+                attrs = new RepoFileAttributes(
+                        fileAttrs.size(),
+                        fileAttrs.lastModifiedTime().toMillis(),
+                        fileTypes.getContentType(file));
+                attributes.put(file, attrs);
+                return attrs;
+            }
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException e) {
+            log.debug("Error reading attributes of " + file + ": " + e);
+        }
+        attributes.remove(file);
+        return null;
+    }
+
+
+    /**
+     * Invalidates the cached attributes of the given file or folder, including all files of the folder
+     *
+     * @param path the file or folder to invalidate
+     */
+    public void invalidate(Path path) {
+        attributes.keySet().removeIf(p -> p.startsWith(path));
+    }
+
+
+    /**
+     * Returns the up-to-date pre-compressed variant of the file with the given encoding, or null if undefined.
+     * If a gzip variant is requested for a compressible file, but not defined, the variant is generated
+     * in the background.
+     *
+     * @param file the file
+     * @param attrs the attributes of the file
+     * @param encoding the content encoding
+     * @return the up-to-date pre-compressed variant, or null if undefined
+     */
+    public Path getCompressedVariant(Path file, RepoFileAttributes attrs, Encoding encoding) {
+        Path variant = variantFile(file, encoding);
+        RepoFileAttributes variantAttrs = getAttributes(variant);
+        if (variantAttrs != null && variantAttrs.getLastModified() == attrs.getLastModified()) {
+            return variant;
+        }
+
+        if (encoding == Encoding.GZIP && isCompressible(attrs) && pendingCompressions.add(file)) {
+            managedExecutor.execute(() -> {
+                try {
+                    compress(file, attrs, variant);
+                } finally {
+                    pendingCompressions.remove(file);
+                }
+            });
+        }
+        return null;
+    }
+
+
+    /** Returns the pre-compressed variant file of the file **/
+    static Path variantFile(Path file, Encoding encoding) {
+        return file.resolveSibling("." + file.getFileName() + "." + encoding.extension);
+    }
+
+
+    /** Returns if pre-compressed variants should be generated for the file **/
+    static boolean isCompressible(RepoFileAttributes attrs) {
+        String type = attrs.getContentType();
+        return attrs.getSize() >= MIN_COMPRESS_SIZE
+                && type != null
+                && (type.startsWith("text/") || COMPRESSIBLE_TYPES.contains(type));
+    }
+
+
+    /**
+     * Generates the gzip variant of the file. The variant is given the same last-modified time as the file,
+     * and is moved into place atomically.
+     */
+    void compress(Path file, RepoFileAttributes attrs, Path variant) {
+        long t0 = System.currentTimeMillis();
+        Path tmp = variant.resolveSibling(variant.getFileName() + ".tmp");
+        try {
+            try (InputStream in = Files.newInputStream(file);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                in.transferTo(out);
+            }
+
+            // Only use the variant if the file has not changed while compressing it
+            if (Files.getLastModifiedTime(file).toMillis() != attrs.getLastModified()) {
+                Files.deleteIfExists(tmp);
+                return;
+            }
+            Files.setLastModifiedTime(tmp, FileTime.fromMillis(attrs.getLastModified()));
+            Files.move(tmp, variant, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            attributes.remove(variant);
+            log.debug("Generated " + variant + " in " + (System.currentTimeMillis() - t0) + " ms");
+
+        } catch (IOException e) {
+            log.warn("Error generating " + variant + ": " + e);
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+
+    /**
+     * Deletes the pre-compressed variants of the file
+     *
+     * @param file the file
+     */
+    public void deleteCompressedVariants(Path file) {
+        for (Encoding encoding : Encoding.values()) {
+            try {
+                Files.deleteIfExists(variantFile(file, encoding));
+            } catch (IOException e) {
+                log.debug("Error deleting " + encoding + " variant of " + file + ": " + e);
+            }
+        }
+    }
+
+
+    /**
+     * The cached attributes of a repository file
+     */
+    public static final class RepoFileAttributes {
+
+        final long size;
+        final long lastModified;
+        final String contentType;
+        final String etag;
+        final long validated = System.currentTimeMillis();
+
+        /** Constructor **/
+        RepoFileAttributes(long size, long lastModified, String contentType) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.etag = lastModified + "_" + size;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
@@ -23,8 +23,11 @@ import jakarta.annotation.security.RolesAllowed;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.time.DateUtils;
 import org.jboss.resteasy.annotations.cache.NoCache;
 import org.jboss.resteasy.plugins.providers.multipart.MultipartInput;
+import org.niord.core.repo.RepoFileCache.Encoding;
+import org.niord.core.repo.RepoFileCache.RepoFileAttributes;
 import org.niord.core.settings.annotation.Setting;
 import org.niord.core.user.Roles;
 import org.niord.core.util.WebUtils;
@@ -38,10 +41,18 @@ import jakarta.ws.rs.core.*;
 import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
@@ -68,6 +79,8 @@ import static org.niord.core.settings.Setting.Type;
 @SuppressWarnings("unused")
 public class RepositoryService {
 
+    static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
     @Inject
     @Setting(value="repoRootPath", defaultValue="${niord.home}/repo", description="The root directory of the Niord repository")
     Path repoRoot;
@@ -85,6 +98,9 @@ public class RepositoryService {
     @Inject
     ThumbnailService thumbnailService;
 
+    @Inject
+    RepoFileCache repoFileCache;
+
     /**
      * Initializes the repository
      */
@@ -200,19 +216,30 @@ public class RepositoryService {
 
 
     /**
-     * Streams the file specified by the path
+     * Streams the file specified by the path.
+     * <p>
+     * Supports single byte ranges, including "If-Range" requests, and serves the pre-compressed gzip or brotli
+     * variant of the file if accepted by the client.
+     *
      * @param path the path
      * @param request the servlet request
+     * @param acceptEncoding the "Accept-Encoding" header
+     * @param range the "Range" header
+     * @param ifRange the "If-Range" header
      * @return the response
      */
     @GET
     @jakarta.ws.rs.Path("/file/{file:.+}")
     public Response streamFile(@PathParam("file") String path,
-                               @Context Request request) throws IOException {
+                               @Context Request request,
+                               @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding,
+                               @HeaderParam("Range") String range,
+                               @HeaderParam("If-Range") String ifRange) throws IOException {
 
         Path f = repoRoot.resolve(path);
+        RepoFileAttributes attrs = repoFileCache.getAttributes(f);
 
-        if (Files.notExists(f) || Files.isDirectory(f)) {
+        if (attrs == null) {
             log.warn("Failed streaming file: " + f);
             return Response
                     .status(HttpServletResponse.SC_NOT_FOUND)
@@ -222,28 +249,192 @@ public class RepositoryService {
 
         // Set expiry to cacheTimeout minutes
         Date expirationDate = new Date(System.currentTimeMillis() + 1000L * 60L * cacheTimeout);
+        Date lastModified = new Date(attrs.getLastModified());
+
+        // Check for a pre-compressed variant accepted by the client. Byte ranges are only served from the
+        // original file, and so are the full responses to range requests
+        boolean compressible = RepoFileCache.isCompressible(attrs);
+        Encoding encoding = null;
+        RepoFileAttributes variantAttrs = null;
+        Path variant = null;
+        if (compressible && StringUtils.isBlank(range)) {
+            for (Encoding e : acceptedEncodings(acceptEncoding)) {
+                variant = repoFileCache.getCompressedVariant(f, attrs, e);
+                variantAttrs = variant != null ? repoFileCache.getAttributes(variant) : null;
+                if (variantAttrs != null) {
+                    encoding = e;
+                    break;
+                }
+            }
+        }
 
-        String mt = fileTypes.getContentType(f);
-
-        // Check for an ETag match
-        EntityTag etag = new EntityTag("" + Files.getLastModifiedTime(f).toMillis() + "_" + Files.size(f), true);
+        // Check for an ETag match. Each encoding of the file has its own entity tag
+        EntityTag etag = new EntityTag(encoding != null
+                ? attrs.getEtag() + "-" + encoding.extension
+                : attrs.getEtag());
         Response.ResponseBuilder responseBuilder = request.evaluatePreconditions(etag);
         if (responseBuilder != null) {
             // Etag match
             log.trace("File unchanged. Return code 304");
-            return responseBuilder
+            responseBuilder.expires(expirationDate);
+            if (compressible) {
+                responseBuilder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+            return responseBuilder.build();
+        }
+
+        if (encoding != null) {
+            log.trace("Streaming " + encoding.getName() + " variant of file: " + f);
+            return Response
+                    .ok(streamingOutput(variant, 0, variantAttrs.getSize()), attrs.getContentType())
+                    .encoding(encoding.getName())
+                    .header(HttpHeaders.CONTENT_LENGTH, variantAttrs.getSize())
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .lastModified(lastModified)
                     .expires(expirationDate)
+                    .tag(etag)
+                    .build();
+        }
+
+        // Check for a byte range request. If-Range requests are only honoured if the file is unchanged
+        ByteRange byteRange = ByteRange.parse(range, attrs.getSize());
+        if (byteRange != null && StringUtils.isNotBlank(ifRange) && !ifRangeMatches(ifRange, etag, lastModified)) {
+            byteRange = null;
+        }
+        if (byteRange != null) {
+            if (!byteRange.isSatisfiable()) {
+                return Response
+                        .status(416)
+                        .header("Content-Range", byteRange.getContentRange())
+                        .build();
+            }
+            log.trace("Streaming range " + byteRange.getContentRange() + " of file: " + f);
+            return Response
+                    .status(206)
+                    .entity(streamingOutput(f, byteRange.getStart(), byteRange.getLength()))
+                    .type(attrs.getContentType())
+                    .header("Content-Range", byteRange.getContentRange())
+                    .header(HttpHeaders.CONTENT_LENGTH, byteRange.getLength())
+                    .header("Accept-Ranges", "bytes")
+                    .lastModified(lastModified)
+                    .expires(expirationDate)
+                    .tag(etag)
                     .build();
         }
 
         log.trace("Streaming file: " + f);
-        return Response
-                .ok(f.toFile(), mt)
+        Response.ResponseBuilder response = Response
+                .ok(streamingOutput(f, 0, attrs.getSize()), attrs.getContentType())
+                .header(HttpHeaders.CONTENT_LENGTH, attrs.getSize())
+                .header("Accept-Ranges", "bytes")
+                .lastModified(lastModified)
                 .expires(expirationDate)
-                .tag(etag)
-                .build();
+                .tag(etag);
+        if (compressible) {
+            response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        return response.build();
     }
 
+
+    /**
+     * Parses the "Accept-Encoding" header and returns the accepted encodings, ordered by descending
+     * quality value. Encodings with a quality value of 0 are not accepted, and explicitly listed
+     * encodings take precedence over the "*" wildcard.
+     *
+     * @param acceptEncoding the "Accept-Encoding" header
+     * @return the accepted encodings
+     */
+    public static List<Encoding> acceptedEncodings(String acceptEncoding) {
+        if (StringUtils.isBlank(acceptEncoding)) {
+            return Collections.emptyList();
+        }
+
+        Map<String, Double> qualities = new HashMap<>();
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase();
+            double q = 1.0;
+            for (int x = 1; x < parts.length; x++) {
+                String param = parts[x].trim();
+                if (param.startsWith("q=") || param.startsWith("Q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0.0;
+                    }
+                }
+            }
+            if (StringUtils.isNotBlank(name)) {
+                qualities.put(name, q);
+            }
+        }
+
+        Double wildcard = qualities.get("*");
+        List<Encoding> result = new ArrayList<>();
+        for (Encoding encoding : Encoding.values()) {
+            Double q = qualities.getOrDefault(encoding.getName(), wildcard);
+            if (q != null && q > 0.0) {
+                result.add(encoding);
+            }
+        }
+        result.sort(Comparator.comparingDouble(e -> -qualities.getOrDefault(e.getName(), wildcard)));
+        return result;
+    }
+
+
+    /** Returns if the "If-Range" header, either an entity tag or an HTTP date, matches the file **/
+    private boolean ifRangeMatches(String ifRange, EntityTag etag, Date lastModified) {
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // Weak entity tags never match
+            return ifRange.equals("\"" + etag.getValue() + "\"");
+        }
+        try {
+            Date date = DateUtils.parseDate(ifRange, new String[] { HTTP_DATE_FORMAT });
+            return date.getTime() / 1000L == lastModified.getTime() / 1000L;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+
+    /**
+     * Returns a streaming output, which copies the given byte range of the file to the response stream
+     */
+    private StreamingOutput streamingOutput(Path file, long position, long count) {
+        return os -> {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                transferFile(channel, position, count, os);
+            }
+        };
+    }
+
+
+    /**
+     * Transfers the given byte range of the file channel to the output stream.
+     * <p>
+     * The response stream is not backed by a socket channel, so the bytes are copied via an intermediate
+     * buffer rather than being sent with zero-copy transfers.
+     *
+     * @param channel the file channel
+     * @param position the start position
+     * @param count the number of bytes to transfer
+     * @param out the output stream
+     */
+    public static void transferFile(FileChannel channel, long position, long count, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        while (count > 0) {
+            long transferred = channel.transferTo(position, count, target);
+            if (transferred <= 0) {
+                throw new EOFException("File truncated while streaming");
+            }
+            position += transferred;
+            count -= transferred;
+        }
+        out.flush();
+    }
+
+
     /**
      * Deletes the file specified by the path
      * @param path the path
@@ -266,6 +457,8 @@ public class RepositoryService {
         }
 
         Files.delete(f);
+        repoFileCache.deleteCompressedVariants(f);
+        repoFileCache.invalidate(f);
         log.info("Deleted file " + f);
 
         return Response
@@ -399,6 +592,8 @@ public class RepositoryService {
                 out.flush();
             }
 
+            repoFileCache.invalidate(destFile.toPath());
+
             // Return the repo-relative path as a result
             result.add(Paths.get(path, destFile.getName()).toString());
         }
@@ -510,6 +705,7 @@ public class RepositoryService {
         if (FileUtils.isFileOlder(file, date)) {
             log.debug("Deleting expired temp file or folder: " + file);
             FileUtils.deleteQuietly(file);
+            repoFileCache.invalidate(file.toPath());
         } else if (file.isDirectory()) {
             File[] files = file.listFiles();
             if (files != null && files.length > 0) {
@@ -529,6 +725,7 @@ public class RepositoryService {
         Path to = getRepoRoot().resolve(newRepoPath);
         if (Files.exists(from)) {
             FileUtils.copyDirectory(from.toFile(), to.toFile());
+            repoFileCache.invalidate(to);
             return true;
         }
         return false;
@@ -552,8 +749,10 @@ public class RepositoryService {
                 Path srcPath = getRepoRoot().resolve(vo.getRepoPath());
                 Path dstPath = getRepoRoot().resolve(editRepoPath);
                 if (Files.exists(srcPath)) {
-                    log.info("Copy folder " + srcPath + " to temporary folder " + dstPath);
-                    FileUtils.copyDirectory(srcPath.toFile(), dstPath.toFile(), true);
+                    long t0 = System.currentTimeMillis();
+                    int linked = linkOrCopyDirectory(srcPath, dstPath);
+                    log.info("Cloned folder " + srcPath + " to temporary folder " + dstPath + ", linking "
+                            + linked + " files, in " + (System.currentTimeMillis() - t0) + " ms");
                 }
             }
 
@@ -564,7 +763,8 @@ public class RepositoryService {
 
 
     /**
-     * Copy new files from the temporary edit-repo path to the actual repo folder associated with the value object
+     * Copy new or changed files from the temporary edit-repo path to the actual repo folder associated
+     * with the value object
      * @param vo the value object to update
      */
     public void updateRepoFolderFromTempEditFolder(IRepoBackedVo vo) throws IOException {
@@ -577,18 +777,130 @@ public class RepositoryService {
 
             if (Files.exists(srcPath)) {
 
+                List<Path> syncedFiles;
+
                 // Case 1: If this is a new publication, copy the entire directory
                 if (!Files.exists(dstPath)) {
                     log.info("Syncing folder " + srcPath + " with " + dstPath);
-                    FileUtils.copyDirectory(srcPath.toFile(), dstPath.toFile(), true);
+                    syncedFiles = syncDirectory(srcPath, dstPath);
 
                     // Case 2: Copy the latest revision sub-folder back to the source folder
                 } else if (Files.exists(srcPath.resolve(revision))) {
                     log.info("Syncing revision " + revision + " of folder " + srcPath + " with folder " + dstPath);
-                    FileUtils.copyDirectory(srcPath.resolve(revision).toFile(), dstPath.resolve(revision).toFile(), true);
+                    syncedFiles = syncDirectory(srcPath.resolve(revision), dstPath.resolve(revision));
                 } else {
                     log.info("No new revision files to sync");
+                    syncedFiles = Collections.emptyList();
+                }
+
+                if (!syncedFiles.isEmpty()) {
+                    log.info("Synced " + syncedFiles.size() + " new or changed files to " + dstPath);
+                    syncedFiles.forEach(repoFileCache::deleteCompressedVariants);
+                }
+                repoFileCache.invalidate(dstPath);
+            }
+        }
+    }
+
+
+    /**
+     * Creates a copy-on-write clone of the source folder in the destination folder.
+     * <p>
+     * Files are hard-linked into the destination folder where the file system supports it, and
+     * copied otherwise. Code that overwrites files in the destination folder must call
+     * {@linkplain #unlinkIfShared(Path)} first, so that the linked original is left untouched.
+     *
+     * @param srcPath the source folder
+     * @param dstPath the destination folder
+     * @return the number of files that were linked rather than copied
+     */
+    public static int linkOrCopyDirectory(Path srcPath, Path dstPath) throws IOException {
+        int[] linked = { 0 };
+        boolean[] linksSupported = { true };
+        Files.walkFileTree(srcPath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(dstPath.resolve(srcPath.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path target = dstPath.resolve(srcPath.relativize(file).toString());
+                if (linksSupported[0]) {
+                    try {
+                        Files.createLink(target, file);
+                        linked[0]++;
+                        return FileVisitResult.CONTINUE;
+                    } catch (UnsupportedOperationException | IOException e) {
+                        // E.g. file system without hard link support, or source and destination on different devices
+                        linksSupported[0] = false;
+                    }
+                }
+                Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return linked[0];
+    }
+
+
+    /**
+     * Copies the files of the source folder that are new or differ from the ones of the destination folder.
+     * <p>
+     * Files are considered unchanged if they are hard links of the same file, or if they have the
+     * same size and last-modified time. Files are never deleted from the destination folder.
+     *
+     * @param srcPath the source folder
+     * @param dstPath the destination folder
+     * @return the destination files that were copied
+     */
+    public static List<Path> syncDirectory(Path srcPath, Path dstPath) throws IOException {
+        List<Path> result = new ArrayList<>();
+        Files.walkFileTree(srcPath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(dstPath.resolve(srcPath.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path target = dstPath.resolve(srcPath.relativize(file).toString());
+                if (Files.isRegularFile(target)) {
+                    BasicFileAttributes targetAttrs = Files.readAttributes(target, BasicFileAttributes.class);
+                    boolean sameFile = attrs.fileKey() != null && attrs.fileKey().equals(targetAttrs.fileKey());
+                    boolean unchanged = sameFile || (attrs.size() == targetAttrs.size()
+                            && attrs.lastModifiedTime().equals(targetAttrs.lastModifiedTime()));
+                    if (unchanged) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                }
+                // NB: Replacing deletes the existing target first, so other links to it are unaffected
+                Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
+                result.add(target);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return result;
+    }
+
+
+    /**
+     * If the file is hard-linked to other files, e.g. as part of a copy-on-write edit folder,
+     * the link is removed, so that the file may be overwritten without affecting the other links.
+     *
+     * @param file the file about to be overwritten
+     */
+    public static void unlinkIfShared(Path file) throws IOException {
+        if (Files.isRegularFile(file)) {
+            try {
+                Number links = (Number) Files.getAttribute(file, "unix:nlink");
+                if (links != null && links.intValue() > 1) {
+                    Files.delete(file);
                 }
+            } catch (UnsupportedOperationException | IllegalArgumentException ignored) {
+                // No hard link support, so the file is not shared
             }
         }
     }
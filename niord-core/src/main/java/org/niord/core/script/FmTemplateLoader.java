@@ -21,37 +21,61 @@ import org.niord.core.util.CdiUtils;
 
 import java.io.Reader;
 import java.io.StringReader;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.Date;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A version of the Freemarker StringTemplateLoader that loads templates lazily from the ScriptResource database table.
+ * <p>
+ * The loader is long-lived and shared between threads. Existence checks are answered from an in-memory
+ * index of the script resource paths, so only templates that are actually loaded will hit the database.
+ * Call {@code invalidate()} whenever a script resource changes.
  */
 public class FmTemplateLoader implements TemplateLoader {
 
-    // All templates that have actually been loaded during execution
-    private final Map<String, ScriptResource> templates = new HashMap<>();
-
-    // All existing paths in the ScriptResource table
-    private final Set<String> existingTemplatePaths;
+    // All existing paths in the ScriptResource table. Lazily loaded
+    private volatile Set<String> existingTemplatePaths;
 
     // All checked paths that do not exist in the ScriptResource table - used when loading from class-path
-    private final Set<String> nonExistingTemplatePaths = new HashSet<>();
+    private final Set<String> nonExistingTemplatePaths = ConcurrentHashMap.newKeySet();
 
     private final ScriptResourceService resourceService;
-    private boolean loadFromClassPath;
+    private final boolean loadFromClassPath;
 
 
     /** Constructor **/
     public FmTemplateLoader(ScriptResourceService resourceService, boolean loadFromClassPath) {
         this.resourceService = resourceService;
-        this.existingTemplatePaths = resourceService.findAllScriptResourcePaths();
         this.loadFromClassPath = loadFromClassPath;
     }
 
 
+    /**
+     * Invalidates the path index. It will be re-loaded upon the next template lookup
+     */
+    public void invalidate() {
+        existingTemplatePaths = null;
+        nonExistingTemplatePaths.clear();
+    }
+
+
+    /**
+     * Returns the index of existing script resource paths, loading it if necessary
+     * @return the index of existing script resource paths
+     */
+    private Set<String> getExistingTemplatePaths() {
+        Set<String> paths = existingTemplatePaths;
+        if (paths == null) {
+            paths = ConcurrentHashMap.newKeySet();
+            paths.addAll(resourceService.findAllScriptResourcePaths());
+            existingTemplatePaths = paths;
+        }
+        return paths;
+    }
+
+
     /** {@inheritDoc} **/
     @Override
     public void closeTemplateSource(Object template) {
@@ -60,24 +84,26 @@ public class FmTemplateLoader implements TemplateLoader {
 
     /** {@inheritDoc} **/
     @Override
-    public ScriptResource findTemplateSource(String path) {
+    public TemplateSource findTemplateSource(String path) {
 
-        if (existingTemplatePaths.contains(path)) {
-            if (!templates.containsKey(path)) {
-                templates.put(path, resourceService.findByPath(path));
+        if (getExistingTemplatePaths().contains(path)) {
+            ScriptResource resource = resourceService.findByPath(path);
+            if (resource != null) {
+                return new TemplateSource(resource);
             }
         } else if (loadFromClassPath && !nonExistingTemplatePaths.contains(path)) {
-            checkLoadTemplateFromClassPath(path);
+            return checkLoadTemplateFromClassPath(path);
         }
-        return templates.get(path);
+        return null;
     }
 
 
     /**
      * Checks if the template exists in the class-path and loads it if it does
      * @param path the path to check
+     * @return the loaded template source, or null if not found
      */
-    private void checkLoadTemplateFromClassPath(String path) {
+    private TemplateSource checkLoadTemplateFromClassPath(String path) {
 
         ScriptResource scriptResource = resourceService.readScriptResourceFromClassPath(path);
         if (scriptResource != null) {
@@ -85,27 +111,69 @@ public class FmTemplateLoader implements TemplateLoader {
                 // NB: we cannot use resourceService.createScriptResource() since this method may be
                 // called outside the transaction where the template loader was instantiated
                 ScriptResourceService rs = CdiUtils.getBean(ScriptResourceService.class);
-                rs.createScriptResource(scriptResource);
-                templates.put(path, scriptResource);
-                existingTemplatePaths.add(path);
+                scriptResource = rs.createScriptResource(scriptResource);
+                getExistingTemplatePaths().add(path);
+                return new TemplateSource(scriptResource);
             } catch (Exception ignored) {
             }
         } else {
             nonExistingTemplatePaths.add(path);
         }
+        return null;
     }
 
 
     /** {@inheritDoc} **/
     @Override
     public long getLastModified(Object template) {
-        return ((ScriptResource)template).getUpdated().getTime();
+        return ((TemplateSource)template).lastModified;
     }
 
 
     /** {@inheritDoc} **/
     @Override
     public Reader getReader(Object template, String encoding) {
-        return new StringReader(((ScriptResource)template).getContent());
+        return new StringReader(((TemplateSource)template).content);
+    }
+
+
+    /**
+     * Detached snapshot of a script resource, used as the Freemarker template source.
+     * Freemarker compares template sources using equals(), so this is based on the path and last modified time.
+     */
+    static final class TemplateSource {
+
+        final String path;
+        final long lastModified;
+        final String content;
+
+        /** Constructor **/
+        TemplateSource(ScriptResource resource) {
+            this.path = resource.getPath();
+            Date updated = resource.getUpdated();
+            this.lastModified = updated != null ? updated.getTime() : -1L;
+            this.content = resource.getContent();
+        }
+
+        /** {@inheritDoc} **/
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            TemplateSource that = (TemplateSource) o;
+            return lastModified == that.lastModified && Objects.equals(path, that.path);
+        }
+
+        /** {@inheritDoc} **/
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, lastModified);
+        }
+
+        /** {@inheritDoc} **/
+        @Override
+        public String toString() {
+            return path;
+        }
     }
 }
@@ -16,6 +16,8 @@
 
 package org.niord.core.script;
 
+import freemarker.cache.MruCacheStorage;
+import freemarker.ext.beans.BeansWrapper;
 import freemarker.template.Configuration;
 import freemarker.template.DefaultObjectWrapperBuilder;
 import freemarker.template.Template;
@@ -24,8 +26,8 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.niord.core.NiordApp;
 import org.niord.core.dictionary.DictionaryService;
-import org.niord.core.domain.Domain;
 import org.niord.core.domain.DomainService;
+import org.niord.core.domain.DomainSnapshot;
 import org.niord.core.script.directive.MultiResourceBundleModel;
 import org.niord.core.script.pdf.HtmlToPdfRenderer;
 import org.niord.core.service.BaseService;
@@ -35,11 +37,14 @@ import org.slf4j.LoggerFactory;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.RequestScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
 import jakarta.inject.Inject;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.StringWriter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static org.niord.core.settings.Setting.Type.Boolean;
@@ -59,6 +64,20 @@ public class FmTemplateService extends BaseService {
 
     public enum ProcessFormat { TEXT, PDF }
 
+    // Changes are picked up via ScriptResourceChangedEvent, so the template cache rarely needs to check for updates
+    private static final long TEMPLATE_UPDATE_DELAY_MS = 60 * 1000L;
+
+    // Object wrapper used for the resource bundle models
+    private static final BeansWrapper RESOURCE_BUNDLE_WRAPPER =
+            new DefaultObjectWrapperBuilder(Configuration.VERSION_2_3_31).build();
+
+    // Resource bundle models keyed by dictionary names and languages
+    private final Map<String, CachedResourceBundleModel> resourceBundleModels = new ConcurrentHashMap<>();
+
+    // Shared, lazily created Freemarker configuration and template loader
+    private volatile Configuration configuration;
+    private volatile FmTemplateLoader templateLoader;
+
     @Inject
     @Setting(value = "pdfEncryptionEnabled", description = "Whether PDF reports should be encrypted or not",
             defaultValue = "false", type = Boolean)
@@ -148,21 +167,15 @@ public class FmTemplateService extends BaseService {
                 templateBuilder.getData().put(LANGUAGES_PROPERTY, app.getLanguages());
             }
 
-            List<ResourceBundle> bundles = languages.stream()
-                    .map(lang -> dictionaryService.getDictionariesAsResourceBundle(templateBuilder.getDictionaryNames(), lang))
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
-
-            if (!bundles.isEmpty()) {
-                MultiResourceBundleModel resourceBundleModel =  new MultiResourceBundleModel(
-                        bundles,
-                        new DefaultObjectWrapperBuilder(Configuration.VERSION_2_3_31).build());
+            MultiResourceBundleModel resourceBundleModel =
+                    getResourceBundleModel(templateBuilder.getDictionaryNames(), languages);
+            if (resourceBundleModel != null) {
                 templateBuilder.getData().put(BUNDLE_PROPERTY, resourceBundleModel);
             }
         }
 
 
-        Domain domain = domainService.currentDomain();
+        DomainSnapshot domain = domainService.currentDomainSnapshot();
         String timeZone = (domain != null && StringUtils.isNotBlank(domain.getTimeZone()))
                 ? domain.getTimeZone()
                 : TimeZone.getDefault().getID();
@@ -170,14 +183,83 @@ public class FmTemplateService extends BaseService {
 
         Locale locale = app.getLocale(templateBuilder.getLanguage());
 
-        // Create the Freemarker template loader and configuration
-        FmTemplateLoader templateLoader = new FmTemplateLoader(resourceService, true);
-        Configuration cfg = new Configuration(Configuration.getVersion());
-        cfg.setLocalizedLookup(true);
-        cfg.setTemplateLoader(templateLoader);
-        cfg.setObjectWrapper(new NiordAppObjectWrapper(cfg.getIncompatibleImprovements()));
+        // Look up the compiled template in the shared Freemarker configuration
+        return getConfiguration().getTemplate(templateBuilder.getTemplatePath(), locale, "UTF-8");
+    }
+
+
+    /**
+     * Returns a resource bundle model for the given dictionaries and languages, or null if undefined.
+     * <p>
+     * The DictionaryService caches the merged resource bundles until a dictionary changes.
+     * The resource bundle models are cached for as long as they wrap the current resource bundles.
+     * @param dictionaryNames the dictionary names
+     * @param languages the languages
+     * @return the resource bundle model, or null if undefined
+     */
+    private MultiResourceBundleModel getResourceBundleModel(String[] dictionaryNames, List<String> languages) {
+
+        List<ResourceBundle> bundles = languages.stream()
+                .map(lang -> dictionaryService.getDictionariesAsResourceBundle(dictionaryNames, lang))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
 
-        return cfg.getTemplate(templateBuilder.getTemplatePath(), locale, "UTF-8");
+        if (bundles.isEmpty()) {
+            return null;
+        }
+
+        String key = String.join(",", dictionaryNames) + "|" + String.join(",", languages);
+        CachedResourceBundleModel cached = resourceBundleModels.get(key);
+        if (cached == null || !cached.wraps(bundles)) {
+            cached = new CachedResourceBundleModel(
+                    bundles,
+                    new MultiResourceBundleModel(bundles, RESOURCE_BUNDLE_WRAPPER));
+            resourceBundleModels.put(key, cached);
+        }
+        return cached.model;
+    }
+
+
+    /**
+     * Returns the shared Freemarker configuration, creating it if necessary.
+     * <p>
+     * Freemarker caches compiled templates by path and locale in the configuration, so a single
+     * configuration is used for all languages. The time zone is passed on as template data.
+     * @return the shared Freemarker configuration
+     */
+    private Configuration getConfiguration() {
+        Configuration cfg = configuration;
+        if (cfg == null) {
+            synchronized (this) {
+                cfg = configuration;
+                if (cfg == null) {
+                    templateLoader = new FmTemplateLoader(resourceService, true);
+                    cfg = new Configuration(Configuration.getVersion());
+                    cfg.setLocalizedLookup(true);
+                    cfg.setTemplateLoader(templateLoader);
+                    cfg.setCacheStorage(new MruCacheStorage(100, 1000));
+                    cfg.setTemplateUpdateDelayMilliseconds(TEMPLATE_UPDATE_DELAY_MS);
+                    cfg.setObjectWrapper(new NiordAppObjectWrapper(cfg.getIncompatibleImprovements()));
+                    configuration = cfg;
+                }
+            }
+        }
+        return cfg;
+    }
+
+
+    /**
+     * Clears the compiled templates and the script resource path index when a script resource changes
+     * @param event the script resource changed event
+     */
+    void onScriptResourceChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) ScriptResourceChangedEvent event) {
+        Configuration cfg = configuration;
+        if (cfg != null) {
+            // NB: Localized lookups and includes may resolve to the changed path under any name, so clear all
+            templateLoader.invalidate();
+            cfg.clearTemplateCache();
+            log.debug("Cleared Freemarker template cache after change to " + event.getPath());
+        }
     }
 
 
@@ -187,6 +269,35 @@ public class FmTemplateService extends BaseService {
     }
 
 
+    /**
+     * A resource bundle model along with the resource bundles it wraps
+     */
+    private static final class CachedResourceBundleModel {
+
+        final List<ResourceBundle> bundles;
+        final MultiResourceBundleModel model;
+
+        /** Constructor **/
+        CachedResourceBundleModel(List<ResourceBundle> bundles, MultiResourceBundleModel model) {
+            this.bundles = bundles;
+            this.model = model;
+        }
+
+        /** Returns if the model wraps exactly the given resource bundle instances **/
+        boolean wraps(List<ResourceBundle> bundles) {
+            if (this.bundles.size() != bundles.size()) {
+                return false;
+            }
+            for (int x = 0; x < bundles.size(); x++) {
+                if (this.bundles.get(x) != bundles.get(x)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+
     /************************************/
     /** Freemarker Template Builder    **/
     /************************************/
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.core.script;
+
+/**
+ * CDI event fired whenever a script resource is created, updated or deleted.
+ * <p>
+ * Observers that cache script resources, e.g. the Freemarker template service,
+ * should observe the event with {@code during = TransactionPhase.AFTER_SUCCESS}.
+ */
+@SuppressWarnings("unused")
+public class ScriptResourceChangedEvent {
+
+    final String path;
+
+    /** Constructor **/
+    public ScriptResourceChangedEvent(String path) {
+        this.path = path;
+    }
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public String getPath() {
+        return path;
+    }
+}
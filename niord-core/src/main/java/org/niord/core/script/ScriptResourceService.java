@@ -28,6 +28,7 @@ import org.slf4j.Logger;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.RequestScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import java.io.InputStream;
@@ -50,6 +51,9 @@ public class ScriptResourceService extends BaseService {
     @Inject
     Logger log;
 
+    @Inject
+    Event<ScriptResourceChangedEvent> scriptResourceChangedEvent;
+
 
     /**
      * Saves the script resource
@@ -69,6 +73,9 @@ public class ScriptResourceService extends BaseService {
         // Save a ScriptResourceHistory entity for the resource
         saveScriptResourceHistory(resource);
 
+        // Notify observers, such as the Freemarker template cache
+        scriptResourceChangedEvent.fire(new ScriptResourceChangedEvent(resource.getPath()));
+
         return resource;
     }
 
@@ -208,6 +215,7 @@ public class ScriptResourceService extends BaseService {
             getScriptResourceHistory(id).forEach(this::remove);
             // Delete the actual resource
             remove(resource);
+            scriptResourceChangedEvent.fire(new ScriptResourceChangedEvent(resource.getPath()));
             return true;
         }
         return false;
@@ -30,7 +30,6 @@ import freemarker.template.TemplateModelException;
 
 import java.text.MessageFormat;
 import java.util.Enumeration;
-import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -38,6 +37,7 @@ import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -68,7 +68,8 @@ public class MultiResourceBundleModel
                 }
             };
 
-    private Hashtable formats = null;
+    // Cached message formats keyed by language and key. The model may be shared between threads
+    private final Map<String, MessageFormat> formats = new ConcurrentHashMap<>();
 
 
     /** Constructor **/
@@ -189,33 +190,14 @@ public class MultiResourceBundleModel
             throws
             MissingResourceException
     {
-        // Check to see if we already have a cache for message formats
-        // and construct it if we don't
-        // NOTE: this block statement should be synchronized. However
-        // concurrent creation of two caches will have no harmful
-        // consequences, and we avoid a performance hit.
-        /* synchronized(this) */
-        {
-            if(formats == null)
-                formats = new Hashtable();
-        }
-
-        MessageFormat format = null;
         // Check to see if we already have a requested MessageFormat cached
         // and construct it if we don't
-        // NOTE: this block statement should be synchronized. However
-        // concurrent creation of two formats will have no harmful
-        // consequences, and we avoid a performance hit.
-        /* synchronized(formats) */
-        {
-            format = (MessageFormat)formats.get(key);
-            if(format == null)
-            {
-                format = new MessageFormat(getResourceBundle().getString(key));
-                format.setLocale(getResourceBundle().getLocale());
-                formats.put(key, format);
-            }
-        }
+        ResourceBundle bundle = getResourceBundle();
+        MessageFormat format = formats.computeIfAbsent(language(bundle.getLocale()) + ":" + key, k -> {
+            MessageFormat f = new MessageFormat(bundle.getString(key));
+            f.setLocale(bundle.getLocale());
+            return f;
+        });
 
         // Perform the formatting. We synchronize on it in case it
         // contains date formatting, which is not thread-safe.
@@ -15,16 +15,24 @@
  */
 package org.niord.core.service;
 
+import org.hibernate.jpa.HibernateHints;
 import org.niord.core.model.TreeBaseEntity;
 import org.niord.core.settings.Setting;
 import org.niord.core.settings.SettingsService;
 import org.slf4j.Logger;
 
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.transaction.Transactional;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -38,6 +46,14 @@ public abstract class TreeBaseService<E extends TreeBaseEntity<E>> extends BaseS
     @Inject
     SettingsService settingsService;
 
+    @Inject
+    Event<TreeChangedEvent> treeChangedEvent;
+
+    // Incremented whenever the tree changes. The snapshot is rebuilt when its version is out-dated
+    private final AtomicLong treeVersion = new AtomicLong();
+    private final Object treeSnapshotLock = new Object();
+    private volatile TreeSnapshot treeSnapshot;
+
     /**
      * Returns the hierarchical list of root entities.
      * <p>
@@ -58,10 +74,133 @@ public abstract class TreeBaseService<E extends TreeBaseEntity<E>> extends BaseS
     }
 
 
+    /**
+     * Returns the hierarchical list of root entities as value objects.
+     * <p>
+     * The entities are loaded read-only by a single query, and the tree structure is taken from the tree
+     * snapshot, rather than from the lazy child collections of the entities.
+     *
+     * @param clz the entity class
+     * @param query the named query used for loading all entities
+     * @param toVo converts an entity, excluding its children, to a value object
+     * @param children returns the child list of a value object
+     * @return the hierarchical list of root value objects
+     */
+    protected <V> List<V> getTreeVos(Class<E> clz, String query, Function<E, V> toVo, Function<V, List<V>> children) {
+        TreeSnapshot snapshot = getTreeSnapshot(clz);
+
+        Map<Integer, E> entities = new HashMap<>();
+        em.createNamedQuery(query, clz)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultList()
+                .forEach(e -> entities.putIfAbsent(e.getId(), e));
+
+        return toTreeVos(snapshot, snapshot.getRootIds(), entities, toVo, children);
+    }
+
+
+    /** Recursively converts the entities with the given IDs and their sub-trees to value objects **/
+    private <V> List<V> toTreeVos(TreeSnapshot snapshot, List<Integer> ids, Map<Integer, E> entities,
+                                  Function<E, V> toVo, Function<V, List<V>> children) {
+        List<V> result = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            E entity = entities.get(id);
+            if (entity != null) {
+                V vo = toVo.apply(entity);
+                List<Integer> childIds = snapshot.getChildIds(id);
+                if (!childIds.isEmpty()) {
+                    children.apply(vo).addAll(toTreeVos(snapshot, childIds, entities, toVo, children));
+                }
+                result.add(vo);
+            }
+        }
+        return result;
+    }
+
+
     /** Returns the list of root entities **/
     public abstract List<E> getRootEntities();
 
 
+    /**
+     * Returns the current snapshot of the tree. The snapshot is rebuilt if the tree has changed
+     * since the snapshot was built.
+     *
+     * @param clz the entity class
+     * @return the current snapshot of the tree
+     */
+    protected TreeSnapshot getTreeSnapshot(Class<E> clz) {
+        TreeSnapshot snapshot = treeSnapshot;
+        if (snapshot == null || snapshot.getVersion() != treeVersion.get()) {
+            synchronized (treeSnapshotLock) {
+                snapshot = treeSnapshot;
+                long version = treeVersion.get();
+                if (snapshot == null || snapshot.getVersion() != version) {
+                    long t0 = System.currentTimeMillis();
+
+                    snapshot = loadTreeSnapshot(clz, version);
+                    treeSnapshot = snapshot;
+
+                    log.info("Built " + clz.getSimpleName() + " tree snapshot with " + snapshot.getSize()
+                            + " entities in " + (System.currentTimeMillis() - t0) + " ms");
+                }
+            }
+        }
+        return snapshot;
+    }
+
+
+    /**
+     * Loads all entities of the tree and creates a new snapshot of the tree.
+     * <p>
+     * The entities are loaded read-only in a new transaction, and thus in a separate persistence context.
+     * This way, the entities are not attached to, and dirty-checked by, the persistence context of the caller.
+     *
+     * @param clz the entity class
+     * @param version the version of the snapshot
+     * @return the new snapshot of the tree
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    protected TreeSnapshot loadTreeSnapshot(Class<E> clz, long version) {
+        CriteriaQuery<E> cq = em.getCriteriaBuilder().createQuery(clz);
+        cq.from(clz);
+        List<E> entities = em.createQuery(cq)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultList();
+        return createTreeSnapshot(entities, version);
+    }
+
+
+    /**
+     * Creates a new snapshot of the tree. Sub-classes may override this to add entity-specific data
+     *
+     * @param entities all entities of the tree
+     * @param version the version of the snapshot
+     * @return the new snapshot of the tree
+     */
+    protected TreeSnapshot createTreeSnapshot(List<E> entities, long version) {
+        return new TreeSnapshot(entities, version);
+    }
+
+
+    /**
+     * Marks the current snapshot of the tree as out-dated. Should be called by sub-classes
+     * observing the {@linkplain TreeChangedEvent} of their tree after the transaction has completed.
+     */
+    protected void invalidateTreeSnapshot() {
+        treeVersion.incrementAndGet();
+    }
+
+
+    /**
+     * Notifies observers, e.g. the tree snapshot, that the tree has changed
+     * @param clz the entity class
+     */
+    protected void fireTreeChanged(Class<?> clz) {
+        treeChangedEvent.fire(new TreeChangedEvent(clz));
+    }
+
+
     /**
      * Moves the entity to the given parent id
      * @param entityId the id of the entity to create
@@ -101,6 +240,7 @@ public abstract class TreeBaseService<E extends TreeBaseEntity<E>> extends BaseS
         updateLineages(clz);
         entity.updateActiveFlag();
 
+        fireTreeChanged(clz);
         return true;
     }
 
@@ -206,6 +346,7 @@ public abstract class TreeBaseService<E extends TreeBaseEntity<E>> extends BaseS
             log.info("Updates sort order for entity " + entity.getId() + " to " + entity.getSiblingSortOrder());
             // Save the entity
             saveEntity(entity);
+            fireTreeChanged(clz);
         }
 
         return updated;
@@ -259,6 +400,10 @@ public abstract class TreeBaseService<E extends TreeBaseEntity<E>> extends BaseS
 
         em.flush();
 
+        if (!updated.isEmpty()) {
+            fireTreeChanged(updated.get(0).getClass());
+        }
+
         // Update the last processed date
         settingsService.setDate(lastProcessedSettingsKey, lastEntityUpdate);
 
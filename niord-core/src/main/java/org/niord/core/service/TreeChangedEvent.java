@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.service;
+
+/**
+ * CDI event fired by a {@code TreeBaseService} whenever an entity of the tree is created, updated,
+ * moved or deleted.
+ * <p>
+ * Observers should observe the event with {@code during = TransactionPhase.AFTER_COMPLETION},
+ * so that they also react to changes that have been rolled back.
+ */
+@SuppressWarnings("unused")
+public class TreeChangedEvent {
+
+    final Class<?> entityClass;
+
+    /** Constructor **/
+    public TreeChangedEvent(Class<?> entityClass) {
+        this.entityClass = entityClass;
+    }
+
+    /**
+     * Returns if the event concerns the tree of the given entity class
+     * @param clz the entity class
+     * @return if the event concerns the tree of the given entity class
+     */
+    public boolean concerns(Class<?> clz) {
+        return entityClass != null && clz.isAssignableFrom(entityClass);
+    }
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core.service;
+
+import org.niord.core.model.TreeBaseEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the structure of a tree of {@linkplain TreeBaseEntity} entities.
+ * <p>
+ * The nodes of the tree are identified by the entity ID, and stored in arrays in tree sort order, i.e.
+ * ordered by tree sort order, sibling sort order and ID. The snapshot is versioned, and will be
+ * replaced, rather than updated, when the tree changes.
+ * <p>
+ * The snapshot holds no references to the entities, and may safely be shared between threads.
+ */
+@SuppressWarnings("unused")
+public class TreeSnapshot {
+
+    /** Orders the entities of a tree by tree sort order, sibling sort order and ID **/
+    public static final Comparator<TreeBaseEntity<?>> TREE_ORDER =
+            Comparator.<TreeBaseEntity<?>>comparingInt(TreeBaseEntity::getTreeSortOrder)
+                    .thenComparingDouble(TreeBaseEntity::getSiblingSortOrder)
+                    .thenComparing(TreeBaseEntity::getId);
+
+    protected final long version;
+    protected final int[] ids;
+    protected final int[] parents;
+    protected final int[][] children;
+    protected final int[] levels;
+    protected final int[] roots;
+    protected final String[] lineages;
+    protected final boolean[] active;
+    protected final Map<Integer, Integer> indexes;
+
+
+    /**
+     * Constructor
+     *
+     * @param entities all entities of the tree
+     * @param version the version of the snapshot
+     */
+    public TreeSnapshot(List<? extends TreeBaseEntity<?>> entities, long version) {
+        this.version = version;
+
+        List<TreeBaseEntity<?>> sorted = new ArrayList<>(entities);
+        sorted.sort(TREE_ORDER);
+
+        int size = sorted.size();
+        ids = new int[size];
+        parents = new int[size];
+        children = new int[size][];
+        levels = new int[size];
+        lineages = new String[size];
+        active = new boolean[size];
+
+        Map<Integer, Integer> indexes = new HashMap<>(size * 2);
+        for (int x = 0; x < size; x++) {
+            TreeBaseEntity<?> entity = sorted.get(x);
+            ids[x] = entity.getId();
+            lineages[x] = entity.getLineage();
+            active[x] = entity.isActive();
+            indexes.put(entity.getId(), x);
+        }
+        this.indexes = Collections.unmodifiableMap(indexes);
+
+        // Resolve the parent and child indexes. Children are ordered by sibling sort order
+        List<List<TreeBaseEntity<?>>> childEntities = new ArrayList<>(size);
+        List<Integer> rootIndexes = new ArrayList<>();
+        for (int x = 0; x < size; x++) {
+            childEntities.add(new ArrayList<>());
+        }
+        for (int x = 0; x < size; x++) {
+            TreeBaseEntity<?> parent = sorted.get(x).getParent();
+            Integer parentIndex = parent == null ? null : indexes.get(parent.getId());
+            parents[x] = parentIndex == null ? -1 : parentIndex;
+            if (parentIndex == null) {
+                rootIndexes.add(x);
+            } else {
+                childEntities.get(parentIndex).add(sorted.get(x));
+            }
+        }
+        for (int x = 0; x < size; x++) {
+            children[x] = childEntities.get(x).stream()
+                    .sorted(Comparator.<TreeBaseEntity<?>>comparingDouble(TreeBaseEntity::getSiblingSortOrder)
+                            .thenComparing(TreeBaseEntity::getId))
+                    .mapToInt(e -> indexes.get(e.getId()))
+                    .toArray();
+        }
+        roots = rootIndexes.stream().mapToInt(Integer::intValue).toArray();
+
+        // Compute the levels. Root level is level 1
+        for (int x = 0; x < size; x++) {
+            int level = 1;
+            for (int p = parents[x]; p != -1 && level <= size; p = parents[p]) {
+                level++;
+            }
+            levels[x] = level;
+        }
+    }
+
+
+    /**
+     * Returns the index of the entity with the given ID, or -1 if not found
+     * @param id the entity ID
+     * @return the index of the entity with the given ID, or -1 if not found
+     */
+    protected int indexOf(Integer id) {
+        Integer index = id == null ? null : indexes.get(id);
+        return index == null ? -1 : index;
+    }
+
+
+    /**
+     * Returns if the snapshot contains the entity with the given ID
+     * @param id the entity ID
+     * @return if the snapshot contains the entity with the given ID
+     */
+    public boolean contains(Integer id) {
+        return indexOf(id) != -1;
+    }
+
+
+    /**
+     * Returns the IDs of the root entities ordered by sibling sort order
+     * @return the IDs of the root entities
+     */
+    public List<Integer> getRootIds() {
+        return toIds(roots);
+    }
+
+
+    /**
+     * Returns the ID of the parent entity, or null if the entity is a root entity or not found
+     * @param id the entity ID
+     * @return the ID of the parent entity
+     */
+    public Integer getParentId(Integer id) {
+        int index = indexOf(id);
+        return index == -1 || parents[index] == -1 ? null : ids[parents[index]];
+    }
+
+
+    /**
+     * Returns the IDs of the child entities ordered by sibling sort order
+     * @param id the entity ID
+     * @return the IDs of the child entities
+     */
+    public List<Integer> getChildIds(Integer id) {
+        int index = indexOf(id);
+        return index == -1 ? Collections.emptyList() : toIds(children[index]);
+    }
+
+
+    /**
+     * Returns the lineage of the entity as a list of IDs, ordered with the entity first,
+     * and the root-most entity last
+     *
+     * @param id the entity ID
+     * @return the lineage of the entity
+     */
+    public List<Integer> getLineageIds(Integer id) {
+        List<Integer> result = new ArrayList<>();
+        for (int index = indexOf(id); index != -1; index = parents[index]) {
+            result.add(ids[index]);
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the lineage of the entity in the format "/root-id/.../parent-id/id/"
+     * @param id the entity ID
+     * @return the lineage of the entity
+     */
+    public String getLineage(Integer id) {
+        int index = indexOf(id);
+        return index == -1 ? null : lineages[index];
+    }
+
+
+    /**
+     * Returns the level of the entity in the tree. Root level is level 1.
+     * @param id the entity ID
+     * @return the level of the entity in the tree, or 0 if not found
+     */
+    public int getLevel(Integer id) {
+        int index = indexOf(id);
+        return index == -1 ? 0 : levels[index];
+    }
+
+
+    /**
+     * Returns if the entity is active
+     * @param id the entity ID
+     * @return if the entity is active
+     */
+    public boolean isActive(Integer id) {
+        int index = indexOf(id);
+        return index != -1 && active[index];
+    }
+
+
+    /**
+     * Returns if the entity is the ancestor entity or one of its descendants, i.e. if the lineage of the
+     * entity starts with the lineage of the ancestor entity
+     *
+     * @param id the entity ID
+     * @param ancestorId the ancestor entity ID
+     * @return if the entity is the ancestor entity or one of its descendants
+     */
+    public boolean isSelfOrDescendant(Integer id, Integer ancestorId) {
+        int index = indexOf(id);
+        int ancestorIndex = indexOf(ancestorId);
+        return index != -1 && ancestorIndex != -1
+                && lineages[index] != null && lineages[ancestorIndex] != null
+                && lineages[index].startsWith(lineages[ancestorIndex]);
+    }
+
+
+    /**
+     * Returns a comparator that orders entity IDs by the tree sort order of the entities.
+     * IDs not in the snapshot are ordered last
+     *
+     * @return a comparator that orders entity IDs by the tree sort order of the entities
+     */
+    public Comparator<Integer> treeOrder() {
+        return Comparator.comparingInt(id -> {
+            int index = indexOf(id);
+            return index == -1 ? Integer.MAX_VALUE : index;
+        });
+    }
+
+
+    /** Converts the entity indexes to entity IDs **/
+    protected List<Integer> toIds(int[] indexes) {
+        List<Integer> result = new ArrayList<>(indexes.length);
+        for (int index : indexes) {
+            result.add(ids[index]);
+        }
+        return result;
+    }
+
+
+    /*************************/
+    /** Getters and Setters **/
+    /*************************/
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getSize() {
+        return ids.length;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.core.util;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A simple token bucket rate limiter.
+ * <p>
+ * Tokens are added continuously at the given rate, up to the capacity of the bucket.
+ * As opposed to releasing a fixed number of permits once per period, this spreads
+ * the permits evenly over time whilst still allowing small bursts.
+ */
+public class TokenBucket {
+
+    private final int ratePerMinute;
+    private final double capacity;
+    private final double tokensPerMs;
+    private final LongSupplier clock;
+    private double tokens;
+    private long lastRefill;
+
+
+    /**
+     * Constructor
+     * @param ratePerMinute the number of tokens added per minute
+     * @param capacity the max number of tokens in the bucket
+     */
+    public TokenBucket(int ratePerMinute, int capacity) {
+        this(ratePerMinute, capacity, System::currentTimeMillis);
+    }
+
+
+    /**
+     * Constructor
+     * @param ratePerMinute the number of tokens added per minute
+     * @param capacity the max number of tokens in the bucket
+     * @param clock the clock in milliseconds
+     */
+    public TokenBucket(int ratePerMinute, int capacity, LongSupplier clock) {
+        this.ratePerMinute = ratePerMinute;
+        this.capacity = Math.max(1, capacity);
+        this.tokensPerMs = Math.max(0, ratePerMinute) / 60000.0;
+        this.clock = clock;
+        this.tokens = this.capacity;
+        this.lastRefill = clock.getAsLong();
+    }
+
+
+    /**
+     * Creates a token bucket that is drained periodically at the given interval.
+     * <p>
+     * The capacity is sized to hold the tokens accumulated during one and a half interval plus one,
+     * so that no tokens are discarded between two executions, even if an execution runs late,
+     * and the full rate can be sustained.
+     *
+     * @param ratePerMinute the number of tokens added per minute
+     * @param intervalMs the interval in milliseconds between draining the bucket
+     * @param clock the clock in milliseconds
+     * @return the new token bucket
+     */
+    public static TokenBucket forInterval(int ratePerMinute, long intervalMs, LongSupplier clock) {
+        int capacity = (int) Math.ceil(1.5 * ratePerMinute * intervalMs / 60000.0) + 1;
+        return new TokenBucket(ratePerMinute, capacity, clock);
+    }
+
+
+    /** Adds the tokens accumulated since the last refill **/
+    private void refill() {
+        long now = clock.getAsLong();
+        if (now > lastRefill) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerMs);
+            lastRefill = now;
+        }
+    }
+
+
+    /**
+     * Returns the number of whole tokens currently available
+     * @return the number of whole tokens currently available
+     */
+    public synchronized int available() {
+        refill();
+        return (int) Math.floor(tokens);
+    }
+
+
+    /**
+     * Acquires up to the given number of tokens, and returns the number of tokens acquired
+     * @param max the max number of tokens to acquire
+     * @return the number of tokens acquired
+     */
+    public synchronized int tryAcquire(int max) {
+        refill();
+        int acquired = Math.max(0, Math.min(max, (int) Math.floor(tokens)));
+        tokens -= acquired;
+        return acquired;
+    }
+
+
+    public int getRatePerMinute() {
+        return ratePerMinute;
+    }
+}
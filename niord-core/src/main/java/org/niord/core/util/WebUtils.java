@@ -20,10 +20,12 @@ import org.apache.commons.lang.StringUtils;
 import org.jboss.resteasy.plugins.providers.multipart.InputPart;
 import org.jboss.resteasy.plugins.providers.multipart.MultipartFormDataInput;
 import org.jboss.resteasy.plugins.providers.multipart.MultipartInput;
+import org.slf4j.Logger;
 
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.MultivaluedMap;
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -321,6 +323,24 @@ public class WebUtils {
         return inputFiles;
     }
 
+    /**
+     * Handles an error that occurs while writing a streamed response, such as a {@code StreamingOutput}.
+     * <p>
+     * A streamed response is committed with a 200 status once the first bytes have been written, after which
+     * the status can no longer be changed. Hence, the error is logged, and the returned exception must be thrown
+     * by the callee, which makes the server abort the connection. The client thus receives a truncated
+     * response, which fails to parse, rather than a seemingly complete response.
+     *
+     * @param log the logger to log the error to
+     * @param message the error message
+     * @param error the error
+     * @return the exception to throw
+     */
+    public static WebApplicationException streamingError(Logger log, String message, Exception error) {
+        log.error(message + ": " + error.getMessage(), error);
+        return new WebApplicationException(message, error);
+    }
+
     /**
      * Retrieves a file name from the request headers from the "filename" field
      * of the request headers.
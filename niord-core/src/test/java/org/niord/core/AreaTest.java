@@ -16,12 +16,17 @@
 package org.niord.core;
 
 import org.junit.Test;
+import org.locationtech.jts.io.WKTReader;
 import org.niord.core.area.Area;
+import org.niord.core.area.AreaTreeSnapshot;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Area test
@@ -46,6 +51,54 @@ public class AreaTest {
         assertEquals("Danmark. Kattegat. Skagerak. Læsø.", Area.computeAreaTitlePrefix(areas, "da"));
     }
 
+    @Test
+    public void testAreaTreeSnapshot() throws Exception {
+
+        Area denmark = createArea(1, null, "POLYGON((8 54, 13 54, 13 58, 8 58, 8 54))");
+        Area kattegat = createArea(2, denmark, "POLYGON((10 56, 12 56, 12 58, 10 58, 10 56))");
+        Area laesoe = createArea(3, kattegat, "POLYGON((10.8 57.1, 11.2 57.1, 11.2 57.4, 10.8 57.4, 10.8 57.1))");
+        Area skagerak = createArea(4, denmark, "POLYGON((8 57, 10 57, 10 58, 8 58, 8 57))");
+        Area inactive = createArea(5, denmark, "POLYGON((8 54, 13 54, 13 58, 8 58, 8 54))");
+        inactive.setActive(false);
+        List<Area> areas = Arrays.asList(denmark, kattegat, laesoe, skagerak, inactive);
+        for (int x = 0; x < areas.size(); x++) {
+            areas.get(x).setSiblingSortOrder(x);
+            areas.get(x).setTreeSortOrder(x + 1);
+        }
+
+        AreaTreeSnapshot snapshot = new AreaTreeSnapshot(
+                Arrays.asList(laesoe, skagerak, kattegat, denmark, inactive), 1L);
+
+        assertEquals(Collections.singletonList(1), snapshot.getRootIds());
+        assertEquals(Arrays.asList(2, 4, 5), snapshot.getChildIds(1));
+        assertEquals(Arrays.asList(3, 2, 1), snapshot.getLineageIds(3));
+        assertEquals(3, snapshot.getLevel(3));
+        assertTrue(snapshot.isSelfOrDescendant(3, 1));
+
+        WKTReader reader = new WKTReader();
+
+        // A point on Læsø
+        assertEquals(Arrays.asList(1, 2, 3), snapshot.getIntersectingAreaIds(reader.read("POINT(11 57.2)")));
+        assertEquals(Collections.singletonList(2), snapshot.getIntersectingAreaIds(reader.read("POINT(11 57.2)"), 2, null));
+        assertEquals(Collections.singletonList(3), snapshot.getIntersectingAreaIds(reader.read("POINT(11 57.2)"), 3, null));
+
+        // A line crossing Skagerak and Kattegat, restricted to the Kattegat sub-tree
+        assertEquals(Arrays.asList(2, 4), snapshot.getIntersectingAreaIds(reader.read("LINESTRING(9 57.5, 11 57.5)"), 2, null));
+        assertEquals(Collections.singletonList(2),
+                snapshot.getIntersectingAreaIds(reader.read("LINESTRING(9 57.5, 11 57.5)"), 2, Collections.singleton(2)));
+    }
+
+    private Area createArea(Integer id, Area parent, String wkt) throws Exception {
+        Area area = new Area();
+        area.setId(id);
+        area.setGeometry(new WKTReader().read(wkt));
+        if (parent != null) {
+            parent.addChild(area);
+        }
+        area.updateLineage();
+        return area;
+    }
+
     private Area createArea(String lang, String name) {
         Area area = new Area();
         area.checkCreateDesc(lang).setName(name);
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.niord.core.aton.AtonPositions;
+import org.niord.core.geojson.JtsConverter;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the in-memory AtoN position index
+ */
+public class AtonPositionsTest {
+
+    @Test
+    public void testExtentSearch() throws Exception {
+
+        // Generate random AtoN positions around Denmark
+        Random random = new Random(42);
+        int size = 10000;
+        int[] ids = new int[size];
+        double[] lons = new double[size];
+        double[] lats = new double[size];
+        for (int x = 0; x < size; x++) {
+            ids[x] = x + 1;
+            lons[x] = 4.0 + 12.0 * random.nextDouble();
+            lats[x] = 53.0 + 6.0 * random.nextDouble();
+        }
+
+        long t0 = System.currentTimeMillis();
+        AtonPositions positions = new AtonPositions(ids, lons, lats);
+        System.out.println("Indexed " + size + " positions in " + (System.currentTimeMillis() - t0) + " ms");
+        assertEquals(size, positions.size());
+
+        // Rectangular extent
+        Geometry extent = JtsConverter.toJtsExtent(55.0, 10.0, 56.0, 12.0);
+        assertEquals(bruteForceSearch(ids, lons, lats, extent), search(positions, extent));
+
+        // Non-rectangular extent
+        extent = JtsConverter.wktToJts("POLYGON((8 54, 14 54, 11 58, 8 54))");
+        assertEquals(bruteForceSearch(ids, lons, lats, extent), search(positions, extent));
+
+        // Extent without any positions
+        extent = JtsConverter.toJtsExtent(10.0, 10.0, 11.0, 11.0);
+        assertEquals(0, search(positions, extent).size());
+
+        // No extent and max size
+        assertEquals(size, search(positions, null).size());
+        assertEquals(10, positions.search(null, 10, (id, lon, lat) -> {}));
+        assertEquals(10, positions.search(JtsConverter.toJtsExtent(55.0, 10.0, 56.0, 12.0), 10, (id, lon, lat) -> {}));
+    }
+
+
+    @Test
+    public void testLonLats() throws Exception {
+
+        AtonPositions positions = new AtonPositions(
+                new int[] { 1, 2, 3 },
+                new double[] { 10.0, 11.0, 12.0 },
+                new double[] { 55.0, 56.0, 57.0 });
+
+        // The packed list grows beyond its initial capacity
+        AtonPositions.LonLats lonLats = new AtonPositions.LonLats(1);
+        assertTrue(lonLats.isEmpty());
+        assertEquals(3, positions.search(null, Integer.MAX_VALUE, lonLats));
+        assertEquals(3, lonLats.size());
+
+        Set<Double> lons = new TreeSet<>();
+        for (int x = 0; x < lonLats.size(); x++) {
+            lons.add(lonLats.lon(x));
+            assertEquals(lonLats.lon(x) + 45.0, lonLats.lat(x), 0.0);
+        }
+        assertEquals(new TreeSet<>(Arrays.asList(10.0, 11.0, 12.0)), lons);
+    }
+
+
+    /** Searches the index for the ID's of the positions within the extent **/
+    private Set<Integer> search(AtonPositions positions, Geometry extent) {
+        Set<Integer> result = new TreeSet<>();
+        positions.search(extent, Integer.MAX_VALUE, (id, lon, lat) -> result.add(id));
+        return result;
+    }
+
+
+    /** Returns the ID's of the positions within the extent **/
+    private Set<Integer> bruteForceSearch(int[] ids, double[] lons, double[] lats, Geometry extent) {
+        Set<Integer> result = new TreeSet<>();
+        for (int x = 0; x < ids.length; x++) {
+            if (extent.intersects(JtsConverter.toJtsPoint(lats[x], lons[x]))) {
+                result.add(ids[x]);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.Test;
+import org.niord.core.area.Area;
+import org.niord.core.domain.Domain;
+import org.niord.core.domain.DomainSnapshot;
+import org.niord.core.message.MessageSeries;
+import org.niord.model.message.MainType;
+
+import java.util.Collections;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test the domain snapshots
+ */
+public class DomainSnapshotTest {
+
+    @Test
+    public void testDomainSnapshot() {
+
+        MessageSeries series = new MessageSeries();
+        series.setSeriesId("dma-nm");
+        series.setMainType(MainType.NM);
+
+        Area area = new Area();
+        area.setId(42);
+
+        Domain domain = new Domain();
+        domain.setId(1);
+        domain.setDomainId("niord-nm");
+        domain.setTimeZone("Europe/Copenhagen");
+        domain.setPublish(true);
+        domain.setAreas(Collections.singletonList(area));
+        domain.setMessageSeries(Collections.singletonList(series));
+
+        DomainSnapshot snapshot = new DomainSnapshot(domain);
+
+        assertEquals(Integer.valueOf(1), snapshot.getId());
+        assertEquals("niord-nm", snapshot.getDomainId());
+        assertTrue(snapshot.isPublish());
+        assertEquals(TimeZone.getTimeZone("Europe/Copenhagen"), snapshot.timeZone());
+        assertEquals(Collections.singleton(42), snapshot.getAreaIds());
+
+        assertTrue(snapshot.containsMessageSeries("dma-nm"));
+        assertTrue(snapshot.containsMessageSeries(series));
+        assertFalse(snapshot.containsMessageSeries("dma-nw"));
+        assertFalse(snapshot.containsMessageSeries((String) null));
+        assertTrue(snapshot.supportsMainType(MainType.NM));
+        assertFalse(snapshot.supportsMainType(MainType.NW));
+
+        // The snapshot must not be affected by subsequent changes to the entity
+        domain.setMessageSeries(Collections.emptyList());
+        assertTrue(snapshot.containsMessageSeries("dma-nm"));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.niord.core.geojson.JtsConverter;
+import org.niord.core.geojson.LuceneShapeConverter;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests indexing and searching JTS geometries as Lucene shapes
+ */
+public class LuceneShapeTest {
+
+    @Test
+    public void testShapeSearch() throws Exception {
+
+        Directory directory = new ByteBuffersDirectory();
+        IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()));
+
+        addDocument(writer, "point", JtsConverter.wktToJts("POINT(11 55)"));
+        addDocument(writer, "line", JtsConverter.wktToJts("LINESTRING(9 57, 13 57)"));
+        addDocument(writer, "polygon", JtsConverter.wktToJts("POLYGON((14 54, 16 54, 16 56, 14 56, 14 54))"));
+        // Self-intersecting polygon, which cannot be tessellated, and is indexed by its bounding box
+        addDocument(writer, "bowtie", JtsConverter.wktToJts("POLYGON((0 0, 2 2, 2 0, 0 2, 0 0))"));
+        addDocument(writer, "multi", JtsConverter.wktToJts("MULTIPOINT((-20 60), (20 -60))"));
+        writer.close();
+
+        IndexSearcher searcher = new IndexSearcher(DirectoryReader.open(directory));
+
+        assertEquals(Set.of("point", "line"), search(searcher, JtsConverter.toJtsExtent(54.0, 10.0, 57.5, 12.0)));
+        assertEquals(Set.of("polygon"), search(searcher, JtsConverter.toJtsExtent(55.0, 15.0, 55.5, 15.5)));
+        assertEquals(Set.of("bowtie"), search(searcher, JtsConverter.toJtsExtent(0.9, 0.9, 1.1, 1.1)));
+        assertEquals(Set.of("multi"), search(searcher, JtsConverter.toJtsExtent(-61.0, 19.0, -59.0, 21.0)));
+
+        // Non-rectangular extent
+        assertEquals(Set.of("point"), search(searcher, JtsConverter.wktToJts("POLYGON((10 54, 12 54, 11 56, 10 54))")));
+    }
+
+
+    /** Adds a document with the given geometry to the index **/
+    private void addDocument(IndexWriter writer, String id, Geometry geometry) throws Exception {
+        Document doc = new Document();
+        doc.add(new StringField("id", id, Field.Store.YES));
+        LuceneShapeConverter.createIndexableFields("geometry", geometry).forEach(doc::add);
+        writer.addDocument(doc);
+    }
+
+
+    /** Returns the ID's of the documents intersecting the given extent **/
+    private Set<String> search(IndexSearcher searcher, Geometry extent) throws Exception {
+        Query query = LuceneShapeConverter.newIntersectsQuery("geometry", extent);
+        Set<String> result = new TreeSet<>();
+        for (ScoreDoc doc : searcher.search(query, 100).scoreDocs) {
+            result.add(searcher.storedFields().document(doc.doc).get("id"));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.niord.core.mail.Mail;
+import org.niord.core.mail.MailTransportPool;
+import org.niord.core.util.TokenBucket;
+
+import jakarta.mail.Message;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the pooled SMTP sending against a local, in-process SMTP stand-in
+ */
+public class MailTransportPoolTest {
+
+    FakeSmtpServer smtpServer;
+
+    @Before
+    public void startSmtpServer() throws Exception {
+        smtpServer = new FakeSmtpServer();
+    }
+
+    @After
+    public void stopSmtpServer() throws Exception {
+        smtpServer.close();
+    }
+
+
+    @Test
+    public void testConnectionReuse() throws Exception {
+
+        Properties props = new Properties();
+        props.put("mail.smtp.host", "127.0.0.1");
+        props.put("mail.smtp.port", String.valueOf(smtpServer.getPort()));
+        Session session = Session.getInstance(props);
+
+        int mailCount = 20;
+        try (MailTransportPool pool = new MailTransportPool(session, null, null, 2)) {
+
+            // Send the mails in two batches, i.e. one per pooled connection
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            List<Future<?>> batches = new ArrayList<>();
+            for (int b = 0; b < 2; b++) {
+                int batch = b;
+                batches.add(executor.submit(() -> {
+                    Transport transport = pool.borrow();
+                    try {
+                        for (int x = 0; x < mailCount / 2; x++) {
+                            Mail mail = new Mail()
+                                    .from(new InternetAddress("niord@e-navigation.net"))
+                                    .recipient(Message.RecipientType.TO, new InternetAddress("user" + x + "@e-navigation.net"))
+                                    .subject("Batch " + batch + " mail " + x)
+                                    .htmlText("<html><body>Shared body</body></html>");
+                            MimeMessage message = mail.compose(session, null);
+                            message.saveChanges();
+                            transport.sendMessage(message, message.getAllRecipients());
+                        }
+                    } finally {
+                        pool.release(transport, false);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> batch : batches) {
+                batch.get();
+            }
+            executor.shutdown();
+
+            assertEquals(mailCount, smtpServer.getMailCount());
+            assertEquals(2, pool.getConnectionCount());
+            assertEquals(2, smtpServer.getConnectionCount());
+
+            // A broken transport is replaced by a new connection upon the next borrow
+            Transport transport = pool.borrow();
+            pool.release(transport, true);
+            pool.release(pool.borrow(), false);
+            assertEquals(3, pool.getConnectionCount());
+        }
+    }
+
+
+    @Test
+    public void testTokenBucket() {
+
+        AtomicLong now = new AtomicLong(0);
+        TokenBucket bucket = new TokenBucket(60, 10, now::get);
+
+        // Initially, a full bucket allows a burst of 10
+        assertEquals(10, bucket.tryAcquire(100));
+        assertEquals(0, bucket.available());
+
+        // 60 per minute means one token per second
+        now.addAndGet(5000);
+        assertEquals(5, bucket.available());
+        assertEquals(3, bucket.tryAcquire(3));
+        assertEquals(2, bucket.available());
+
+        // The bucket never holds more than its capacity
+        now.addAndGet(600000);
+        assertEquals(10, bucket.available());
+        assertTrue(bucket.tryAcquire(0) == 0);
+    }
+
+
+    /**
+     * A minimal, in-process SMTP server that accepts and counts all mails
+     */
+    static class FakeSmtpServer implements AutoCloseable {
+
+        final ServerSocket serverSocket;
+        final AtomicInteger connectionCount = new AtomicInteger();
+        final AtomicInteger mailCount = new AtomicInteger();
+        final ExecutorService executor = Executors.newCachedThreadPool();
+
+        FakeSmtpServer() throws Exception {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            executor.submit(this::acceptConnections);
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        int getConnectionCount() {
+            return connectionCount.get();
+        }
+
+        int getMailCount() {
+            return mailCount.get();
+        }
+
+        private void acceptConnections() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    connectionCount.incrementAndGet();
+                    executor.submit(() -> handleConnection(socket));
+                } catch (Exception ignored) {
+                }
+            }
+        }
+
+        private void handleConnection(Socket socket) {
+            try (Socket s = socket;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+                 Writer out = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII)) {
+
+                reply(out, "220 localhost ESMTP");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String cmd = line.toUpperCase();
+                    if (cmd.startsWith("EHLO")) {
+                        reply(out, "250 localhost");
+                    } else if (cmd.startsWith("DATA")) {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // Skip the mail contents
+                        }
+                        mailCount.incrementAndGet();
+                        reply(out, "250 OK");
+                    } else if (cmd.startsWith("QUIT")) {
+                        reply(out, "221 Bye");
+                        return;
+                    } else if (cmd.startsWith("HELO") || cmd.startsWith("MAIL") || cmd.startsWith("RCPT")
+                            || cmd.startsWith("RSET") || cmd.startsWith("NOOP")) {
+                        reply(out, "250 OK");
+                    } else {
+                        reply(out, "502 Command not implemented");
+                    }
+                }
+            } catch (Exception ignored) {
+            }
+        }
+
+        private void reply(Writer out, String reply) throws Exception {
+            out.write(reply + "\r\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() throws Exception {
+            serverSocket.close();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -17,17 +17,32 @@
 package org.niord.core;
 
 import org.junit.Test;
+import org.niord.core.area.Area;
+import org.niord.core.category.Category;
 import org.niord.core.mailinglist.MessageFilter;
 import org.niord.core.message.Message;
+import org.niord.core.message.MessageScriptFilterCompiler;
 import org.niord.core.message.MessageScriptFilterEvaluator;
+import org.niord.core.message.MessageSeries;
 import org.niord.core.promulgation.NavtexMessagePromulgation;
 import org.niord.core.promulgation.NavtexTransmitter;
 import org.niord.core.promulgation.PromulgationType;
+import org.niord.model.message.MainType;
 import org.niord.model.message.Status;
+import org.niord.model.message.Type;
 
+import javax.script.Invocable;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.function.BiPredicate;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.niord.model.message.Type.TEMPORARY_NOTICE;
@@ -76,5 +91,142 @@ public class MessageScriptFilterEvaluatorTest {
     }
 
 
+    @Test
+    public void testCompiledFilter() throws Exception {
 
+        Message msg = new Message();
+        msg.setStatus(Status.PUBLISHED);
+        msg.setType(TEMPORARY_NOTICE);
+        msg.setMainType(MainType.NM);
+        MessageSeries series = new MessageSeries();
+        series.setSeriesId("dma-nm");
+        msg.setMessageSeries(series);
+        Area area = new Area();
+        area.setId(10);
+        area.setMrn("urn:mrn:iho:country:dk");
+        msg.getAreas().add(area);
+
+        Map<String, String> data = new HashMap<>();
+        data.put("phase", "start-recording");
+
+        String filter1 = "data.phase == 'start-recording' && (msg.type == Type.TEMPORARY_NOTICE || msg.type == Type.PRELIMINARY_NOTICE) && msg.status == Status.PUBLISHED";
+        MessageScriptFilterEvaluator evaluator = new MessageScriptFilterEvaluator(filter1);
+        assertTrue(evaluator.isCompiled());
+        assertTrue(evaluator.includeMessage(msg, data));
+
+        assertTrue(MessageScriptFilterCompiler.compile("msg.mainType === MainType.NM && msg.messageSeries.seriesId == \"dma-nm\"").test(msg, null));
+        assertTrue(MessageScriptFilterCompiler.compile("msg.areas.length == 1 && msg.areas[0].id == 10").test(msg, null));
+        assertTrue(MessageScriptFilterCompiler.compile("msg.areas[0].mrn != 'urn:mrn:iho:country:se'").test(msg, null));
+        assertTrue(MessageScriptFilterCompiler.compile("msg.status == 'PUBLISHED' && !(msg.status == Status.DRAFT)").test(msg, null));
+        assertFalse(MessageScriptFilterCompiler.compile("msg.areas[1].id == 10").test(msg, null));
+        assertFalse(MessageScriptFilterCompiler.compile("msg.categories[0].id == 10").test(msg, null));
+
+        // Accessing a property of null fails the filter, just like Nashorn
+        msg.setMessageSeries(null);
+        assertFalse(MessageScriptFilterCompiler.compile("msg.messageSeries.seriesId != 'dma-nm'").test(msg, null));
+
+        // Unsupported syntax falls back to Nashorn
+        MessageScriptFilterEvaluator fallback = new MessageScriptFilterEvaluator("msg.areas.size() > 0");
+        assertFalse(fallback.isCompiled());
+        assertTrue(fallback.includeMessage(msg, data));
+    }
+
+
+    /**
+     * Tests that "!" binds tighter than the comparisons, just like in Nashorn
+     */
+    @Test
+    public void testCompiledNegationPrecedence() throws Exception {
+
+        Message msg = new Message();
+        msg.setStatus(Status.PUBLISHED);
+
+        Object[] values = { null, true, false, "", "a", "0", "1", 0, 1 };
+        String[] filters = { "!data.x == data.y", "!data.x != data.y", "!data.x === data.y", "!!data.x == data.y",
+                "!msg.status == false" };
+
+        for (String filter : filters) {
+            BiPredicate<Message, Object> compiled = MessageScriptFilterCompiler.compile(filter);
+            Invocable nashorn = nashornFilter(filter);
+            for (Object x : values) {
+                for (Object y : values) {
+                    Map<String, Object> data = new HashMap<>();
+                    data.put("x", x);
+                    data.put("y", y);
+                    assertEquals(filter + " with x=" + x + ", y=" + y,
+                            nashorn.invokeFunction("includeMessage", msg, data),
+                            compiled.test(msg, data));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Benchmarks the compiled filters against Nashorn filters on 10.000 messages
+     */
+    @Test
+    public void benchmarkCompiledFilters() throws Exception {
+
+        Random rnd = new Random(1000L);
+        List<Message> messages = new ArrayList<>();
+        for (int x = 0; x < 10000; x++) {
+            Message msg = new Message();
+            msg.setStatus(Status.values()[rnd.nextInt(Status.values().length)]);
+            msg.setType(Type.values()[rnd.nextInt(Type.values().length)]);
+            msg.setMainType(msg.getType().getMainType());
+            MessageSeries series = new MessageSeries();
+            series.setSeriesId(rnd.nextBoolean() ? "dma-nw" : "dma-nm");
+            msg.setMessageSeries(series);
+            Area area = new Area();
+            area.setId(rnd.nextInt(20));
+            msg.getAreas().add(area);
+            Category category = new Category();
+            category.setId(rnd.nextInt(20));
+            msg.getCategories().add(category);
+            messages.add(msg);
+        }
+
+        String filter = "(msg.type == Type.TEMPORARY_NOTICE || msg.type == Type.PRELIMINARY_NOTICE) "
+                + "&& msg.status == Status.PUBLISHED && msg.messageSeries.seriesId == 'dma-nm' "
+                + "&& (msg.areas[0].id == 5 || msg.categories[0].id != 7)";
+
+        BiPredicate<Message, Object> compiled = MessageScriptFilterCompiler.compile(filter);
+        Invocable nashorn = nashornFilter(filter);
+
+        // Warm up both paths and check that they agree
+        int compiledMatches = 0, nashornMatches = 0;
+        for (Message msg : messages) {
+            boolean c = compiled.test(msg, Collections.emptyMap());
+            boolean n = (Boolean) nashorn.invokeFunction("includeMessage", msg, Collections.emptyMap());
+            assertEquals(n, c);
+            compiledMatches += c ? 1 : 0;
+            nashornMatches += n ? 1 : 0;
+        }
+        assertEquals(nashornMatches, compiledMatches);
+
+        long t0 = System.nanoTime();
+        for (Message msg : messages) {
+            compiled.test(msg, Collections.emptyMap());
+        }
+        long t1 = System.nanoTime();
+        for (Message msg : messages) {
+            nashorn.invokeFunction("includeMessage", msg, Collections.emptyMap());
+        }
+        long t2 = System.nanoTime();
+
+        System.out.printf("Evaluated filter on %d messages (%d matches): compiled %d ms, Nashorn %d ms%n",
+                messages.size(), compiledMatches, (t1 - t0) / 1_000_000, (t2 - t1) / 1_000_000);
+    }
+
+
+    /** Instantiates the filter as a Nashorn function, the same way as the MessageScriptFilterEvaluator fallback **/
+    private Invocable nashornFilter(String filter) throws Exception {
+        String jsFilter = "var Type = Java.type('org.niord.model.message.Type');"
+                + "var Status = Java.type('org.niord.model.message.Status');"
+                + "function includeMessage(msg, data) { return " + filter + "; }";
+        ScriptEngine jsEngine = new ScriptEngineManager().getEngineByName("Nashorn");
+        jsEngine.eval(jsFilter);
+        return (Invocable) jsEngine;
+    }
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.Test;
+import org.niord.core.message.MessageSearchCursor;
+import org.niord.core.message.MessageSearchParams;
+import org.niord.model.search.PagedSearchParamsVo.SortOrder;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Message search cursor tests
+ */
+public class MessageSearchCursorTest {
+
+    @Test
+    public void testEncodeDecode() {
+
+        MessageSearchParams params = new MessageSearchParams();
+        params.sortBy("AREA").sortOrder(SortOrder.DESC);
+
+        Date date = new Date();
+        MessageSearchCursor cursor = new MessageSearchCursor(
+                MessageSearchCursor.Mode.KEYSET, "AREA", SortOrder.DESC, 200, 1234, Arrays.asList(999999, 12.5, null, date, 42));
+        String token = cursor.encode();
+
+        MessageSearchCursor decoded = MessageSearchCursor.decode(token, params);
+        assertNotNull(decoded);
+        assertEquals(MessageSearchCursor.Mode.KEYSET, decoded.getMode());
+        assertEquals(200, decoded.getOffset());
+        assertEquals(1234, decoded.getTotal());
+        assertEquals(Arrays.asList(999999, 12.5, null, date, 42), decoded.getKeys());
+
+        // Offset cursors retain their mode
+        String offsetToken = new MessageSearchCursor(
+                MessageSearchCursor.Mode.OFFSET, "AREA", SortOrder.DESC, 20, 100, Arrays.asList(42)).encode();
+        assertEquals(MessageSearchCursor.Mode.OFFSET, MessageSearchCursor.decode(offsetToken, params).getMode());
+
+        // The cursor is not valid for another sort order
+        params.sortOrder(SortOrder.ASC);
+        assertNull(MessageSearchCursor.decode(token, params));
+
+        // Invalid tokens are ignored
+        assertNull(MessageSearchCursor.decode("not-a-cursor", params));
+        assertNull(MessageSearchCursor.decode(null, params));
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.Test;
+import org.niord.core.message.MessageService;
+import org.niord.core.message.vo.MessageTombstoneVo;
+import org.niord.model.message.Status;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the tombstones of the public change feed
+ */
+public class MessageTombstoneTest {
+
+    @Test
+    public void testPublicTombstones() {
+
+        Date published = new Date(System.currentTimeMillis() - 24L * 60L * 60L * 1000L);
+        Date updated = new Date();
+
+        List<Object[]> rows = Arrays.asList(
+                new Object[] { "cancelled", "NW-001-17", Status.CANCELLED, updated, published },
+                new Object[] { "expired", "NW-002-17", Status.EXPIRED, updated, published },
+                new Object[] { "deleted-published", "NW-003-17", Status.DELETED, updated, published },
+                new Object[] { "deleted-draft", null, Status.DELETED, updated, null });
+
+        List<String> ids = MessageService.toPublicTombstones(rows).stream()
+                .map(MessageTombstoneVo::getId)
+                .collect(Collectors.toList());
+
+        // Deleted drafts have never been published, and must never appear in the feed
+        assertEquals(Arrays.asList("cancelled", "expired", "deleted-published"), ids);
+
+        assertTrue(MessageService.isPublicTombstone(Status.CANCELLED, null));
+        assertFalse(MessageService.isPublicTombstone(Status.DELETED, null));
+        assertFalse(MessageService.isPublicTombstone(Status.PUBLISHED, published));
+        assertFalse(MessageService.isPublicTombstone(Status.DRAFT, published));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.core;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.niord.core.repo.RepositoryService;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the copy-on-write edit folders of repository-backed entities
+ */
+public class RepoEditFolderTest {
+
+    Path root;
+
+    @Before
+    public void createFolders() throws Exception {
+        root = Files.createTempDirectory("niord-repo");
+        Path repo = Files.createDirectories(root.resolve("repo/1"));
+        Files.write(repo.resolve("publication.pdf"), "original".getBytes(StandardCharsets.UTF_8));
+        Files.write(repo.resolve("cover.png"), "cover".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void deleteFolders() {
+        FileUtils.deleteQuietly(root.toFile());
+    }
+
+    @Test
+    public void testEditAndSyncFolder() throws Exception {
+
+        Path repo = root.resolve("repo");
+        Path edit = root.resolve("edit");
+
+        RepositoryService.linkOrCopyDirectory(repo, edit);
+        assertEquals("original", read(edit.resolve("1/publication.pdf")));
+
+        // Nothing has changed
+        assertTrue(RepositoryService.syncDirectory(edit, repo).isEmpty());
+
+        // Overwrite a file in the edit folder and add a new file
+        Path editFile = edit.resolve("1/publication.pdf");
+        RepositoryService.unlinkIfShared(editFile);
+        Files.write(editFile, "updated".getBytes(StandardCharsets.UTF_8));
+        Files.write(edit.resolve("1/attachment.txt"), "new".getBytes(StandardCharsets.UTF_8));
+
+        // The original must be unaffected until synced
+        assertEquals("original", read(repo.resolve("1/publication.pdf")));
+
+        List<Path> synced = RepositoryService.syncDirectory(edit, repo);
+        assertEquals(2, synced.size());
+        assertTrue(synced.contains(repo.resolve("1/publication.pdf")));
+        assertTrue(synced.contains(repo.resolve("1/attachment.txt")));
+        assertEquals("updated", read(repo.resolve("1/publication.pdf")));
+        assertEquals("cover", read(repo.resolve("1/cover.png")));
+    }
+
+    private String read(Path file) throws Exception {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
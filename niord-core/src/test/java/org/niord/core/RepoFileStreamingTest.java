@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.core;
+
+import org.junit.Test;
+import org.niord.core.repo.ByteRange;
+import org.niord.core.repo.RepoFileCache.Encoding;
+import org.niord.core.repo.RepositoryService;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests byte range parsing, content negotiation and file channel streaming of repository files
+ */
+public class RepoFileStreamingTest {
+
+    @Test
+    public void testParseByteRange() {
+
+        // No or unsupported range headers
+        assertNull(ByteRange.parse(null, 100));
+        assertNull(ByteRange.parse("items=0-10", 100));
+        assertNull(ByteRange.parse("bytes=0-10,20-30", 100));
+        assertNull(ByteRange.parse("bytes=abc-10", 100));
+        assertNull(ByteRange.parse("bytes=20-10", 100));
+
+        ByteRange range = ByteRange.parse("bytes=10-19", 100);
+        assertNotNull(range);
+        assertTrue(range.isSatisfiable());
+        assertEquals(10, range.getStart());
+        assertEquals(10, range.getLength());
+        assertEquals("bytes 10-19/100", range.getContentRange());
+
+        // Open-ended range
+        range = ByteRange.parse("bytes=90-", 100);
+        assertEquals(90, range.getStart());
+        assertEquals(99, range.getEnd());
+
+        // End beyond the file size is truncated
+        range = ByteRange.parse("bytes=50-500", 100);
+        assertEquals(99, range.getEnd());
+
+        // Suffix range
+        range = ByteRange.parse("bytes=-30", 100);
+        assertEquals(70, range.getStart());
+        assertEquals(30, range.getLength());
+
+        // Unsatisfiable range
+        range = ByteRange.parse("bytes=100-", 100);
+        assertFalse(range.isSatisfiable());
+        assertEquals("bytes */100", range.getContentRange());
+    }
+
+
+    @Test
+    public void testAcceptedEncodings() {
+
+        assertEquals(Collections.emptyList(), RepositoryService.acceptedEncodings(null));
+        assertEquals(Collections.emptyList(), RepositoryService.acceptedEncodings("identity"));
+        assertEquals(Collections.singletonList(Encoding.GZIP), RepositoryService.acceptedEncodings("gzip, deflate"));
+        assertEquals(Arrays.asList(Encoding.BROTLI, Encoding.GZIP), RepositoryService.acceptedEncodings("gzip, br"));
+
+        // Quality values
+        assertEquals(Collections.emptyList(), RepositoryService.acceptedEncodings("gzip;q=0"));
+        assertEquals(Collections.singletonList(Encoding.BROTLI), RepositoryService.acceptedEncodings("gzip;q=0, br"));
+        assertEquals(Arrays.asList(Encoding.GZIP, Encoding.BROTLI), RepositoryService.acceptedEncodings("br;q=0.5, gzip;q=0.8"));
+
+        // Wildcards
+        assertEquals(Arrays.asList(Encoding.BROTLI, Encoding.GZIP), RepositoryService.acceptedEncodings("*"));
+        assertEquals(Collections.singletonList(Encoding.GZIP), RepositoryService.acceptedEncodings("br;q=0, *"));
+        assertEquals(Collections.emptyList(), RepositoryService.acceptedEncodings("*;q=0"));
+    }
+
+
+    @Test
+    public void testTransferFile() throws Exception {
+
+        byte[] data = new byte[100_000];
+        for (int x = 0; x < data.length; x++) {
+            data[x] = (byte)(x % 251);
+        }
+        Path file = Files.createTempFile("niord-repo", ".bin");
+        try {
+            Files.write(file, data);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                RepositoryService.transferFile(channel, 0, data.length, out);
+            }
+            assertArrayEquals(data, out.toByteArray());
+
+            ByteRange range = ByteRange.parse("bytes=1000-5999", data.length);
+            out = new ByteArrayOutputStream();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                RepositoryService.transferFile(channel, range.getStart(), range.getLength(), out);
+            }
+            assertArrayEquals(Arrays.copyOfRange(data, 1000, 6000), out.toByteArray());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
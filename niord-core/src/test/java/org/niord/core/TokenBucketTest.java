@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.core;
+
+import org.junit.Test;
+import org.niord.core.util.TokenBucket;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the token bucket used for rate limiting the sending of scheduled mails
+ */
+public class TokenBucketTest {
+
+    static final long INTERVAL_MS = 10000L;
+    static final int MINUTES = 60;
+
+    @Test
+    public void testFullRateIsReleased() {
+        for (int rate : new int[] { 1, 5, 10, 11, 59, 60, 100, 1000 }) {
+            assertReleased(rate, drain(rate, INTERVAL_MS));
+        }
+    }
+
+    @Test
+    public void testLateExecutionsDoNotLoseTokens() {
+        // Executions running up to 4 seconds late should still sustain the full rate
+        for (int rate : new int[] { 1, 5, 10, 11, 59, 60, 100, 1000 }) {
+            assertReleased(rate, drain(rate, INTERVAL_MS + 1000L));
+            assertReleased(rate, drain(rate, INTERVAL_MS + 4000L));
+        }
+    }
+
+    /** Simulates draining the bucket at the given interval with an unlimited backlog of mails **/
+    private int drain(int rate, long intervalMs) {
+        AtomicLong clock = new AtomicLong(0);
+        TokenBucket bucket = TokenBucket.forInterval(rate, INTERVAL_MS, clock::get);
+        int released = 0;
+        while (clock.get() <= MINUTES * 60000L) {
+            released += bucket.tryAcquire(bucket.available());
+            clock.addAndGet(intervalMs);
+        }
+        return released;
+    }
+
+    /** Asserts that the released number of tokens matches the rate, allowing for the initial burst **/
+    private void assertReleased(int rate, int released) {
+        int expected = rate * MINUTES;
+        int burst = (int) Math.ceil(1.5 * rate * INTERVAL_MS / 60000.0) + 1;
+        assertTrue("Rate " + rate + ": released " + released + " < " + (expected - burst),
+                released >= expected - burst);
+        assertTrue("Rate " + rate + ": released " + released + " > " + (expected + burst),
+                released <= expected + burst);
+    }
+}
@@ -29,7 +29,7 @@ import symbols.Symbols.*;
 
 public class Rules {
 	
-	static final DecimalFormat df = new DecimalFormat("#.#");
+	final DecimalFormat df = new DecimalFormat("#.#");
 
 	static final EnumMap<ColCOL, Color> bodyColours = new EnumMap<ColCOL, Color>(ColCOL.class);
 	static {
@@ -62,7 +62,7 @@ public class Rules {
 		pattMap.put(ColPAT.PAT_STRP, Patt.H);
 	}
 	
-	static String getName() {
+	String getName() {
 		AttVal<?> name = feature.atts.get(Att.OBJNAM);
 		if (name == null) {
 			AttMap atts = feature.objs.get(feature.type).get(0);
@@ -73,25 +73,25 @@ public class Rules {
 		return (name != null) ? (String)name.val: null;
 	}
 
-	public static void addName(int z, Font font) {
+	public void addName(int z, Font font) {
 		addName(z, font, Color.black, new Delta(Handle.CC, new AffineTransform()));
 	}
-	public static void addName(int z, Font font, Color colour) {
+	public void addName(int z, Font font, Color colour) {
 		addName(z, font, colour, new Delta(Handle.CC, new AffineTransform()));
 	}
-	public static void addName(int z, Font font, Delta delta) {
+	public void addName(int z, Font font, Delta delta) {
 		addName(z, font, Color.black, delta);
 	}
-	public static void addName(int z, Font font, Color colour, Delta delta) {
-		if (Renderer.zoom >= z) {
+	public void addName(int z, Font font, Color colour, Delta delta) {
+		if (renderer.zoom >= z) {
 			String name = getName();
 			if (name != null) {
-				Renderer.labelText(name, font,  colour, delta);
+				renderer.labelText(name, font,  colour, delta);
 			}
 		}
 	}
 
-	static AttMap getAtts(Obj obj, int idx) {
+	AttMap getAtts(Obj obj, int idx) {
 		HashMap<Integer, AttMap> objs = feature.objs.get(obj);
 		if (objs == null)
 			return null;
@@ -99,7 +99,7 @@ public class Rules {
 			return objs.get(idx);
 	}
 
-	public static Object getAttVal(Obj obj, Att att) {
+	public Object getAttVal(Obj obj, Att att) {
 		AttMap atts;
 		HashMap<Integer, AttMap> objs;
 		AttVal<?> item;
@@ -113,7 +113,7 @@ public class Rules {
 			return item.val;
 	}
 	
-	public static String getAttStr(Obj obj, Att att) {
+	public String getAttStr(Obj obj, Att att) {
 		String str = (String)getAttVal(obj, att);
 		if (str != null) {
 			return str;
@@ -122,7 +122,7 @@ public class Rules {
 	}
 
 	@SuppressWarnings("unchecked")
-	public static Enum<?> getAttEnum(Obj obj, Att att) {
+	public Enum<?> getAttEnum(Obj obj, Att att) {
 		ArrayList<?> list = (ArrayList<?>)getAttVal(obj, att);
 		if (list != null) {
 			return ((ArrayList<Enum<?>>)list).get(0);
@@ -131,7 +131,7 @@ public class Rules {
 	}
 	
 	@SuppressWarnings("unchecked")
-	public static ArrayList<?> getAttList(Obj obj, Att att) {
+	public ArrayList<?> getAttList(Obj obj, Att att) {
 		ArrayList<Enum<?>> list = (ArrayList<Enum<?>>)getAttVal(obj, att);
 		if (list != null) {
 			return list;
@@ -142,7 +142,7 @@ public class Rules {
 	}
 	
 	@SuppressWarnings("unchecked")
-	static Scheme getScheme(Obj obj) {
+	Scheme getScheme(Obj obj) {
 		ArrayList<Color> colours = new ArrayList<Color>();
 		for (ColCOL col : (ArrayList<ColCOL>) getAttList(obj, Att.COLOUR)) {
 			colours.add(bodyColours.get(col));
@@ -154,7 +154,7 @@ public class Rules {
 		return new Scheme(patterns, colours);
 	}
 
-	static boolean hasAttribute(Obj obj, int idx, Att att) {
+	boolean hasAttribute(Obj obj, int idx, Att att) {
 		AttMap atts;
 		if ((atts = getAtts(obj, idx)) != null) {
 			AttVal<?> item = atts.get(att);
@@ -163,7 +163,7 @@ public class Rules {
 		return false;
 	}
 	
-	static boolean testAttribute(Obj obj, Att att, Object val) {
+	boolean testAttribute(Obj obj, Att att, Object val) {
 		AttMap atts;
 		if ((atts = getAtts(obj, 0)) != null) {
 			AttVal<?> item = atts.get(att);
@@ -184,19 +184,27 @@ public class Rules {
 		return false;
 	}
 	
-	public static Feature feature;
-	static ArrayList<Feature> objects;
+	final Renderer renderer;
+	final Signals signals;
+
+	public Feature feature;
+	ArrayList<Feature> objects;
+
+	Rules(Renderer renderer) {
+		this.renderer = renderer;
+		this.signals = new Signals(renderer, this);
+	}
 	
-	static boolean testObject(Obj obj) {
-		return ((objects = Renderer.map.features.get(obj)) != null);
+	boolean testObject(Obj obj) {
+		return ((objects = renderer.map.features.get(obj)) != null);
 	}
 	
-	static boolean testFeature(Feature f) {
+	boolean testFeature(Feature f) {
 		return ((feature = f).reln == Rflag.MASTER);
 	}
 	
-	public static void rules () {
-		if ((Renderer.context.ruleset() == RuleSet.ALL) || (Renderer.context.ruleset() == RuleSet.BASE)) {
+	public void rules () {
+		if ((renderer.context.ruleset() == RuleSet.ALL) || (renderer.context.ruleset() == RuleSet.BASE)) {
 			if (testObject(Obj.LNDARE)) for (Feature f : objects) if (testFeature(f)) areas();
 			if (testObject(Obj.BUAARE)) for (Feature f : objects) if (testFeature(f)) areas();
 			if (testObject(Obj.HRBFAC)) for (Feature f : objects) if (testFeature(f)) areas();
@@ -212,7 +220,7 @@ public class Rules {
 			if (testObject(Obj.RAILWY)) for (Feature f : objects) if (testFeature(f)) highways();
 		}
 		if (testObject(Obj.SLCONS)) for (Feature f : objects) if (testFeature(f)) shoreline();
-		if ((Renderer.context.ruleset() == RuleSet.ALL) || (Renderer.context.ruleset() == RuleSet.SEAMARK)) {
+		if ((renderer.context.ruleset() == RuleSet.ALL) || (renderer.context.ruleset() == RuleSet.SEAMARK)) {
 			if (testObject(Obj.PIPSOL)) for (Feature f : objects) if (testFeature(f)) pipelines();
 			if (testObject(Obj.CBLSUB)) for (Feature f : objects) if (testFeature(f)) cables();
 			if (testObject(Obj.PIPOHD)) for (Feature f : objects) if (testFeature(f)) pipelines();
@@ -283,131 +291,131 @@ public class Rules {
 		}
 	}
 	
-	private static void areas() {
+	private void areas() {
 		String name = getName();
 		switch (feature.type) {
 		case BUAARE:
-			Renderer.lineVector(new LineStyle(new Color(0x20000000, true)));
+			renderer.lineVector(new LineStyle(new Color(0x20000000, true)));
 			break;
 		case COALNE:
-			if (Renderer.zoom >= 12)
-				Renderer.lineVector(new LineStyle(Color.black, 10));
+			if (renderer.zoom >= 12)
+				renderer.lineVector(new LineStyle(Color.black, 10));
 			break;
 		case DEPARE:
 			Double depmax = 0.0;
 			if (((depmax = (Double) getAttVal(Obj.DEPARE, Att.DRVAL2)) != null) && (depmax <= 0.0)) {
-				Renderer.lineVector(new LineStyle(Symbols.Gdries));
+				renderer.lineVector(new LineStyle(Symbols.Gdries));
 			}
 			break;
 		case LAKARE:
-			if ((Renderer.zoom >= 12) || (feature.geom.area > 10.0))
-				Renderer.lineVector(new LineStyle(Symbols.Bwater));
+			if ((renderer.zoom >= 12) || (feature.geom.area > 10.0))
+				renderer.lineVector(new LineStyle(Symbols.Bwater));
 			break;
 		case DRGARE:
-			if (Renderer.zoom < 16)
-				Renderer.lineVector(new LineStyle(Color.black, 8, new float[] { 25, 25 }, new Color(0x40ffffff, true)));
+			if (renderer.zoom < 16)
+				renderer.lineVector(new LineStyle(Color.black, 8, new float[] { 25, 25 }, new Color(0x40ffffff, true)));
 			else
-				Renderer.lineVector(new LineStyle(Color.black, 8, new float[] { 25, 25 }));
+				renderer.lineVector(new LineStyle(Color.black, 8, new float[] { 25, 25 }));
 			addName(12, new Font("Arial", Font.PLAIN, 100), new Delta(Handle.CC, new AffineTransform()));
 			break;
 		case FAIRWY:
 			if (feature.geom.area > 2.0) {
-				if (Renderer.zoom < 16)
-					Renderer.lineVector(new LineStyle(Symbols.Mline, 8, new float[] { 50, 50 }, new Color(0x40ffffff, true)));
+				if (renderer.zoom < 16)
+					renderer.lineVector(new LineStyle(Symbols.Mline, 8, new float[] { 50, 50 }, new Color(0x40ffffff, true)));
 				else
-					Renderer.lineVector(new LineStyle(Symbols.Mline, 8, new float[] { 50, 50 }));
+					renderer.lineVector(new LineStyle(Symbols.Mline, 8, new float[] { 50, 50 }));
 			} else {
-				if (Renderer.zoom >= 14)
-					Renderer.lineVector(new LineStyle(new Color(0x40ffffff, true)));
+				if (renderer.zoom >= 14)
+					renderer.lineVector(new LineStyle(new Color(0x40ffffff, true)));
 			}
 			break;
 		case LKBSPT:
 		case LOKBSN:
 		case HRBBSN:
-			if (Renderer.zoom >= 12) {
-				Renderer.lineVector(new LineStyle(Color.black, 10, Symbols.Bwater));
+			if (renderer.zoom >= 12) {
+				renderer.lineVector(new LineStyle(Color.black, 10, Symbols.Bwater));
 			} else {
-				Renderer.lineVector(new LineStyle(Symbols.Bwater));
+				renderer.lineVector(new LineStyle(Symbols.Bwater));
 			}
 			break;
 		case HRBFAC:
 			if (feature.objs.get(Obj.HRBBSN) != null) {
-				if (Renderer.zoom >= 12) {
-					Renderer.lineVector(new LineStyle(Color.black, 10, Symbols.Bwater));
+				if (renderer.zoom >= 12) {
+					renderer.lineVector(new LineStyle(Color.black, 10, Symbols.Bwater));
 				} else {
-					Renderer.lineVector(new LineStyle(Symbols.Bwater));
+					renderer.lineVector(new LineStyle(Symbols.Bwater));
 				}
 			}
 			break;
 		case LNDARE:
-			Renderer.lineVector(new LineStyle(Symbols.Yland));
+			renderer.lineVector(new LineStyle(Symbols.Yland));
 			break;
 		case MARCUL:
-			if (Renderer.zoom >= 12) {
-				if (Renderer.zoom >= 14) {
-					Renderer.symbol(Areas.MarineFarm);
+			if (renderer.zoom >= 12) {
+				if (renderer.zoom >= 14) {
+					renderer.symbol(Areas.MarineFarm);
 				}
-				if ((feature.geom.area > 0.2) || ((feature.geom.area > 0.05) && (Renderer.zoom >= 14)) || ((feature.geom.area > 0.005) && (Renderer.zoom >= 16))) {
-					Renderer.lineVector(new LineStyle(Color.black, 4, new float[] { 10, 10 }));
+				if ((feature.geom.area > 0.2) || ((feature.geom.area > 0.05) && (renderer.zoom >= 14)) || ((feature.geom.area > 0.005) && (renderer.zoom >= 16))) {
+					renderer.lineVector(new LineStyle(Color.black, 4, new float[] { 10, 10 }));
 				}
 			}
 			break;
 		case OSPARE:
 			if (testAttribute(feature.type, Att.CATPRA, CatPRA.PRA_WFRM)) {
-				Renderer.symbol(Areas.WindFarm);
-				Renderer.lineVector(new LineStyle(Color.black, 20, new float[] { 40, 40 }));
+				renderer.symbol(Areas.WindFarm);
+				renderer.lineVector(new LineStyle(Color.black, 20, new float[] { 40, 40 }));
 				addName(15, new Font("Arial", Font.BOLD, 80), new Delta(Handle.TC, AffineTransform.getTranslateInstance(0, 10)));
 			}
 			break;
 		case RESARE:
 		case MIPARE:
-			if (Renderer.zoom >= 12) {
-				Renderer.lineSymbols(Areas.Restricted, 1.0, null, null, 0, Symbols.Mline);
+			if (renderer.zoom >= 12) {
+				renderer.lineSymbols(Areas.Restricted, 1.0, null, null, 0, Symbols.Mline);
 				if (testAttribute(feature.type, Att.CATREA, CatREA.REA_NWAK)) {
-					Renderer.symbol(Areas.NoWake);
+					renderer.symbol(Areas.NoWake);
 				}
 			}
 			break;
 		case PRCARE:
-			if (Renderer.zoom >= 12) {
-				Renderer.lineVector(new LineStyle(Symbols.Mline, 10, new float[] { 40, 40 }));
+			if (renderer.zoom >= 12) {
+				renderer.lineVector(new LineStyle(Symbols.Mline, 10, new float[] { 40, 40 }));
 			}
 			break;
 		case SEAARE:
 			switch ((CatSEA) getAttEnum(feature.type, Att.CATSEA)) {
 			case SEA_RECH:
-				if ((Renderer.zoom >= 10) && (name != null))
+				if ((renderer.zoom >= 10) && (name != null))
 					if (feature.geom.prim == Pflag.LINE) {
-						Renderer.lineText(name, new Font("Arial", Font.PLAIN, 150), Color.black, 0.5, -40);
+						renderer.lineText(name, new Font("Arial", Font.PLAIN, 150), Color.black, 0.5, -40);
 					} else {
-						Renderer.labelText(name, new Font("Arial", Font.PLAIN, 150), Color.black, new Delta(Handle.BC, AffineTransform.getTranslateInstance(0, -40)));
+						renderer.labelText(name, new Font("Arial", Font.PLAIN, 150), Color.black, new Delta(Handle.BC, AffineTransform.getTranslateInstance(0, -40)));
 					}
 				break;
 			case SEA_BAY:
-				if ((Renderer.zoom >= 12) && (name != null))
+				if ((renderer.zoom >= 12) && (name != null))
 					if (feature.geom.prim == Pflag.LINE) {
-						Renderer.lineText(name, new Font("Arial", Font.PLAIN, 150), Color.black, 0.5, -40);
+						renderer.lineText(name, new Font("Arial", Font.PLAIN, 150), Color.black, 0.5, -40);
 					} else {
-						Renderer.labelText(name, new Font("Arial", Font.PLAIN, 150), Color.black, new Delta(Handle.BC, AffineTransform.getTranslateInstance(0, -40)));
+						renderer.labelText(name, new Font("Arial", Font.PLAIN, 150), Color.black, new Delta(Handle.BC, AffineTransform.getTranslateInstance(0, -40)));
 					}
 				break;
 			case SEA_SHOL:
-				if (Renderer.zoom >= 14) {
+				if (renderer.zoom >= 14) {
 					if (feature.geom.prim == Pflag.AREA) {
-						Renderer.lineVector(new LineStyle(new Color(0xc480ff), 4, new float[] { 25, 25 }));
+						renderer.lineVector(new LineStyle(new Color(0xc480ff), 4, new float[] { 25, 25 }));
 						if (name != null) {
-							Renderer.labelText(name, new Font("Arial", Font.ITALIC, 75), Color.black, new Delta(Handle.BC, AffineTransform.getTranslateInstance(0, -40)));
-							Renderer.labelText("(Shoal)", new Font("Arial", Font.PLAIN, 60), Color.black, new Delta(Handle.BC));
+							renderer.labelText(name, new Font("Arial", Font.ITALIC, 75), Color.black, new Delta(Handle.BC, AffineTransform.getTranslateInstance(0, -40)));
+							renderer.labelText("(Shoal)", new Font("Arial", Font.PLAIN, 60), Color.black, new Delta(Handle.BC));
 						}
 					} else if (feature.geom.prim == Pflag.LINE) {
 						if (name != null) {
-							Renderer.lineText(name, new Font("Arial", Font.ITALIC, 75), Color.black, 0.5, -40);
-							Renderer.lineText("(Shoal)", new Font("Arial", Font.PLAIN, 60), Color.black, 0.5, 0);
+							renderer.lineText(name, new Font("Arial", Font.ITALIC, 75), Color.black, 0.5, -40);
+							renderer.lineText("(Shoal)", new Font("Arial", Font.PLAIN, 60), Color.black, 0.5, 0);
 						}
 					} else {
 						if (name != null) {
-							Renderer.labelText(name, new Font("Arial", Font.ITALIC, 75), Color.black, new Delta(Handle.BC, AffineTransform.getTranslateInstance(0, -40)));
-							Renderer.labelText("(Shoal)", new Font("Arial", Font.PLAIN, 60), Color.black, new Delta(Handle.BC));
+							renderer.labelText(name, new Font("Arial", Font.ITALIC, 75), Color.black, new Delta(Handle.BC, AffineTransform.getTranslateInstance(0, -40)));
+							renderer.labelText("(Shoal)", new Font("Arial", Font.PLAIN, 60), Color.black, new Delta(Handle.BC));
 						}
 					}
 				}
@@ -421,12 +429,12 @@ public class Rules {
 			}
 			break;
 		case SNDWAV:
-			if (Renderer.zoom >= 12) Renderer.fillPattern(Areas.Sandwaves);
+			if (renderer.zoom >= 12) renderer.fillPattern(Areas.Sandwaves);
 			break;
 		case SPLARE:
-			if (Renderer.zoom >= 12) {
-				Renderer.symbol(Areas.Plane, new Scheme(Symbols.Msymb));
-				Renderer.lineSymbols(Areas.Restricted, 0.5, Areas.LinePlane, null, 10, Symbols.Mline);
+			if (renderer.zoom >= 12) {
+				renderer.symbol(Areas.Plane, new Scheme(Symbols.Msymb));
+				renderer.lineSymbols(Areas.Restricted, 0.5, Areas.LinePlane, null, 10, Symbols.Mline);
 			}
 			addName(15, new Font("Arial", Font.BOLD, 80), new Delta(Handle.BC, AffineTransform.getTranslateInstance(0, -90)));
 			break;
@@ -436,76 +444,76 @@ public class Rules {
 	}
 	
 	@SuppressWarnings("unchecked")
-	private static void beacons() {
-		if ((Renderer.zoom >= 14) || ((Renderer.zoom >= 12) && ((feature.type == Obj.BCNLAT) || (feature.type == Obj.BCNCAR)))) {
+	private void beacons() {
+		if ((renderer.zoom >= 14) || ((renderer.zoom >= 12) && ((feature.type == Obj.BCNLAT) || (feature.type == Obj.BCNCAR)))) {
 			BcnSHP shape = (BcnSHP)getAttEnum(feature.type, Att.BCNSHP);
 			if (shape == BcnSHP.BCN_UNKN)
 				shape = BcnSHP.BCN_PILE;
 			if ((shape == BcnSHP.BCN_WTHY) && (feature.type == Obj.BCNLAT)) {
 				switch ((CatLAM) getAttEnum(feature.type, Att.CATLAM)) {
 				case LAM_PORT:
-					Renderer.symbol(Beacons.WithyPort);
+					renderer.symbol(Beacons.WithyPort);
 					break;
 				case LAM_STBD:
-					Renderer.symbol(Beacons.WithyStarboard);
+					renderer.symbol(Beacons.WithyStarboard);
 					break;
 				default:
-					Renderer.symbol(Beacons.Stake, getScheme(feature.type));
+					renderer.symbol(Beacons.Stake, getScheme(feature.type));
 				}
 			} else if ((shape == BcnSHP.BCN_PRCH) && (feature.type == Obj.BCNLAT) && !(feature.objs.containsKey(Obj.TOPMAR))) {
 				switch ((CatLAM) getAttEnum(feature.type, Att.CATLAM)) {
 				case LAM_PORT:
-					Renderer.symbol(Beacons.PerchPort);
+					renderer.symbol(Beacons.PerchPort);
 					break;
 				case LAM_STBD:
-					Renderer.symbol(Beacons.PerchStarboard);
+					renderer.symbol(Beacons.PerchStarboard);
 					break;
 				default:
-					Renderer.symbol(Beacons.Stake, getScheme(feature.type));
+					renderer.symbol(Beacons.Stake, getScheme(feature.type));
 				}
 			} else {
-				Renderer.symbol(Beacons.Shapes.get(shape), getScheme(feature.type));
+				renderer.symbol(Beacons.Shapes.get(shape), getScheme(feature.type));
 				if (feature.objs.containsKey(Obj.TOPMAR)) {
 					AttMap topmap = feature.objs.get(Obj.TOPMAR).get(0);
 					if (topmap.containsKey(Att.TOPSHP)) {
-						Renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.TOPMAR), Topmarks.BeaconDelta);
+						renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.TOPMAR), Topmarks.BeaconDelta);
 					}
 				} else if (feature.objs.containsKey(Obj.DAYMAR)) {
 					AttMap topmap = feature.objs.get(Obj.DAYMAR).get(0);
 					if (topmap.containsKey(Att.TOPSHP)) {
-						Renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.DAYMAR), Topmarks.BeaconDelta);
+						renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.DAYMAR), Topmarks.BeaconDelta);
 					}
 				}
 			}
 			addName(15, new Font("Arial", Font.BOLD, 40), new Delta(Handle.BL, AffineTransform.getTranslateInstance(60, -50)));
-			Signals.addSignals();
+			signals.addSignals();
 		}
 	}
 	
 	@SuppressWarnings("unchecked")
-	private static void buoys() {
-		if ((Renderer.zoom >= 14) || ((Renderer.zoom >= 12) && ((feature.type == Obj.BOYLAT) || (feature.type == Obj.BOYCAR)))) {
+	private void buoys() {
+		if ((renderer.zoom >= 14) || ((renderer.zoom >= 12) && ((feature.type == Obj.BOYLAT) || (feature.type == Obj.BOYCAR)))) {
 			BoySHP shape = (BoySHP) getAttEnum(feature.type, Att.BOYSHP);
 			if (shape == BoySHP.BOY_UNKN) shape = BoySHP.BOY_PILR;
-			Renderer.symbol(Buoys.Shapes.get(shape), getScheme(feature.type));
+			renderer.symbol(Buoys.Shapes.get(shape), getScheme(feature.type));
 			if (feature.objs.containsKey(Obj.TOPMAR)) {
 				AttMap topmap = feature.objs.get(Obj.TOPMAR).get(0);
 				if (topmap.containsKey(Att.TOPSHP)) {
-					Renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.TOPMAR), Topmarks.BuoyDeltas.get(shape));
+					renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.TOPMAR), Topmarks.BuoyDeltas.get(shape));
 				}
 			} else if (feature.objs.containsKey(Obj.DAYMAR)) {
 				AttMap topmap = feature.objs.get(Obj.DAYMAR).get(0);
 				if (topmap.containsKey(Att.TOPSHP)) {
-					Renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.DAYMAR), Topmarks.BuoyDeltas.get(shape));
+					renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.DAYMAR), Topmarks.BuoyDeltas.get(shape));
 				}
 			}
 			addName(15, new Font("Arial", Font.BOLD, 40), new Delta(Handle.BL, AffineTransform.getTranslateInstance(60, -50)));
-			Signals.addSignals();
+			signals.addSignals();
 		}
 	}
 	
-	private static void bridges() {
-		if (Renderer.zoom >= 16) {
+	private void bridges() {
+		if (renderer.zoom >= 16) {
 			double verclr, verccl, vercop, horclr;
 			AttMap atts = feature.objs.get(Obj.BRIDGE).get(0);
 			String vstr = "";
@@ -532,41 +540,41 @@ public class Rules {
 					}
 				}
 				if (hstr.isEmpty() && !vstr.isEmpty()) {
-					Renderer.labelText(vstr, new Font("Arial", Font.PLAIN, 30), Color.black, LabelStyle.VCLR, Color.black, Color.white, new Delta(Handle.CC));
+					renderer.labelText(vstr, new Font("Arial", Font.PLAIN, 30), Color.black, LabelStyle.VCLR, Color.black, Color.white, new Delta(Handle.CC));
 				} else if (!hstr.isEmpty() && !vstr.isEmpty()) {
-					Renderer.labelText(vstr, new Font("Arial", Font.PLAIN, 30), Color.black, LabelStyle.VCLR, Color.black, Color.white, new Delta(Handle.BC));
-					Renderer.labelText(hstr, new Font("Arial", Font.PLAIN, 30), Color.black, LabelStyle.HCLR, Color.black, Color.white, new Delta(Handle.TC));
+					renderer.labelText(vstr, new Font("Arial", Font.PLAIN, 30), Color.black, LabelStyle.VCLR, Color.black, Color.white, new Delta(Handle.BC));
+					renderer.labelText(hstr, new Font("Arial", Font.PLAIN, 30), Color.black, LabelStyle.HCLR, Color.black, Color.white, new Delta(Handle.TC));
 				} else if (!hstr.isEmpty() && vstr.isEmpty()) {
-					Renderer.labelText(hstr, new Font("Arial", Font.PLAIN, 30), Color.black, LabelStyle.HCLR, Color.black, Color.white, new Delta(Handle.CC));
+					renderer.labelText(hstr, new Font("Arial", Font.PLAIN, 30), Color.black, LabelStyle.HCLR, Color.black, Color.white, new Delta(Handle.CC));
 				}
 			}
 		}
 	}
 	
-	private static void cables() {
-		if ((Renderer.zoom >= 16) && (feature.geom.length < 2)) {
+	private void cables() {
+		if ((renderer.zoom >= 16) && (feature.geom.length < 2)) {
 			if (feature.type == Obj.CBLSUB) {
-				Renderer.lineSymbols(Areas.Cable, 0.0, null, null, 0, Symbols.Mline);
+				renderer.lineSymbols(Areas.Cable, 0.0, null, null, 0, Symbols.Mline);
 			} else if (feature.type == Obj.CBLOHD) {
 				AttMap atts = feature.objs.get(Obj.CBLOHD).get(0);
 				if ((atts != null) && (atts.containsKey(Att.CATCBL)) && (atts.get(Att.CATCBL).val == CatCBL.CBL_POWR)) {
-					Renderer.lineSymbols(Areas.CableDash, 0, Areas.CableDot, Areas.CableFlash, 2, Color.black);
+					renderer.lineSymbols(Areas.CableDash, 0, Areas.CableDot, Areas.CableFlash, 2, Color.black);
 				} else {
-					Renderer.lineSymbols(Areas.CableDash, 0, Areas.CableDot, null, 2, Color.black);
+					renderer.lineSymbols(Areas.CableDash, 0, Areas.CableDot, null, 2, Color.black);
 				}
 				if (atts != null) {
 					if (atts.containsKey(Att.VERCLR)) {
-						Renderer.labelText(String.valueOf((Double) atts.get(Att.VERCLR).val), new Font("Arial", Font.PLAIN, 50), Color.black, LabelStyle.VCLR, Color.black, new Delta(Handle.TC, AffineTransform.getTranslateInstance(0,25)));
+						renderer.labelText(String.valueOf((Double) atts.get(Att.VERCLR).val), new Font("Arial", Font.PLAIN, 50), Color.black, LabelStyle.VCLR, Color.black, new Delta(Handle.TC, AffineTransform.getTranslateInstance(0,25)));
 					} else if (atts.containsKey(Att.VERCSA)) {
-						Renderer.labelText(String.valueOf((Double) atts.get(Att.VERCSA).val), new Font("Arial", Font.PLAIN, 50), Color.black, LabelStyle.PCLR, Color.black, new Delta(Handle.TC, AffineTransform.getTranslateInstance(0,25)));
+						renderer.labelText(String.valueOf((Double) atts.get(Att.VERCSA).val), new Font("Arial", Font.PLAIN, 50), Color.black, LabelStyle.PCLR, Color.black, new Delta(Handle.TC, AffineTransform.getTranslateInstance(0,25)));
 					}
 				}
 			}
 		}
 	}
 	
-	private static void callpoint() {
-		if (Renderer.zoom >= 14) {
+	private void callpoint() {
+		if (renderer.zoom >= 14) {
 			Symbol symb = Harbours.CallPoint2;
 			TrfTRF trf = (TrfTRF) getAttEnum(feature.type, Att.TRAFIC);
 			if (trf != TrfTRF.TRF_TWOW) {
@@ -576,22 +584,22 @@ public class Rules {
 			if ((orient = (Double) getAttVal(feature.type, Att.ORIENT)) == null) {
 				orient = 0.0;
 			}
-			Renderer.symbol(symb, new Delta(Handle.CC, AffineTransform.getRotateInstance(Math.toRadians(orient))));
+			renderer.symbol(symb, new Delta(Handle.CC, AffineTransform.getRotateInstance(Math.toRadians(orient))));
 			String chn;
 			if (!(chn = getAttStr(feature.type, Att.COMCHA)).isEmpty()) {
-				Renderer.labelText(("Ch." + chn), new Font("Arial", Font.PLAIN, 50), Color.black, new Delta(Handle.TC, AffineTransform.getTranslateInstance(0,50)));
+				renderer.labelText(("Ch." + chn), new Font("Arial", Font.PLAIN, 50), Color.black, new Delta(Handle.TC, AffineTransform.getTranslateInstance(0,50)));
 			}
 		}
 	}
 	
-	private static void distances() {
-		if (Renderer.zoom >= 14) {
+	private void distances() {
+		if (renderer.zoom >= 14) {
 			if (!testAttribute(Obj.DISMAR, Att.CATDIS, CatDIS.DIS_NONI)) {
-				Renderer.symbol(Harbours.DistanceI);
+				renderer.symbol(Harbours.DistanceI);
 			} else {
-				Renderer.symbol(Harbours.DistanceU);
+				renderer.symbol(Harbours.DistanceU);
 			}
-			if (Renderer.zoom >= 15) {
+			if (renderer.zoom >= 15) {
 				AttMap atts = getAtts(Obj.DISMAR, 0);
 				if ((atts != null) && (atts.containsKey(Att.WTWDIS))) {
 					Double dist = (Double) atts.get(Att.WTWDIS).val;
@@ -621,24 +629,24 @@ public class Rules {
 						}
 					}
 					str += String.format("%1.0f", dist);
-					Renderer.labelText(str, new Font("Arial", Font.PLAIN, 40), Color.black, new Delta(Handle.CC, AffineTransform.getTranslateInstance(0, 45)));
+					renderer.labelText(str, new Font("Arial", Font.PLAIN, 40), Color.black, new Delta(Handle.CC, AffineTransform.getTranslateInstance(0, 45)));
 				}
 			}
 		}
 	}
 	
 	@SuppressWarnings("unchecked")
-	private static void floats() {
-		if (Renderer.zoom >= 12) {
+	private void floats() {
+		if (renderer.zoom >= 12) {
 			switch (feature.type) {
 			case LITVES:
-				Renderer.symbol(Buoys.Super, getScheme(feature.type));
+				renderer.symbol(Buoys.Super, getScheme(feature.type));
 				break;
 			case LITFLT:
-				Renderer.symbol(Buoys.Float, getScheme(feature.type));
+				renderer.symbol(Buoys.Float, getScheme(feature.type));
 				break;
 			case BOYINB:
-				Renderer.symbol(Buoys.Super, getScheme(feature.type));
+				renderer.symbol(Buoys.Super, getScheme(feature.type));
 				break;
 			default:
 				break;
@@ -646,36 +654,36 @@ public class Rules {
 			if (feature.objs.containsKey(Obj.TOPMAR)) {
 				AttMap topmap = feature.objs.get(Obj.TOPMAR).get(0);
 				if (topmap.containsKey(Att.TOPSHP)) {
-					Renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.TOPMAR), Topmarks.FloatDelta);
+					renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.TOPMAR), Topmarks.FloatDelta);
 				}
 			} else if (feature.objs.containsKey(Obj.DAYMAR)) {
 				AttMap topmap = feature.objs.get(Obj.DAYMAR).get(0);
 				if (topmap.containsKey(Att.TOPSHP)) {
-					Renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.DAYMAR), Topmarks.FloatDelta);
+					renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.DAYMAR), Topmarks.FloatDelta);
 				}
 			}
 			addName(15, new Font("Arial", Font.BOLD, 40), new Delta(Handle.BL, AffineTransform.getTranslateInstance(20, -50)));
-			Signals.addSignals();
+			signals.addSignals();
 		}
 	}
 	
-	private static void gauges() {
-		if (Renderer.zoom >= 14) {
-			Renderer.symbol(Harbours.TideGauge);
+	private void gauges() {
+		if (renderer.zoom >= 14) {
+			renderer.symbol(Harbours.TideGauge);
 			addName(15, new Font("Arial", Font.BOLD, 40), new Delta(Handle.BL, AffineTransform.getTranslateInstance(20, -50)));
-			Signals.addSignals();
+			signals.addSignals();
 		}
 	}
 	
 	@SuppressWarnings("unchecked")
-	private static void harbours() {
+	private void harbours() {
 		String name = getName();
 		switch (feature.type) {
 		case ACHBRT:
-			if (Renderer.zoom >= 14) {
-				Renderer.symbol(Harbours.Anchorage, new Scheme(Symbols.Mline));
-				if (Renderer.zoom >= 15) {
-					Renderer.labelText(name == null ? "" : name, new Font("Arial", Font.PLAIN, 30), Symbols.Msymb, LabelStyle.RRCT, Symbols.Mline, Color.white, new Delta(Handle.BC));
+			if (renderer.zoom >= 14) {
+				renderer.symbol(Harbours.Anchorage, new Scheme(Symbols.Mline));
+				if (renderer.zoom >= 15) {
+					renderer.labelText(name == null ? "" : name, new Font("Arial", Font.PLAIN, 30), Symbols.Msymb, LabelStyle.RRCT, Symbols.Mline, Color.white, new Delta(Handle.BC));
 				}
 			}
 			if (getAttVal(Obj.ACHBRT, Att.RADIUS) != null) {
@@ -685,49 +693,49 @@ public class Rules {
 					if (units == UniHLU.HLU_UNKN) {
 						units = UniHLU.HLU_METR;
 					}
-					Renderer.lineCircle(new LineStyle(Symbols.Mline, 4, new float[] { 10, 10 }, null), radius, units);
+					renderer.lineCircle(new LineStyle(Symbols.Mline, 4, new float[] { 10, 10 }, null), radius, units);
 				}
 			}
 			break;
 		case ACHARE:
-			if (Renderer.zoom >= 12) {
+			if (renderer.zoom >= 12) {
 				if (feature.geom.prim != Pflag.AREA) {
-					Renderer.symbol(Harbours.Anchorage, new Scheme(Color.black));
+					renderer.symbol(Harbours.Anchorage, new Scheme(Color.black));
 				} else {
-					Renderer.symbol(Harbours.Anchorage, new Scheme(Symbols.Mline));
-					Renderer.lineSymbols(Areas.Restricted, 1.0, Areas.LineAnchor, null, 10, Symbols.Mline);
+					renderer.symbol(Harbours.Anchorage, new Scheme(Symbols.Mline));
+					renderer.lineSymbols(Areas.Restricted, 1.0, Areas.LineAnchor, null, 10, Symbols.Mline);
 				}
 				addName(15, new Font("Arial", Font.BOLD, 60), Symbols.Mline, new Delta(Handle.LC, AffineTransform.getTranslateInstance(70, 0)));
 				ArrayList<StsSTS> sts = (ArrayList<StsSTS>) getAttList(Obj.ACHARE, Att.STATUS);
-				if ((Renderer.zoom >= 15) && (sts.contains(StsSTS.STS_RESV))) {
-					Renderer.labelText("Reserved", new Font("Arial", Font.PLAIN, 50), Symbols.Mline, new Delta(Handle.TC, AffineTransform.getTranslateInstance(0, 60)));
+				if ((renderer.zoom >= 15) && (sts.contains(StsSTS.STS_RESV))) {
+					renderer.labelText("Reserved", new Font("Arial", Font.PLAIN, 50), Symbols.Mline, new Delta(Handle.TC, AffineTransform.getTranslateInstance(0, 60)));
 				}
 				ArrayList<CatACH> cats = (ArrayList<CatACH>) getAttList(Obj.ACHARE, Att.CATACH);
 				int dy = (cats.size() - 1) * -30;
 				for (CatACH cat : cats) {
 					switch (cat) {
 					case ACH_DEEP:
-						Renderer.labelText("DW", new Font("Arial", Font.BOLD, 50), Symbols.Msymb, new Delta(Handle.RC, AffineTransform.getTranslateInstance(-60, dy)));
+						renderer.labelText("DW", new Font("Arial", Font.BOLD, 50), Symbols.Msymb, new Delta(Handle.RC, AffineTransform.getTranslateInstance(-60, dy)));
 						dy += 60;
 						break;
 					case ACH_TANK:
-						Renderer.labelText("Tanker", new Font("Arial", Font.BOLD, 50), Symbols.Msymb, new Delta(Handle.RC, AffineTransform.getTranslateInstance(-60, dy)));
+						renderer.labelText("Tanker", new Font("Arial", Font.BOLD, 50), Symbols.Msymb, new Delta(Handle.RC, AffineTransform.getTranslateInstance(-60, dy)));
 						dy += 60;
 						break;
 					case ACH_H24P:
-						Renderer.labelText("24h", new Font("Arial", Font.BOLD, 50), Symbols.Msymb, new Delta(Handle.RC, AffineTransform.getTranslateInstance(-60, dy)));
+						renderer.labelText("24h", new Font("Arial", Font.BOLD, 50), Symbols.Msymb, new Delta(Handle.RC, AffineTransform.getTranslateInstance(-60, dy)));
 						dy += 60;
 						break;
 					case ACH_EXPL:
-						Renderer.symbol(Harbours.Explosives, new Scheme(Symbols.Msymb), new Delta(Handle.RC, AffineTransform.getTranslateInstance(-60, dy)));
+						renderer.symbol(Harbours.Explosives, new Scheme(Symbols.Msymb), new Delta(Handle.RC, AffineTransform.getTranslateInstance(-60, dy)));
 						dy += 60;
 						break;
 					case ACH_QUAR:
-						Renderer.symbol(Harbours.Hospital, new Scheme(Symbols.Msymb), new Delta(Handle.RC, AffineTransform.getTranslateInstance(-60, dy)));
+						renderer.symbol(Harbours.Hospital, new Scheme(Symbols.Msymb), new Delta(Handle.RC, AffineTransform.getTranslateInstance(-60, dy)));
 						dy += 60;
 						break;
 					case ACH_SEAP:
-						Renderer.symbol(Areas.Seaplane, new Scheme(Symbols.Msymb), new Delta(Handle.RC, AffineTransform.getTranslateInstance(-60, dy)));
+						renderer.symbol(Areas.Seaplane, new Scheme(Symbols.Msymb), new Delta(Handle.RC, AffineTransform.getTranslateInstance(-60, dy)));
 						dy += 60;
 						break;
 					default:
@@ -736,13 +744,13 @@ public class Rules {
 			}
 			break;
 		case BERTHS:
-			if (Renderer.zoom >= 14) {
-				Renderer.lineVector(new LineStyle(Symbols.Mline, 6, new float[] { 20, 20 }));
-				Renderer.labelText(name == null ? " " : name, new Font("Arial", Font.PLAIN, 40), Symbols.Msymb, LabelStyle.RRCT, Symbols.Mline, Color.white);
+			if (renderer.zoom >= 14) {
+				renderer.lineVector(new LineStyle(Symbols.Mline, 6, new float[] { 20, 20 }));
+				renderer.labelText(name == null ? " " : name, new Font("Arial", Font.PLAIN, 40), Symbols.Msymb, LabelStyle.RRCT, Symbols.Mline, Color.white);
 			}
 			break;
 		case BUISGL:
-			if (Renderer.zoom >= 16) {
+			if (renderer.zoom >= 16) {
 				ArrayList<Symbol> symbols = new ArrayList<Symbol>();
 				ArrayList<FncFNC> fncs = (ArrayList<FncFNC>) getAttList(Obj.BUISGL, Att.FUNCTN);
 				for (FncFNC fnc : fncs) {
@@ -754,29 +762,29 @@ public class Rules {
 						symbols.add(Facilities.Cats.get(scf));
 					}
 				}
-				Renderer.cluster(symbols);
+				renderer.cluster(symbols);
 			}
 			break;
 		case HRBFAC:
-			if (Renderer.zoom >= 12) {
+			if (renderer.zoom >= 12) {
 				ArrayList<CatHAF> cathaf = (ArrayList<CatHAF>) getAttList(Obj.HRBFAC, Att.CATHAF);
 				if (cathaf.size() == 1) {
 					switch (cathaf.get(0)) {
 					case HAF_MRNA:
-						Renderer.symbol(Harbours.Marina);
+						renderer.symbol(Harbours.Marina);
 						break;
 					case HAF_MANF:
-						Renderer.symbol(Harbours.MarinaNF);
+						renderer.symbol(Harbours.MarinaNF);
 						break;
 					case HAF_FISH:
-						Renderer.symbol(Harbours.Fishing);
+						renderer.symbol(Harbours.Fishing);
 						break;
 					default:
-						Renderer.symbol(Harbours.Harbour);
+						renderer.symbol(Harbours.Harbour);
 						break;
 					}
 				} else {
-					Renderer.symbol(Harbours.Harbour);
+					renderer.symbol(Harbours.Harbour);
 				}
 			}
 			break;
@@ -786,39 +794,39 @@ public class Rules {
 	}
 	
 	@SuppressWarnings("unchecked")
-	private static void highways() {
+	private void highways() {
 		switch (feature.type) {
 		case ROADWY:
 			ArrayList<CatROD> cat = (ArrayList<CatROD>) (getAttList(Obj.ROADWY, Att.CATROD));
 			if (cat.size() > 0) {
 				switch (cat.get(0)) {
 				case ROD_MWAY:
-					Renderer.lineVector(new LineStyle(Color.black, 20));
+					renderer.lineVector(new LineStyle(Color.black, 20));
 					break;
 				case ROD_MAJR:
-					Renderer.lineVector(new LineStyle(Color.black, 15));
+					renderer.lineVector(new LineStyle(Color.black, 15));
 					break;
 				case ROD_MINR:
-					Renderer.lineVector(new LineStyle(Color.black, 10));
+					renderer.lineVector(new LineStyle(Color.black, 10));
 					break;
 				default:
-					Renderer.lineVector(new LineStyle(Color.black, 5));
+					renderer.lineVector(new LineStyle(Color.black, 5));
 				}
 			} else {
-				Renderer.lineVector(new LineStyle(Color.black, 5));
+				renderer.lineVector(new LineStyle(Color.black, 5));
 			}
 			break;
 		case RAILWY:
-			Renderer.lineVector(new LineStyle(Color.gray, 10));
-			Renderer.lineVector(new LineStyle(Color.black, 10, new float[] { 30, 30 }));
+			renderer.lineVector(new LineStyle(Color.gray, 10));
+			renderer.lineVector(new LineStyle(Color.black, 10, new float[] { 30, 30 }));
 			break;
 		default:
 		}
 	}
 	
 	@SuppressWarnings("unchecked")
-	private static void landmarks() {
-		if (Renderer.zoom >= 12) {
+	private void landmarks() {
+		if (renderer.zoom >= 12) {
 			ArrayList<CatLMK> cats = (ArrayList<CatLMK>) getAttList(feature.type, Att.CATLMK);
 			Symbol catSym = Landmarks.Shapes.get(cats.get(0));
 			ArrayList<FncFNC> fncs = (ArrayList<FncFNC>) getAttList(feature.type, Att.FUNCTN);
@@ -829,29 +837,29 @@ public class Rules {
 				catSym = Beacons.LightMajor;
 			if (cats.get(0) == CatLMK.LMK_RADR)
 				fncSym = Landmarks.RadioTV;
-			Renderer.symbol(catSym);
-			Renderer.symbol(fncSym);
-			if (Renderer.zoom >= 15)
+			renderer.symbol(catSym);
+			renderer.symbol(fncSym);
+			if (renderer.zoom >= 15)
 				addName(15, new Font("Arial", Font.BOLD, 40), new Delta(Handle.BL, AffineTransform.getTranslateInstance(60, -50)));
-			Signals.addSignals();
+			signals.addSignals();
 		}
 	}
 	
 	@SuppressWarnings("unchecked")
-	private static void lights() {
+	private void lights() {
 		switch (feature.type) {
 		case LITMAJ:
-			Renderer.symbol(Beacons.LightMajor);
+			renderer.symbol(Beacons.LightMajor);
 			break;
 		case LITMIN:
 		case LIGHTS:
-			Renderer.symbol(Beacons.LightMinor);
+			renderer.symbol(Beacons.LightMinor);
 			break;
 		case PILPNT:
 			if (feature.objs.containsKey(Obj.LIGHTS))
-				Renderer.symbol(Beacons.LightMinor);
+				renderer.symbol(Beacons.LightMinor);
 			else
-				Renderer.symbol(Harbours.Post);
+				renderer.symbol(Harbours.Post);
 			break;
 		default:
 			break;
@@ -859,59 +867,59 @@ public class Rules {
 		if (feature.objs.containsKey(Obj.TOPMAR)) {
 			AttMap topmap = feature.objs.get(Obj.TOPMAR).get(0);
 			if (topmap.containsKey(Att.TOPSHP)) {
-				Renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.TOPMAR), Topmarks.LightDelta);
+				renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.TOPMAR), Topmarks.LightDelta);
 			}
 		} else	if (feature.objs.containsKey(Obj.DAYMAR)) {
 			AttMap topmap = feature.objs.get(Obj.DAYMAR).get(0);
 			if (topmap.containsKey(Att.TOPSHP)) {
-				Renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.DAYMAR), Topmarks.LightDelta);
+				renderer.symbol(Topmarks.Shapes.get(((ArrayList<TopSHP>)(topmap.get(Att.TOPSHP).val)).get(0)), getScheme(Obj.DAYMAR), Topmarks.LightDelta);
 			}
 		}
-		Signals.addSignals();
+		signals.addSignals();
 	}
 
 	@SuppressWarnings("unchecked")
-	private static void marinas() {
-		if (Renderer.zoom >= 16) {
+	private void marinas() {
+		if (renderer.zoom >= 16) {
 			ArrayList<Symbol> symbols = new ArrayList<Symbol>();
 			ArrayList<CatSCF> scfs = (ArrayList<CatSCF>) getAttList(Obj.SMCFAC, Att.CATSCF);
 			for (CatSCF scf : scfs) {
 				symbols.add(Facilities.Cats.get(scf));
 			}
-			Renderer.cluster(symbols);
+			renderer.cluster(symbols);
 		}
 	}
 	
-	private static void moorings() {
-		if (Renderer.zoom >= 14) {
+	private void moorings() {
+		if (renderer.zoom >= 14) {
 			switch ((CatMOR) getAttEnum(feature.type, Att.CATMOR)) {
 			case MOR_DLPN:
-				Renderer.symbol(Harbours.Dolphin);
+				renderer.symbol(Harbours.Dolphin);
 				break;
 			case MOR_DDPN:
-				Renderer.symbol(Harbours.DeviationDolphin);
+				renderer.symbol(Harbours.DeviationDolphin);
 				break;
 			case MOR_BLRD:
 			case MOR_POST:
-				Renderer.symbol(Harbours.Bollard);
+				renderer.symbol(Harbours.Bollard);
 				break;
 			case MOR_BUOY:
 				BoySHP shape = (BoySHP) getAttEnum(feature.type, Att.BOYSHP);
 				if (shape == BoySHP.BOY_UNKN) {
 					shape = BoySHP.BOY_SPHR;
 				}
-				Renderer.symbol(Buoys.Shapes.get(shape), getScheme(feature.type));
-				Renderer.symbol(Topmarks.TopMooring, Topmarks.BuoyDeltas.get(shape));
+				renderer.symbol(Buoys.Shapes.get(shape), getScheme(feature.type));
+				renderer.symbol(Topmarks.TopMooring, Topmarks.BuoyDeltas.get(shape));
 				break;
 			default:
 				break;
 			}
-			Signals.addSignals();
+			signals.addSignals();
 		}
 	}
 
-	private static void notices() {
-		if (Renderer.zoom >= 14) {
+	private void notices() {
+		if (renderer.zoom >= 14) {
 			double dx = 0.0, dy = 0.0;
 			switch (feature.type) {
 			case BCNCAR:
@@ -934,7 +942,7 @@ public class Rules {
 			ObjTab objs = feature.objs.get(Obj.NOTMRK);
 			int n = objs.size();
 			if (n > 5) {
-				Renderer.symbol(Notices.Notice, new Delta(Handle.CC, AffineTransform.getTranslateInstance(dx, dy)));
+				renderer.symbol(Notices.Notice, new Delta(Handle.CC, AffineTransform.getTranslateInstance(dx, dy)));
 			} else {
 				int i = 0;
 				for (AttMap atts : objs.values()) {
@@ -969,47 +977,47 @@ public class Rules {
 						h = Handle.TL;
 						break;
 					}
-					if (h != null) Renderer.symbol(sym, new Delta(h, AffineTransform.getTranslateInstance(dx, dy)));
+					if (h != null) renderer.symbol(sym, new Delta(h, AffineTransform.getTranslateInstance(dx, dy)));
 					i++;
 				}
 			}
 		}
 	}
 
-	private static void obstructions() {
-		if ((Renderer.zoom >= 12) && (feature.type == Obj.OBSTRN)) {
+	private void obstructions() {
+		if ((renderer.zoom >= 12) && (feature.type == Obj.OBSTRN)) {
 			switch ((CatOBS) getAttEnum(feature.type, Att.CATOBS)) {
 			case OBS_BOOM:
-				Renderer.lineVector(new LineStyle(Color.black, 5, new float[] { 20, 20 }, null));
-				if (Renderer.zoom >= 15) {
-					Renderer.lineText("Boom", new Font("Arial", Font.PLAIN, 80), Color.black, 0.5, -20);
+				renderer.lineVector(new LineStyle(Color.black, 5, new float[] { 20, 20 }, null));
+				if (renderer.zoom >= 15) {
+					renderer.lineText("Boom", new Font("Arial", Font.PLAIN, 80), Color.black, 0.5, -20);
 				}
 			default:
 				break;
 			}
 		}
-		if ((Renderer.zoom >= 14) && (feature.type == Obj.UWTROC)) {
+		if ((renderer.zoom >= 14) && (feature.type == Obj.UWTROC)) {
 			switch ((WatLEV) getAttEnum(feature.type, Att.WATLEV)) {
 			case LEV_CVRS:
-				Renderer.symbol(Areas.RockC);
+				renderer.symbol(Areas.RockC);
 				break;
 			case LEV_AWSH:
-				Renderer.symbol(Areas.RockA);
+				renderer.symbol(Areas.RockA);
 				break;
 			default:
-				Renderer.symbol(Areas.Rock);
+				renderer.symbol(Areas.Rock);
 			}
 		} else {
-			Renderer.symbol(Areas.Rock);
+			renderer.symbol(Areas.Rock);
 		}
 	}
 
-	private static void pipelines() {
-		if ((Renderer.zoom >= 16) && (feature.geom.length < 2)) {
+	private void pipelines() {
+		if ((renderer.zoom >= 16) && (feature.geom.length < 2)) {
 			if (feature.type == Obj.PIPSOL) {
-				Renderer.lineSymbols(Areas.Pipeline, 1.0, null, null, 0, Symbols.Mline);
+				renderer.lineSymbols(Areas.Pipeline, 1.0, null, null, 0, Symbols.Mline);
 			} else if (feature.type == Obj.PIPOHD) {
-				Renderer.lineVector(new LineStyle(Color.black, 8));
+				renderer.lineVector(new LineStyle(Color.black, 8));
 				AttMap atts = feature.atts;
 				double verclr = 0;
 				if (atts != null) {
@@ -1019,7 +1027,7 @@ public class Rules {
 						verclr = atts.containsKey(Att.VERCSA) ? (Double) atts.get(Att.VERCSA).val : 0;
 					}
 					if (verclr > 0) {
-						Renderer.labelText(String.valueOf(verclr), new Font("Arial", Font.PLAIN, 50), Color.black, LabelStyle.VCLR, Color.black, new Delta(Handle.TC, AffineTransform.getTranslateInstance(0,25)));
+						renderer.labelText(String.valueOf(verclr), new Font("Arial", Font.PLAIN, 50), Color.black, LabelStyle.VCLR, Color.black, new Delta(Handle.TC, AffineTransform.getTranslateInstance(0,25)));
 					}
 				}
 			}
@@ -1027,52 +1035,52 @@ public class Rules {
 	}
 
 	@SuppressWarnings("unchecked")
-	private static void platforms() {
+	private void platforms() {
 		ArrayList<CatOFP> cats = (ArrayList<CatOFP>) getAttList(Obj.OFSPLF, Att.CATOFP);
 		if ((CatOFP) cats.get(0) == CatOFP.OFP_FPSO)
-			Renderer.symbol(Buoys.Storage);
+			renderer.symbol(Buoys.Storage);
 		else
-			Renderer.symbol(Landmarks.Platform);
+			renderer.symbol(Landmarks.Platform);
 		addName(15, new Font("Arial", Font.BOLD, 40), new Delta(Handle.BL, AffineTransform.getTranslateInstance(20, -50)));
-		Signals.addSignals();
+		signals.addSignals();
 	}
 
-	private static void ports() {
-		if (Renderer.zoom >= 14) {
+	private void ports() {
+		if (renderer.zoom >= 14) {
 			if (feature.type == Obj.CRANES) {
 				if ((CatCRN) getAttEnum(feature.type, Att.CATCRN) == CatCRN.CRN_CONT)
-					Renderer.symbol(Harbours.ContainerCrane);
+					renderer.symbol(Harbours.ContainerCrane);
 				else
-					Renderer.symbol(Harbours.PortCrane);
+					renderer.symbol(Harbours.PortCrane);
 			} else if (feature.type == Obj.HULKES) {
-				Renderer.lineVector(new LineStyle(Color.black, 4, null, new Color(0xffe000)));
+				renderer.lineVector(new LineStyle(Color.black, 4, null, new Color(0xffe000)));
 				addName(15, new Font("Arial", Font.BOLD, 40));
 			}
 		}
 	}
 
-	private static void separation() {
+	private void separation() {
 		switch (feature.type) {
 		case TSEZNE:
 		case TSSCRS:
 		case TSSRON:
-			if (Renderer.zoom <= 15)
-				Renderer.lineVector(new LineStyle(Symbols.Mtss));
+			if (renderer.zoom <= 15)
+				renderer.lineVector(new LineStyle(Symbols.Mtss));
 			else
-				Renderer.lineVector(new LineStyle(Symbols.Mtss, 20, null, null));
+				renderer.lineVector(new LineStyle(Symbols.Mtss, 20, null, null));
 			addName(10, new Font("Arial", Font.BOLD, 150), Symbols.Mline);
 			break;
 		case TSELNE:
-			Renderer.lineVector(new LineStyle(Symbols.Mtss, 20, null, null));
+			renderer.lineVector(new LineStyle(Symbols.Mtss, 20, null, null));
 			break;
 		case TSSLPT:
-			Renderer.lineSymbols(Areas.LaneArrow, 0.5, null, null, 0, Symbols.Mtss);
+			renderer.lineSymbols(Areas.LaneArrow, 0.5, null, null, 0, Symbols.Mtss);
 			break;
 		case TSSBND:
-			Renderer.lineVector(new LineStyle(Symbols.Mtss, 20, new float[] { 40, 40 }, null));
+			renderer.lineVector(new LineStyle(Symbols.Mtss, 20, new float[] { 40, 40 }, null));
 			break;
 		case ISTZNE:
-			Renderer.lineSymbols(Areas.Restricted, 1.0, null, null, 0, Symbols.Mtss);
+			renderer.lineSymbols(Areas.Restricted, 1.0, null, null, 0, Symbols.Mtss);
 			break;
 		default:
 			break;
@@ -1080,41 +1088,41 @@ public class Rules {
 	}
 
 	@SuppressWarnings("unchecked")
-	private static void shoreline() {
+	private void shoreline() {
 		CatSLC cat = (CatSLC) getAttEnum(feature.type, Att.CATSLC);
-		if ((Renderer.context.ruleset() == RuleSet.ALL) || (Renderer.context.ruleset() == RuleSet.BASE)) {
+		if ((renderer.context.ruleset() == RuleSet.ALL) || (renderer.context.ruleset() == RuleSet.BASE)) {
 			if ((cat != CatSLC.SLC_SWAY) && (cat != CatSLC.SLC_TWAL)) {
-				if (Renderer.zoom >= 12) {
-					Renderer.lineVector(new LineStyle(Color.black, 10, Symbols.Yland));
+				if (renderer.zoom >= 12) {
+					renderer.lineVector(new LineStyle(Color.black, 10, Symbols.Yland));
 				} else {
-					Renderer.lineVector(new LineStyle(Symbols.Yland));
+					renderer.lineVector(new LineStyle(Symbols.Yland));
 				}
 			}
 		}
-		if ((Renderer.context.ruleset() == RuleSet.ALL) || (Renderer.context.ruleset() == RuleSet.SEAMARK)) {
-			if (Renderer.zoom >= 12) {
+		if ((renderer.context.ruleset() == RuleSet.ALL) || (renderer.context.ruleset() == RuleSet.SEAMARK)) {
+			if (renderer.zoom >= 12) {
 				switch (cat) {
 				case SLC_TWAL:
 					WatLEV lev = (WatLEV) getAttEnum(feature.type, Att.WATLEV);
 					if (lev == WatLEV.LEV_CVRS) {
-						Renderer.lineVector(new LineStyle(Color.black, 10, new float[] { 40, 40 }, null));
-						if (Renderer.zoom >= 15)
-							Renderer.lineText("(covers)", new Font("Arial", Font.PLAIN, 60), Color.black, 0.5, 80);
+						renderer.lineVector(new LineStyle(Color.black, 10, new float[] { 40, 40 }, null));
+						if (renderer.zoom >= 15)
+							renderer.lineText("(covers)", new Font("Arial", Font.PLAIN, 60), Color.black, 0.5, 80);
 					} else {
-						Renderer.lineVector(new LineStyle(Color.black, 10, null, null));
+						renderer.lineVector(new LineStyle(Color.black, 10, null, null));
 					}
-					if (Renderer.zoom >= 15)
-						Renderer.lineText("Training Wall", new Font("Arial", Font.PLAIN, 60), Color.black, 0.5, -30);
+					if (renderer.zoom >= 15)
+						renderer.lineText("Training Wall", new Font("Arial", Font.PLAIN, 60), Color.black, 0.5, -30);
 					break;
 				case SLC_SWAY:
-					Renderer.lineVector(new LineStyle(Color.black, 2, null, new Color(0xffe000)));
-					if ((Renderer.zoom >= 16) && feature.objs.containsKey(Obj.SMCFAC)) {
+					renderer.lineVector(new LineStyle(Color.black, 2, null, new Color(0xffe000)));
+					if ((renderer.zoom >= 16) && feature.objs.containsKey(Obj.SMCFAC)) {
 						ArrayList<Symbol> symbols = new ArrayList<Symbol>();
 						ArrayList<CatSCF> scfs = (ArrayList<CatSCF>) getAttList(Obj.SMCFAC, Att.CATSCF);
 						for (CatSCF scf : scfs) {
 							symbols.add(Facilities.Cats.get(scf));
 						}
-						Renderer.cluster(symbols);
+						renderer.cluster(symbols);
 					}
 					break;
 				default:
@@ -1125,12 +1133,12 @@ public class Rules {
 	}
 
 	@SuppressWarnings("unchecked")
-	private static void stations() {
-		if (Renderer.zoom >= 14) {
+	private void stations() {
+		if (renderer.zoom >= 14) {
 			String str = "";
 			switch (feature.type) {
 			case SISTAT:
-				Renderer.symbol(Harbours.SignalStation);
+				renderer.symbol(Harbours.SignalStation);
 				str = "SS";
 				ArrayList<CatSIT> tcats = (ArrayList<CatSIT>) getAttList(Obj.SISTAT, Att.CATSIT);
 				switch (tcats.get(0)) {
@@ -1154,7 +1162,7 @@ public class Rules {
 				}
 				break;
 			case SISTAW:
-				Renderer.symbol(Harbours.SignalStation);
+				renderer.symbol(Harbours.SignalStation);
 				str = "SS";
 				str = "SS";
 				ArrayList<CatSIW> wcats = (ArrayList<CatSIW>) getAttList(Obj.SISTAW, Att.CATSIW);
@@ -1195,49 +1203,49 @@ public class Rules {
 				break;
 			case RDOSTA:
 			case RTPBCN:
-				Renderer.symbol(Harbours.SignalStation);
-				Renderer.symbol(Beacons.RadarStation);
+				renderer.symbol(Harbours.SignalStation);
+				renderer.symbol(Beacons.RadarStation);
 				break;
 			case RADRFL:
-				Renderer.symbol(Topmarks.RadarReflector);
+				renderer.symbol(Topmarks.RadarReflector);
 				break;
 			case RADSTA:
-				Renderer.symbol(Harbours.SignalStation);
-				Renderer.symbol(Beacons.RadarStation);
-				Renderer.labelText("Ra", new Font("Arial", Font.PLAIN, 40), Symbols.Msymb, new Delta(Handle.TR, AffineTransform.getTranslateInstance(-30, -70)));
+				renderer.symbol(Harbours.SignalStation);
+				renderer.symbol(Beacons.RadarStation);
+				renderer.labelText("Ra", new Font("Arial", Font.PLAIN, 40), Symbols.Msymb, new Delta(Handle.TR, AffineTransform.getTranslateInstance(-30, -70)));
 				break;
 			case PILBOP:
-				Renderer.symbol(Harbours.Pilot);
+				renderer.symbol(Harbours.Pilot);
 				addName(15, new Font("Arial", Font.BOLD, 40), Symbols.Msymb , new Delta(Handle.LC, AffineTransform.getTranslateInstance(70, -40)));
 				CatPIL cat = (CatPIL) getAttEnum(feature.type, Att.CATPIL);
 				if (cat == CatPIL.PIL_HELI) {
-					Renderer.labelText("H", new Font("Arial", Font.PLAIN, 40), Symbols.Msymb, new Delta(Handle.LC, AffineTransform.getTranslateInstance(70, 0)));
+					renderer.labelText("H", new Font("Arial", Font.PLAIN, 40), Symbols.Msymb, new Delta(Handle.LC, AffineTransform.getTranslateInstance(70, 0)));
 				}
 				break;
 			case CGUSTA:
-				Renderer.symbol(Harbours.SignalStation);
+				renderer.symbol(Harbours.SignalStation);
 				str = "CG";
-			  if (feature.objs.containsKey(Obj.RSCSTA)) Renderer.symbol(Harbours.Rescue, new Delta(Handle.CC, AffineTransform.getTranslateInstance(130, 0)));
+			  if (feature.objs.containsKey(Obj.RSCSTA)) renderer.symbol(Harbours.Rescue, new Delta(Handle.CC, AffineTransform.getTranslateInstance(130, 0)));
 				break;
 			case RSCSTA:
-				Renderer.symbol(Harbours.Rescue);
+				renderer.symbol(Harbours.Rescue);
 				break;
 			default:
 				break;
 			}
-			if ((Renderer.zoom >= 15) && !str.isEmpty()) {
-				Renderer.labelText(str, new Font("Arial", Font.PLAIN, 40), Color.black, new Delta(Handle.LC, AffineTransform.getTranslateInstance(40, 0)));
+			if ((renderer.zoom >= 15) && !str.isEmpty()) {
+				renderer.labelText(str, new Font("Arial", Font.PLAIN, 40), Color.black, new Delta(Handle.LC, AffineTransform.getTranslateInstance(40, 0)));
 			}
-			Signals.addSignals();
+			signals.addSignals();
 		}
 	}
 
-	private static void transits() {
-	  if (Renderer.zoom >= 14) {
-	  	if (feature.type == Obj.RECTRC) Renderer.lineVector (new LineStyle(Color.black, 10, null, null));
-	  	else if (feature.type == Obj.NAVLNE) Renderer.lineVector (new LineStyle(Color.black, 10, new float[] { 25, 25 }, null));
+	private void transits() {
+	  if (renderer.zoom >= 14) {
+	  	if (feature.type == Obj.RECTRC) renderer.lineVector (new LineStyle(Color.black, 10, null, null));
+	  	else if (feature.type == Obj.NAVLNE) renderer.lineVector (new LineStyle(Color.black, 10, new float[] { 25, 25 }, null));
 	  }
-		if (Renderer.zoom >= 15) {
+		if (renderer.zoom >= 15) {
 			String str = "";
 			String name = getName();
 			if (name != null)
@@ -1246,27 +1254,27 @@ public class Rules {
 			if ((ort = (Double) getAttVal(feature.type, Att.ORIENT)) != null) {
 				str += df.format(ort) + "º";
 				if (!str.isEmpty())
-					Renderer.lineText(str, new Font("Arial", Font.PLAIN, 80), Color.black, 0.5, -20);
+					renderer.lineText(str, new Font("Arial", Font.PLAIN, 80), Color.black, 0.5, -20);
 			}
 		}
 	}
 
-	private static void waterways() {
-		Renderer.lineVector(new LineStyle(Symbols.Bwater, 20, (feature.geom.prim == Pflag.AREA) ? Symbols.Bwater : null));
+	private void waterways() {
+		renderer.lineVector(new LineStyle(Symbols.Bwater, 20, (feature.geom.prim == Pflag.AREA) ? Symbols.Bwater : null));
 	}
 
-	private static void wrecks() {
-		if (Renderer.zoom >= 14) {
+	private void wrecks() {
+		if (renderer.zoom >= 14) {
 			switch ((CatWRK) getAttEnum(feature.type, Att.CATWRK)) {
 			case WRK_DNGR:
 			case WRK_MSTS:
-				Renderer.symbol(Areas.WreckD);
+				renderer.symbol(Areas.WreckD);
 				break;
 			case WRK_HULS:
-				Renderer.symbol(Areas.WreckS);
+				renderer.symbol(Areas.WreckS);
 				break;
 			default:
-				Renderer.symbol(Areas.WreckND);
+				renderer.symbol(Areas.WreckND);
 			}
 		}
 	}
@@ -21,6 +21,9 @@ import org.eclipse.microprofile.openapi.annotations.media.Content;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.locationtech.jts.geom.Geometry;
+import org.niord.core.message.MessageSearchParams;
+import org.niord.core.util.WebUtils;
 import org.slf4j.Logger;
 
 import jakarta.enterprise.context.ApplicationScoped;
@@ -30,15 +33,22 @@ import jakarta.transaction.Transactional;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
+import java.io.BufferedWriter;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
 
 /**
  * A public REST API for accessing messages as S-124 GML.
@@ -112,6 +122,60 @@ public class S124RestService {
     }
 
 
+    /**
+     * Returns an S-124 GML dataset containing all published navigational warnings matching the parameters.
+     * The dataset is streamed to the client as it is being generated, and errors are handled
+     * by {@linkplain WebUtils#streamingError}.
+     */
+    @GET
+    @Path("/dataset")
+    @Operation(description = "Returns an S-124 GML dataset containing all matching published navigational warnings. " +
+            "NB: Only use this service for test purposes, not for production.")
+    @APIResponse(
+            responseCode = "200",
+            content = @Content(
+                    mediaType = "application/gml+xml",
+                    schema = @Schema(implementation = String.class)
+            )
+    )
+    @Produces({"application/gml+xml;charset=UTF-8"})
+    public Response s124DataSet(
+            @Parameter(description = "The IDs of the domains to select messages from", example = "niord-client-nw")
+            @QueryParam("domain") Set<String> domainIds,
+            @Parameter(description = "Specific message series to select messages from", example = "dma-nw")
+            @QueryParam("messageSeries") Set<String> messageSeries,
+            @Parameter(description = "The IDs of the areas to select messages from", example = "urn:mrn:iho:country:dk")
+            @QueryParam("areaId") Set<String> areaIds,
+            @Parameter(description = "Well-Known Text for geographical extent", example = "POLYGON((7 54, 7 57, 13 56, 13 57, 7 54))")
+            @QueryParam("wkt") String wkt,
+            @Parameter(description = "Two-letter ISO 639-1 language code", example = "en")
+            @QueryParam("lang") @DefaultValue("en") String language
+
+    ) {
+
+        // Perform the search. Only the message ID's are fetched up-front
+        MessageSearchParams params = s124Service.dataSetSearchParams(domainIds, messageSeries, areaIds, wkt);
+        List<Integer> ids = s124Service.searchMessageIds(params);
+        Geometry extent = params != null ? params.getExtent() : null;
+
+        // Stream the dataset. The messages are fetched and converted in chunks
+        StreamingOutput stream = os -> {
+            long t0 = System.currentTimeMillis();
+            try {
+                Writer out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+                int count = s124Service.generateDataSetGML(ids, extent, language, out);
+                log.info("Generated S-124 dataset with " + count + " messages in " + (System.currentTimeMillis() - t0) + " ms");
+            } catch (Exception e) {
+                throw WebUtils.streamingError(log, "Error generating S-124 dataset for " + params, e);
+            }
+        };
+
+        return Response.ok(stream)
+                .type("application/gml+xml;charset=UTF-8")
+                .build();
+    }
+
+
     /** Arghh, for some insane reason, this function does not work properly :-( **/
     public static String prettyPrint(String input) {
         try {
@@ -19,22 +19,36 @@ package org.niord.s124;
 import freemarker.cache.ClassTemplateLoader;
 import freemarker.template.Configuration;
 import freemarker.template.Template;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
 import org.niord.core.NiordApp;
+import org.niord.core.domain.Domain;
+import org.niord.core.domain.DomainService;
 import org.niord.core.geojson.GeoJsonUtils;
 import org.niord.core.message.Message;
+import org.niord.core.message.MessageSearchParams;
 import org.niord.core.message.MessageService;
+import org.niord.core.message.Reference;
 import org.niord.core.message.vo.SystemMessageVo;
 import org.niord.model.message.MainType;
 import org.niord.model.message.ReferenceVo;
+import org.niord.model.message.Status;
 
 import jakarta.enterprise.context.ApplicationScoped;
-import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 
 /**
@@ -51,12 +65,49 @@ import java.util.Map;
 @ApplicationScoped
 public class S124Service {
 
+    /** The number of messages fetched per transaction when generating S-124 datasets **/
+    static final int DATASET_CHUNK_SIZE = 100;
+
+    static final String MESSAGE_TEMPLATE            = "generate-s124.ftl";
+    static final String DATASET_HEADER_TEMPLATE     = "generate-s124-dataset-header.ftl";
+    static final String DATASET_MESSAGE_TEMPLATE    = "generate-s124-dataset-message.ftl";
+    static final String DATASET_FOOTER              = "\n</S124:DataSet>\n";
+
     @Inject
     MessageService messageService;
 
+    @Inject
+    DomainService domainService;
+
     @Inject
     NiordApp app;
 
+    private volatile Configuration configuration;
+
+
+    /**
+     * Returns the shared Freemarker configuration, which caches the compiled S-124 templates.
+     * The templates are loaded from the class path and never change, so they are not checked for updates.
+     * @return the shared Freemarker configuration
+     */
+    Configuration getConfiguration() {
+        Configuration cfg = configuration;
+        if (cfg == null) {
+            synchronized (this) {
+                cfg = configuration;
+                if (cfg == null) {
+                    cfg = new Configuration(Configuration.getVersion());
+                    cfg.setTemplateLoader(new ClassTemplateLoader(getClass(), "/templates/gml"));
+                    cfg.setDefaultEncoding("UTF-8");
+                    cfg.setTemplateUpdateDelayMilliseconds(Long.MAX_VALUE);
+                    configuration = cfg;
+                }
+            }
+        }
+        return cfg;
+    }
+
+
     /**
      * Generates S-124 compliant GML for the message
      * @param messageId the message
@@ -79,10 +130,7 @@ public class S124Service {
         // Ensure we use a valid language
         language = app.getLanguage(language);
 
-        SystemMessageVo msg = message.toVo(
-                SystemMessageVo.class,
-                Message.MESSAGE_DETAILS_FILTER);
-        msg.sort(language);
+        SystemMessageVo msg = toVo(message, language);
 
         Map<String, Object> data = new HashMap<>();
         data.put("msg", msg);
@@ -93,39 +141,207 @@ public class S124Service {
             data.put("bbox", bbox);
         }
 
-        data.put("references", referencedMessages(msg, language));
-
-        Configuration cfg = new Configuration(Configuration.getVersion());
-        cfg.setTemplateLoader(new ClassTemplateLoader(getClass(), "/templates/gml"));
+        data.put("references", referencedMessages(msg, resolveReferences(List.of(message), language)));
 
         StringWriter result = new StringWriter();
-        Template fmTemplate = cfg.getTemplate("generate-s124.ftl");
-
+        Template fmTemplate = getConfiguration().getTemplate(MESSAGE_TEMPLATE);
 
         fmTemplate.process(data, result);
         return result.toString();
     }
 
 
+    /***************************************/
+    /** S-124 datasets                    **/
+    /***************************************/
+
+
+    /**
+     * Returns the search parameters for an S-124 dataset containing the published navigational warnings
+     * of the given domains, message series and areas, and within the given extent.
+     * <p>
+     * If no domains or message series are specified, the domains published by default are used.
+     *
+     * @param domainIds the IDs of the domains to select messages from
+     * @param seriesIds the IDs of the message series to select messages from
+     * @param areaIds the IDs of the areas to select messages from
+     * @param wkt optionally, the well-known text of the geographical extent
+     * @return the search parameters, or null if the parameters do not select any messages
+     */
+    public MessageSearchParams dataSetSearchParams(
+            Set<String> domainIds, Set<String> seriesIds, Set<String> areaIds, String wkt) {
+
+        MessageSearchParams params = new MessageSearchParams();
+        params.statuses(Status.PUBLISHED)
+                .mainTypes(Collections.singleton(MainType.NW))
+                .areaIds(areaIds)
+                .extent(wkt)
+                .includeNoPos(Boolean.TRUE);
+
+        boolean domainsSpecified = domainIds != null && !domainIds.isEmpty();
+        boolean seriesSpecified = seriesIds != null && !seriesIds.isEmpty();
+
+        // If no domains or message series have been defined, use the domains published by default
+        List<Domain> domains = domainsSpecified
+                ? domainService.findByDomainIds(domainIds)
+                : (seriesSpecified ? Collections.emptyList() : domainService.getPublishedDomains());
+
+        // Convert domains to message series, area and category restrictions
+        params.domainRestrictions(domains);
+        if (seriesSpecified) {
+            params.getSeriesIds().addAll(seriesIds);
+        }
+
+        // Apply domain sort order
+        params.checkSortByDomain(domains.isEmpty() ? null : domains.get(0));
+
+        return params.getSeriesIds().isEmpty() ? null : params;
+    }
+
+
+    /**
+     * Returns the IDs of the messages matching the search parameters
+     * @param params the message search parameters, or null to select no messages
+     * @return the IDs of the matching messages
+     */
+    public List<Integer> searchMessageIds(MessageSearchParams params) {
+        return params != null
+                ? messageService.searchIds(params).getData()
+                : Collections.emptyList();
+    }
+
+
+    /**
+     * Generates an S-124 compliant GML dataset containing the navigational warnings with the given IDs,
+     * and writes it to the given writer.
+     * <p>
+     * The messages are fetched, converted and written in chunks, each in a separate transaction,
+     * and the writer is flushed after each chunk.
+     *
+     * @param ids the IDs of the messages to include
+     * @param extent optionally, the geographical extent of the dataset
+     * @param language the language
+     * @param out the writer to write the dataset to
+     * @return the number of messages written
+     */
+    public int generateDataSetGML(List<Integer> ids, Geometry extent, String language, Writer out) throws Exception {
+
+        // Ensure we use a valid language
+        language = app.getLanguage(language);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("datasetId", "DS.DK." + new SimpleDateFormat("yyyyMMddHHmmss").format(new Date()));
+        if (extent != null) {
+            Envelope env = extent.getEnvelopeInternal();
+            data.put("bbox", new double[] { env.getMinX(), env.getMinY(), env.getMaxX(), env.getMaxY() });
+        }
+        getConfiguration().getTemplate(DATASET_HEADER_TEMPLATE).process(data, out);
+
+        int count = 0;
+        for (int x = 0; x < ids.size(); x += DATASET_CHUNK_SIZE) {
+            count += writeDataSetMessages(ids.subList(x, Math.min(ids.size(), x + DATASET_CHUNK_SIZE)), language, out);
+            out.flush();
+        }
+
+        out.write(DATASET_FOOTER);
+        out.flush();
+        return count;
+    }
+
+
+    /**
+     * Fetches the messages with the given IDs in bulk, and writes the S-124 GML members of each message
+     * to the writer. This ensures that only the current chunk of messages is held in memory.
+     *
+     * @param ids the ID's of the messages to write
+     * @param language the language
+     * @param out the writer to write the messages to
+     * @return the number of messages written
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    int writeDataSetMessages(List<Integer> ids, String language, Writer out) throws Exception {
+
+        List<Message> messages = messageService.getMessages(ids).stream()
+                .filter(m -> m.getMainType() == MainType.NW && m.getNumber() != null)
+                .collect(Collectors.toList());
+
+        Map<String, SystemMessageVo> references = resolveReferences(messages, language);
+        Template fmTemplate = getConfiguration().getTemplate(DATASET_MESSAGE_TEMPLATE);
+
+        for (Message message : messages) {
+            SystemMessageVo msg = toVo(message, language);
+
+            Map<String, Object> data = new HashMap<>();
+            data.put("msg", msg);
+            data.put("language", language);
+            data.put("references", referencedMessages(msg, references));
+
+            fmTemplate.process(data, out);
+        }
+        return messages.size();
+    }
+
+
+    /***************************************/
+    /** Utility methods                   **/
+    /***************************************/
+
+
+    /** Converts the message to a sorted value object **/
+    private SystemMessageVo toVo(Message message, String language) {
+        SystemMessageVo msg = message.toVo(
+                SystemMessageVo.class,
+                Message.MESSAGE_DETAILS_FILTER);
+        msg.sort(language);
+        return msg;
+    }
+
+
+    /**
+     * Resolves the messages referenced by the given messages in bulk. Only numbered navigational warnings
+     * are included in the result.
+     *
+     * @param messages the messages to resolve message references for
+     * @param language the language
+     * @return the referenced messages indexed by message ID
+     */
+    private Map<String, SystemMessageVo> resolveReferences(List<Message> messages, String language) {
+
+        Set<String> messageIds = messages.stream()
+                .flatMap(m -> m.getReferences().stream())
+                .map(Reference::getMessageId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+
+        Map<String, Message> refMessages = messageService.resolveMessages(messageIds);
+        refMessages.values().removeIf(m -> m.getMainType() != MainType.NW || m.getNumber() == null);
+
+        // Fetch the lazy collections of the referenced messages in bulk
+        messageService.getMessages(refMessages.values().stream()
+                .map(Message::getId)
+                .distinct()
+                .collect(Collectors.toList()));
+
+        Map<Integer, SystemMessageVo> vos = new HashMap<>();
+        Map<String, SystemMessageVo> result = new HashMap<>();
+        refMessages.forEach((messageId, m) -> result.put(messageId, vos.computeIfAbsent(m.getId(), id -> toVo(m, language))));
+        return result;
+    }
+
+
     /**
      * Returns resolved message references
      * @param message the message to return resolved message references for
+     * @param references the resolved referenced messages indexed by message ID
      * @return the resolved message references
      */
-    private List<MessageReferenceVo> referencedMessages(SystemMessageVo message, String language) {
+    private List<MessageReferenceVo> referencedMessages(SystemMessageVo message, Map<String, SystemMessageVo> references) {
         List<MessageReferenceVo> result = new ArrayList<>();
         if (message.getReferences() != null) {
             for (ReferenceVo ref : message.getReferences()) {
-                try {
-                    Message refMsg = messageService.resolveMessage(ref.getMessageId());
-                    if (refMsg != null && refMsg.getMainType() == MainType.NW && refMsg.getNumber() != null) {
-                        SystemMessageVo msg = refMsg.toVo(
-                                SystemMessageVo.class,
-                                Message.MESSAGE_DETAILS_FILTER);
-                        msg.sort(language);
-                        result.add(new MessageReferenceVo(msg, ref));
-                    }
-                } catch (Exception ignored) {
+                SystemMessageVo msg = references.get(ref.getMessageId());
+                if (msg != null) {
+                    result.add(new MessageReferenceVo(msg, ref));
                 }
             }
         }
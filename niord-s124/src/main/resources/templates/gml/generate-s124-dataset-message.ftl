@@ -0,0 +1,10 @@
+<#--
+  Generates the members of a single message within an S-124 dataset containing multiple messages.
+-->
+<#include "s124-common.ftl">
+<#assign id='DK.' + msg.shortId!msg.id/>
+<#assign mrn='urn:mrn:iho:' + msg.mainType?lower_case + ':dk:' + (msg.shortId!msg.id)?lower_case/>
+<#assign geomId=0>
+<#setting time_zone="UTC">
+
+    <@generateMessageMembers></@generateMessageMembers>
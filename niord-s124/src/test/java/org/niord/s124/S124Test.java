@@ -25,12 +25,19 @@ import org.niord.core.geojson.GeoJsonUtils;
 import org.niord.core.message.Message;
 import org.niord.core.message.vo.SystemMessageVo;
 import org.niord.model.geojson.FeatureCollectionVo;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
 
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import static org.junit.Assert.assertEquals;
+
 public class S124Test {
 
 
@@ -70,5 +77,41 @@ public class S124Test {
         System.out.printf(S124RestService.prettyPrint(result.toString()));
 
     }
-}
 
+
+    @Test
+    public void testGenerateS124DataSet() throws Exception {
+
+        String language = "en";
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        SystemMessageVo message = objectMapper.readValue(getClass().getResource("/message.json"), SystemMessageVo.class);
+        message.sort(language);
+
+        Configuration cfg = new Configuration(Configuration.getVersion());
+        cfg.setTemplateLoader(new ClassTemplateLoader(getClass(), "/templates/gml"));
+
+        StringWriter result = new StringWriter();
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("datasetId", "DS.DK.TEST");
+        cfg.getTemplate(S124Service.DATASET_HEADER_TEMPLATE).process(data, result);
+
+        // Write the same message twice, using different short IDs to keep the gml:id's unique
+        Template msgTemplate = cfg.getTemplate(S124Service.DATASET_MESSAGE_TEMPLATE);
+        for (String shortId : new String[] { "NW-001-17", "NW-002-17" }) {
+            message.setShortId(shortId);
+            data = new HashMap<>();
+            data.put("msg", message);
+            data.put("language", language);
+            data.put("references", new ArrayList<>());
+            msgTemplate.process(data, result);
+        }
+        result.write(S124Service.DATASET_FOOTER);
+
+        // Check that the dataset is well-formed and contains both messages
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new InputSource(new StringReader(result.toString())));
+        assertEquals(2, doc.getElementsByTagName("S124:S124_NWPreamble").getLength());
+    }
+}
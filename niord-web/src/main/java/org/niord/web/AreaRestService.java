@@ -142,13 +142,12 @@ public class AreaRestService extends AbstractBatchableRestService {
     @NoCache
     public List<SystemAreaVo> getAreaRoots(@QueryParam("lang") String lang) {
 
+        // The children are added from the area tree snapshot
         DataFilter filter = DataFilter.get()
                 .lang(lang)
-                .fields(DataFilter.CHILDREN, DataFilter.DETAILS);
+                .fields(DataFilter.DETAILS);
 
-        return areaService.getAreaTree().stream()
-                .map(a -> a.toVo(SystemAreaVo.class, filter))
-                .collect(Collectors.toList());
+        return areaService.getAreaTreeVos(filter);
     }
 
 
@@ -160,12 +159,11 @@ public class AreaRestService extends AbstractBatchableRestService {
     @NoCache
     public List<SystemAreaVo> getAll() {
 
+        // The children are added from the area tree snapshot
         DataFilter filter = DataFilter.get()
-                .fields(DataFilter.CHILDREN, DataFilter.GEOMETRY, DataFilter.DETAILS);
+                .fields(DataFilter.GEOMETRY, DataFilter.DETAILS);
 
-        return areaService.getAreaTree().stream()
-                .map(a -> a.toVo(SystemAreaVo.class, filter))
-                .collect(Collectors.toList());
+        return areaService.getAreaTreeVos(filter);
     }
 
 
@@ -210,13 +210,11 @@ public class CategoryRestService extends AbstractBatchableRestService {
     @NoCache
     public List<SystemCategoryVo> getCategoryRoots(@QueryParam("lang") String lang) {
 
+        // The children are added from the category tree snapshot
         DataFilter filter = DataFilter.get()
-                .lang(lang)
-                .fields(DataFilter.CHILDREN);
+                .lang(lang);
 
-        return categoryService.getCategoryTree().stream()
-                .map(c -> c.toVo(SystemCategoryVo.class, filter))
-                .collect(Collectors.toList());
+        return categoryService.getCategoryTreeVos(filter);
     }
 
 
@@ -228,12 +226,10 @@ public class CategoryRestService extends AbstractBatchableRestService {
     @NoCache
     public List<SystemCategoryVo> getAll() {
 
-        DataFilter filter = DataFilter.get()
-                .fields(DataFilter.CHILDREN);
+        // The children are added from the category tree snapshot
+        DataFilter filter = DataFilter.get();
 
-        return categoryService.getCategoryTree().stream()
-                .map(c -> c.toVo(SystemCategoryVo.class, filter))
-                .collect(Collectors.toList());
+        return categoryService.getCategoryTreeVos(filter);
     }
 
 
@@ -21,6 +21,7 @@ import jakarta.annotation.security.RolesAllowed;
 import org.jboss.resteasy.annotations.GZIP;
 import org.jboss.resteasy.annotations.cache.NoCache;
 import org.niord.core.domain.DomainService;
+import org.niord.core.domain.DomainSnapshot;
 import org.niord.core.message.*;
 import org.niord.core.schedule.FiringExerciseService;
 import org.niord.core.schedule.FiringSchedule;
@@ -241,7 +242,8 @@ public class FiringScheduleRestService {
     public List<MessageVo> generateFiringAreaMessages(FiringAreaMessageParams params) {
 
         // Validate the the message series belong to the current domain
-        if (!domainService.currentDomain().containsMessageSeries(params.getSeriesId())) {
+        DomainSnapshot domain = domainService.currentDomainSnapshot();
+        if (domain == null || !domain.containsMessageSeries(params.getSeriesId())) {
             throw new WebApplicationException(403);
         }
 
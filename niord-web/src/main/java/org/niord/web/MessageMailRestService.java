@@ -90,7 +90,7 @@ public class MessageMailRestService {
 
         try {
             // Perform a search for at most 1000 messages
-            MessageSearchParams params = MessageSearchParams.instantiate(domainService.currentDomain(), request);
+            MessageSearchParams params = MessageSearchParams.instantiate(domainService.currentDomainSnapshot(), request);
             params.maxSize(1000).page(0);
             PagedSearchResultVo<MessageVo> result = messageSearchRestService.searchMessages(params);
 
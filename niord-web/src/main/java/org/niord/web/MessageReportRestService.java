@@ -285,7 +285,7 @@ public class MessageReportRestService extends AbstractBatchableRestService {
     public Response generatePdfForSearch(@Context HttpServletRequest request) throws Exception {
 
         // Perform a search for at most 1000 messages
-        MessageSearchParams params = MessageSearchParams.instantiate(domainService.currentDomain(), request);
+        MessageSearchParams params = MessageSearchParams.instantiate(domainService.currentDomainSnapshot(), request);
         params.maxSize(1000).page(0);
 
         MessagePrintParams printParams = MessagePrintParams.instantiate(request);
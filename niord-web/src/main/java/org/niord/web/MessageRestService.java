@@ -22,8 +22,10 @@ import org.jboss.resteasy.annotations.GZIP;
 import org.jboss.resteasy.annotations.cache.NoCache;
 import org.jboss.resteasy.plugins.providers.multipart.MultipartInput;
 import org.niord.core.NiordApp;
+import org.niord.core.batch.BatchService;
 import org.niord.core.domain.Domain;
 import org.niord.core.domain.DomainService;
+import org.niord.core.domain.DomainSnapshot;
 import org.niord.core.geojson.FeatureService;
 import org.niord.core.geojson.GeometryFormatService;
 import org.niord.core.geojson.PlainTextConverter;
@@ -108,6 +110,9 @@ public class MessageRestService  {
     @Inject
     PublicationService publicationService;
 
+    @Inject
+    BatchService batchService;
+
     @Inject
     PromulgationManager promulgationManager;
 
@@ -123,7 +128,7 @@ public class MessageRestService  {
      * @param message the message
      */
     private void checkMessageEditingAccess(Message message, EditOp editOp) {
-        Domain domain = domainService.currentDomain();
+        DomainSnapshot domain = domainService.currentDomainSnapshot();
 
         if (domain == null || message == null) {
             throw new WebApplicationException(403);
@@ -183,7 +188,7 @@ public class MessageRestService  {
         }
 
         // 2) Grant access if the current domain of the user matches the message series of the message
-        Domain domain = domainService.currentDomain();
+        DomainSnapshot domain = domainService.currentDomainSnapshot();
         if (domain != null && domain.containsMessageSeries(message.getMessageSeries())
                 && userService.isCallerInRole(Roles.USER)) {
             return;
@@ -756,6 +761,24 @@ public class MessageRestService  {
     }
 
 
+    /***************************
+     * Index functionality
+     ***************************/
+
+
+    /**
+     * Starts the "message-index-rebuild" batch job, which rebuilds the message index in the background.
+     * The progress of the rebuild is reported via the batch job status.
+     */
+    @PUT
+    @Path("/rebuild-index")
+    @RolesAllowed(Roles.SYSADMIN)
+    public void rebuildMessageIndex() throws Exception {
+        log.info("User " + userService.currentUser().getName() + " started a rebuild of the message index");
+        batchService.startBatchJobWithJsonData("message-index-rebuild", null, null, null);
+    }
+
+
     /***************************
      * Sorting functionality
      ***************************/
@@ -768,10 +791,8 @@ public class MessageRestService  {
     public void reindexPublishedMessageAreaSorting() {
 
         // Search for published message in the curretn domain
-        Domain domain = domainService.currentDomain();
-        Set<String> messageSeries = domain.getMessageSeries().stream()
-                .map(MessageSeries::getSeriesId)
-                .collect(Collectors.toSet());
+        DomainSnapshot domain = domainService.currentDomainSnapshot();
+        Set<String> messageSeries = domain.getMessageSeriesIds();
 
         MessageSearchParams params = new MessageSearchParams();
         params.statuses(Collections.singleton(Status.PUBLISHED))
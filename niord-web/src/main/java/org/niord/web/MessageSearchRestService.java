@@ -20,8 +20,8 @@ import jakarta.annotation.security.PermitAll;
 import org.apache.commons.lang.StringUtils;
 import org.jboss.resteasy.annotations.GZIP;
 import org.jboss.resteasy.annotations.cache.NoCache;
-import org.niord.core.domain.Domain;
 import org.niord.core.domain.DomainService;
+import org.niord.core.domain.DomainSnapshot;
 import org.niord.core.message.*;
 import org.niord.core.message.vo.SystemMessageVo;
 import org.niord.core.publication.PublicationService;
@@ -74,18 +74,18 @@ public class MessageSearchRestService {
     UserService userService;
 
 
-    /** Returns the domain used for searching messages **/
-    private Domain searchDomain(MessageSearchParams params) {
-        Domain searchDomain = null;
+    /** Returns the snapshot of the domain used for searching messages **/
+    private DomainSnapshot searchDomain(MessageSearchParams params) {
+        DomainSnapshot searchDomain = null;
 
         // Check if a domain parameter has been specified
         if (StringUtils.isNotBlank(params.getDomain())) {
-            searchDomain = domainService.findByDomainId(params.getDomain());
+            searchDomain = domainService.getDomainSnapshot(params.getDomain());
         }
 
         // Fall back to the current domain
         if (searchDomain == null) {
-            searchDomain = domainService.currentDomain();
+            searchDomain = domainService.currentDomainSnapshot();
         }
 
         return searchDomain;
@@ -101,27 +101,27 @@ public class MessageSearchRestService {
      */
     private PagedSearchResultVo<Message> search(MessageSearchParams params) throws Exception {
 
-        Domain currentDomain = domainService.currentDomain();
-        Domain searchDomain = searchDomain(params);
+        DomainSnapshot currentDomain = domainService.currentDomainSnapshot();
+        DomainSnapshot searchDomain = searchDomain(params);
 
         // Enforce security rules - depends on whether the current user is in the context of a domain or not.
         if (searchDomain != null) {
 
             /* TODO: Reconsider if we should really restrict messages by domain areas and categories
             // If no areas specified, use the ones of the search domain
-            if (params.getAreaIds().isEmpty() && !searchDomain.getAreas().isEmpty()) {
+            if (params.getAreaIds().isEmpty() && !searchDomain.getAreaIds().isEmpty()) {
                 params.areaIds(
-                        searchDomain.getAreas().stream()
-                                .map(BaseEntity::getId)
+                        searchDomain.getAreaIds().stream()
+                                .map(String::valueOf)
                                 .collect(Collectors.toSet())
                 );
             }
 
             // If no categories specified, use the ones of the search domain
-            if (params.getCategoryIds().isEmpty() && !searchDomain.getCategories().isEmpty()) {
+            if (params.getCategoryIds().isEmpty() && !searchDomain.getCategoryIds().isEmpty()) {
                 params.categoryIds(
-                        searchDomain.getCategories().stream()
-                                .map(BaseEntity::getId)
+                        searchDomain.getCategoryIds().stream()
+                                .map(String::valueOf)
                                 .collect(Collectors.toSet())
                 );
             }
@@ -143,9 +143,7 @@ public class MessageSearchRestService {
             // If no valid tags are specified, impose restrictions on statuses
             if (params.getTags().isEmpty()) {
 
-                Set<String> domainSeries = searchDomain.getMessageSeries().stream()
-                        .map(MessageSeries::getSeriesId)
-                        .collect(Collectors.toSet());
+                Set<String> domainSeries = searchDomain.getMessageSeriesIds();
 
                 // Restrict message series IDs to valid ones for the search domain
                 params.seriesIds(
@@ -236,7 +234,7 @@ public class MessageSearchRestService {
     @GZIP
     @NoCache
     public PagedSearchResultVo<MessageVo> search(@Context  HttpServletRequest request) throws Exception {
-        MessageSearchParams params = MessageSearchParams.instantiate(domainService.currentDomain(), request);
+        MessageSearchParams params = MessageSearchParams.instantiate(domainService.currentDomainSnapshot(), request);
         return searchMessages(params);
     }
 
@@ -16,6 +16,9 @@
 
 package org.niord.web;
 
+import org.niord.core.message.MessageLuceneIndex;
+import org.niord.core.message.vo.MessageIndexStatusVo;
+
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
@@ -36,6 +39,9 @@ public class MonitorRestService {
     @Inject
     protected EntityManager em;
 
+    @Inject
+    MessageLuceneIndex messageLuceneIndex;
+
 
     /** Can be used to see if Niord is running at all **/
     @GET
@@ -64,4 +70,13 @@ public class MonitorRestService {
         }
     }
 
+
+    /** Returns the status and indexing metrics of the message index **/
+    @GET
+    @Path("/message-index")
+    @Produces("application/json;charset=UTF-8")
+    public MessageIndexStatusVo messageIndex() {
+        return messageLuceneIndex.getIndexStatus();
+    }
+
 }
@@ -479,6 +479,7 @@ public class PublicationRestService extends AbstractBatchableRestService {
         fileName = StringUtils.defaultIfBlank(fileName, "publication.pdf");
 
         File destFile = folder.resolve(fileName).toFile();
+        RepositoryService.unlinkIfShared(destFile.toPath());
         try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(destFile));
              InputStream is = httpConn.getInputStream()) {
             IOUtils.copy(is, out);
@@ -634,6 +635,7 @@ public class PublicationRestService extends AbstractBatchableRestService {
                 Paths.get(inputFileEntry.getKey()).getFileName().toString()); // NB: IE includes the path in item.getName()!
 
         File destFile = folder.resolve(fileName).toFile();
+        RepositoryService.unlinkIfShared(destFile.toPath());
         try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(destFile))) {
             IOUtils.copy(inputFileEntry.getValue(), out);
         } catch (IOException ex) {
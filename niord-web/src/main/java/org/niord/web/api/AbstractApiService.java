@@ -22,10 +22,10 @@ import org.niord.core.domain.Domain;
 import org.niord.core.domain.DomainService;
 import org.niord.core.message.Message;
 import org.niord.core.message.MessageSearchParams;
-import org.niord.core.message.MessageSeries;
 import org.niord.core.message.MessageService;
 import org.niord.core.message.MessageTag;
 import org.niord.core.message.MessageTagService;
+import org.niord.core.message.vo.MessageTombstoneVo;
 import org.niord.core.publication.Publication;
 import org.niord.core.publication.PublicationSearchParams;
 import org.niord.core.publication.PublicationService;
@@ -36,8 +36,10 @@ import org.niord.model.search.PagedSearchResultVo;
 import org.slf4j.Logger;
 
 import jakarta.inject.Inject;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -103,6 +105,124 @@ public abstract class AbstractApiService {
             Set<String> areaIds,
             Set<MainType> mainTypes,
             String wkt) throws Exception {
+        return searchMessages(language, domainIds, messageSeries, publicationIds, areaIds, mainTypes, wkt, null, null);
+    }
+
+
+    /**
+     * Returns a page of the published messages.
+     * Optionally, filter by a geometry defined by the WKT (well-known text) parameter.
+     * <p>
+     * If a max size is specified, the result will contain a cursor for fetching the next page, if any.
+     */
+    public PagedSearchResultVo<Message> searchMessages(
+            String language,
+            Set<String> domainIds,
+            Set<String> messageSeries,
+            Set<String> publicationIds,
+            Set<String> areaIds,
+            Set<MainType> mainTypes,
+            String wkt,
+            Integer maxSize,
+            String cursor) throws Exception {
+
+        MessageSearchParams params = publicSearchParams(
+                language, domainIds, messageSeries, publicationIds, areaIds, mainTypes, wkt, maxSize, cursor);
+        if (params == null) {
+            return new PagedSearchResultVo<>();
+        }
+
+        // Perform the search
+        long t0 = System.currentTimeMillis();
+        PagedSearchResultVo<Message> searchResult = messageService.search(params);
+        log.debug(String.format("Public search [%s] returns %d of %d messages in %d ms",
+                params.toString(), searchResult.getData().size(), searchResult.getTotal(), System.currentTimeMillis() - t0));
+
+        return searchResult;
+    }
+
+
+    /**
+     * Returns the ID's of a page of the published messages.
+     * As {@linkplain #searchMessages(String, Set, Set, Set, Set, Set, String, Integer, String)}, but allows the
+     * callee to fetch the messages in chunks.
+     */
+    public PagedSearchResultVo<Integer> searchMessageIds(
+            String language,
+            Set<String> domainIds,
+            Set<String> messageSeries,
+            Set<String> publicationIds,
+            Set<String> areaIds,
+            Set<MainType> mainTypes,
+            String wkt,
+            Integer maxSize,
+            String cursor,
+            Date updatedSince) throws Exception {
+
+        MessageSearchParams params = publicSearchParams(
+                language, domainIds, messageSeries, publicationIds, areaIds, mainTypes, wkt, maxSize, cursor);
+        if (params == null) {
+            return new PagedSearchResultVo<>();
+        }
+        params.updatedFrom(updatedSince);
+
+        // Perform the search
+        long t0 = System.currentTimeMillis();
+        PagedSearchResultVo<Integer> searchResult = messageService.searchIds(params);
+        log.debug(String.format("Public ID search [%s] returns %d of %d messages in %d ms",
+                params.toString(), searchResult.getData().size(), searchResult.getTotal(), System.currentTimeMillis() - t0));
+
+        return searchResult;
+    }
+
+
+    /**
+     * Returns the tombstones of the messages selected by the parameters, which have been cancelled, expired
+     * or deleted since the given date. Used along with the ID search to provide an incremental change feed.
+     * Deleted messages are only included if they have been published, so drafts are never exposed.
+     */
+    public List<MessageTombstoneVo> searchMessageTombstones(
+            Set<String> domainIds,
+            Set<String> messageSeries,
+            Set<String> publicationIds,
+            Set<String> areaIds,
+            Set<MainType> mainTypes,
+            String wkt,
+            Date updatedSince) throws Exception {
+
+        MessageSearchParams params = publicSearchParams(
+                null, domainIds, messageSeries, publicationIds, areaIds, mainTypes, wkt, null, null);
+        if (params == null) {
+            return new ArrayList<>();
+        }
+        params.statuses(Status.CANCELLED, Status.EXPIRED, Status.DELETED)
+                .updatedFrom(updatedSince);
+
+        // Perform the search
+        long t0 = System.currentTimeMillis();
+        List<Integer> ids = messageService.searchIds(params).getData();
+        List<MessageTombstoneVo> result = messageService.getMessageTombstones(ids);
+        log.debug(String.format("Public tombstone search [%s] returns %d messages in %d ms",
+                params.toString(), result.size(), System.currentTimeMillis() - t0));
+
+        return result;
+    }
+
+
+    /**
+     * Returns the message search parameters for a search of the published messages,
+     * or null if the parameters do not select any messages
+     */
+    private MessageSearchParams publicSearchParams(
+            String language,
+            Set<String> domainIds,
+            Set<String> messageSeries,
+            Set<String> publicationIds,
+            Set<String> areaIds,
+            Set<MainType> mainTypes,
+            String wkt,
+            Integer maxSize,
+            String cursor) throws Exception {
 
         Domain sortDomain = null;
 
@@ -112,7 +232,9 @@ public abstract class AbstractApiService {
                 .mainTypes(mainTypes)
                 .areaIds(areaIds)
                 .extent(wkt)
-                .includeNoPos(Boolean.TRUE); // Messages without a geometry may be included if WKT specified
+                .includeNoPos(Boolean.TRUE) // Messages without a geometry may be included if WKT specified
+                .cursor(cursor)
+                .maxSize(maxSize);
 
 
         // Convert publications to their associated message tags
@@ -150,33 +272,8 @@ public abstract class AbstractApiService {
         if (domainsSpecified) {
             List<Domain> domains = domainService.findByDomainIds(domainIds);
 
-            // Add the message series of the domains as a filter
-            params.getSeriesIds().addAll(
-                    domains.stream()
-                            .flatMap(d -> d.getMessageSeries().stream())
-                            .map(MessageSeries::getSeriesId)
-                            .collect(Collectors.toSet())
-            );
-
-            // If all domains specify areas, add these as a filter
-            if (domains.stream().noneMatch(d -> d.getAreas().isEmpty())) {
-                params.getAreaIds().addAll(
-                    domains.stream()
-                        .flatMap(d -> d.getAreas().stream())
-                        .map(a -> a.getId().toString())
-                        .collect(Collectors.toList())
-                );
-            }
-
-            // If all domains specify categories, add these as a filter
-            if (domains.stream().noneMatch(d -> d.getCategories().isEmpty())) {
-                params.getCategoryIds().addAll(
-                        domains.stream()
-                                .flatMap(d -> d.getCategories().stream())
-                                .map(c -> c.getId().toString())
-                                .collect(Collectors.toList())
-                );
-            }
+            // Add the message series, areas and categories of the domains as filters
+            params.domainRestrictions(domains);
 
             // Sort by the first domain specified
             if (!domains.isEmpty()) {
@@ -191,7 +288,7 @@ public abstract class AbstractApiService {
 
         // If no publications or message series (and thus, no domains) have been specified, return nothing
         if (params.getTags().isEmpty() && params.getSeriesIds().isEmpty()) {
-            return new PagedSearchResultVo<>();
+            return null;
         }
 
         // Enforce allowed statuses
@@ -204,13 +301,7 @@ public abstract class AbstractApiService {
         // Apply domain sort order
         params.checkSortByDomain(sortDomain);
 
-        // Perform the search
-        long t0 = System.currentTimeMillis();
-        PagedSearchResultVo<Message> searchResult = messageService.search(params);
-        log.debug(String.format("Public search [%s] returns %d of %d messages in %d ms",
-                params.toString(), searchResult.getData().size(), searchResult.getTotal(), System.currentTimeMillis() - t0));
-
-        return searchResult;
+        return params;
     }
 
 
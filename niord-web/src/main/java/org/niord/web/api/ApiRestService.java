@@ -16,9 +16,16 @@
 package org.niord.web.api;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -40,7 +47,10 @@ import org.jboss.resteasy.annotations.cache.NoCache;
 import org.niord.core.NiordApp;
 import org.niord.core.area.Area;
 import org.niord.core.message.Message;
+import org.niord.core.message.MessageJsonCache;
+import org.niord.core.message.vo.MessageTombstoneVo;
 import org.niord.core.publication.Publication;
+import org.niord.core.util.WebUtils;
 import org.niord.model.DataFilter;
 import org.niord.model.message.AreaVo;
 import org.niord.model.message.MainType;
@@ -49,6 +59,8 @@ import org.niord.model.publication.PublicationVo;
 import org.niord.model.search.PagedSearchResultVo;
 import org.slf4j.Logger;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
@@ -61,8 +73,12 @@ import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.xml.bind.JAXBContext;
 import jakarta.xml.bind.SchemaOutputResolver;
 
@@ -82,6 +98,18 @@ import jakarta.xml.bind.SchemaOutputResolver;
 @SuppressWarnings("unused")
 public class ApiRestService extends AbstractApiService {
 
+    /** The number of messages fetched per transaction when streaming messages **/
+    static final int STREAMING_CHUNK_SIZE = 100;
+
+    /** Response header containing the cursor of the next page of a paged message search **/
+    public static final String NEXT_CURSOR_HEADER = "X-Niord-Next-Cursor";
+
+    /** Response header containing the change token to pass as "updatedSince" to fetch subsequent changes **/
+    public static final String CHANGE_TOKEN_HEADER = "X-Niord-Change-Token";
+
+    /** The change token overlaps the search, so that changes committed while searching are not missed **/
+    static final long CHANGE_TOKEN_OVERLAP_MS = 60L * 1000L;
+
     @Inject
     Logger log;
 
@@ -95,6 +123,9 @@ public class ApiRestService extends AbstractApiService {
     @Inject
     NiordApp app;
 
+    @Inject
+    MessageJsonCache messageJsonCache;
+
 
     /***************************
      * Message end-points
@@ -103,6 +134,8 @@ public class ApiRestService extends AbstractApiService {
 
     /**
      * {@inheritDoc}
+     * <p>
+     * The messages are streamed, and errors are handled by {@linkplain WebUtils#streamingError}.
      */
     @GET
     @Path("/messages")
@@ -142,12 +175,27 @@ public class ApiRestService extends AbstractApiService {
             @QueryParam("externalize") @DefaultValue("true") boolean externalize,
 
             @Parameter(description = "The date format to use for JSON date-time encoding. Either 'UNIX_EPOCH' or 'ISO_8601'", example = "UNIX_EPOCH")
-            @QueryParam("dateFormat") @DefaultValue("UNIX_EPOCH") JsonDateFormat dateFormat
+            @QueryParam("dateFormat") @DefaultValue("UNIX_EPOCH") JsonDateFormat dateFormat,
+
+            @Parameter(description = "Optionally, the max number of messages to return. The " + NEXT_CURSOR_HEADER
+                    + " response header will contain the cursor of the next page, if any", example = "100")
+            @QueryParam("maxSize") Integer maxSize,
+
+            @Parameter(description = "The cursor of the page to return, as returned in the " + NEXT_CURSOR_HEADER
+                    + " response header of the previous page")
+            @QueryParam("cursor") String cursor,
+
+            @Parameter(description = "Optionally, only return messages updated since the given change token, as returned in the "
+                    + CHANGE_TOKEN_HEADER + " response header of a previous request. Use the /messages/tombstones "
+                    + "end-point to fetch the messages that have been cancelled or expired since the change token")
+            @QueryParam("updatedSince") Long updatedSince,
+
+            @Context Request request
 
     ) throws Exception {
         log.debug("Messages-Params Request parameters: " +
                 "lang={}, domain={}, messageSeries={}, publication={}, " +
-                "areaId={}, mainType={}, wkt={}, externalize={}, dateFormat={}",
+                "areaId={}, mainType={}, wkt={}, externalize={}, dateFormat={}, maxSize={}, cursor={}, updatedSince={}",
                 language,
                 domainIds,
                 messageSeries,
@@ -156,29 +204,137 @@ public class ApiRestService extends AbstractApiService {
                 mainTypes,
                 wkt,
                 externalize,
-                dateFormat);
+                dateFormat,
+                maxSize,
+                cursor,
+                updatedSince);
+
+        // Changes committed after this point will be included when fetching messages updated since the change token
+        String changeToken = String.valueOf(System.currentTimeMillis() - CHANGE_TOKEN_OVERLAP_MS);
+
+        // Perform the search. Only the message ID's are fetched up-front
+        PagedSearchResultVo<Integer> searchResult = super.searchMessageIds(
+                language, domainIds, messageSeries, publicationIds, areaIds, mainTypes, wkt, maxSize, cursor,
+                updatedSince != null ? new Date(updatedSince) : null);
+        List<Integer> ids = searchResult.getData();
+
+        // Check if the client already has the current result
+        EntityTag etag = messagesEntityTag(ids, searchResult.getNextCursor(), language, externalize, dateFormat);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified
+                    .tag(etag)
+                    .header(CHANGE_TOKEN_HEADER, changeToken)
+                    .build();
+        }
 
-        // Perform the search
-        PagedSearchResultVo<Message> searchResult =
-                super.searchMessages(language, domainIds, messageSeries, publicationIds, areaIds, mainTypes, wkt);
+        // Depending on the dateFormat param, either use UNIX epoch or ISO-8601
+        ObjectMapper om = objectMapperForDateFormat(dateFormat);
 
+        // Stream the messages as JSON. The messages are fetched and converted to value objects in chunks,
+        // and each value object is written directly to the output stream.
+        String variant = messageJsonVariant(language, externalize, dateFormat);
+        StreamingOutput stream = os -> {
+            try (JsonGenerator generator = createJsonGenerator(om, os)) {
+                generator.writeStartArray();
+                for (int x = 0; x < ids.size(); x += STREAMING_CHUNK_SIZE) {
+                    writeMessages(generator, om, ids.subList(x, Math.min(ids.size(), x + STREAMING_CHUNK_SIZE)),
+                            variant, language, externalize);
+                }
+                generator.writeEndArray();
+            } catch (Exception e) {
+                throw WebUtils.streamingError(log, "Error streaming messages", e);
+            }
+        };
 
-        // Convert messages to value objects and externalize message links, if requested
-        List<MessageVo> messages = searchResult
-                .map(m -> toMessageVo(m, language, externalize))
-                .getData();
+        return Response
+                .ok(stream, MediaType.APPLICATION_JSON_TYPE.withCharset("utf-8"))
+                .header(NEXT_CURSOR_HEADER, searchResult.getNextCursor())
+                .header(CHANGE_TOKEN_HEADER, changeToken)
+                .tag(etag)
+                .build();
+
+    }
+
+
+    /**
+     * Computes an entity tag for a message search result from the ordered message IDs, the last update
+     * of any message and the representation parameters
+     */
+    private EntityTag messagesEntityTag(List<Integer> ids, String nextCursor, String language, boolean externalize,
+                                        JsonDateFormat dateFormat) throws Exception {
+        Date lastUpdated = messageService.getLastUpdated();
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        digest.update(String.format("%s|%s|%s|%s|%d|",
+                language, externalize, dateFormat, nextCursor, lastUpdated != null ? lastUpdated.getTime() : 0L)
+                .getBytes(StandardCharsets.UTF_8));
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        for (Integer id : ids) {
+            digest.update(buffer.putInt(0, id).array());
+        }
+        // NB: Weak, since the representation may be compressed
+        return new EntityTag(HexFormat.of().formatHex(digest.digest()), true);
+    }
 
-        // Depending on the dateFormat param, either use UNIX epoch or ISO-8601
-        ObjectMapper om = objectMapperForDateFormat(dateFormat);
 
-        // Serialize directly to JSON string and build the response
-        // We used to do StreamingOutput but Quarkus doesn't support it
-        String json = om.writeValueAsString(messages);
+    /**
+     * {@inheritDoc}
+     */
+    @GET
+    @Path("/messages/tombstones")
+    @Operation(summary = "Returns the messages that have been cancelled, expired or deleted since the given change token")
+    @APIResponse(
+            responseCode = "200",
+            content = @Content(
+                    mediaType = MediaType.APPLICATION_JSON,
+                    schema = @Schema(implementation = MessageTombstoneVo.class, type= SchemaType.ARRAY)
+            )
+    )
+    @Produces({"application/json;charset=UTF-8"})
+    @GZIP
+    @NoCache
+    public Response searchMessageTombstones(
+            @Parameter(description = "The IDs of the domains to select messages from", example = "niord-client-nw")
+            @QueryParam("domain") Set<String> domainIds,
+
+            @Parameter(description = "Specific message series to select messages from", example = "dma-nw")
+            @QueryParam("messageSeries") Set<String> messageSeries,
+
+            @Parameter(description = "The IDs of the publications to select message from")
+            @QueryParam("publication") Set<String> publicationIds,
+
+            @Parameter(description = "The IDs of the areas to select messages from", example = "urn:mrn:iho:country:dk")
+            @QueryParam("areaId") Set<String> areaIds,
+
+            @Parameter(description = "Either NW (navigational warnings) or NM (notices to mariners)", example = "NW")
+            @QueryParam("mainType") Set<MainType> mainTypes,
 
+            @Parameter(description = "Well-Known Text for geographical extent", example = "POLYGON((7 54, 7 57, 13 56, 13 57, 7 54))")
+            @QueryParam("wkt") String wkt,
+
+            @Parameter(description = "The change token, as returned in the " + CHANGE_TOKEN_HEADER
+                    + " response header of the /messages end-point")
+            @QueryParam("updatedSince") Long updatedSince,
+
+            @Parameter(description = "The date format to use for JSON date-time encoding. Either 'UNIX_EPOCH' or 'ISO_8601'", example = "UNIX_EPOCH")
+            @QueryParam("dateFormat") @DefaultValue("UNIX_EPOCH") JsonDateFormat dateFormat
+
+    ) throws Exception {
+
+        if (updatedSince == null) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity("The updatedSince parameter must be specified")
+                    .build();
+        }
+
+        List<MessageTombstoneVo> result = super.searchMessageTombstones(
+                domainIds, messageSeries, publicationIds, areaIds, mainTypes, wkt, new Date(updatedSince));
+
+        String json = objectMapperForDateFormat(dateFormat).writeValueAsString(result);
         return Response
                 .ok(json, MediaType.APPLICATION_JSON_TYPE.withCharset("utf-8"))
                 .build();
-
     }
 
 
@@ -222,15 +378,22 @@ public class ApiRestService extends AbstractApiService {
                     .build();
         } else {
 
-            // Convert message to value objects and externalize message links, if requested
-            MessageVo result = toMessageVo(message, language, externalize);
+            // Check if the JSON of the current message revision has already been cached
+            String revision = MessageJsonCache.revisionKey(message.getUid(), message.getUpdated(), message.getVersion());
+            String variant = messageJsonVariant(language, externalize, dateFormat);
+            String json = messageJsonCache.getJson(revision, variant);
 
-            // Depending on the dateFormat param, either use UNIX epoch or ISO-8601
-            ObjectMapper om = objectMapperForDateFormat(dateFormat);
+            if (json == null) {
+                // Convert message to value objects and externalize message links, if requested
+                MessageVo result = toMessageVo(message, language, externalize);
 
-            // Serialize directly to JSON string and build the response
-            // We used to do StreamingOutput but Quarkus doesn't support it
-            String json = om.writeValueAsString(result);
+                // Depending on the dateFormat param, either use UNIX epoch or ISO-8601
+                ObjectMapper om = objectMapperForDateFormat(dateFormat);
+
+                // Serialize directly to JSON string and build the response
+                json = om.writeValueAsString(result);
+                messageJsonCache.putJson(revision, variant, json);
+            }
 
             return Response
                     .ok(json, MediaType.APPLICATION_JSON_TYPE.withCharset("utf-8"))
@@ -291,6 +454,76 @@ public class ApiRestService extends AbstractApiService {
     }
 
 
+    /**
+     * Fetches the messages with the given ID's in a separate transaction, and writes them as JSON
+     * to the generator. This ensures that only the current chunk of messages is held in memory.
+     * <p>
+     * The JSON of messages whose current revision has already been cached is written as is,
+     * and only the remaining messages are loaded and converted to value objects.
+     *
+     * @param generator the JSON generator
+     * @param om the object mapper used for serializing the messages
+     * @param ids the ID's of the messages to write
+     * @param variant the variant of the JSON representation, used for caching
+     * @param language the language
+     * @param externalize whether to rewrite all links to make them external URLs
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    void writeMessages(JsonGenerator generator, ObjectMapper om, List<Integer> ids, String variant,
+                       String language, boolean externalize) throws IOException {
+
+        // Look up the cached JSON of the current message revisions
+        Map<Integer, String> revisions = messageService.getMessageRevisions(ids);
+        Map<Integer, String> jsons = new HashMap<>(ids.size());
+        List<Integer> uncachedIds = new ArrayList<>();
+        for (Integer id : ids) {
+            String revision = revisions.get(id);
+            String json = revision != null ? messageJsonCache.getJson(revision, variant) : null;
+            if (json != null) {
+                jsons.put(id, json);
+            } else if (revision != null) {
+                uncachedIds.add(id);
+            }
+        }
+
+        // Load and serialize the remaining messages
+        for (Message message : messageService.getMessages(uncachedIds)) {
+            String json = om.writeValueAsString(toMessageVo(message, language, externalize));
+            messageJsonCache.putJson(
+                    MessageJsonCache.revisionKey(message.getUid(), message.getUpdated(), message.getVersion()),
+                    variant,
+                    json);
+            jsons.put(message.getId(), json);
+        }
+
+        // Write the messages in the original order
+        for (Integer id : ids) {
+            String json = jsons.get(id);
+            if (json != null) {
+                generator.writeRawValue(json);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the variant of the JSON message representation for the given parameters, used for caching.
+     * Must include all parameters that affect the JSON produced by {@linkplain #toMessageVo(Message, String, boolean)}
+     *
+     * @param language the language
+     * @param externalize whether to rewrite all links to make them external URLs
+     * @param dateFormat the date format
+     * @return the variant of the JSON message representation
+     */
+    private String messageJsonVariant(String language, boolean externalize, JsonDateFormat dateFormat) {
+        // NB: The "api" prefix identifies the data filter, which is always Message.MESSAGE_DETAILS_FILTER
+        return String.format("api|%s|%s|%s",
+                language,
+                externalize ? app.getBaseUri() : "",
+                dateFormat);
+    }
+
+
     /**
      * Convert the message to a value object representation.
      * If requested, rewrite all links to make them external URLs.
@@ -334,7 +567,9 @@ public class ApiRestService extends AbstractApiService {
 
 
     /**
-     * Searches for publications
+     * Searches for publications.
+     * <p>
+     * The publications are streamed, and errors are handled by {@linkplain WebUtils#streamingError}.
      */
     @GET
     @Path("/publications")
@@ -372,19 +607,24 @@ public class ApiRestService extends AbstractApiService {
             from = to = System.currentTimeMillis();
         }
 
-        List<PublicationVo> publications = super.searchPublications(language, from, to).stream()
-                .map(p -> toPublicationVo(p, language, externalize))
-                .collect(Collectors.toList());
+        Long fromDate = from, toDate = to;
 
         // Depending on the dateFormat param, either use UNIX epoch or ISO-8601
         ObjectMapper om = objectMapperForDateFormat(dateFormat);
 
-        // Serialize directly to JSON string and build the response
-        // We used to do StreamingOutput but Quarkus doesn't support it
-        String json = om.writeValueAsString(publications);
+        // Stream the publications as JSON. Each publication value object is written directly to the output stream.
+        StreamingOutput stream = os -> {
+            try (JsonGenerator generator = createJsonGenerator(om, os)) {
+                generator.writeStartArray();
+                writePublications(generator, language, fromDate, toDate, externalize);
+                generator.writeEndArray();
+            } catch (Exception e) {
+                throw WebUtils.streamingError(log, "Error streaming publications", e);
+            }
+        };
 
         return Response
-                .ok(json, MediaType.APPLICATION_JSON_TYPE.withCharset("utf-8"))
+                .ok(stream, MediaType.APPLICATION_JSON_TYPE.withCharset("utf-8"))
                 .build();
     }
 
@@ -436,7 +676,6 @@ public class ApiRestService extends AbstractApiService {
             ObjectMapper om = objectMapperForDateFormat(dateFormat);
 
             // Serialize directly to JSON string and build the response
-            // We used to do StreamingOutput but Quarkus doesn't support it
             String json = om.writeValueAsString(result);
 
             return Response
@@ -446,6 +685,23 @@ public class ApiRestService extends AbstractApiService {
     }
 
 
+    /**
+     * Searches the publications in a separate transaction, and writes them as JSON to the generator
+     *
+     * @param generator the JSON generator
+     * @param language the language
+     * @param from the start date of the publications
+     * @param to the end date of the publications
+     * @param externalize whether to rewrite all links to make them external URLs
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    void writePublications(JsonGenerator generator, String language, Long from, Long to, boolean externalize) throws IOException {
+        for (Publication publication : super.searchPublications(language, from, to)) {
+            generator.writeObject(toPublicationVo(publication, language, externalize));
+        }
+    }
+
+
     /**
      * Convert the publication to a value object representation.
      * If requested, rewrite all links to make them external URLs.
@@ -587,10 +843,22 @@ public class ApiRestService extends AbstractApiService {
         mapper.configure(
                 SerializationFeature.WRITE_DATES_AS_TIMESTAMPS,
                 dateFormat == JsonDateFormat.UNIX_EPOCH);
+        // When streaming JSON, let the generator decide when to flush
+        mapper.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
         return mapper;
     }
 
 
+    /**
+     * Creates a JSON generator for streaming JSON to the output stream.
+     * The output stream is left open when the generator is closed.
+     **/
+    private JsonGenerator createJsonGenerator(ObjectMapper om, OutputStream os) throws IOException {
+        return om.createGenerator(os, JsonEncoding.UTF8)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+
     /** Concatenates the URI components **/
     private String concat(String... paths) {
         StringBuilder result = new StringBuilder();
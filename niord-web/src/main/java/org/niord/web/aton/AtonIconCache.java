@@ -0,0 +1,394 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.niord.web.aton;
+
+import io.quarkus.scheduler.Scheduled;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.niord.core.aton.vo.AtonNodeVo;
+import org.niord.core.aton.vo.AtonTagVo;
+import org.niord.core.repo.RepositoryService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of rendered AtoN icons.
+ * <p>
+ * Icons are keyed by a hash of the canonical seamark tags, i.e. sorted by key, along with the format and
+ * the render parameters. So, identical AtoNs are only rendered once. Icons are kept in an in-memory LRU
+ * cache backed by a file store in the repository. Icons that have not been rendered for
+ * {@code ICON_TTL_MS} are purged from the file store every night, and re-rendered on demand.
+ * <p>
+ * Concurrent requests for the same icon share a single rendering, whereas different icons are rendered
+ * in parallel by the calling threads.
+ */
+@ApplicationScoped
+@SuppressWarnings("unused")
+public class AtonIconCache {
+
+    static final String         ICON_REPO_FOLDER    = "aton_icon_cache";
+    static final String         LEGACY_REPO_FOLDER  = "aton_icons";
+    static final long           MAX_MEMORY_BYTES    = 8L * 1024L * 1024L;
+    static final long           ICON_TTL_MS         = 30L * 24L * 60L * 60L * 1000L; // 30 days
+
+    Logger log = LoggerFactory.getLogger(AtonIconCache.class);
+
+    @Inject
+    RepositoryService repositoryService;
+
+    Path cacheRoot;
+    long maxMemoryBytes = MAX_MEMORY_BYTES;
+
+    final Map<String, CompletableFuture<byte[]>> pendingRenders = new ConcurrentHashMap<>();
+    final LinkedHashMap<String, byte[]> memoryCache = new LinkedHashMap<>(256, 0.75f, true);
+    long memoryBytes;
+    final AtomicInteger renderCount = new AtomicInteger();
+
+
+    /** Constructor used by CDI **/
+    public AtonIconCache() {
+    }
+
+
+    /**
+     * Constructor used for instantiating the cache outside of CDI
+     * @param cacheRoot the root folder of the file store
+     * @param maxMemoryBytes the max number of bytes held in the in-memory cache
+     */
+    public AtonIconCache(Path cacheRoot, long maxMemoryBytes) {
+        this.cacheRoot = cacheRoot;
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+
+    /** Initializes the cache root **/
+    @PostConstruct
+    void init() {
+        if (cacheRoot == null) {
+            cacheRoot = repositoryService.getRepoRoot().resolve(ICON_REPO_FOLDER);
+        }
+    }
+
+
+    /**
+     * Returns the rendered icon for the AtoN tags, rendering the icon if it is not cached
+     *
+     * @param tags the AtoN tags
+     * @param icon the icon format and render parameters
+     * @return the rendered icon
+     */
+    public byte[] getIcon(AtonTagVo[] tags, IconSpec icon) throws IOException {
+
+        SortedMap<String, String> seamarkTags = canonicalTags(tags);
+        String key = cacheKey(seamarkTags, icon);
+
+        // Check the in-memory cache and the file store
+        byte[] data = getFromMemory(key);
+        if (data == null) {
+            data = readFromDisk(key, icon);
+            if (data != null) {
+                putInMemory(key, data);
+            }
+        }
+        if (data != null) {
+            return data;
+        }
+
+        // Render the icon. Concurrent requests for the same icon share the same rendering
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        CompletableFuture<byte[]> pending = pendingRenders.putIfAbsent(key, result);
+        if (pending != null) {
+            return awaitIcon(pending);
+        }
+
+        try {
+            data = render(seamarkTags, icon);
+            putInMemory(key, data);
+            writeToDisk(key, icon, data);
+            result.complete(data);
+            return data;
+        } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+            throw e;
+        } finally {
+            pendingRenders.remove(key, result);
+        }
+    }
+
+
+    /**
+     * Returns the icon file for the AtoN tags in the file store, rendering the icon if it is not cached
+     *
+     * @param tags the AtoN tags
+     * @param icon the icon format and render parameters
+     * @return the icon file
+     */
+    public Path getIconFile(AtonTagVo[] tags, IconSpec icon) throws IOException {
+        String key = cacheKey(canonicalTags(tags), icon);
+        Path file = iconFile(key, icon);
+        if (!Files.isRegularFile(file)) {
+            byte[] data = getIcon(tags, icon);
+            if (!Files.isRegularFile(file)) {
+                writeToDisk(key, icon, data);
+            }
+        }
+        return file;
+    }
+
+
+    /** Returns the number of icons rendered by this cache **/
+    public int getRenderCount() {
+        return renderCount.get();
+    }
+
+
+    /** Waits for the pending icon rendering to complete **/
+    private byte[] awaitIcon(CompletableFuture<byte[]> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted rendering AtoN icon", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error rendering AtoN icon: " + e.getCause(), e.getCause());
+        }
+    }
+
+
+    /** Renders the icon **/
+    private byte[] render(SortedMap<String, String> seamarkTags, IconSpec icon) throws IOException {
+        long t0 = System.currentTimeMillis();
+
+        AtonNodeVo aton = new AtonNodeVo();
+        aton.setTags(seamarkTags.entrySet().stream()
+                .map(t -> new AtonTagVo(t.getKey(), t.getValue()))
+                .toArray(AtonTagVo[]::new));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AtonIconRenderer.renderIcon(
+                aton,
+                icon.format,
+                out,
+                icon.width,
+                icon.height,
+                icon.x,
+                icon.y,
+                icon.scale);
+        renderCount.incrementAndGet();
+
+        log.trace("Rendered AtoN " + icon.format + " in " + (System.currentTimeMillis() - t0) + " ms");
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Returns the canonical seamark tags. Only seamark tags are used for rendering, and,
+     * as for rendering, the last value of a repeated tag wins.
+     */
+    static SortedMap<String, String> canonicalTags(AtonTagVo[] tags) {
+        SortedMap<String, String> result = new TreeMap<>();
+        if (tags != null) {
+            for (AtonTagVo tag : tags) {
+                if (tag.getK() != null && tag.getK().startsWith("seamark:") && tag.getV() != null) {
+                    result.put(tag.getK(), tag.getV());
+                }
+            }
+        }
+        return result;
+    }
+
+
+    /** Returns the cache key, i.e. a hash of the canonical tags and the icon parameters **/
+    static String cacheKey(SortedMap<String, String> seamarkTags, IconSpec icon) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(icon.toString().getBytes(StandardCharsets.UTF_8));
+            seamarkTags.forEach((k, v) -> {
+                digest.update((byte) '\n');
+                digest.update(k.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '=');
+                digest.update(v.getBytes(StandardCharsets.UTF_8));
+            });
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-1 not supported", e);
+        }
+    }
+
+
+    /***************************************/
+    /** In-memory LRU cache               **/
+    /***************************************/
+
+
+    /** Returns the icon from the in-memory cache **/
+    private synchronized byte[] getFromMemory(String key) {
+        return memoryCache.get(key);
+    }
+
+
+    /** Adds the icon to the in-memory cache and evicts the least recently used icons when full **/
+    private synchronized void putInMemory(String key, byte[] data) {
+        byte[] old = memoryCache.put(key, data);
+        memoryBytes += data.length - (old != null ? old.length : 0);
+        Iterator<byte[]> it = memoryCache.values().iterator();
+        while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+            memoryBytes -= it.next().length;
+            it.remove();
+        }
+    }
+
+
+    /***************************************/
+    /** File store                        **/
+    /***************************************/
+
+
+    /** Returns the file of the icon with the given key **/
+    private Path iconFile(String key, IconSpec icon) {
+        return cacheRoot.resolve(key.substring(0, 2)).resolve(key + "." + icon.format);
+    }
+
+
+    /** Reads the icon from the file store **/
+    private byte[] readFromDisk(String key, IconSpec icon) {
+        Path file = iconFile(key, icon);
+        try {
+            if (Files.isRegularFile(file)) {
+                return Files.readAllBytes(file);
+            }
+        } catch (IOException e) {
+            log.debug("Failed reading cached AtoN icon " + file + ": " + e);
+        }
+        return null;
+    }
+
+
+    /** Writes the icon to the file store. The file is moved into place atomically **/
+    private void writeToDisk(String key, IconSpec icon, byte[] data) {
+        Path file = iconFile(key, icon);
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), key, ".tmp");
+            Files.write(tmp, data);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed caching AtoN icon " + file + ": " + e);
+        }
+    }
+
+
+    /**
+     * Called every night to delete expired icons from the file store.
+     * Also deletes the icon folder used by earlier versions, which has been replaced by the file store.
+     */
+    @Scheduled(cron="23 47 4 * * ?")
+    void purgeExpiredIcons() {
+        if (repositoryService != null) {
+            Path legacyRoot = repositoryService.getRepoRoot().resolve(LEGACY_REPO_FOLDER);
+            if (Files.isDirectory(legacyRoot)) {
+                try {
+                    FileUtils.deleteDirectory(legacyRoot.toFile());
+                    log.info("Deleted legacy AtoN icon folder " + legacyRoot);
+                } catch (IOException e) {
+                    log.error("Failed deleting legacy AtoN icon folder " + legacyRoot + ": " + e, e);
+                }
+            }
+        }
+
+        if (!Files.isDirectory(cacheRoot)) {
+            return;
+        }
+        long expiry = System.currentTimeMillis() - ICON_TTL_MS;
+        int deleted = 0;
+        try (Stream<Path> files = Files.walk(cacheRoot)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                if (Files.getLastModifiedTime(file).toMillis() < expiry) {
+                    Files.deleteIfExists(file);
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed purging expired AtoN icons: " + e, e);
+        }
+        if (deleted > 0) {
+            log.info("Purged " + deleted + " expired AtoN icons");
+        }
+    }
+
+
+    /**
+     * The format and render parameters of an AtoN icon
+     */
+    public static final class IconSpec {
+
+        final String format;
+        final int width;
+        final int height;
+        final int x;
+        final int y;
+        final double scale;
+
+        /**
+         * Constructor
+         * @param format the icon format, either "png" or "svg"
+         * @param width the icon width
+         * @param height the icon height
+         * @param x the x-coordinate of the AtoN
+         * @param y the y-coordinate of the AtoN
+         * @param scale the symbol scale
+         */
+        public IconSpec(String format, int width, int height, int x, int y, double scale) {
+            this.format = StringUtils.defaultString(format).toLowerCase();
+            if (!"png".equals(this.format) && !"svg".equals(this.format)) {
+                throw new IllegalArgumentException("Invalid AtoN icon format " + format);
+            }
+            this.width = width;
+            this.height = height;
+            this.x = x;
+            this.y = y;
+            this.scale = scale;
+        }
+
+        /** {@inheritDoc} **/
+        @Override
+        public String toString() {
+            return format + ":" + width + "x" + height + ":" + x + "," + y + ":" + scale;
+        }
+    }
+}
@@ -21,6 +21,7 @@ import org.jboss.resteasy.annotations.cache.NoCache;
 import org.niord.core.aton.AtonNode;
 import org.niord.core.aton.vo.AtonNodeVo;
 import org.niord.core.repo.RepositoryService;
+import org.niord.web.aton.AtonIconCache.IconSpec;
 import org.slf4j.Logger;
 
 import jakarta.enterprise.context.ApplicationScoped;
@@ -29,11 +30,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.Response;
-import java.io.ByteArrayOutputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
 import java.net.URI;
-import java.nio.file.Files;
 import java.nio.file.Path;
 
 /**
@@ -43,7 +40,6 @@ import java.nio.file.Path;
 @ApplicationScoped
 public class AtonIconRestService {
 
-    static final String OVERVIEW_ICON_REPO = "aton_icons";
     static final int OVERVIEW_ICON_HEIGHT = 90;
     static final int OVERVIEW_ICON_WIDTH = 60;
     static final double OVERVIEW_ICON_SCALE = 0.3;
@@ -54,6 +50,9 @@ public class AtonIconRestService {
     @Inject
     RepositoryService repositoryService;
 
+    @Inject
+    AtonIconCache atonIconCache;
+
 
     @POST
     @jakarta.ws.rs.Path("/svg")
@@ -67,24 +66,19 @@ public class AtonIconRestService {
             @QueryParam("scale") @DefaultValue("0.4") double scale,
             AtonNodeVo aton) throws Exception {
 
-        long t0 = System.currentTimeMillis();
-
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        AtonIconRenderer.renderIcon(
-                aton,
-                "svg",
-                out,
-                width,       // width
-                height,      // height
-                width/2,     // x
-                height/2,    // y
-                scale        // scale
-        );
-
-        log.trace("Generated AtoN SVG in " + (System.currentTimeMillis() - t0) + " ms");
+        byte[] svg = atonIconCache.getIcon(
+                aton.getTags(),
+                new IconSpec(
+                        "svg",
+                        width,       // width
+                        height,      // height
+                        width/2,     // x
+                        height/2,    // y
+                        scale        // scale
+                ));
 
         return Response
-                .ok(out.toByteArray())
+                .ok(svg)
                 .build();
     }
 
@@ -95,8 +89,6 @@ public class AtonIconRestService {
     @NoCache
     public Response getAtonOverviewIcon(@Context HttpServletRequest request) throws Exception {
 
-        long t0 = System.currentTimeMillis();
-
         String type = request.getParameter("seamark:type");
         if (StringUtils.isBlank(type)) {
             return Response
@@ -107,42 +99,27 @@ public class AtonIconRestService {
         // Prepare an AtoN to use as a template for icon construction
         AtonNode aton = new AtonNode();
 
-        // Construct a repository path to the icon
-        Path path = repositoryService
-                .getRepoRoot()
-                .resolve(OVERVIEW_ICON_REPO);
-
-        path = addParam(aton, path, request, "seamark:type");
-        path = addParam(aton, path, request, "seamark:" + type + ":category");
-        path = addParam(aton, path, request, "seamark:" + type + ":shape");
-        path = addParam(aton, path, request, "seamark:" + type + ":colour");
-        path = addParam(aton, path, request, "seamark:" + type + ":colour_pattern");
-        path = addParam(aton, path, request, "seamark:topmark:shape");
-        path = addParam(aton, path, request, "seamark:topmark:colour");
-        path = addParam(aton, path, request, "seamark:light:character");
-        path = addParam(aton, path, request, "seamark:light:colour");
-
-        // And the actual icon file
-        path = path.resolve("aton_icon_" + OVERVIEW_ICON_WIDTH + "x" + OVERVIEW_ICON_HEIGHT + ".png");
-
-        if (!Files.isRegularFile(path)) {
-            checkCreateParentDirs(path);
-
-            try (FileOutputStream out = new FileOutputStream(path.toFile())) {
-                AtonIconRenderer.renderIcon(
-                        aton.toVo(),
+        addParam(aton, request, "seamark:type");
+        addParam(aton, request, "seamark:" + type + ":category");
+        addParam(aton, request, "seamark:" + type + ":shape");
+        addParam(aton, request, "seamark:" + type + ":colour");
+        addParam(aton, request, "seamark:" + type + ":colour_pattern");
+        addParam(aton, request, "seamark:topmark:shape");
+        addParam(aton, request, "seamark:topmark:colour");
+        addParam(aton, request, "seamark:light:character");
+        addParam(aton, request, "seamark:light:colour");
+
+        // Look up the icon file, which is only rendered once for each combination of tags
+        Path path = atonIconCache.getIconFile(
+                aton.toVo().getTags(),
+                new IconSpec(
                         "png",
-                        out,
                         OVERVIEW_ICON_WIDTH,            // width
                         OVERVIEW_ICON_HEIGHT,           // height
                         OVERVIEW_ICON_WIDTH / 3,        // x
                         2 * OVERVIEW_ICON_HEIGHT / 3,   // y
                         OVERVIEW_ICON_SCALE             // scale
-                );
-
-                log.trace("Generated AtoN PNG " + path + " in " + (System.currentTimeMillis() - t0) + " ms");
-            }
-        }
+                ));
 
         // Redirect to the icon
         String iconUri = repositoryService.getRepoUri(path);
@@ -153,39 +130,17 @@ public class AtonIconRestService {
 
 
     /**
-     * If the parameter is well-defined, add a sub-folder to the path
+     * If the parameter is well-defined, add it as a tag to the AtoN template
      *
      * @param aton an AtoN template to update with the parameter tags
-     * @param path the path to update
      * @param request the servlet request
      * @param param the param to check for
-     * @return the potentially updated path
      */
-    private Path addParam(AtonNode aton, Path path, HttpServletRequest request, String param) {
+    private void addParam(AtonNode aton, HttpServletRequest request, String param) {
         String val = request.getParameter(param);
         if (StringUtils.isNotBlank(val)) {
             aton.updateTag(param, val);
-            path = path.resolve(escape(val));
-        }
-        return path;
-    }
-
-
-    /** Escape naughty file name characters **/
-    private String escape(String name) {
-        return name.replaceAll("[^a-zA-Z0-9.-]", "_");
-    }
-
-
-    /**
-     * Ensures that parent directories are created
-     * @param file the file whose parent directories will be created
-     */
-    private void checkCreateParentDirs(Path file) throws IOException {
-        if (!Files.exists(file.getParent())) {
-            Files.createDirectories(file.getParent());
         }
     }
 
 }
-
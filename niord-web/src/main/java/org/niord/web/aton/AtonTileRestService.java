@@ -16,37 +16,37 @@
 package org.niord.web.aton;
 
 import org.apache.commons.io.IOUtils;
-import org.niord.core.aton.AtonSearchParams;
-import org.niord.core.aton.AtonService;
+import org.niord.core.aton.AtonTileService;
 import org.niord.core.repo.RepositoryService;
-import org.niord.core.util.GlobalMercator;
-import org.niord.core.util.GraphicsUtils;
+import org.niord.core.user.Roles;
 import org.slf4j.Logger;
 
+import jakarta.annotation.security.RolesAllowed;
 import jakarta.enterprise.context.RequestScoped;
-import javax.imageio.ImageIO;
 import jakarta.inject.Inject;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.core.CacheControl;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
-import java.awt.*;
-import java.awt.geom.Ellipse2D;
-import java.awt.image.BufferedImage;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Date;
 
 /**
  * Feeds AtoN data as bitmaps.
  * Can be used for servicing an OpenStreetMap Layer in Openlayers.
  * The layer should be configured to have the url "/rest/aton-tiles/${z}/${x}/${y}.png"
  * <p>
+ * The tiles are maintained by the {@linkplain AtonTileService}, which pre-renders the lower zoom levels
+ * and updates the tiles affected by AtoN changes. Tiles are served with an E-Tag, so that clients
+ * can re-validate cached tiles cheaply.
+ * <p>
  * The handling of blank tiles in particular is un-optimal. This is due to problems getting the service
  * to work with Microsoft IE and Edge:
  * <ul>
@@ -60,19 +60,15 @@ import java.util.Date;
 @RequestScoped
 public class AtonTileRestService {
 
-    static final int        TILE_SIZE           = 256;
-    static final int        TILE_TTL_HOURS      = 24; // A tile file is refreshed every 24 hours...
-    static final String     TILE_REPO_FOLDER    = "aton_tiles";
-    static final Color      ATON_COLOR          = new Color(200, 0, 0);
+    static final int        TILE_MAX_AGE_SECONDS    = 60 * 60; // Clients re-validate cached tiles every hour
+    static final String     TILE_REPO_FOLDER        = "aton_tiles";
+    static final EntityTag  BLANK_TILE_ETAG         = new EntityTag("blank_256", true);
 
     @Inject
     Logger log;
 
     @Inject
-    AtonService atonService;
-
-    @Inject
-    AtonBlankTileCache blankTileCache;
+    AtonTileService atonTileService;
 
     @Inject
     RepositoryService repositoryService;
@@ -86,67 +82,31 @@ public class AtonTileRestService {
                                   @Context Request request) throws IOException {
 
         try {
-            // Next, check if the tile exists in the repository
-            Path file = repositoryService.getRepoRoot()
-                    .resolve(TILE_REPO_FOLDER)
-                    .resolve(String.valueOf(z))
-                    .resolve(String.valueOf(x))
-                    .resolve(String.valueOf(y) + ".png");
-
-            long ttlMs = 1000L * 60L * 60L * TILE_TTL_HOURS;
-            Date expirationDate = new Date(System.currentTimeMillis() + ttlMs);
-
-            // Check if the tile is a known blank tile
-            if (blankTileCache.getCache().containsKey(file.toString())) {
-                return streamBlankTile(expirationDate);
-
-            } else if (Files.exists(file) &&
-                    System.currentTimeMillis() < Files.getLastModifiedTime(file).toMillis() + ttlMs) {
-                // The tile exists and is not expired
-
-                // Check for an ETag match
-                EntityTag etag = entityTagForFile(file);
-                Response.ResponseBuilder responseBuilder = request.evaluatePreconditions(etag);
-                if (responseBuilder != null) {
-                    // Etag match
-                    log.trace("File unchanged. Return code 304");
-                    return responseBuilder
-                            .expires(expirationDate)
-                            .build();
-                } else {
-                    log.trace("Return existing tile " + file);
-                    return streamTile(file, expirationDate, etag);
-                }
+            Path file = atonTileService.getTile(z, x, y);
+
+            // Check for an ETag match
+            EntityTag etag = (file == null) ? BLANK_TILE_ETAG : entityTagForFile(file);
+            Response.ResponseBuilder responseBuilder = request.evaluatePreconditions(etag);
+            if (responseBuilder != null) {
+                log.trace("File unchanged. Return code 304");
+            } else if (file == null) {
+                log.trace("Streaming blank tile z=" + z + ", x=" + x + ", y=" + y);
+                responseBuilder = Response.ok(getBlankTile().toFile(), "image/png");
+            } else {
+                log.trace("Return existing tile " + file);
+                responseBuilder = Response.ok(file.toFile(), "image/png");
             }
 
+            return responseBuilder
+                    .tag(etag)
+                    .cacheControl(tileCacheControl())
+                    .build();
 
-            // Search all messages in the bounds of the tile
-            long t0 = System.currentTimeMillis();
-            GlobalMercator mercator = new GlobalMercator();
-            double[] bounds = mercator.TileLatLonBounds(x, y, z);
-
-            // Convert to mapExtents search parameters
-            AtonSearchParams param = new AtonSearchParams()
-                .extent(-bounds[2], bounds[1], -bounds[0], bounds[3]);
-
-            // Compute the atons of the tile extent
-            java.util.List<double[]> atonLonLast = atonService.searchPositions(param);
-
-            // If the search result is empty, return blank and cache the result
-            if (atonLonLast.isEmpty()) {
-                blankTileCache.getCache().put(file.toString(), file.toString());
-                return streamBlankTile(expirationDate);
-            }
-
-            // Generate an image
-            BufferedImage image = generateAtonTile(z, bounds, mercator, atonLonLast);
-
-            // Write the image to the repository
-            checkCreateParentDirs(file);
-            ImageIO.write(image, "png", file.toFile());
-            log.debug("Generated " + file + " in " + (System.currentTimeMillis() - t0) + " ms");
-
-            return streamTile(file, expirationDate, null);
+        } catch (IllegalArgumentException e) {
+            return Response
+                    .status(HttpServletResponse.SC_NOT_FOUND)
+                    .entity(e.getMessage())
+                    .build();
 
         } catch (Exception e) {
             log.error(String.format("Error generating tile z=%d, x=%d, y=%d. Error=%s", z, x, y, e));
@@ -160,88 +120,44 @@ public class AtonTileRestService {
 
 
     /**
-     * Generates an AtoN tile
-     * @param z the zoom level
-     * @param bounds the tile bounds
-     * @param mercator the mercator calculator
-     * @param atonLonLats the aton positions
-     * @return the resulting image
+     * Clears the AtoN tiles and re-seeds the tile pyramid in the background
      */
-    private BufferedImage generateAtonTile(int z, double[] bounds, GlobalMercator mercator, java.util.List<double[]> atonLonLats) {
-
-        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2 = image.createGraphics();
-        GraphicsUtils.antialias(g2);
-
-        int xy0[] =  mercator.LatLonToPixels(-bounds[0], bounds[1], z);
-
-        atonLonLats.stream().forEach(lonLat -> {
-
-            int xy[] = mercator.LatLonToPixels(lonLat[1], lonLat[0], z);
-            double px = xy[0] - xy0[0];
-            double py = -(xy[1] - xy0[1]);
-            double radius = (z < 6) ? 0.5 : 1.0;
-
-            Shape theCircle = new Ellipse2D.Double(px - radius, py - radius, 2.0 * radius, 2.0 * radius);
-            g2.setColor(ATON_COLOR);
-            g2.fill(theCircle);
-        });
-
-        g2.dispose();
-        return image;
+    @PUT
+    @jakarta.ws.rs.Path("/seed")
+    @RolesAllowed(Roles.SYSADMIN)
+    public boolean seedTiles() {
+        log.info("Re-seeding AtoN tiles");
+        return atonTileService.reseedTiles();
     }
 
-    /**
-     * Ensures that parent directories are created
-     * @param file the file whose parent directories will be created
-     */
-    private void checkCreateParentDirs(Path file) throws IOException {
-        if (!Files.exists(file.getParent())) {
-            Files.createDirectories(file.getParent());
-        }
-    }
 
     /**
-     * Streams a tile
-     * @param file the tile to stream
-     * @param expirationDate the expiration date of the returned tile
-     * @param etag the E-Tag. May be null.
-     * @return the response
+     * Returns the cache control used for tiles
+     * @return the cache control used for tiles
      */
-    private Response streamTile(Path file, Date expirationDate, EntityTag etag) throws IOException {
-        if (etag == null) {
-            etag = entityTagForFile(file);
-        }
-        return Response
-                .ok(file.toFile(), "image/png")
-                .expires(expirationDate)
-                .tag(etag)
-                .build();
+    private CacheControl tileCacheControl() {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setMaxAge(TILE_MAX_AGE_SECONDS);
+        return cacheControl;
     }
 
     /**
-     * Streams a blank tile
-     * @param expirationDate the expiration date of the returned tile
-     * @return the response
+     * Returns the blank tile
+     * @return the blank tile
      */
-    private Response streamBlankTile(Date expirationDate) throws IOException {
+    private Path getBlankTile() throws IOException {
         Path file = repositoryService.getRepoRoot()
                 .resolve(TILE_REPO_FOLDER)
                 .resolve("blank_256.png");
 
         // Make sure the blank file is present in the repository
         if (Files.notExists(file)) {
-            checkCreateParentDirs(file);
-            IOUtils.copy(
-                    getClass().getResourceAsStream("/blank_256.png"),
-                    new FileOutputStream(file.toFile()));
+            Files.createDirectories(file.getParent());
+            try (FileOutputStream out = new FileOutputStream(file.toFile())) {
+                IOUtils.copy(getClass().getResourceAsStream("/blank_256.png"), out);
+            }
         }
-
-        log.trace("Streaming blank file: " + file);
-        return Response
-                .ok(file.toFile(), "image/png")
-                .expires(expirationDate)
-                .build();
+        return file;
     }
 
     /**
@@ -254,4 +170,3 @@ public class AtonTileRestService {
     }
 
 }
-
@@ -24,6 +24,7 @@ import org.niord.core.geojson.FeatureName;
 import org.niord.core.geojson.GeoJsonUtils;
 import org.niord.core.geojson.JtsConverter;
 import org.niord.core.message.Message;
+import org.niord.core.repo.RepositoryService;
 import org.niord.core.settings.annotation.Setting;
 import org.niord.core.util.GlobalMercator;
 import org.niord.core.util.GraphicsUtils;
@@ -454,6 +455,7 @@ public class MessageMapImageGenerator {
         if (image.getWidth() == mapImageSize && image.getHeight() == mapImageSize) {
             // Write the image file directly.
             // NB: We assume PNG
+            RepositoryService.unlinkIfShared(imageRepoPath);
             Files.write(imageRepoPath, imageData);
             log.info("Update message map image " + imageRepoPath);
 
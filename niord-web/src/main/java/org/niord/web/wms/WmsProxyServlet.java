@@ -22,14 +22,9 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.URL;
-import java.net.URLConnection;
-import java.util.Map;
-import java.util.stream.Collectors;
-
-import javax.imageio.ImageIO;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.niord.core.settings.annotation.Setting;
@@ -48,6 +43,8 @@ import jakarta.servlet.http.HttpServletResponse;
  *
  * This servlet will mask out a couple of colours that makes the current Danish WMS service unusable...
  *
+ * The tiles are cached server-side by the {@linkplain WmsTileCache} and passed straight through to the client.
+ *
  * Define the settings for the "wmsLogin", "wmsPassword", etc. in the "${niord.home}/niord.json" settings file.
  */
 @WebServlet(value = "/wms/*")
@@ -62,6 +59,9 @@ public class WmsProxyServlet extends HttpServlet {
     @Inject
     Logger log;
 
+    @Inject
+    WmsTileCache wmsTileCache;
+
     @Inject
     @Setting(value="wmsProvider", description="The WMS provider")
     String wmsProvider;
@@ -124,48 +124,40 @@ public class WmsProxyServlet extends HttpServlet {
             return;
         }
 
-        Map<String, String[]> paramMap = request.getParameterMap();
-        String params = paramMap
-                .entrySet()
-                .stream()
-                .filter(p -> StringUtils.isBlank(wmsLayers) || !"layers".equalsIgnoreCase(p.getKey()))
-                .map(p -> String.format("%s=%s", p.getKey(), p.getValue()[0]))
-                .collect(Collectors.joining("&"));
-        if (!StringUtils.isBlank(wmsPassword)) {
-            params += String.format("&TOKEN=%s", wmsPassword);
-        }
+        // Normalize the request parameters. The access token is never part of the cache key
+        SortedMap<String, String> params = new TreeMap<>();
+        request.getParameterMap().forEach((key, values) -> {
+            String name = key.toUpperCase();
+            if (values.length > 0
+                    && !"TOKEN".equals(name)
+                    && (StringUtils.isBlank(wmsLayers) || !"LAYERS".equals(name))) {
+                params.put(name, values[0]);
+            }
+        });
         if (StringUtils.isNotBlank(wmsLayers)) {
-            params += String.format("&LAYERS=%s", wmsLayers);
+            params.put("LAYERS", wmsLayers);
         }
 
-        String url = wmsProvider + "?" + params;
-        
-        log.trace("Loading image " + url);
         try {
-            URL urlUrl = new URL(url);
-            URLConnection con = urlUrl.openConnection();
-            con.setConnectTimeout(20 * 1000);
-            con.setReadTimeout(20 * 1000);
-            InputStream in = con.getInputStream();
-            BufferedImage image = ImageIO.read(in);
-            if (image != null) {
-                //image = transformWhiteToTransparent(image);
-
-                OutputStream out = response.getOutputStream();
-                ImageIO.write(image, "png", out);
-                image.flush();
-                out.close();
+            WmsTileCache.Tile tile = wmsTileCache.getTile(wmsProvider, params, wmsPassword);
+            if (tile != null) {
+                // Pass the bytes straight through
+                response.setContentType(tile.getContentType());
+                response.setContentLength(tile.getData().length);
+                try (OutputStream out = response.getOutputStream()) {
+                    out.write(tile.getData());
+                }
                 return;
             }
         } catch (Exception e) {
-            log.warn("Failed loading WMS image for URL " + url + ": " + e, e);
+            log.warn("Failed loading WMS image for " + params + ": " + e, e);
         }
 
         // Fall back to return a blank image
         try {
             response.sendRedirect(BLANK_IMAGE);
         } catch (Exception e) {
-            log.warn("Failed returning blank image for URL " + url + ": " + e, e);
+            log.warn("Failed returning blank image for " + params + ": " + e, e);
         }
     }
 
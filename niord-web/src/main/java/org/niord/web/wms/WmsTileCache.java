@@ -0,0 +1,405 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.web.wms;
+
+import io.quarkus.scheduler.Scheduled;
+import org.apache.commons.lang.StringUtils;
+import org.niord.core.repo.RepositoryService;
+import org.niord.core.settings.annotation.Setting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.niord.core.settings.Setting.Type.Integer;
+
+/**
+ * Server-side cache of WMS tiles.
+ * <p>
+ * Tiles are keyed by the normalized WMS request parameters, excluding the access token, and kept in an
+ * in-memory LRU cache backed by a file store in the repository. The tile bytes are passed straight through,
+ * without being decoded and re-encoded.
+ * <p>
+ * Concurrent requests for the same tile share a single upstream fetch, and the number of concurrent
+ * upstream fetches is bounded. Upstream fetches use the non-blocking JDK HTTP client.
+ */
+@ApplicationScoped
+@SuppressWarnings("unused")
+public class WmsTileCache {
+
+    static final String         WMS_REPO_FOLDER     = "wms_tiles";
+    static final long           TILE_TTL_MS         = 24L * 60L * 60L * 1000L; // 24 hours
+    static final long           MAX_MEMORY_BYTES    = 32L * 1024L * 1024L;
+    static final int            TIMEOUT_SECONDS     = 20;
+
+    Logger log = LoggerFactory.getLogger(WmsTileCache.class);
+
+    @Inject
+    RepositoryService repositoryService;
+
+    @Inject
+    @Setting(value = "wmsMaxConcurrentRequests", defaultValue = "8", type = Integer,
+            description = "The max number of concurrent requests to the WMS provider")
+    Integer maxConcurrentRequests;
+
+    Path cacheRoot;
+    long maxMemoryBytes = MAX_MEMORY_BYTES;
+    HttpClient httpClient;
+    Semaphore upstreamPermits;
+
+    final Map<String, CompletableFuture<Tile>> pendingFetches = new ConcurrentHashMap<>();
+    final LinkedHashMap<String, Tile> memoryCache = new LinkedHashMap<>(256, 0.75f, true);
+    long memoryBytes;
+
+
+    /** Constructor used by CDI **/
+    public WmsTileCache() {
+    }
+
+
+    /**
+     * Constructor used for instantiating the cache outside of CDI
+     * @param cacheRoot the root folder of the file store
+     * @param maxConcurrentRequests the max number of concurrent upstream requests
+     * @param maxMemoryBytes the max number of bytes held in the in-memory cache
+     */
+    public WmsTileCache(Path cacheRoot, int maxConcurrentRequests, long maxMemoryBytes) {
+        this.cacheRoot = cacheRoot;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.maxMemoryBytes = maxMemoryBytes;
+        init();
+    }
+
+
+    /** Initializes the HTTP client **/
+    @PostConstruct
+    void init() {
+        if (cacheRoot == null) {
+            cacheRoot = repositoryService.getRepoRoot().resolve(WMS_REPO_FOLDER);
+        }
+        upstreamPermits = new Semaphore(Math.max(1, maxConcurrentRequests));
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(TIMEOUT_SECONDS))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+
+    /**
+     * Returns the WMS tile for the given request parameters, or null if the tile could not be loaded.
+     *
+     * @param provider the WMS provider URL
+     * @param params the normalized WMS request parameters, excluding the access token
+     * @param token the access token, or null if undefined
+     * @return the WMS tile, or null if the tile could not be loaded
+     */
+    public Tile getTile(String provider, SortedMap<String, String> params, String token) throws IOException {
+
+        String key = cacheKey(provider, params);
+
+        // Check the in-memory cache and the file store
+        Tile tile = getFromMemory(key);
+        if (tile == null) {
+            tile = readFromDisk(key);
+            if (tile != null) {
+                putInMemory(key, tile);
+            }
+        }
+        if (tile != null) {
+            return tile;
+        }
+
+        // Fetch the tile. Concurrent requests for the same tile share the same upstream fetch
+        CompletableFuture<Tile> result = new CompletableFuture<>();
+        CompletableFuture<Tile> pending = pendingFetches.putIfAbsent(key, result);
+        if (pending != null) {
+            return awaitTile(pending);
+        }
+
+        fetchTile(provider, params, token).whenComplete((t, e) -> {
+            try {
+                if (t != null) {
+                    putInMemory(key, t);
+                    writeToDisk(key, t);
+                }
+            } finally {
+                pendingFetches.remove(key, result);
+                if (e != null) {
+                    result.completeExceptionally(e);
+                } else {
+                    result.complete(t);
+                }
+            }
+        });
+        return awaitTile(result);
+    }
+
+
+    /** Waits for the tile fetch to complete **/
+    private Tile awaitTile(CompletableFuture<Tile> result) throws IOException {
+        try {
+            return result.get(2 * TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            Throwable cause = e instanceof CompletionException || e.getCause() != null ? e.getCause() : e;
+            throw new IOException("Error fetching WMS tile: " + cause, cause);
+        }
+    }
+
+
+    /**
+     * Fetches the tile from the WMS provider. Only images are returned, and e.g. WMS service exceptions
+     * result in a null tile.
+     */
+    private CompletableFuture<Tile> fetchTile(String provider, SortedMap<String, String> params, String token) {
+
+        String query = params.entrySet().stream()
+                .map(p -> encode(p.getKey()) + "=" + encode(p.getValue()))
+                .collect(Collectors.joining("&"));
+        if (StringUtils.isNotBlank(token)) {
+            query += "&TOKEN=" + encode(token);
+        }
+        String url = provider + (provider.contains("?") ? "&" : "?") + query;
+
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
+                    .GET()
+                    .build();
+            if (!upstreamPermits.tryAcquire(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                return CompletableFuture.failedFuture(new IOException("Too many concurrent WMS requests"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        long t0 = System.currentTimeMillis();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .whenComplete((r, e) -> upstreamPermits.release())
+                .thenApply(response -> {
+                    String contentType = response.headers().firstValue("Content-Type").orElse("");
+                    if (response.statusCode() != 200 || !contentType.startsWith("image/")) {
+                        log.warn("Failed loading WMS tile " + params + ": status " + response.statusCode()
+                                + ", content type " + contentType);
+                        return null;
+                    }
+                    log.trace("Loaded WMS tile " + params + " in " + (System.currentTimeMillis() - t0) + " ms");
+                    return new Tile(response.body(), contentType, System.currentTimeMillis());
+                });
+    }
+
+
+    /** URL-encodes the value **/
+    private static String encode(String value) {
+        return URLEncoder.encode(StringUtils.defaultString(value), StandardCharsets.UTF_8);
+    }
+
+
+    /** Returns the cache key, i.e. a hash of the provider and the normalized parameters **/
+    static String cacheKey(String provider, SortedMap<String, String> params) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(provider.getBytes(StandardCharsets.UTF_8));
+            params.forEach((k, v) -> {
+                digest.update((byte) '&');
+                digest.update(k.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '=');
+                digest.update(StringUtils.defaultString(v).getBytes(StandardCharsets.UTF_8));
+            });
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (Exception e) {
+            throw new IllegalStateException("SHA-1 not supported", e);
+        }
+    }
+
+
+    /***************************************/
+    /** In-memory LRU cache               **/
+    /***************************************/
+
+
+    /** Returns the non-expired tile from the in-memory cache **/
+    private synchronized Tile getFromMemory(String key) {
+        Tile tile = memoryCache.get(key);
+        if (tile != null && tile.isExpired()) {
+            memoryCache.remove(key);
+            memoryBytes -= tile.data.length;
+            return null;
+        }
+        return tile;
+    }
+
+
+    /** Adds the tile to the in-memory cache and evicts the least recently used tiles when full **/
+    private synchronized void putInMemory(String key, Tile tile) {
+        Tile old = memoryCache.put(key, tile);
+        memoryBytes += tile.data.length - (old != null ? old.data.length : 0);
+        Iterator<Tile> it = memoryCache.values().iterator();
+        while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+            memoryBytes -= it.next().data.length;
+            it.remove();
+        }
+    }
+
+
+    /***************************************/
+    /** File store                        **/
+    /***************************************/
+
+
+    /** Returns the file of the tile with the given key **/
+    private Path tileFile(String key) {
+        return cacheRoot.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+
+    /** Reads the non-expired tile from the file store **/
+    private Tile readFromDisk(String key) {
+        Path file = tileFile(key);
+        try {
+            if (Files.exists(file)) {
+                long created = Files.getLastModifiedTime(file).toMillis();
+                if (created + TILE_TTL_MS > System.currentTimeMillis()) {
+                    byte[] data = Files.readAllBytes(file);
+                    return new Tile(data, sniffContentType(data), created);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Failed reading cached WMS tile " + file + ": " + e);
+        }
+        return null;
+    }
+
+
+    /** Writes the tile to the file store. The file is moved into place atomically **/
+    private void writeToDisk(String key, Tile tile) {
+        Path file = tileFile(key);
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), key, ".tmp");
+            Files.write(tmp, tile.data);
+            Files.setLastModifiedTime(tmp, FileTime.fromMillis(tile.created));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed caching WMS tile " + file + ": " + e);
+        }
+    }
+
+
+    /** Determines the image content type from the leading bytes of the data **/
+    static String sniffContentType(byte[] data) {
+        if (data.length >= 4 && (data[0] & 0xFF) == 0x89 && data[1] == 'P' && data[2] == 'N' && data[3] == 'G') {
+            return "image/png";
+        } else if (data.length >= 2 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8) {
+            return "image/jpeg";
+        } else if (data.length >= 3 && data[0] == 'G' && data[1] == 'I' && data[2] == 'F') {
+            return "image/gif";
+        }
+        return "application/octet-stream";
+    }
+
+
+    /**
+     * Called every night to delete expired tiles from the file store
+     */
+    @Scheduled(cron="17 41 4 * * ?")
+    void purgeExpiredTiles() {
+        if (!Files.isDirectory(cacheRoot)) {
+            return;
+        }
+        long expiry = System.currentTimeMillis() - TILE_TTL_MS;
+        int deleted = 0;
+        try (Stream<Path> files = Files.walk(cacheRoot)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                if (Files.getLastModifiedTime(file).toMillis() < expiry) {
+                    Files.deleteIfExists(file);
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed purging expired WMS tiles: " + e, e);
+        }
+        if (deleted > 0) {
+            log.info("Purged " + deleted + " expired WMS tiles");
+        }
+    }
+
+
+    /**
+     * A cached WMS tile
+     */
+    public static final class Tile {
+
+        final byte[] data;
+        final String contentType;
+        final long created;
+
+        /** Constructor **/
+        Tile(byte[] data, String contentType, long created) {
+            this.data = data;
+            this.contentType = contentType;
+            this.created = created;
+        }
+
+        /** Returns if the tile has expired **/
+        boolean isExpired() {
+            return created + TILE_TTL_MS < System.currentTimeMillis();
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+    }
+}
@@ -34,6 +34,7 @@ angular.module('niord.messages')
             $scope.loggedIn = AuthService.loggedIn;
             $scope.page = 0;
             $scope.maxSize = 200;
+            $scope.nextCursor = undefined;
             $scope.searchDomain = $rootScope.domain;
             $scope.showFilter = true;
             $scope.messageList = [];
@@ -996,11 +997,15 @@ angular.module('niord.messages')
                     searchParams += 'viewMode=map&includeNoPos=true';
                 }
 
-                MessageService.search(searchParams, $scope.page, $scope.maxSize)
+                // When appending the next page, continue from the cursor of the previous page
+                var cursor = append ? $scope.nextCursor : undefined;
+
+                MessageService.search(searchParams, $scope.page, $scope.maxSize, cursor)
                     .success(function (result) {
                         if (!append) {
                             $scope.messageList.length = 0;
                         }
+                        $scope.nextCursor = result.nextCursor;
                         for (var x = 0; x < result.data.length; x++) {
                             var message = result.data[x];
                             $scope.messageList.push(message);
@@ -71,8 +71,8 @@ angular.module('niord.messages')
             },
 
 
-            /** Returns the message filters */
-            search: function(params, page, maxSize) {
+            /** Returns the message filters. If a cursor is specified, it takes precedence over the page */
+            search: function(params, page, maxSize, cursor) {
                 page = page || 0;
                 maxSize = maxSize || 1000;
                 if (params.length >  0) {
@@ -81,6 +81,9 @@ angular.module('niord.messages')
                 params += 'lang=' + $rootScope.language
                         + '&page=' + page
                         + '&maxSize=' + maxSize;
+                if (cursor) {
+                    params += '&cursor=' + encodeURIComponent(cursor);
+                }
                 return $http.get('/rest/messages/search?' + params);
             },
 
@@ -264,6 +264,15 @@ angular.module('niord.admin')
                 });
             }
 
+
+            /** Starts a rebuild of the message index (only sysadmins) **/
+            $scope.rebuildMessageIndex = function () {
+                AdminBatchService.rebuildMessageIndex()
+                    .success(function () {
+                        growl.info('Scheduled message-index-rebuild batch job', { ttl: 3000 });
+                    })
+            }
+
         }])
 
 
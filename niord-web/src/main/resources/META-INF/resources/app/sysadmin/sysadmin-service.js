@@ -614,6 +614,11 @@ angular.module('niord.admin')
                     scriptName: scritpName,
                     javaScript: javascript
                 });
+            },
+
+            /** Starts a rebuild of the message index (only Sysadmins) **/
+            rebuildMessageIndex: function () {
+                return $http.put('/rest/messages/rebuild-index');
             }
 
         };
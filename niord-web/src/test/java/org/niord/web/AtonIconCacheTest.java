@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.web;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.niord.core.aton.vo.AtonTagVo;
+import org.niord.web.aton.AtonIconCache;
+import org.niord.web.aton.AtonIconCache.IconSpec;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the content-addressed AtoN icon cache, which renders icons concurrently
+ */
+public class AtonIconCacheTest {
+
+    static final IconSpec PNG_ICON = new IconSpec("png", 60, 90, 20, 60, 0.3);
+
+    Path cacheRoot;
+
+    @Before
+    public void createCacheRoot() throws Exception {
+        cacheRoot = Files.createTempDirectory("aton-icons");
+    }
+
+    @After
+    public void deleteCacheRoot() {
+        FileUtils.deleteQuietly(cacheRoot.toFile());
+    }
+
+    @Test
+    public void testIconCache() throws Exception {
+
+        AtonTagVo[][] atons = {
+                {
+                        new AtonTagVo("seamark:type", "buoy_lateral"),
+                        new AtonTagVo("seamark:buoy_lateral:category", "port"),
+                        new AtonTagVo("seamark:buoy_lateral:shape", "can"),
+                        new AtonTagVo("seamark:buoy_lateral:colour", "red")
+                },
+                {
+                        // Same buoy with a different tag order and a non-seamark tag
+                        new AtonTagVo("seamark:buoy_lateral:colour", "red"),
+                        new AtonTagVo("seamark:buoy_lateral:shape", "can"),
+                        new AtonTagVo("seamark:type", "buoy_lateral"),
+                        new AtonTagVo("seamark:buoy_lateral:category", "port"),
+                        new AtonTagVo("source", "survey")
+                },
+                {
+                        new AtonTagVo("seamark:type", "buoy_cardinal"),
+                        new AtonTagVo("seamark:buoy_cardinal:category", "north"),
+                        new AtonTagVo("seamark:buoy_cardinal:shape", "pillar"),
+                        new AtonTagVo("seamark:buoy_cardinal:colour", "black;yellow"),
+                        new AtonTagVo("seamark:buoy_cardinal:colour_pattern", "horizontal"),
+                        new AtonTagVo("seamark:topmark:shape", "2 cones up")
+                }
+        };
+
+        AtonIconCache cache = new AtonIconCache(cacheRoot, 1024 * 1024);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<byte[]>> icons = new ArrayList<>();
+        for (int x = 0; x < 60; x++) {
+            AtonTagVo[] tags = atons[x % atons.length];
+            icons.add(executor.submit(() -> cache.getIcon(tags, PNG_ICON)));
+        }
+        List<byte[]> result = new ArrayList<>();
+        for (Future<byte[]> icon : icons) {
+            result.add(icon.get());
+        }
+        executor.shutdown();
+
+        // Identical buoys are only rendered once
+        assertEquals(2, cache.getRenderCount());
+        assertArrayEquals(result.get(0), result.get(1));
+        assertTrue(result.get(0).length > 0);
+
+        // The icons are read from the file store by a new cache
+        AtonIconCache diskCache = new AtonIconCache(cacheRoot, 1024 * 1024);
+        assertArrayEquals(result.get(2), diskCache.getIcon(atons[2], PNG_ICON));
+        Path file = diskCache.getIconFile(atons[0], PNG_ICON);
+        assertArrayEquals(result.get(0), Files.readAllBytes(file));
+        assertEquals(0, diskCache.getRenderCount());
+    }
+}
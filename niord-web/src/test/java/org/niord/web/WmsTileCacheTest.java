@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 Danish Maritime Authority.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.niord.web;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.niord.web.wms.WmsTileCache;
+
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the server-side WMS tile cache against a local HTTP stand-in for the WMS provider
+ */
+public class WmsTileCacheTest {
+
+    static final byte[] PNG = { (byte) 0x89, 'P', 'N', 'G', 13, 10, 26, 10, 1, 2, 3, 4 };
+
+    HttpServer server;
+    AtomicInteger requestCount = new AtomicInteger();
+    List<String> queries = new ArrayList<>();
+    Path cacheRoot;
+
+    @Before
+    public void startServer() throws Exception {
+        cacheRoot = Files.createTempDirectory("wms-tiles");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/wms", exchange -> {
+            requestCount.incrementAndGet();
+            String query = exchange.getRequestURI().getQuery();
+            synchronized (queries) {
+                queries.add(query);
+            }
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ignored) {
+            }
+            boolean error = query.contains("LAYERS=error");
+            byte[] body = error ? "<ServiceException/>".getBytes() : PNG;
+            exchange.getResponseHeaders().add("Content-Type", error ? "text/xml" : "image/png");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private String provider() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/wms";
+    }
+
+    private SortedMap<String, String> params(String layers) {
+        SortedMap<String, String> params = new TreeMap<>();
+        params.put("SERVICE", "WMS");
+        params.put("REQUEST", "GetMap");
+        params.put("FORMAT", "image/png");
+        params.put("BBOX", "1,2,3,4");
+        params.put("LAYERS", layers);
+        return params;
+    }
+
+
+    @Test
+    public void testRequestCoalescingAndCaching() throws Exception {
+
+        WmsTileCache cache = new WmsTileCache(cacheRoot, 4, 1024 * 1024);
+
+        // Concurrent identical requests share a single upstream fetch
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<WmsTileCache.Tile>> results = new ArrayList<>();
+        for (int x = 0; x < 8; x++) {
+            results.add(executor.submit(() -> cache.getTile(provider(), params("chart"), "secret")));
+        }
+        for (Future<WmsTileCache.Tile> result : results) {
+            WmsTileCache.Tile tile = result.get();
+            assertArrayEquals(PNG, tile.getData());
+            assertEquals("image/png", tile.getContentType());
+        }
+        executor.shutdown();
+        assertEquals(1, requestCount.get());
+        assertTrue(queries.get(0).contains("TOKEN=secret"));
+
+        // Served from memory, regardless of the token
+        cache.getTile(provider(), params("chart"), "another-secret");
+        assertEquals(1, requestCount.get());
+
+        // Served from the file store by a new cache instance
+        WmsTileCache diskCache = new WmsTileCache(cacheRoot, 4, 1024 * 1024);
+        WmsTileCache.Tile tile = diskCache.getTile(provider(), params("chart"), "secret");
+        assertArrayEquals(PNG, tile.getData());
+        assertEquals("image/png", tile.getContentType());
+        assertEquals(1, requestCount.get());
+    }
+
+
+    @Test
+    public void testNonImageResponsesAreNotCached() throws Exception {
+
+        WmsTileCache cache = new WmsTileCache(cacheRoot, 4, 1024 * 1024);
+
+        assertNull(cache.getTile(provider(), params("error"), null));
+        assertNull(cache.getTile(provider(), params("error"), null));
+        assertEquals(2, requestCount.get());
+        assertTrue(Arrays.stream(queries.get(0).split("&")).noneMatch(p -> p.startsWith("TOKEN=")));
+    }
+}